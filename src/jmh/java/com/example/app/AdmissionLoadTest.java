@@ -0,0 +1,70 @@
+package com.example.app;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+import org.h2.api.Trigger;
+import org.springframework.boot.SpringApplication;
+import org.springframework.context.ConfigurableApplicationContext;
+
+/**
+ * Overload test for admission control. Starts the application in this JVM with 10,000 users, makes every query
+ * on the users table take {@code queryMillis} of wall time without using the CPU, as on a database server across
+ * the network, then sends {@code GET /api/users?limit=50} at a fixed rate with {@link HttpLoadGenerator} (open
+ * loop, 5 s warm-up). The pool's {@code app.db.pool.maxSize} connections then serve at most
+ * {@code maxSize * 1000 / queryMillis} requests per second; offer more to see how the application copes. Prints
+ * the load generator's report and the admission and pool metrics.
+ *
+ * <p>Usage: {@code AdmissionLoadTest <rate/s> <durationSeconds> <queryMillis> [application arguments ...]}, for
+ * example {@code 1000/s 30 20 --app.admission.enabled=false}.
+ */
+public final class AdmissionLoadTest {
+
+    private AdmissionLoadTest() {
+    }
+
+    public static void main(String[] args) throws Exception {
+        if (args.length < 3) {
+            System.err.println("Usage: AdmissionLoadTest <rate/s> <durationSeconds> <queryMillis> [application arguments ...]");
+            System.exit(2);
+        }
+        String[] appArgs = Arrays.copyOfRange(args, 3, args.length);
+        try (ConfigurableApplicationContext context = SpringApplication.run(Application.class, appArgs)) {
+            context.getBean(DatabaseClient.class).createUsers(DatabaseModeBenchmark.users(0, 10_000));
+            ReadCost.millis = Long.parseLong(args[2]);
+            AppConfig config = context.getBean(AppConfig.class);
+            try (Connection connection = DriverManager.getConnection(config.getDbUrl(), config.getDbUsername(),
+                    config.getDbPassword());
+                 Statement stmt = connection.createStatement()) {
+                stmt.execute("CREATE TRIGGER IF NOT EXISTS users_read_cost BEFORE SELECT ON users CALL \""
+                        + ReadCost.class.getName() + "\"");
+            }
+            String port = context.getEnvironment().getProperty("local.server.port");
+            HttpLoadGenerator.main(new String[] {"http://localhost:" + port + "/api/users?limit=50", args[0], args[1], "5"});
+            context.getBean(MetricsRegistry.class).scrape().lines()
+                    .filter(line -> line.startsWith("admission_") || line.startsWith("db_pool_acquire_timeouts"))
+                    .forEach(System.out::println);
+        }
+    }
+
+    /**
+     * Makes each query wait {@code millis} before it runs. Queries on different connections wait side by side.
+     */
+    public static class ReadCost implements Trigger {
+        static volatile long millis;
+
+        @Override
+        public void init(Connection conn, String schemaName, String triggerName, String tableName, boolean before,
+                         int type) throws SQLException {
+        }
+
+        @Override
+        public void fire(Connection conn, Object[] oldRow, Object[] newRow) {
+            LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(millis));
+        }
+    }
+}
@@ -0,0 +1,63 @@
+package com.example.app;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Tree versus streaming parse of an endoflife.date-shaped payload. Run with {@code -prof gc} for allocation.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ApiClientParseBenchmark {
+
+    @Param({"50", "5000"})
+    public int entries;
+
+    private byte[] payload;
+
+    @Setup
+    public void setUp() {
+        StringBuilder sb = new StringBuilder("[");
+        for (int i = 0; i < entries; i++) {
+            if (i > 0) {
+                sb.append(',');
+            }
+            sb.append("{\"cycle\":\"").append(i / 10).append('.').append(i % 10).append('"')
+                    .append(",\"supportedJavaVersions\":\"17 - 21\"")
+                    .append(",\"releaseDate\":\"2023-11-23\",\"eol\":\"2025-08-24\",\"extendedSupport\":false")
+                    .append(",\"latest\":\"3.2.").append(i).append('"')
+                    .append(",\"latestReleaseDate\":\"2024-08-22\",\"lts\":false")
+                    .append(",\"link\":\"https://github.com/spring-projects/spring-boot/releases/tag/v3.2.").append(i).append('"')
+                    .append('}');
+        }
+        payload = sb.append(']').toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    @Benchmark
+    public List<String> treeParse() {
+        return ApiClient.parseCycles(new String(payload, StandardCharsets.UTF_8));
+    }
+
+    @Benchmark
+    public List<ApiClient.ReleaseCycle> streamingParse() throws IOException {
+        return ApiClient.readCycles(new ByteArrayInputStream(payload));
+    }
+}
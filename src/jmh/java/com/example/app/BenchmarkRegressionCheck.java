@@ -0,0 +1,79 @@
+package com.example.app;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Compares two JMH JSON result files and exits non-zero when any benchmark in the current run is worse
+ * than the baseline by more than the tolerance.
+ *
+ * <p>Usage: {@code BenchmarkRegressionCheck <baseline.json> <current.json> [tolerancePercent]}
+ */
+public final class BenchmarkRegressionCheck {
+
+    private BenchmarkRegressionCheck() {
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length < 2) {
+            System.err.println("Usage: BenchmarkRegressionCheck <baseline.json> <current.json> [tolerancePercent]");
+            System.exit(2);
+        }
+        double tolerance = args.length > 2 ? Double.parseDouble(args[2]) / 100.0 : 0.10;
+        Map<String, Result> baseline = read(Path.of(args[0]));
+        Map<String, Result> current = read(Path.of(args[1]));
+
+        int regressions = 0;
+        for (Map.Entry<String, Result> entry : current.entrySet()) {
+            Result before = baseline.get(entry.getKey());
+            if (before == null) {
+                System.out.printf("NEW         %s %.3f %s%n", entry.getKey(), entry.getValue().score, entry.getValue().unit);
+                continue;
+            }
+            Result after = entry.getValue();
+            double change = (after.score - before.score) / before.score;
+            // Throughput is better when higher; every other JMH mode reports time, which is better when lower
+            boolean worse = after.higherIsBetter ? change < -tolerance : change > tolerance;
+            if (worse) {
+                regressions++;
+            }
+            System.out.printf("%-11s %s %.3f -> %.3f %s (%+.1f%%)%n", worse ? "REGRESSION" : "OK",
+                    entry.getKey(), before.score, after.score, after.unit, change * 100);
+        }
+
+        if (regressions > 0) {
+            System.out.printf("%d benchmark(s) regressed by more than %.0f%%%n", regressions, tolerance * 100);
+            System.exit(1);
+        }
+    }
+
+    private static Map<String, Result> read(Path file) throws IOException {
+        JsonArray runs = JsonParser.parseString(Files.readString(file, StandardCharsets.UTF_8)).getAsJsonArray();
+        Map<String, Result> results = new LinkedHashMap<>();
+        for (JsonElement element : runs) {
+            JsonObject run = element.getAsJsonObject();
+            StringBuilder key = new StringBuilder(run.get("benchmark").getAsString())
+                    .append(" t=").append(run.get("threads").getAsInt());
+            if (run.has("params")) {
+                for (Map.Entry<String, JsonElement> param : run.getAsJsonObject("params").entrySet()) {
+                    key.append(' ').append(param.getKey()).append('=').append(param.getValue().getAsString());
+                }
+            }
+            JsonObject metric = run.getAsJsonObject("primaryMetric");
+            results.put(key.toString(), new Result(metric.get("score").getAsDouble(),
+                    metric.get("scoreUnit").getAsString(), "thrpt".equals(run.get("mode").getAsString())));
+        }
+        return results;
+    }
+
+    private record Result(double score, String unit, boolean higherIsBetter) {
+    }
+}
@@ -0,0 +1,73 @@
+package com.example.app;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * What the {@link UserChangeLog} costs writers, and what a consumer pays to catch up on the last 100 changes
+ * through it instead of re-reading the whole users table.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ChangeFeedBenchmark {
+
+    @Param({"10000"})
+    public int tableSize;
+
+    @Param({"false", "true"})
+    public boolean changeLog;
+
+    private UserChangeLog log;
+    private DatabaseClient databaseClient;
+    private final AtomicLong sequence = new AtomicLong();
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        log = changeLog ? new UserChangeLog(true, 65536, new MetricsRegistry()) : UserChangeLog.disabled();
+        databaseClient = new DatabaseClient(new AppConfig(), new MetricsRegistry(), log);
+        databaseClient.initialize();
+        databaseClient.createUsers(DatabaseModeBenchmark.users(0, tableSize));
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        databaseClient.close();
+    }
+
+    @Benchmark
+    public boolean updateEmail() {
+        return databaseClient.updateEmail(ThreadLocalRandom.current().nextInt(tableSize),
+                "changed" + sequence.incrementAndGet() + "@example.com");
+    }
+
+    @Benchmark
+    public UserChangeLog.Batch readLast100Changes() {
+        return log.read(Math.max(log.head() - 100, 0), 100);
+    }
+
+    @Benchmark
+    public long readAllUsers() {
+        LongAdder rows = new LongAdder();
+        databaseClient.forEachUser(-1, user -> rows.increment());
+        return rows.sum();
+    }
+}
@@ -0,0 +1,83 @@
+package com.example.app;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Scaling of the fork/join helpers in DataUtil by pool {@code parallelism}; parallelism 1 runs the
+ * sequential path. Compare against {@code sequentialUserMap} for the original createUserMap.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+@State(Scope.Benchmark)
+public class DataUtilParallelBenchmark {
+
+    @Param({"1000000"})
+    public int size;
+
+    @Param({"1", "2", "4", "8"})
+    public int parallelism;
+
+    private ForkJoinPool pool;
+    private List<User> users;
+    private List<String> emails;
+    private List<String> probes;
+
+    @Setup
+    public void setUp() {
+        pool = new ForkJoinPool(parallelism);
+        users = new ArrayList<>(size);
+        emails = new ArrayList<>(size);
+        probes = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            // About one email in four is a duplicate
+            String email = "user" + (i % (size * 3 / 4)) + "@example.com";
+            users.add(new User(i, "User " + i, email));
+            emails.add(email);
+            probes.add("user" + (i * 2) + "@example.com");
+        }
+    }
+
+    @TearDown
+    public void tearDown() {
+        pool.shutdown();
+    }
+
+    @Benchmark
+    public Map<String, User> sequentialUserMap() {
+        return DataUtil.createUserMap(users);
+    }
+
+    @Benchmark
+    public Map<String, User> parallelUserMap() {
+        return DataUtil.createUserMapParallel(users, pool, DataUtil.DEFAULT_PARALLEL_THRESHOLD);
+    }
+
+    @Benchmark
+    public boolean[] containsEach() {
+        return DataUtil.containsEach(emails, probes, pool, DataUtil.DEFAULT_PARALLEL_THRESHOLD);
+    }
+
+    @Benchmark
+    public List<User> dedupeByEmail() {
+        return DataUtil.dedupeByEmail(users, pool, DataUtil.DEFAULT_PARALLEL_THRESHOLD);
+    }
+}
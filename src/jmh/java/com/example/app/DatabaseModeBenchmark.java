@@ -0,0 +1,121 @@
+package com.example.app;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Stream;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Insert and lookup throughput of the in-memory database vs the file-backed one, straight through
+ * {@link DatabaseClient}. {@code writeDelayMs} only applies in file mode; 0 writes every commit to disk
+ * before returning.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class DatabaseModeBenchmark {
+
+    @Param({"memory", "file"})
+    public String mode;
+
+    @Param({"500"})
+    public int writeDelayMs;
+
+    @Param({"100000"})
+    public int tableSize;
+
+    private Path directory;
+    private DatabaseClient databaseClient;
+    private final AtomicLong sequence = new AtomicLong(1L << 40);
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        directory = Files.createTempDirectory("dbmode");
+        databaseClient = new DatabaseClient(new AppConfig(config(mode, directory, writeDelayMs)));
+        databaseClient.initialize();
+        databaseClient.createUsers(users(0, tableSize));
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        databaseClient.close();
+        delete(directory);
+    }
+
+    @Benchmark
+    public void insert() {
+        long id = sequence.incrementAndGet();
+        databaseClient.createUser(new User(id, "Bench", "bench" + id + "@example.com"));
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(100)
+    public BulkInsertResult insertBatch() {
+        long first = sequence.getAndAdd(100) + 1;
+        List<User> batch = new ArrayList<>(100);
+        for (long id = first; id < first + 100; id++) {
+            batch.add(new User(id, "Batch", "batch" + id + "@example.com"));
+        }
+        return databaseClient.createUsers(batch);
+    }
+
+    @Benchmark
+    public User findByEmail() {
+        return databaseClient.findByEmail("user" + ThreadLocalRandom.current().nextInt(tableSize) + "@example.com");
+    }
+
+    @Benchmark
+    public User findById() {
+        return databaseClient.findById(ThreadLocalRandom.current().nextInt(tableSize));
+    }
+
+    static Properties config(String mode, Path directory, int writeDelayMs) {
+        Properties overrides = new Properties();
+        overrides.setProperty("app.db.mode", mode);
+        overrides.setProperty("app.db.url", "jdbc:h2:mem:" + directory.getFileName() + ";DB_CLOSE_DELAY=-1;LAZY_QUERY_EXECUTION=1");
+        overrides.setProperty("app.db.file.path", directory.resolve("users").toString());
+        overrides.setProperty("app.db.file.writeDelayMs", Integer.toString(writeDelayMs));
+        overrides.setProperty("app.db.pool.maxSize", "64");
+        return overrides;
+    }
+
+    static List<User> users(int from, int to) {
+        List<User> users = new ArrayList<>(to - from);
+        for (int i = from; i < to; i++) {
+            users.add(new User(i, "User " + i, "user" + i + "@example.com"));
+        }
+        return users;
+    }
+
+    static void delete(Path directory) throws IOException {
+        try (Stream<Path> paths = Files.walk(directory)) {
+            for (Path path : paths.sorted(Comparator.reverseOrder()).toList()) {
+                Files.delete(path);
+            }
+        }
+    }
+}
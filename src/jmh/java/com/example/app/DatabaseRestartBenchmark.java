@@ -0,0 +1,86 @@
+package com.example.app;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Time from a cold {@link DatabaseClient} to serving {@code tableSize} users. In memory mode that means
+ * re-importing every row; in file mode it means opening the existing file, plus the page-cache warm-up
+ * when {@code warmup} is on. The close after each invocation, which compacts in file mode, is not timed.
+ */
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 10)
+@Fork(1)
+@State(Scope.Benchmark)
+public class DatabaseRestartBenchmark {
+
+    @Param({"memory", "file"})
+    public String mode;
+
+    @Param({"true", "false"})
+    public boolean warmup;
+
+    @Param({"100000"})
+    public int tableSize;
+
+    private Path directory;
+    private AppConfig config;
+    private List<User> users;
+    private DatabaseClient databaseClient;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        directory = Files.createTempDirectory("dbrestart");
+        Properties overrides = DatabaseModeBenchmark.config(mode, directory, 500);
+        overrides.setProperty("app.db.file.warmup", Boolean.toString(warmup));
+        // A pool without a lingering connection lets the in-memory database drop when closed
+        overrides.setProperty("app.db.url", "jdbc:h2:mem:" + directory.getFileName() + ";LAZY_QUERY_EXECUTION=1");
+        config = new AppConfig(overrides);
+        users = DatabaseModeBenchmark.users(0, tableSize);
+        if ("file".equals(mode)) {
+            DatabaseClient seed = new DatabaseClient(config);
+            seed.initialize();
+            seed.createUsers(users);
+            seed.close();
+        }
+    }
+
+    @TearDown(Level.Invocation)
+    public void closeClient() {
+        databaseClient.close();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        DatabaseModeBenchmark.delete(directory);
+    }
+
+    @Benchmark
+    public User restart() {
+        databaseClient = new DatabaseClient(config);
+        databaseClient.initialize();
+        if ("memory".equals(mode)) {
+            databaseClient.createUsers(users);
+        }
+        return databaseClient.findById(tableSize / 2);
+    }
+}
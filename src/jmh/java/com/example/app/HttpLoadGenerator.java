@@ -0,0 +1,208 @@
+package com.example.app;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.StringJoiner;
+import java.util.TreeMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * HTTP load generator. Closed loop: each of {@code concurrency} virtual threads sends GET requests back to back
+ * for the run duration. Open loop, with a rate such as {@code 1500/s} instead of a client count: requests are
+ * started at that fixed rate whatever the server does, each on its own virtual thread, and latency is measured
+ * from when a request was due, so a server falling behind cannot hide its queue. Throughput, latency
+ * percentiles (overall and of 2xx responses), the 2xx p99 per 5-second slice and status counts are printed.
+ *
+ * <p>Usage: {@code HttpLoadGenerator <url> <concurrency|rate/s> <durationSeconds> [warmupSeconds] [header:value ...]}
+ */
+public final class HttpLoadGenerator {
+
+    private static final long SLICE_NANOS = TimeUnit.SECONDS.toNanos(5);
+
+    private HttpLoadGenerator() {
+    }
+
+    public static void main(String[] args) throws Exception {
+        if (args.length < 3) {
+            System.err.println("Usage: HttpLoadGenerator <url> <concurrency|rate/s> <durationSeconds> [warmupSeconds] [header:value ...]");
+            System.exit(2);
+        }
+        URI uri = URI.create(args[0]);
+        boolean openLoop = args[1].endsWith("/s");
+        int load = Integer.parseInt(openLoop ? args[1].substring(0, args[1].length() - 2) : args[1]);
+        long durationNanos = Duration.ofSeconds(Long.parseLong(args[2])).toNanos();
+        long warmupNanos = Duration.ofSeconds(args.length > 3 ? Long.parseLong(args[3]) : 5).toNanos();
+
+        HttpRequest.Builder builder = HttpRequest.newBuilder(uri).timeout(Duration.ofSeconds(30)).GET();
+        for (int i = 4; i < args.length; i++) {
+            int colon = args[i].indexOf(':');
+            builder.header(args[i].substring(0, colon), args[i].substring(colon + 1));
+        }
+        HttpRequest request = builder.build();
+        HttpClient client = HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_1_1)
+                .executor(Executors.newVirtualThreadPerTaskExecutor())
+                .build();
+
+        String mode = openLoop ? load + " requests/s" : load + " clients";
+        System.out.printf("Warming up %s with %s for %ds%n", uri, mode, warmupNanos / 1_000_000_000L);
+        run(client, request, openLoop, load, warmupNanos);
+        System.out.printf("Measuring for %ds%n", durationNanos / 1_000_000_000L);
+        long start = System.nanoTime();
+        List<Recorder> recorders = run(client, request, openLoop, load, durationNanos);
+        report(recorders, start, durationNanos);
+    }
+
+    private static List<Recorder> run(HttpClient client, HttpRequest request, boolean openLoop, int load,
+                                      long durationNanos) throws Exception {
+        long deadline = System.nanoTime() + durationNanos;
+        List<Recorder> recorders = new ArrayList<>();
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            if (openLoop) {
+                Recorder recorder = new Recorder();
+                recorders.add(recorder);
+                long intervalNanos = TimeUnit.SECONDS.toNanos(1) / load;
+                for (long due = System.nanoTime(); due < deadline; due += intervalNanos) {
+                    long wait = due - System.nanoTime();
+                    if (wait > 0) {
+                        LockSupport.parkNanos(wait);
+                    }
+                    long scheduled = due;
+                    executor.submit(() -> send(client, request, scheduled, recorder));
+                }
+            } else {
+                List<Future<?>> futures = new ArrayList<>(load);
+                for (int i = 0; i < load; i++) {
+                    Recorder recorder = new Recorder();
+                    recorders.add(recorder);
+                    futures.add(executor.submit(() -> {
+                        while (System.nanoTime() < deadline && !Thread.currentThread().isInterrupted()) {
+                            send(client, request, System.nanoTime(), recorder);
+                        }
+                    }));
+                }
+                for (Future<?> future : futures) {
+                    future.get();
+                }
+            }
+        }
+        return recorders;
+    }
+
+    private static void send(HttpClient client, HttpRequest request, long startNanos, Recorder recorder) {
+        String outcome;
+        boolean success = false;
+        try {
+            HttpResponse<Void> response = client.send(request, HttpResponse.BodyHandlers.discarding());
+            outcome = String.valueOf(response.statusCode());
+            success = response.statusCode() / 100 == 2;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return;
+        } catch (Exception e) {
+            outcome = e.getClass().getSimpleName();
+        }
+        recorder.record(startNanos, System.nanoTime() - startNanos, outcome, success);
+    }
+
+    private static void report(List<Recorder> recorders, long runStartNanos, long durationNanos) {
+        Recorder all = new Recorder();
+        for (Recorder recorder : recorders) {
+            all.addAll(recorder);
+        }
+        long[] latencies = Arrays.copyOf(all.latencies, all.count);
+        int successes = 0;
+        int slices = (int) ((durationNanos + SLICE_NANOS - 1) / SLICE_NANOS);
+        List<List<Long>> sliceLatencies = new ArrayList<>(slices);
+        for (int i = 0; i < slices; i++) {
+            sliceLatencies.add(new ArrayList<>());
+        }
+        long[] successLatencies = new long[all.count];
+        for (int i = 0; i < all.count; i++) {
+            if (all.successes[i]) {
+                successLatencies[successes++] = all.latencies[i];
+                int slice = (int) Math.min(slices - 1, Math.max(0, (all.starts[i] - runStartNanos) / SLICE_NANOS));
+                sliceLatencies.get(slice).add(all.latencies[i]);
+            }
+        }
+        successLatencies = Arrays.copyOf(successLatencies, successes);
+        Arrays.sort(latencies);
+        Arrays.sort(successLatencies);
+
+        System.out.printf("requests=%d throughput=%.0f req/s (2xx: %.0f req/s)%n", latencies.length,
+                latencies.length / (durationNanos / 1e9), successes / (durationNanos / 1e9));
+        printLatencies("latency ms", latencies);
+        // Fast rejections under overload pull the overall percentiles down; these are what admitted requests saw
+        printLatencies("2xx latency ms", successLatencies);
+        StringJoiner bySlice = new StringJoiner(" ");
+        for (List<Long> slice : sliceLatencies) {
+            long[] sorted = slice.stream().mapToLong(Long::longValue).sorted().toArray();
+            bySlice.add(String.format("%.0f", percentile(sorted, 0.99)));
+        }
+        System.out.printf("2xx p99 ms per %ds: %s%n", SLICE_NANOS / 1_000_000_000L, bySlice);
+        System.out.printf("outcomes: %s%n", all.outcomes);
+    }
+
+    private static void printLatencies(String label, long[] sorted) {
+        System.out.printf("%s: p50=%.2f p90=%.2f p99=%.2f p99.9=%.2f max=%.2f%n", label,
+                percentile(sorted, 0.50), percentile(sorted, 0.90), percentile(sorted, 0.99),
+                percentile(sorted, 0.999), sorted.length == 0 ? 0.0 : sorted[sorted.length - 1] / 1e6);
+    }
+
+    private static double percentile(long[] sorted, double p) {
+        if (sorted.length == 0) {
+            return 0.0;
+        }
+        int index = (int) Math.min(sorted.length - 1, Math.ceil(p * sorted.length) - 1);
+        return sorted[Math.max(0, index)] / 1e6;
+    }
+
+    /**
+     * Results of the requests one closed-loop client or the whole open-loop run sent. Synchronized, as open-loop
+     * requests finish on many threads; a closed-loop client only ever takes its own, uncontended lock.
+     */
+    private static final class Recorder {
+        private final Map<String, Integer> outcomes = new TreeMap<>();
+        private long[] starts = new long[1024];
+        private long[] latencies = new long[1024];
+        private boolean[] successes = new boolean[1024];
+        private int count;
+
+        synchronized void record(long startNanos, long latencyNanos, String outcome, boolean success) {
+            add(startNanos, latencyNanos, success);
+            outcomes.merge(outcome, 1, Integer::sum);
+        }
+
+        synchronized void addAll(Recorder other) {
+            synchronized (other) {
+                for (int i = 0; i < other.count; i++) {
+                    add(other.starts[i], other.latencies[i], other.successes[i]);
+                }
+                other.outcomes.forEach((key, n) -> outcomes.merge(key, n, Integer::sum));
+            }
+        }
+
+        private void add(long startNanos, long latencyNanos, boolean success) {
+            if (count == latencies.length) {
+                starts = Arrays.copyOf(starts, count * 2);
+                latencies = Arrays.copyOf(latencies, count * 2);
+                successes = Arrays.copyOf(successes, count * 2);
+            }
+            starts[count] = startNanos;
+            latencies[count] = latencyNanos;
+            successes[count] = success;
+            count++;
+        }
+    }
+}
@@ -0,0 +1,90 @@
+package com.example.app;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import org.apache.logging.log4j.core.LoggerContext;
+import org.apache.logging.log4j.core.config.Configurator;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Per-request logging cost: a create, an email update and a lookup by id through UserService on H2, with
+ * {@code com.example.app} at DEBUG (every operation logs, as before per-operation logs were demoted) or
+ * INFO (the default). Console output is detached so only the file appender is measured.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@State(Scope.Benchmark)
+public class LoggingBenchmark {
+
+    @Param({"DEBUG", "INFO"})
+    public String appLevel;
+
+    private DatabaseClient databaseClient;
+    private UserService userService;
+    private long[] ids;
+    private final AtomicLong sequence = new AtomicLong();
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        LoggerContext context = LoggerContext.getContext(false);
+        context.getConfiguration().getRootLogger().removeAppender("Console");
+        context.updateLoggers();
+        Configurator.setLevel("com.example.app", org.apache.logging.log4j.Level.valueOf(appLevel));
+
+        Properties overrides = new Properties();
+        overrides.setProperty("app.db.url", "jdbc:h2:mem:logbench;DB_CLOSE_DELAY=-1;LAZY_QUERY_EXECUTION=1");
+        databaseClient = new DatabaseClient(new AppConfig(overrides));
+        databaseClient.initialize();
+        userService = new UserService(databaseClient, UserCache.disabled(), new SnowflakeIdGenerator(1));
+
+        List<User> drafts = new ArrayList<>(1000);
+        for (int i = 0; i < 1000; i++) {
+            drafts.add(new User(0, "User " + i, "user" + i + "@example.com"));
+        }
+        userService.createAndPersistUsers(drafts);
+        ids = databaseClient.listUsers().stream().mapToLong(User::getId).toArray();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        databaseClient.close();
+    }
+
+    @Benchmark
+    @Fork(1)
+    public User syncLogging() {
+        return request();
+    }
+
+    @Benchmark
+    @Fork(value = 1, jvmArgsAppend = "-Dlog4j2.configurationFile=log4j2-async.xml")
+    public User asyncLogging() {
+        return request();
+    }
+
+    private User request() {
+        long n = sequence.incrementAndGet();
+        userService.createAndPersistUser("Bench", "bench" + n + "@example.com");
+        long id = ids[ThreadLocalRandom.current().nextInt(ids.length)];
+        userService.updateUserEmail(id, "moved" + n + "@example.com");
+        return userService.findUserById(id);
+    }
+}
@@ -0,0 +1,38 @@
+package com.example.app;
+
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Cost of recording into a timer and a counter; run with {@code -prof gc} to confirm zero allocation.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class MetricsBenchmark {
+
+    private final MetricsRegistry metrics = new MetricsRegistry();
+    private final MetricsRegistry.Timer timer = metrics.timer("bench_seconds", "Benchmark timer", "method", "record");
+    private final MetricsRegistry.Counter counter = metrics.counter("bench_total", "Benchmark counter");
+
+    @Benchmark
+    public void recordTimer() {
+        timer.recordSince(System.nanoTime() - 12_345);
+    }
+
+    @Benchmark
+    public void incrementCounter() {
+        counter.increment();
+    }
+}
@@ -0,0 +1,110 @@
+package com.example.app;
+
+import java.util.Properties;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.UnaryOperator;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Read-modify-write increments of a counter kept in a user's name, spread over {@code users} rows.
+ * {@code synchronized} holds one lock around the read and the write, the way a service would without versions;
+ * {@code cas} uses {@link UserService#modifyUser}, which holds no lock and retries on a version conflict. Both
+ * issue the same statements. {@code roundTripMicros} adds a pause to each statement, standing in for the network
+ * round trip to a database server that the in-memory one does not have. Only meaningful with several threads:
+ * run with {@code -Djmh.threads=4}.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class OptimisticUpdateBenchmark {
+
+    private static final UnaryOperator<User> INCREMENT = user -> {
+        user.setName(Long.toString(Long.parseLong(user.getName()) + 1));
+        return user;
+    };
+
+    @Param({"synchronized", "cas"})
+    public String strategy;
+
+    @Param({"1", "1000"})
+    public int users;
+
+    @Param({"0", "200"})
+    public long roundTripMicros;
+
+    private final Object lock = new Object();
+    private DatabaseClient databaseClient;
+    private UserService userService;
+    private long[] ids;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        Properties overrides = new Properties();
+        overrides.setProperty("app.db.url", "jdbc:h2:mem:optimisticbench;DB_CLOSE_DELAY=-1");
+        overrides.setProperty("app.db.pool.maxSize", "64");
+        long roundTripNanos = TimeUnit.MICROSECONDS.toNanos(roundTripMicros);
+        databaseClient = roundTripNanos == 0 ? new DatabaseClient(new AppConfig(overrides))
+                : new RemoteDatabaseClient(new AppConfig(overrides), roundTripNanos);
+        databaseClient.initialize();
+        userService = new UserService(databaseClient, UserCache.disabled(), new SnowflakeIdGenerator(1));
+        ids = new long[users];
+        for (int i = 0; i < users; i++) {
+            ids[i] = userService.createAndPersistUser("0", "counter" + i + "@example.com").getId();
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        databaseClient.close();
+    }
+
+    @Benchmark
+    public User increment() {
+        long id = ids[ThreadLocalRandom.current().nextInt(ids.length)];
+        if ("cas".equals(strategy)) {
+            return userService.modifyUser(id, INCREMENT);
+        }
+        synchronized (lock) {
+            return databaseClient.updateIfVersion(INCREMENT.apply(databaseClient.findById(id))).user();
+        }
+    }
+
+    static class RemoteDatabaseClient extends DatabaseClient {
+
+        private final long roundTripNanos;
+
+        RemoteDatabaseClient(AppConfig config, long roundTripNanos) {
+            super(config);
+            this.roundTripNanos = roundTripNanos;
+        }
+
+        @Override
+        public User findById(long userId) {
+            LockSupport.parkNanos(roundTripNanos);
+            return super.findById(userId);
+        }
+
+        @Override
+        public UpdateResult updateIfVersion(User user) {
+            LockSupport.parkNanos(roundTripNanos);
+            return super.updateIfVersion(user);
+        }
+    }
+}
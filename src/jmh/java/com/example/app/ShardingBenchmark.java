@@ -0,0 +1,144 @@
+package com.example.app;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+import org.h2.api.Trigger;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Throughput of users sharded over {@code shards} in-memory databases; one database is the unsharded layout. The
+ * databases share the benchmark's CPU, so on their own they cannot show what separate servers add. With
+ * {@code writeMicros} above 0 each database accepts one row write per that many microseconds, one at a time, like
+ * a server whose log device limits its writes. Only meaningful with several threads: run with
+ * {@code -Djmh.threads=8}.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ShardingBenchmark {
+
+    @Param({"1", "2", "4"})
+    public int shards;
+
+    @Param({"0", "100"})
+    public long writeMicros;
+
+    @Param({"10000"})
+    public int tableSize;
+
+    private DatabaseClient databaseClient;
+    private final AtomicLong sequence = new AtomicLong(1L << 40);
+
+    @Setup(Level.Trial)
+    public void setUp() throws SQLException {
+        List<String> urls = new ArrayList<>();
+        for (int i = 0; i < shards; i++) {
+            urls.add("jdbc:h2:mem:shardbench" + i + ";DB_CLOSE_DELAY=-1;LAZY_QUERY_EXECUTION=1");
+        }
+        Properties overrides = new Properties();
+        overrides.setProperty("app.db.shards.urls", String.join(",", urls));
+        overrides.setProperty("app.db.pool.maxSize", "16");
+        databaseClient = new DatabaseClient(new AppConfig(overrides));
+        databaseClient.initialize();
+        databaseClient.createUsers(DatabaseModeBenchmark.users(0, tableSize));
+        if (writeMicros > 0) {
+            WriteCost.micros = writeMicros;
+            for (String url : urls) {
+                try (Connection connection = DriverManager.getConnection(url, "sa", "");
+                     Statement stmt = connection.createStatement()) {
+                    for (String table : shards == 1 ? List.of("users") : List.of("users", "email_routes")) {
+                        stmt.execute("CREATE TRIGGER " + table + "_write_cost BEFORE INSERT, UPDATE ON " + table
+                                + " FOR EACH ROW CALL \"" + WriteCost.class.getName() + "\"");
+                    }
+                }
+            }
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        databaseClient.close();
+    }
+
+    @Benchmark
+    public void insert() {
+        long id = sequence.incrementAndGet();
+        databaseClient.createUser(new User(id, "Bench", "bench" + id + "@example.com"));
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(100)
+    public BulkInsertResult insertBatch() {
+        long first = sequence.getAndAdd(100) + 1;
+        List<User> batch = new ArrayList<>(100);
+        for (long id = first; id < first + 100; id++) {
+            batch.add(new User(id, "Batch", "batch" + id + "@example.com"));
+        }
+        return databaseClient.createUsers(batch);
+    }
+
+    @Benchmark
+    public User findById() {
+        return databaseClient.findById(ThreadLocalRandom.current().nextInt(tableSize));
+    }
+
+    @Benchmark
+    public User findByEmail() {
+        return databaseClient.findByEmail("user" + ThreadLocalRandom.current().nextInt(tableSize) + "@example.com");
+    }
+
+    @Benchmark
+    public List<User> listPage() {
+        return databaseClient.listUsers(ThreadLocalRandom.current().nextInt(tableSize), 100);
+    }
+
+    /**
+     * Charges {@link #micros} per row written, serialized per database.
+     */
+    public static class WriteCost implements Trigger {
+        static volatile long micros;
+        private static final Map<String, Object> LOCKS = new ConcurrentHashMap<>();
+
+        private Object lock;
+
+        @Override
+        public void init(Connection conn, String schemaName, String triggerName, String tableName, boolean before,
+                         int type) throws SQLException {
+            lock = LOCKS.computeIfAbsent(conn.getCatalog(), database -> new Object());
+        }
+
+        @Override
+        public void fire(Connection conn, Object[] oldRow, Object[] newRow) {
+            synchronized (lock) {
+                LockSupport.parkNanos(TimeUnit.MICROSECONDS.toNanos(micros));
+            }
+        }
+    }
+}
@@ -0,0 +1,155 @@
+package com.example.app;
+
+import com.fasterxml.jackson.databind.MappingIterator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SequenceWriter;
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Export and import of {@code tableSize} users as a {@link UserArchive}, plain or deflated, against the NDJSON
+ * path the bulk endpoint uses. {@code importUsers} empties the table and loads it back; {@code decodeUsers} only
+ * reads the file into users, so the difference is the cost of the inserts. File sizes are printed at setup.
+ */
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgsAppend = "-Xmx2g")
+@State(Scope.Benchmark)
+public class UserArchiveBenchmark {
+
+    private static final String URL = "jdbc:h2:mem:archivebench;DB_CLOSE_DELAY=-1;LAZY_QUERY_EXECUTION=1";
+    private static final int JSON_BATCH = UserArchive.DEFAULT_BLOCK_ROWS;
+
+    @Param({"binary", "deflate", "json"})
+    public String format;
+
+    @Param({"100000", "1000000"})
+    public int tableSize;
+
+    private final ObjectMapper mapper = new ObjectMapper();
+    private Path directory;
+    private Path source;
+    private Path target;
+    private DatabaseClient databaseClient;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        directory = Files.createTempDirectory("userarchive");
+        source = directory.resolve("source");
+        target = directory.resolve("target");
+        Properties overrides = new Properties();
+        overrides.setProperty("app.db.url", URL);
+        databaseClient = new DatabaseClient(new AppConfig(overrides));
+        databaseClient.initialize();
+        for (int from = 0; from < tableSize; from += JSON_BATCH) {
+            databaseClient.createUsers(DatabaseModeBenchmark.users(from, Math.min(from + JSON_BATCH, tableSize)));
+        }
+        exportTo(source);
+        System.out.printf("%n%s file for %,d users: %,d bytes%n", format, tableSize, Files.size(source));
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        databaseClient.close();
+        DatabaseModeBenchmark.delete(directory);
+    }
+
+    @Benchmark
+    public long exportUsers() throws IOException {
+        return exportTo(target);
+    }
+
+    @Benchmark
+    public long decodeUsers() throws IOException {
+        long[] checksum = new long[1];
+        decode(source, batch -> batch.forEach(user -> checksum[0] += user.getId() + user.getEmail().length()));
+        return checksum[0];
+    }
+
+    @Benchmark
+    public long importUsers() throws IOException, SQLException {
+        try (Connection connection = DriverManager.getConnection(URL, "sa", "")) {
+            connection.createStatement().execute("DELETE FROM users");
+        }
+        if (!"json".equals(format)) {
+            return UserArchive.importFrom(databaseClient, source).inserted();
+        }
+        long[] inserted = new long[1];
+        decode(source, batch -> inserted[0] += databaseClient.createUsers(batch).inserted());
+        return inserted[0];
+    }
+
+    private long exportTo(Path file) throws IOException {
+        if (!"json".equals(format)) {
+            return UserArchive.export(databaseClient, file, "deflate".equals(format));
+        }
+        long[] rows = new long[1];
+        try (OutputStream out = new BufferedOutputStream(Files.newOutputStream(file), 1 << 16);
+             SequenceWriter writer = mapper.writer().withRootValueSeparator("\n").writeValues(out)) {
+            databaseClient.forEachUser(Long.MIN_VALUE, user -> {
+                try {
+                    writer.write(user);
+                    rows[0]++;
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+        }
+        return rows[0];
+    }
+
+    private void decode(Path file, Consumer<List<User>> sink) throws IOException {
+        if (!"json".equals(format)) {
+            try (UserArchive.Reader reader = UserArchive.Reader.open(file)) {
+                List<User> batch = new ArrayList<>(UserArchive.DEFAULT_BLOCK_ROWS);
+                while (reader.next(batch)) {
+                    sink.accept(batch);
+                    batch.clear();
+                }
+            }
+            return;
+        }
+        try (InputStream in = Files.newInputStream(file);
+             MappingIterator<User> users = mapper.readerFor(User.class).readValues(in)) {
+            List<User> batch = new ArrayList<>(JSON_BATCH);
+            while (users.hasNextValue()) {
+                batch.add(users.nextValue());
+                if (batch.size() == JSON_BATCH) {
+                    sink.accept(batch);
+                    batch = new ArrayList<>(JSON_BATCH);
+                }
+            }
+            if (!batch.isEmpty()) {
+                sink.accept(batch);
+            }
+        }
+    }
+}
@@ -0,0 +1,104 @@
+package com.example.app;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * One {@link User} to and from JSON with reflective Gson, Gson with {@link UserJsonCodec#gsonAdapterFactory()},
+ * Jackson and {@link UserJsonCodec}. Run with {@code -prof gc} and compare {@code gc.alloc.rate.norm}, the bytes
+ * allocated per operation. {@code writeToStream} writes to a discarding stream, as a response body would.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class UserCodecBenchmark {
+
+    @Param({"gson", "gsonAdapter", "jackson", "codec"})
+    public String codec;
+
+    private final User user = new User(370214872236949504L, "Jane Doe", "jane.doe@example.com");
+    private final OutputStream sink = OutputStream.nullOutputStream();
+    private Gson gson;
+    private Writer gsonWriter;
+    private ObjectWriter jacksonWriter;
+    private ObjectReader jacksonReader;
+    private String json;
+    private byte[] jsonBytes;
+
+    @Setup
+    public void setUp() {
+        gson = "gsonAdapter".equals(codec)
+                ? new GsonBuilder().registerTypeAdapterFactory(UserJsonCodec.gsonAdapterFactory()).create()
+                : new Gson();
+        gsonWriter = new OutputStreamWriter(sink, StandardCharsets.UTF_8);
+        // Like Spring's converter, leave the response stream open
+        ObjectMapper mapper = new ObjectMapper().configure(JsonGenerator.Feature.AUTO_CLOSE_TARGET, false);
+        jacksonWriter = mapper.writerFor(User.class);
+        jacksonReader = mapper.readerFor(User.class);
+        json = UserJsonCodec.toJson(user);
+        jsonBytes = json.getBytes(StandardCharsets.UTF_8);
+    }
+
+    @Benchmark
+    public String toJson() throws IOException {
+        return switch (codec) {
+            case "jackson" -> jacksonWriter.writeValueAsString(user);
+            case "codec" -> UserJsonCodec.toJson(user);
+            default -> gson.toJson(user);
+        };
+    }
+
+    @Benchmark
+    public void writeToStream() throws IOException {
+        switch (codec) {
+            case "jackson" -> jacksonWriter.writeValue(sink, user);
+            case "codec" -> UserJsonCodec.write(user, sink);
+            default -> {
+                gson.toJson(user, User.class, gsonWriter);
+                gsonWriter.flush();
+            }
+        }
+    }
+
+    @Benchmark
+    public User fromJson() throws IOException {
+        return switch (codec) {
+            case "jackson" -> jacksonReader.readValue(json);
+            case "codec" -> UserJsonCodec.fromJson(json, User.class);
+            default -> gson.fromJson(json, User.class);
+        };
+    }
+
+    @Benchmark
+    public User fromBytes() throws IOException {
+        return switch (codec) {
+            case "jackson" -> jacksonReader.readValue(jsonBytes);
+            case "codec" -> UserJsonCodec.read(jsonBytes, 0, jsonBytes.length, User.class);
+            default -> gson.fromJson(new String(jsonBytes, StandardCharsets.UTF_8), User.class);
+        };
+    }
+}
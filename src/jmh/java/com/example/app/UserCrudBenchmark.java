@@ -0,0 +1,106 @@
+package com.example.app;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * CRUD hot paths through UserService against the in-memory H2 database, with the user cache disabled
+ * so every call reaches the database. Thread count comes from {@code -t}.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class UserCrudBenchmark {
+
+    @Param({"1000", "100000"})
+    public int tableSize;
+
+    private DatabaseClient databaseClient;
+    private UserService userService;
+    private long[] ids;
+    private final AtomicLong sequence = new AtomicLong();
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        Properties overrides = new Properties();
+        overrides.setProperty("app.db.url", "jdbc:h2:mem:crudbench;DB_CLOSE_DELAY=-1;LAZY_QUERY_EXECUTION=1");
+        overrides.setProperty("app.db.pool.maxSize", "64");
+        databaseClient = new DatabaseClient(new AppConfig(overrides));
+        databaseClient.initialize();
+        userService = new UserService(databaseClient, UserCache.disabled(), new SnowflakeIdGenerator(1));
+
+        List<User> drafts = new ArrayList<>(tableSize);
+        for (int i = 0; i < tableSize; i++) {
+            drafts.add(new User(0, "User " + i, "user" + i + "@example.com"));
+        }
+        userService.createAndPersistUsers(drafts);
+        ids = databaseClient.listUsers().stream().mapToLong(User::getId).toArray();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        databaseClient.close();
+    }
+
+    @Benchmark
+    public User create() {
+        return userService.createAndPersistUser("Bench", "bench" + sequence.incrementAndGet() + "@example.com");
+    }
+
+    @Benchmark
+    public User findByEmail() {
+        int i = ThreadLocalRandom.current().nextInt(tableSize);
+        return userService.findUserByEmail("user" + i + "@example.com");
+    }
+
+    @Benchmark
+    public User findById() {
+        return userService.findUserById(ids[ThreadLocalRandom.current().nextInt(ids.length)]);
+    }
+
+    @Benchmark
+    public List<User> listPage() {
+        long afterId = ids[ThreadLocalRandom.current().nextInt(ids.length)];
+        return userService.listUsers(afterId, 100);
+    }
+
+    @Benchmark
+    public int listAll() {
+        int[] count = new int[1];
+        userService.forEachUser(Long.MIN_VALUE, user -> count[0]++);
+        return count[0];
+    }
+
+    @Benchmark
+    public User update() {
+        long id = ids[ThreadLocalRandom.current().nextInt(ids.length)];
+        return userService.updateUserEmail(id, "updated" + sequence.incrementAndGet() + "@example.com");
+    }
+
+    @Benchmark
+    public User deleteAndRecreate() {
+        User user = userService.createAndPersistUser("Doomed", "doomed" + sequence.incrementAndGet() + "@example.com");
+        userService.deleteUser(user.getId());
+        return user;
+    }
+}
@@ -0,0 +1,83 @@
+package com.example.app;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Lookup latency of {@link UserIndex} against the {@code HashMap} from {@link DataUtil#createUserMap(List)}.
+ * For heap footprint see {@link UserIndexFootprint}.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+@State(Scope.Benchmark)
+public class UserIndexBenchmark {
+
+    @Param({"100000", "1000000"})
+    public int size;
+
+    private Map<String, User> map;
+    private Map<Long, User> mapById;
+    private UserIndex index;
+    private String[] emails;
+
+    @Setup
+    public void setUp() {
+        List<User> users = UserIndexFootprint.users(size);
+        map = DataUtil.createUserMap(users);
+        mapById = new HashMap<>();
+        for (User user : users) {
+            mapById.put(user.getId(), user);
+        }
+        index = DataUtil.createUserIndex(users);
+        emails = new String[size];
+        List<String> copies = new ArrayList<>(size);
+        for (User user : users) {
+            // Fresh instances, as lookups from request parameters would be
+            copies.add(new String(user.getEmail()));
+        }
+        copies.toArray(emails);
+    }
+
+    @Benchmark
+    public User hashMapByEmail() {
+        return map.get(emails[ThreadLocalRandom.current().nextInt(size)]);
+    }
+
+    @Benchmark
+    public User indexByEmail() {
+        return index.getByEmail(emails[ThreadLocalRandom.current().nextInt(size)]);
+    }
+
+    @Benchmark
+    public boolean indexContainsEmail() {
+        return index.containsEmail(emails[ThreadLocalRandom.current().nextInt(size)]);
+    }
+
+    @Benchmark
+    public User hashMapById() {
+        return mapById.get((long) ThreadLocalRandom.current().nextInt(size));
+    }
+
+    @Benchmark
+    public User indexById() {
+        return index.getById(ThreadLocalRandom.current().nextInt(size));
+    }
+}
@@ -0,0 +1,53 @@
+package com.example.app;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Retained heap of {@link DataUtil#createUserMap(List)} vs {@link DataUtil#createUserIndex(List)}, plus the
+ * direct memory the index uses. Measured as used heap after repeated GCs, with the source list dropped.
+ *
+ * <p>Usage: {@code UserIndexFootprint [users]} (default 1,000,000)
+ */
+public final class UserIndexFootprint {
+
+    private UserIndexFootprint() {
+    }
+
+    public static void main(String[] args) {
+        int size = args.length > 0 ? Integer.parseInt(args[0]) : 1_000_000;
+
+        long before = usedHeap();
+        Map<String, User> map = DataUtil.createUserMap(users(size));
+        long mapBytes = usedHeap() - before;
+        System.out.printf("HashMap<String, User>: %,d entries, %,d bytes heap (%.1f bytes/user)%n",
+                map.size(), mapBytes, (double) mapBytes / size);
+        map = null;
+
+        before = usedHeap();
+        UserIndex index = DataUtil.createUserIndex(users(size));
+        long indexBytes = usedHeap() - before;
+        System.out.printf("UserIndex: %,d entries, %,d bytes heap (%.1f bytes/user), %,d bytes off-heap (%.1f bytes/user)%n",
+                index.size(), indexBytes, (double) indexBytes / size, index.offHeapBytes(),
+                (double) index.offHeapBytes() / size);
+    }
+
+    static List<User> users(int size) {
+        List<User> users = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            users.add(new User(i, "User " + i, "user" + i + "@example.com"));
+        }
+        return users;
+    }
+
+    private static long usedHeap() {
+        MemoryMXBean memory = ManagementFactory.getMemoryMXBean();
+        for (int i = 0; i < 5; i++) {
+            System.gc();
+        }
+        return memory.getHeapMemoryUsage().getUsed();
+    }
+}
@@ -0,0 +1,61 @@
+package com.example.app;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * JSON round trips through UserService and map building through DataUtil.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class UserJsonBenchmark {
+
+    @Param({"1000", "100000"})
+    public int tableSize;
+
+    private final UserService userService = new UserService();
+    private final User user = new User(370214872236949504L, "Jane Doe", "jane@example.com");
+    private String json;
+    private List<User> users;
+
+    @Setup
+    public void setUp() {
+        json = userService.serializeUser(user);
+        users = new ArrayList<>(tableSize);
+        for (int i = 0; i < tableSize; i++) {
+            users.add(new User(i, "User " + i, "user" + i + "@example.com"));
+        }
+    }
+
+    @Benchmark
+    public String serializeUser() {
+        return userService.serializeUser(user);
+    }
+
+    @Benchmark
+    public User deserializeUser() {
+        return userService.deserializeUser(json);
+    }
+
+    @Benchmark
+    public Map<String, User> createUserMap() {
+        return DataUtil.createUserMap(users);
+    }
+}
@@ -0,0 +1,121 @@
+package com.example.app;
+
+import java.util.Properties;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Pattern;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Service-layer cost that is not database time. {@code findCachedById} and {@code createUser} run through a
+ * {@link UserService} built per call, as the controller used to do, or through the shared bean.
+ * {@code validate*} compare the old {@code contains} checks, a precompiled pattern and
+ * {@link UserService#isValidEmail}. Run with {@code -prof gc} for bytes per operation.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class UserServiceBenchmark {
+
+    private static final Pattern EMAIL = Pattern.compile("[^@\\s]+@[^@\\s]+\\.[^@\\s]+");
+    private static final String[] EMAILS = {"jane.doe@example.com", "no-at-sign.example.com", "a@b.c"};
+
+    @State(Scope.Benchmark)
+    public static class Wiring {
+
+        @Param({"perRequest", "shared"})
+        public String wiring;
+
+        private DatabaseClient databaseClient;
+        private UserCache userCache;
+        private IdGenerator idGenerator;
+        private UserWriteBehindQueue writeQueue;
+        private UserService shared;
+        private long[] ids;
+
+        @Setup(Level.Trial)
+        public void setUp() {
+            Properties overrides = new Properties();
+            overrides.setProperty("app.db.url", "jdbc:h2:mem:servicebench;DB_CLOSE_DELAY=-1");
+            databaseClient = new DatabaseClient(new AppConfig(overrides));
+            databaseClient.initialize();
+            userCache = new UserCache(10_000, 0);
+            idGenerator = new SnowflakeIdGenerator(1);
+            writeQueue = UserWriteBehindQueue.disabled();
+            shared = new UserService(databaseClient, userCache, idGenerator, writeQueue);
+            ids = new long[1000];
+            for (int i = 0; i < ids.length; i++) {
+                ids[i] = shared.createAndPersistUser("User " + i, "user" + i + "@example.com").getId();
+                shared.findUserById(ids[i]);
+            }
+        }
+
+        @TearDown(Level.Trial)
+        public void tearDown() {
+            databaseClient.close();
+        }
+
+        UserService service() {
+            return "shared".equals(wiring) ? shared
+                    : new UserService(databaseClient, userCache, idGenerator, writeQueue);
+        }
+    }
+
+    @Benchmark
+    public User findCachedById(Wiring state) {
+        return state.service().findUserById(state.ids[ThreadLocalRandom.current().nextInt(state.ids.length)]);
+    }
+
+    @Benchmark
+    public User createUser(Wiring state) {
+        return state.service().createUser("Jane Doe", "jane.doe@example.com");
+    }
+
+    @Benchmark
+    public int validateContains() {
+        int valid = 0;
+        for (String email : EMAILS) {
+            if (email.contains("@") && email.contains(".")) {
+                valid++;
+            }
+        }
+        return valid;
+    }
+
+    @Benchmark
+    public int validatePattern() {
+        int valid = 0;
+        for (String email : EMAILS) {
+            if (EMAIL.matcher(email).matches()) {
+                valid++;
+            }
+        }
+        return valid;
+    }
+
+    @Benchmark
+    public int validateScanner() {
+        int valid = 0;
+        for (String email : EMAILS) {
+            if (UserService.isValidEmail(email)) {
+                valid++;
+            }
+        }
+        return valid;
+    }
+}
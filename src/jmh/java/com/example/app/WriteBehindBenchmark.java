@@ -0,0 +1,71 @@
+package com.example.app;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Properties;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * {@link UserService#createAndSubmitUser} with synchronous inserts vs the write-behind queue, against a
+ * file-backed database where every commit is written before it returns ({@code writeDelayMs=0}). The queue
+ * blocks when full, so sustained write-behind throughput is the writer's batch rate.
+ */
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class WriteBehindBenchmark {
+
+    @Param({"false", "true"})
+    public boolean writeBehind;
+
+    private Path directory;
+    private DatabaseClient databaseClient;
+    private UserWriteBehindQueue writeQueue;
+    private UserService userService;
+    private final AtomicLong sequence = new AtomicLong();
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        directory = Files.createTempDirectory("writebehind");
+        Properties overrides = DatabaseModeBenchmark.config("file", directory, 0);
+        overrides.setProperty("app.users.writeBehind.enabled", Boolean.toString(writeBehind));
+        overrides.setProperty("app.users.writeBehind.whenFull", "block");
+        overrides.setProperty("app.users.writeBehind.offerTimeoutMs", "60000");
+        AppConfig config = new AppConfig(overrides);
+        MetricsRegistry metrics = new MetricsRegistry();
+        databaseClient = new DatabaseClient(config, metrics);
+        databaseClient.initialize();
+        writeQueue = new UserWriteBehindQueue(databaseClient, config, metrics);
+        userService = new UserService(databaseClient, UserCache.disabled(), new SnowflakeIdGenerator(1), writeQueue);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        writeQueue.close();
+        databaseClient.close();
+        DatabaseModeBenchmark.delete(directory);
+    }
+
+    @Benchmark
+    public CreateResult create() {
+        return userService.createAndSubmitUser("Bench", "bench" + sequence.incrementAndGet() + "@example.com");
+    }
+}
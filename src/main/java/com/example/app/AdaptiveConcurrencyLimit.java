@@ -0,0 +1,166 @@
+package com.example.app;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+/**
+ * Caps the user API requests in progress at a limit that follows {@link DatabaseClient} latency, additive
+ * increase, multiplicative decrease ({@code app.admission.concurrency.*}).
+ *
+ * <p>Each sampled database operation keeps a baseline of its latency without the time spent waiting for a
+ * pooled connection: a moving average that falls quickly towards fast calls and rises slowly. A call whose whole
+ * latency, waiting included, exceeds {@code latencyTolerance} times its baseline counts as slow. At the end of
+ * every {@code windowMs} window, the limit drops by 10% if at least a tenth of the calls were slow, and otherwise
+ * rises by one if requests were turned away. More requests than the connections can serve wait for them and make
+ * calls slow, so the limit settles near that point, and the excess gets a fast {@code 503} instead of a long wait.
+ *
+ * <p>Admission is one compare-and-set on the in-progress count and recording a call updates atomics only; the
+ * thread that closes a window adjusts the limit, the others carry on.
+ */
+@Component
+public class AdaptiveConcurrencyLimit {
+
+    private static final AdaptiveConcurrencyLimit DISABLED =
+            new AdaptiveConcurrencyLimit(false, 1, 1, 1, 2.0, 1000, new MetricsRegistry());
+    // Allowed on top of the tolerance, so scheduling jitter on a fast database does not count as queueing
+    private static final long JITTER_NANOS = TimeUnit.MILLISECONDS.toNanos(1);
+    private static final double BACKOFF = 0.9;
+
+    private final boolean enabled;
+    private final int minLimit;
+    private final int maxLimit;
+    private final double tolerance;
+    private final long windowNanos;
+    private final AtomicInteger limit;
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final AtomicLong windowStart = new AtomicLong(System.nanoTime());
+    private final LongAdder samples = new LongAdder();
+    private final LongAdder slowSamples = new LongAdder();
+    // Set when a request was turned away, cleared when a window closes
+    private volatile boolean saturated;
+
+    @Autowired
+    public AdaptiveConcurrencyLimit(AppConfig config, MetricsRegistry metrics) {
+        this(config.isAdmissionEnabled(), config.getAdmissionConcurrencyInitial(), config.getAdmissionConcurrencyMin(),
+                config.getAdmissionConcurrencyMax(), config.getAdmissionLatencyTolerance(),
+                config.getAdmissionWindowMillis(), metrics);
+    }
+
+    AdaptiveConcurrencyLimit(boolean enabled, int initialLimit, int minLimit, int maxLimit, double tolerance,
+                             long windowMillis, MetricsRegistry metrics) {
+        this.enabled = enabled;
+        this.minLimit = minLimit;
+        this.maxLimit = maxLimit;
+        this.tolerance = tolerance;
+        this.windowNanos = TimeUnit.MILLISECONDS.toNanos(windowMillis);
+        this.limit = new AtomicInteger(initialLimit);
+        metrics.gauge("admission_concurrency_limit", "User API requests allowed in progress at once", limit::get);
+        metrics.gauge("admission_in_flight", "User API requests in progress", inFlight::get);
+    }
+
+    /**
+     * A limit that admits everything and ignores latency, for clients running without admission control.
+     */
+    public static AdaptiveConcurrencyLimit disabled() {
+        return DISABLED;
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Takes a slot if fewer requests than the limit are in progress. Every successful call must be followed by
+     * {@link #release()}.
+     */
+    public boolean tryAcquire() {
+        if (!enabled) {
+            return true;
+        }
+        int current;
+        do {
+            current = inFlight.get();
+            if (current >= limit.get()) {
+                saturated = true;
+                return false;
+            }
+        } while (!inFlight.compareAndSet(current, current + 1));
+        return true;
+    }
+
+    public void release() {
+        if (enabled) {
+            inFlight.decrementAndGet();
+        }
+    }
+
+    public int getLimit() {
+        return limit.get();
+    }
+
+    public int getInFlight() {
+        return inFlight.get();
+    }
+
+    /**
+     * Latency feed for one kind of database call, with its own baseline. Only calls whose cost does not grow
+     * with the amount of data, such as lookups and single-row writes, make good samples.
+     */
+    public Latency latency() {
+        return new Latency();
+    }
+
+    private void closeWindow(long nowNanos) {
+        long start = windowStart.get();
+        if (nowNanos - start < windowNanos || !windowStart.compareAndSet(start, nowNanos)) {
+            return;
+        }
+        long total = samples.sumThenReset();
+        long slow = slowSamples.sumThenReset();
+        boolean wasSaturated = saturated;
+        saturated = false;
+        int current = limit.get();
+        if (slow > 0 && slow * 10 >= total) {
+            limit.set(Math.max(minLimit, (int) (current * BACKOFF)));
+        } else if (wasSaturated) {
+            limit.set(Math.min(maxLimit, current + 1));
+        }
+    }
+
+    public final class Latency {
+        private final AtomicLong baseline = new AtomicLong();
+
+        private Latency() {
+        }
+
+        /**
+         * Records one call that took {@code nanos}, {@code waitNanos} of which it waited for a connection, ending at
+         * {@code nowNanos} ({@link System#nanoTime()}).
+         */
+        public void record(long nanos, long waitNanos, long nowNanos) {
+            if (!enabled) {
+                return;
+            }
+            long base = baseline.get();
+            // The baseline follows the database's own time: waiting for connections is the queueing the limit
+            // controls, and counting it would let the baseline rise with the queue. Racing updates may drop a
+            // sample from the average, which it tolerates
+            long service = Math.max(1, nanos - waitNanos);
+            baseline.set(base == 0 ? service
+                    : service < base ? base - (base - service) / 8 : base + (service - base) / 1024);
+            samples.increment();
+            if (base != 0 && nanos > base * tolerance + JITTER_NANOS) {
+                slowSamples.increment();
+            }
+            closeWindow(nowNanos);
+        }
+
+        long getBaselineNanos() {
+            return baseline.get();
+        }
+    }
+}
@@ -0,0 +1,101 @@
+package com.example.app;
+
+import java.util.concurrent.TimeUnit;
+import org.springframework.stereotype.Component;
+
+/**
+ * Decides which user API requests go ahead, for the servlet and reactive admission filters alike
+ * ({@code app.admission.*}). A request passes two checks, in this order:
+ *
+ * <ol>
+ *     <li>its client's rate limit ({@link ClientRateLimiter}), else {@code 429} with {@code Retry-After} set to
+ *     when the client may send again;</li>
+ *     <li>a slot under the {@link AdaptiveConcurrencyLimit}, else {@code 503} with {@code Retry-After: 1}.
+ *     Change feed requests skip this one: they wait for changes, not for the database.</li>
+ * </ol>
+ *
+ * Clients are keyed by {@code app.admission.keyHeader} when that header is configured and sent, else by remote
+ * address. Only configure a header that a gateway in front sets or checks, since clients choose its value.
+ */
+@Component
+public class AdmissionController {
+
+    static final String LIMITED_PATH = "/api/users";
+    static final String UNSLOTTED_PATH = "/api/users/changes";
+
+    private final boolean enabled;
+    private final String keyHeader;
+    private final ClientRateLimiter rateLimiter;
+    private final AdaptiveConcurrencyLimit concurrencyLimit;
+    private final MetricsRegistry.Counter rateRejections;
+    private final MetricsRegistry.Counter concurrencyRejections;
+
+    public AdmissionController(AppConfig config, AdaptiveConcurrencyLimit concurrencyLimit, MetricsRegistry metrics) {
+        this.enabled = config.isAdmissionEnabled();
+        this.keyHeader = config.getAdmissionKeyHeader();
+        this.rateLimiter = enabled && config.getAdmissionRate() > 0
+                ? new ClientRateLimiter(config.getAdmissionRate(), config.getAdmissionBurst(), config.getAdmissionMaxKeys())
+                : null;
+        this.concurrencyLimit = concurrencyLimit;
+        this.rateRejections = metrics.counter("admission_rejected_total", "User API requests turned away",
+                "reason", "rate");
+        this.concurrencyRejections = metrics.counter("admission_rejected_total", "User API requests turned away",
+                "reason", "concurrency");
+        metrics.gauge("admission_clients", "Clients with a tracked rate limit",
+                () -> rateLimiter == null ? 0 : rateLimiter.size());
+    }
+
+    /**
+     * Whether requests to {@code path} are subject to admission control at all.
+     */
+    public boolean isLimited(String path) {
+        return enabled && startsWithSegment(path, LIMITED_PATH);
+    }
+
+    /**
+     * Header to key clients by, or null to key them by remote address.
+     */
+    public String getKeyHeader() {
+        return keyHeader;
+    }
+
+    /**
+     * Counts one request against {@code clientKey}'s rate: returns 0 if it may go ahead, else the whole seconds
+     * (at least 1) the client should wait.
+     */
+    public long acquireRate(String clientKey) {
+        if (rateLimiter == null) {
+            return 0;
+        }
+        long waitNanos = rateLimiter.acquire(clientKey, System.nanoTime());
+        if (waitNanos == 0) {
+            return 0;
+        }
+        rateRejections.increment();
+        return Math.max(1, (waitNanos + TimeUnit.SECONDS.toNanos(1) - 1) / TimeUnit.SECONDS.toNanos(1));
+    }
+
+    /**
+     * Takes a concurrency slot for a request to {@code path}; true if it may go ahead. When this returns true
+     * for a path that {@link #holdsSlot(String) holds a slot}, call {@link #release()} once the request is done.
+     */
+    public boolean tryAcquireSlot(String path) {
+        if (!holdsSlot(path) || concurrencyLimit.tryAcquire()) {
+            return true;
+        }
+        concurrencyRejections.increment();
+        return false;
+    }
+
+    public boolean holdsSlot(String path) {
+        return !startsWithSegment(path, UNSLOTTED_PATH);
+    }
+
+    public void release() {
+        concurrencyLimit.release();
+    }
+
+    private static boolean startsWithSegment(String path, String prefix) {
+        return path.startsWith(prefix) && (path.length() == prefix.length() || path.charAt(prefix.length()) == '/');
+    }
+}
@@ -0,0 +1,100 @@
+package com.example.app;
+
+import jakarta.servlet.AsyncEvent;
+import jakarta.servlet.AsyncListener;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+/**
+ * Applies the {@link AdmissionController} to user API requests before they reach a controller. Rejected requests
+ * get an empty {@code 429} or {@code 503} at once. Runs inside {@link RequestMetricsFilter}, so rejections still
+ * show up in the request metrics. A streamed or async response keeps its slot until it completes.
+ */
+@Component
+@Order(Ordered.LOWEST_PRECEDENCE)
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.SERVLET)
+public class AdmissionFilter extends OncePerRequestFilter {
+
+    private final AdmissionController admission;
+
+    public AdmissionFilter(AdmissionController admission) {
+        this.admission = admission;
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+            throws ServletException, IOException {
+        // Decoded and normalized, unlike the request URI
+        String path = request.getPathInfo() == null ? request.getServletPath()
+                : request.getServletPath() + request.getPathInfo();
+        if (!admission.isLimited(path)) {
+            chain.doFilter(request, response);
+            return;
+        }
+        String header = admission.getKeyHeader() == null ? null : request.getHeader(admission.getKeyHeader());
+        long retryAfter = admission.acquireRate(header != null ? "key:" + header : "addr:" + request.getRemoteAddr());
+        if (retryAfter > 0) {
+            reject(response, HttpStatus.TOO_MANY_REQUESTS.value(), retryAfter);
+            return;
+        }
+        if (!admission.tryAcquireSlot(path)) {
+            reject(response, HttpStatus.SERVICE_UNAVAILABLE.value(), 1);
+            return;
+        }
+        if (!admission.holdsSlot(path)) {
+            chain.doFilter(request, response);
+            return;
+        }
+        boolean released = true;
+        try {
+            chain.doFilter(request, response);
+            if (request.isAsyncStarted()) {
+                request.getAsyncContext().addListener(new ReleaseListener());
+                released = false;
+            }
+        } finally {
+            if (released) {
+                admission.release();
+            }
+        }
+    }
+
+    private static void reject(HttpServletResponse response, int status, long retryAfterSeconds) {
+        response.setStatus(status);
+        response.setHeader(HttpHeaders.RETRY_AFTER, Long.toString(retryAfterSeconds));
+        response.setContentLength(0);
+    }
+
+    /**
+     * Releases the slot when an async request ends; only completion is certain to come, after a timeout or error
+     * too.
+     */
+    private final class ReleaseListener implements AsyncListener {
+        @Override
+        public void onComplete(AsyncEvent event) {
+            admission.release();
+        }
+
+        @Override
+        public void onTimeout(AsyncEvent event) {
+        }
+
+        @Override
+        public void onError(AsyncEvent event) {
+        }
+
+        @Override
+        public void onStartAsync(AsyncEvent event) {
+        }
+    }
+}
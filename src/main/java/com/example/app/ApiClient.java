@@ -2,22 +2,42 @@ package com.example.app;
 
 import com.google.gson.Gson;
 import com.google.gson.reflect.TypeToken;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.UncheckedIOException;
 import java.lang.reflect.Type;
 import java.net.URI;
 import java.net.http.HttpClient;
 import java.net.http.HttpRequest;
 import java.net.http.HttpResponse;
+import java.net.http.HttpTimeoutException;
 import java.nio.charset.StandardCharsets;
 import java.time.Duration;
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicReference;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Component;
 
 /**
  * Tiny HTTP client to fetch data from the public Spring Boot end-of-life API.
+ *
+ * <p>Results are cached: within {@code refreshAfter} they are served as-is, and until {@code expireAfter}
+ * they are served stale while a background refresh runs. Concurrent misses share a single upstream call.
+ * By default the body is parsed as a stream, reading only the {@code cycle} field of each entry.
+ * Upstream calls are timed, and failures and timeouts counted, in the {@link MetricsRegistry}.
  */
 @Component
 public class ApiClient {
@@ -26,39 +46,229 @@ public class ApiClient {
 
     private final HttpClient httpClient;
     private final String apiUrl;
+    private final Duration requestTimeout;
+    private final long refreshAfterNanos;
+    private final long expireAfterNanos;
+    private final boolean streamingParse;
+    private final MetricsRegistry.Timer upstreamTimer;
+    private final MetricsRegistry.Counter upstreamErrors;
+    private final MetricsRegistry.Counter upstreamTimeouts;
+    private final AtomicReference<CompletableFuture<List<String>>> inFlight = new AtomicReference<>();
+    private volatile Snapshot snapshot;
 
-    public ApiClient(AppConfig config) {
-        this.httpClient = HttpClient.newBuilder()
-                .connectTimeout(Duration.ofSeconds(5))
-                .build();
-        this.apiUrl = config.getSpringBootApiUrl();
+    @Autowired
+    public ApiClient(AppConfig config, MetricsRegistry metrics) {
+        this(newHttpClient(config.isVirtualThreadsEnabled()),
+                config.getSpringBootApiUrl(),
+                Duration.ofSeconds(config.getSpringBootVersionsTimeoutSeconds()),
+                Duration.ofSeconds(config.getSpringBootVersionsRefreshAfterSeconds()),
+                Duration.ofSeconds(config.getSpringBootVersionsExpireAfterSeconds()),
+                config.isSpringBootVersionsStreamingParse(),
+                metrics);
+    }
+
+    ApiClient(HttpClient httpClient, String apiUrl, Duration requestTimeout, Duration refreshAfter, Duration expireAfter,
+              boolean streamingParse) {
+        this(httpClient, apiUrl, requestTimeout, refreshAfter, expireAfter, streamingParse, new MetricsRegistry());
+    }
+
+    ApiClient(HttpClient httpClient, String apiUrl, Duration requestTimeout, Duration refreshAfter, Duration expireAfter,
+              boolean streamingParse, MetricsRegistry metrics) {
+        this.httpClient = httpClient;
+        this.apiUrl = apiUrl;
+        this.requestTimeout = requestTimeout;
+        this.refreshAfterNanos = refreshAfter.toNanos();
+        this.expireAfterNanos = Math.max(refreshAfter.toNanos(), expireAfter.toNanos());
+        this.streamingParse = streamingParse;
+        this.upstreamTimer = metrics.timer("springboot_versions_upstream_seconds", "Spring Boot EOL API call latency");
+        this.upstreamErrors = metrics.counter("springboot_versions_upstream_errors_total",
+                "Spring Boot EOL API calls that failed, including timeouts");
+        this.upstreamTimeouts = metrics.counter("springboot_versions_upstream_timeouts_total",
+                "Spring Boot EOL API calls that timed out");
+    }
+
+    private static HttpClient newHttpClient(boolean virtualThreads) {
+        HttpClient.Builder builder = HttpClient.newBuilder()
+                .connectTimeout(Duration.ofSeconds(5));
+        if (virtualThreads) {
+            // Response handling blocks while reading the body stream; let that park a virtual thread
+            builder.executor(Executors.newVirtualThreadPerTaskExecutor());
+        }
+        return builder.build();
     }
 
     /**
      * Fetches Spring Boot release cycles from endoflife.date.
      */
     public List<String> fetchSpringBootCycles() {
+        return fetchSpringBootCyclesAsync().join();
+    }
+
+    /**
+     * Non-blocking variant of {@link #fetchSpringBootCycles()}. The future never completes exceptionally;
+     * when the API cannot be reached it yields the last good result, or an empty list if there is none.
+     */
+    public CompletableFuture<List<String>> fetchSpringBootCyclesAsync() {
+        Snapshot current = snapshot;
+        if (current != null) {
+            long age = System.nanoTime() - current.fetchedAtNanos;
+            if (age < refreshAfterNanos) {
+                return CompletableFuture.completedFuture(current.cycles);
+            }
+            if (age < expireAfterNanos) {
+                refresh();
+                return CompletableFuture.completedFuture(current.cycles);
+            }
+        }
+        return refresh();
+    }
+
+    /**
+     * Starts an upstream call unless one is already running, in which case callers join that one. The whole call,
+     * body included, is bounded by the request timeout, so a stalled upstream cannot keep the call in flight.
+     */
+    private CompletableFuture<List<String>> refresh() {
+        while (true) {
+            CompletableFuture<List<String>> existing = inFlight.get();
+            if (existing != null) {
+                return existing;
+            }
+            CompletableFuture<List<String>> promise = new CompletableFuture<>();
+            if (inFlight.compareAndSet(null, promise)) {
+                long start = System.nanoTime();
+                load().orTimeout(requestTimeout.toNanos(), TimeUnit.NANOSECONDS).whenComplete((cycles, error) -> {
+                    upstreamTimer.recordSince(start);
+                    List<String> result;
+                    if (error == null) {
+                        snapshot = new Snapshot(cycles, System.nanoTime());
+                        result = cycles;
+                    } else {
+                        upstreamErrors.increment();
+                        Throwable cause = unwrap(error);
+                        if (cause instanceof HttpTimeoutException || cause instanceof TimeoutException) {
+                            upstreamTimeouts.increment();
+                        }
+                        logger.error("Failed to call Spring Boot EOL API", error);
+                        Snapshot stale = snapshot;
+                        result = stale == null ? Collections.emptyList() : stale.cycles;
+                    }
+                    inFlight.set(null);
+                    promise.complete(result);
+                });
+                return promise;
+            }
+        }
+    }
+
+    private CompletableFuture<List<String>> load() {
         try {
             HttpRequest request = HttpRequest.newBuilder()
                     .uri(URI.create(apiUrl))
-                    .timeout(Duration.ofSeconds(10))
+                    .timeout(requestTimeout)
                     .GET()
                     .build();
 
-            HttpResponse<String> response = httpClient.send(request, HttpResponse.BodyHandlers.ofString(StandardCharsets.UTF_8));
-
-            if (response.statusCode() >= 200 && response.statusCode() < 300) {
-                Type listType = new TypeToken<List<Map<String, Object>>>() { }.getType();
-                List<Map<String, Object>> payload = gson.fromJson(response.body(), listType);
-                return payload.stream()
-                        .map(entry -> (String) entry.getOrDefault("cycle", "unknown"))
-                        .toList();
+            if (!streamingParse) {
+                CompletableFuture<HttpResponse<String>> sent =
+                        httpClient.sendAsync(request, HttpResponse.BodyHandlers.ofString(StandardCharsets.UTF_8));
+                CompletableFuture<List<String>> cycles = sent.thenApply(response -> {
+                    if (response.statusCode() >= 200 && response.statusCode() < 300) {
+                        return parseCycles(response.body());
+                    }
+                    throw unexpectedResponse(response.statusCode(), response.body());
+                });
+                // A call given up on while the body is still arriving aborts the exchange
+                cycles.whenComplete((result, error) -> {
+                    if (error != null) {
+                        sent.cancel(true);
+                    }
+                });
+                return cycles;
             }
 
-            logger.warn("Unexpected response from API: status={} body={}", response.statusCode(), response.body());
-        } catch (Exception ex) {
-            logger.error("Failed to call Spring Boot EOL API", ex);
+            CompletableFuture<HttpResponse<InputStream>> sent =
+                    httpClient.sendAsync(request, HttpResponse.BodyHandlers.ofInputStream());
+            CompletableFuture<List<String>> cycles = sent.thenApply(response -> {
+                try (InputStream body = response.body()) {
+                    if (response.statusCode() >= 200 && response.statusCode() < 300) {
+                        return readCycles(body).stream().map(ReleaseCycle::cycle).toList();
+                    }
+                    throw unexpectedResponse(response.statusCode(),
+                            new String(body.readNBytes(1024), StandardCharsets.UTF_8));
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+            // A call given up on mid-body closes the stream, which ends the blocked read and frees its thread
+            cycles.whenComplete((result, error) -> {
+                if (error != null) {
+                    sent.cancel(true);
+                    sent.thenAccept(response -> closeQuietly(response.body()));
+                }
+            });
+            return cycles;
+        } catch (RuntimeException ex) {
+            return CompletableFuture.failedFuture(ex);
         }
-        return Collections.emptyList();
     }
-}
\ No newline at end of file
+
+    private static void closeQuietly(InputStream body) {
+        try {
+            body.close();
+        } catch (IOException e) {
+            logger.debug("Failed to close Spring Boot EOL API response body", e);
+        }
+    }
+
+    private static Throwable unwrap(Throwable error) {
+        return error instanceof CompletionException && error.getCause() != null ? error.getCause() : error;
+    }
+
+    private static IllegalStateException unexpectedResponse(int status, String body) {
+        return new IllegalStateException("Unexpected response from API: status=" + status + " body=" + body);
+    }
+
+    /**
+     * Builds a generic map tree for the whole payload and picks {@code cycle} out of it.
+     */
+    static List<String> parseCycles(String body) {
+        Type listType = new TypeToken<List<Map<String, Object>>>() { }.getType();
+        List<Map<String, Object>> payload = gson.fromJson(body, listType);
+        return payload.stream()
+                .map(entry -> (String) entry.getOrDefault("cycle", "unknown"))
+                .toList();
+    }
+
+    /**
+     * Reads the payload token by token, keeping only {@code cycle} and skipping every other field unparsed.
+     */
+    static List<ReleaseCycle> readCycles(InputStream body) throws IOException {
+        List<ReleaseCycle> cycles = new ArrayList<>();
+        JsonReader reader = new JsonReader(new InputStreamReader(body, StandardCharsets.UTF_8));
+        reader.beginArray();
+        while (reader.hasNext()) {
+            String cycle = "unknown";
+            reader.beginObject();
+            while (reader.hasNext()) {
+                if ("cycle".equals(reader.nextName()) && reader.peek() != JsonToken.NULL) {
+                    cycle = reader.nextString();
+                } else {
+                    reader.skipValue();
+                }
+            }
+            reader.endObject();
+            cycles.add(new ReleaseCycle(cycle));
+        }
+        reader.endArray();
+        return cycles;
+    }
+
+    /**
+     * The part of an endoflife.date release entry this client uses.
+     */
+    public record ReleaseCycle(String cycle) {
+    }
+
+    private record Snapshot(List<String> cycles, long fetchedAtNanos) {
+    }
+}
@@ -2,25 +2,39 @@ package com.example.app;
 
 import java.io.IOException;
 import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Properties;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
+import org.springframework.context.EnvironmentAware;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.context.annotation.PropertySource;
+import org.springframework.core.env.Environment;
 
 /**
  * Simple configuration loader backed by application.properties.
+ * Inside Spring, values set on the command line or in the environment take precedence over the file.
  */
 @Configuration
 @PropertySource("classpath:application.properties")
-public class AppConfig {
+public class AppConfig implements EnvironmentAware {
     private static final Logger logger = LogManager.getLogger(AppConfig.class);
     private final Properties properties = new Properties();
+    private Environment environment;
 
     public AppConfig() {
         load();
     }
 
+    /**
+     * Loads application.properties and then applies the given overrides, for tests and benchmarks.
+     */
+    AppConfig(Properties overrides) {
+        load();
+        properties.putAll(overrides);
+    }
+
     private void load() {
         try (InputStream is = getClass().getClassLoader().getResourceAsStream("application.properties")) {
             if (is == null) {
@@ -33,23 +47,304 @@ public class AppConfig {
         }
     }
 
+    @Override
+    public void setEnvironment(Environment environment) {
+        this.environment = environment;
+    }
+
     public String getSpringBootApiUrl() {
-        return properties.getProperty("app.api.springBootVersionsUrl");
+        return getProperty("app.api.springBootVersionsUrl");
+    }
+
+    public long getSpringBootVersionsRefreshAfterSeconds() {
+        return getLong("app.api.springBootVersions.refreshAfterSeconds", 300L);
     }
 
+    public long getSpringBootVersionsExpireAfterSeconds() {
+        return getLong("app.api.springBootVersions.expireAfterSeconds", 3600L);
+    }
+
+    public long getSpringBootVersionsTimeoutSeconds() {
+        return getLong("app.api.springBootVersions.timeoutSeconds", 10L);
+    }
+
+    public boolean isSpringBootVersionsStreamingParse() {
+        return getBoolean("app.api.springBootVersions.streamingParse", true);
+    }
+
+    /**
+     * JDBC URL for the configured storage mode: {@code app.db.url} in memory mode, or a file URL built from
+     * the {@code app.db.file.*} settings in file mode.
+     */
     public String getDbUrl() {
-        return properties.getProperty("app.db.url");
+        if (!isDbFileMode()) {
+            return getProperty("app.db.url");
+        }
+        // The database stays open while the pool cycles connections and is closed by DatabaseClient.close(),
+        // not by H2's own shutdown hook racing Spring's
+        return "jdbc:h2:file:" + getProperty("app.db.file.path")
+                + ";CACHE_SIZE=" + getInt("app.db.file.cacheSizeKb", 65536)
+                + ";WRITE_DELAY=" + getInt("app.db.file.writeDelayMs", 500)
+                + ";MAX_COMPACT_TIME=" + getInt("app.db.file.maxCompactTimeMs", 2000)
+                + ";DB_CLOSE_DELAY=-1;DB_CLOSE_ON_EXIT=FALSE;LAZY_QUERY_EXECUTION=1";
+    }
+
+    /**
+     * JDBC URLs of the databases users are sharded over: the comma-separated {@code app.db.shards.urls}, or
+     * just {@link #getDbUrl()} when that is empty.
+     */
+    public List<String> getDbShardUrls() {
+        String value = getProperty("app.db.shards.urls");
+        if (value == null || value.isBlank()) {
+            return List.of(getDbUrl());
+        }
+        List<String> urls = new ArrayList<>();
+        for (String url : value.split(",")) {
+            if (!url.isBlank()) {
+                urls.add(url.trim());
+            }
+        }
+        return urls;
+    }
+
+    /**
+     * Whether users are stored in a file-backed H2 database ({@code app.db.mode=file}) instead of in memory.
+     */
+    public boolean isDbFileMode() {
+        String mode = getProperty("app.db.mode");
+        if (mode == null || mode.isBlank() || mode.trim().equalsIgnoreCase("memory")) {
+            return false;
+        }
+        if (mode.trim().equalsIgnoreCase("file")) {
+            return true;
+        }
+        throw new IllegalStateException("Invalid app.db.mode: " + mode + " (expected memory or file)");
+    }
+
+    public boolean isDbFileWarmupEnabled() {
+        return getBoolean("app.db.file.warmup", true);
     }
 
     public String getDbUsername() {
-        return properties.getProperty("app.db.username");
+        return getProperty("app.db.username");
     }
 
     public String getDbPassword() {
-        return properties.getProperty("app.db.password");
+        return getProperty("app.db.password");
     }
 
     public String getDbDriver() {
-        return properties.getProperty("app.db.driver");
+        return getProperty("app.db.driver");
+    }
+
+    public int getDbPoolMaxSize() {
+        return getInt("app.db.pool.maxSize", 10);
+    }
+
+    public long getDbPoolAcquireTimeoutMillis() {
+        return getLong("app.db.pool.acquireTimeoutMs", 5000L);
+    }
+
+    public long getDbPoolIdleTimeoutMillis() {
+        return getLong("app.db.pool.idleTimeoutMs", 300000L);
+    }
+
+    public int getDbStatementCacheSize() {
+        return getInt("app.db.pool.statementCacheSize", 32);
+    }
+
+    public int getDbBatchSize() {
+        return getInt("app.db.batchSize", 500);
+    }
+
+    public int getDbFetchSize() {
+        return getInt("app.db.fetchSize", 500);
+    }
+
+    public long getDbRowCountRefreshMillis() {
+        return getLong("app.db.rowCountRefreshMs", 15000L);
+    }
+
+    public int getUsersMaxPageSize() {
+        return getInt("app.api.users.maxPageSize", 1000);
+    }
+
+    public boolean isUserCacheEnabled() {
+        return getBoolean("app.cache.users.enabled", true);
+    }
+
+    public int getUserCacheMaxSize() {
+        return getInt("app.cache.users.maxSize", 10000);
+    }
+
+    public long getUserCacheTtlSeconds() {
+        return getLong("app.cache.users.ttlSeconds", 300L);
+    }
+
+    public boolean isUserWriteBehindEnabled() {
+        return getBoolean("app.users.writeBehind.enabled", false);
+    }
+
+    public int getUserWriteBehindCapacity() {
+        return getInt("app.users.writeBehind.capacity", 10000);
+    }
+
+    public int getUserWriteBehindBatchSize() {
+        return getInt("app.users.writeBehind.batchSize", getDbBatchSize());
+    }
+
+    /**
+     * Whether callers wait for room when the write-behind queue is full ({@code whenFull=block}) instead of
+     * being turned away at once ({@code whenFull=reject}).
+     */
+    public boolean isUserWriteBehindBlockWhenFull() {
+        String policy = getProperty("app.users.writeBehind.whenFull");
+        if (policy == null || policy.isBlank() || policy.trim().equalsIgnoreCase("reject")) {
+            return false;
+        }
+        if (policy.trim().equalsIgnoreCase("block")) {
+            return true;
+        }
+        throw new IllegalStateException("Invalid app.users.writeBehind.whenFull: " + policy + " (expected reject or block)");
+    }
+
+    public boolean isUserChangesEnabled() {
+        return getBoolean("app.users.changes.enabled", true);
+    }
+
+    public int getUserChangesCapacity() {
+        return getInt("app.users.changes.capacity", 65536);
+    }
+
+    public long getUserChangesMaxWaitMillis() {
+        return getLong("app.users.changes.maxWaitMs", 30000L);
+    }
+
+    public long getUserChangesHeartbeatMillis() {
+        return Math.max(1L, getLong("app.users.changes.heartbeatMs", 15000L));
+    }
+
+    public int getUserChangesMaxWaiters() {
+        return Math.max(0, getInt("app.users.changes.maxWaiters", 1000));
+    }
+
+    public boolean isAdmissionEnabled() {
+        return getBoolean("app.admission.enabled", true);
+    }
+
+    /**
+     * Requests per second each client may send to the user APIs; 0 disables the per-client limit.
+     */
+    public int getAdmissionRate() {
+        return Math.max(0, getInt("app.admission.rate", 1000));
+    }
+
+    public int getAdmissionBurst() {
+        return Math.max(1, getInt("app.admission.burst", 2000));
+    }
+
+    /**
+     * Header naming the client for its rate limit; blank keys clients by remote address only.
+     */
+    public String getAdmissionKeyHeader() {
+        String header = getProperty("app.admission.keyHeader");
+        return header == null || header.isBlank() ? null : header.trim();
+    }
+
+    public int getAdmissionMaxKeys() {
+        return Math.max(1, getInt("app.admission.maxKeys", 100000));
+    }
+
+    public int getAdmissionConcurrencyMin() {
+        return Math.max(1, getInt("app.admission.concurrency.min", 4));
+    }
+
+    public int getAdmissionConcurrencyMax() {
+        return Math.max(getAdmissionConcurrencyMin(), getInt("app.admission.concurrency.max", 200));
+    }
+
+    public int getAdmissionConcurrencyInitial() {
+        return Math.min(Math.max(getInt("app.admission.concurrency.initial", 20), getAdmissionConcurrencyMin()),
+                getAdmissionConcurrencyMax());
+    }
+
+    public double getAdmissionLatencyTolerance() {
+        return Math.max(1.0, getDouble("app.admission.latencyTolerance", 2.0));
+    }
+
+    public long getAdmissionWindowMillis() {
+        return Math.max(1L, getLong("app.admission.windowMs", 250L));
+    }
+
+    public long getUserWriteBehindOfferTimeoutMillis() {
+        return getLong("app.users.writeBehind.offerTimeoutMs", 1000L);
+    }
+
+    public long getUserWriteBehindShutdownTimeoutMillis() {
+        return Math.max(1L, getLong("app.users.writeBehind.shutdownTimeoutMs", 30000L));
+    }
+
+    /**
+     * JDBC calls the reactive variant may queue for its bounded scheduler before turning requests away with 503.
+     */
+    public int getReactiveJdbcQueueCapacity() {
+        return getInt("app.reactive.jdbc.queueCapacity", 10000);
+    }
+
+    /**
+     * Whether Spring Boot runs request handling on virtual threads; blocking clients follow the same switch.
+     */
+    public boolean isVirtualThreadsEnabled() {
+        return getBoolean("spring.threads.virtual.enabled", false);
+    }
+
+    public long getIdNodeId() {
+        return getLong("app.id.nodeId", 0L);
+    }
+
+    private String getProperty(String key) {
+        String value = environment == null ? null : environment.getProperty(key);
+        return value != null ? value : properties.getProperty(key);
+    }
+
+    private boolean getBoolean(String key, boolean defaultValue) {
+        String value = getProperty(key);
+        return value == null || value.isBlank() ? defaultValue : Boolean.parseBoolean(value.trim());
+    }
+
+    private int getInt(String key, int defaultValue) {
+        String value = getProperty(key);
+        if (value == null || value.isBlank()) {
+            return defaultValue;
+        }
+        try {
+            return Integer.parseInt(value.trim());
+        } catch (NumberFormatException e) {
+            throw new IllegalStateException("Invalid integer for " + key + ": " + value, e);
+        }
+    }
+
+    private long getLong(String key, long defaultValue) {
+        String value = getProperty(key);
+        if (value == null || value.isBlank()) {
+            return defaultValue;
+        }
+        try {
+            return Long.parseLong(value.trim());
+        } catch (NumberFormatException e) {
+            throw new IllegalStateException("Invalid number for " + key + ": " + value, e);
+        }
+    }
+
+    private double getDouble(String key, double defaultValue) {
+        String value = getProperty(key);
+        if (value == null || value.isBlank()) {
+            return defaultValue;
+        }
+        try {
+            return Double.parseDouble(value.trim());
+        } catch (NumberFormatException e) {
+            throw new IllegalStateException("Invalid number for " + key + ": " + value, e);
+        }
     }
 }
\ No newline at end of file
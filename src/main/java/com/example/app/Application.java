@@ -21,17 +21,17 @@ public class Application {
     }
     
     @Bean
-    public CommandLineRunner demoRunner(ApiClient apiClient, DatabaseClient databaseClient) {
+    public CommandLineRunner demoRunner(ApiClient apiClient, UserService userService) {
         return args -> {
             logger.info("Starting demo flow...");
-            demonstrateLegacyPatterns();
+            demonstrateLegacyPatterns(userService);
             demoApiCall(apiClient);
-            demoDatabaseCrud(databaseClient);
+            demoDatabaseCrud(userService);
             logger.info("Demo flow completed successfully");
         };
     }
     
-    private void demonstrateLegacyPatterns() {
+    private void demonstrateLegacyPatterns(UserService userService) {
         // Legacy date pattern
         Date date = new Date();
         logger.info("Current date (legacy): {}", date.toString());
@@ -42,8 +42,7 @@ public class Application {
         sb.append(" with legacy API");
         logger.debug("Result: {}", sb.toString());
         
-        // Service initialization
-        UserService userService = new UserService();
+        // The shared service and its injected id generator
         User user = userService.createUser("John Doe", "john@example.com");
         logger.info("Created user: {}", user.getName());
     }
@@ -57,9 +56,7 @@ public class Application {
         }
     }
 
-    private void demoDatabaseCrud(DatabaseClient databaseClient) {
-        UserService userService = new UserService(databaseClient);
-
+    private void demoDatabaseCrud(UserService userService) {
         // Create
         User created = userService.createAndPersistUser("Jane Doe", "jane@example.com");
 
@@ -0,0 +1,16 @@
+package com.example.app;
+
+import java.util.List;
+
+/**
+ * Outcome of a bulk user insert: how many rows were written and which were rejected.
+ *
+ * @param requested number of rows submitted
+ * @param inserted  number of rows written
+ * @param failures  rejected rows, indexed by their position in the submitted collection
+ */
+public record BulkInsertResult(int requested, int inserted, List<RowFailure> failures) {
+
+    public record RowFailure(int index, String email, String reason) {
+    }
+}
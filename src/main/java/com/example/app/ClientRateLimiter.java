@@ -0,0 +1,77 @@
+package com.example.app;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Per-client token bucket, kept as the generic cell rate algorithm: one theoretical arrival time per key instead
+ * of a token count and a refill timestamp. A request is admitted when the key's arrival time is at most
+ * {@code burst - 1} intervals ahead of now, which moves it one interval further; admitting is one
+ * compare-and-set, with no lock and no refill work.
+ *
+ * <p>At most {@code maxKeys} keys are tracked. When the map is full, keys whose bucket has refilled completely
+ * are dropped, at most once a second, as they hold nothing a fresh entry would not; if it is still full, new
+ * clients share one bucket until room frees up.
+ */
+final class ClientRateLimiter {
+
+    private static final String OVERFLOW_KEY = "";
+
+    private final long intervalNanos;
+    private final long toleranceNanos;
+    private final int maxKeys;
+    private final Map<String, AtomicLong> arrivals = new ConcurrentHashMap<>();
+    private final AtomicLong nextSweep = new AtomicLong(System.nanoTime());
+
+    ClientRateLimiter(int ratePerSecond, int burst, int maxKeys) {
+        this.intervalNanos = Math.max(1, TimeUnit.SECONDS.toNanos(1) / ratePerSecond);
+        this.toleranceNanos = intervalNanos * (burst - 1);
+        this.maxKeys = maxKeys;
+    }
+
+    /**
+     * Admits one request from {@code key} at {@code nowNanos} ({@link System#nanoTime()}): returns 0, or how many
+     * nanoseconds until the key may send again.
+     */
+    long acquire(String key, long nowNanos) {
+        AtomicLong arrival = arrivals.get(key);
+        if (arrival == null) {
+            arrival = register(key, nowNanos);
+        }
+        while (true) {
+            long current = arrival.get();
+            long next = Math.max(current, nowNanos);
+            long wait = next - toleranceNanos - nowNanos;
+            if (wait > 0) {
+                return wait;
+            }
+            if (arrival.compareAndSet(current, next + intervalNanos)) {
+                return 0;
+            }
+        }
+    }
+
+    private AtomicLong register(String key, long nowNanos) {
+        if (arrivals.size() >= maxKeys) {
+            sweep(nowNanos);
+            if (arrivals.size() >= maxKeys) {
+                return arrivals.computeIfAbsent(OVERFLOW_KEY, k -> new AtomicLong(nowNanos));
+            }
+        }
+        return arrivals.computeIfAbsent(key, k -> new AtomicLong(nowNanos));
+    }
+
+    private void sweep(long nowNanos) {
+        // At most one sweep per second, by one thread; the others go on with the map as it is
+        long due = nextSweep.get();
+        if (nowNanos - due >= 0 && nextSweep.compareAndSet(due, nowNanos + TimeUnit.SECONDS.toNanos(1))) {
+            arrivals.values().removeIf(arrival -> arrival.get() - nowNanos <= 0);
+        }
+    }
+
+    int size() {
+        return arrivals.size();
+    }
+}
@@ -0,0 +1,218 @@
+package com.example.app;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.sql.SQLTimeoutException;
+import java.util.Iterator;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingDeque;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+/**
+ * Bounded JDBC connection pool. Each pooled connection keeps its own prepared-statement cache,
+ * so hot SQL is parsed once per physical connection instead of once per call.
+ */
+public class ConnectionPool implements AutoCloseable {
+    private static final Logger logger = LogManager.getLogger(ConnectionPool.class);
+
+    private final String url;
+    private final String username;
+    private final String password;
+    private final int maxSize;
+    private final long acquireTimeoutNanos;
+    private final long idleTimeoutNanos;
+    private final int statementCacheSize;
+
+    private final Semaphore permits;
+    // Most recently returned connections sit at the head, so the tail holds the longest idle ones
+    private final LinkedBlockingDeque<PooledConnection> idle = new LinkedBlockingDeque<>();
+    private final AtomicInteger active = new AtomicInteger();
+    private final AtomicInteger open = new AtomicInteger();
+    private final LongAdder acquired = new LongAdder();
+    private final LongAdder timeouts = new LongAdder();
+    private final LongAdder totalWaitNanos = new LongAdder();
+    private final AtomicLong maxWaitNanos = new AtomicLong();
+    private final LongAdder statementHits = new LongAdder();
+    private final LongAdder statementMisses = new LongAdder();
+    private final ScheduledExecutorService evictor;
+    private volatile boolean closed;
+
+    public ConnectionPool(String url, String username, String password, int maxSize,
+                          long acquireTimeoutMillis, long idleTimeoutMillis, int statementCacheSize) {
+        if (maxSize < 1) {
+            throw new IllegalArgumentException("Pool size must be at least 1");
+        }
+        this.url = url;
+        this.username = username;
+        this.password = password;
+        this.maxSize = maxSize;
+        this.acquireTimeoutNanos = TimeUnit.MILLISECONDS.toNanos(acquireTimeoutMillis);
+        this.idleTimeoutNanos = TimeUnit.MILLISECONDS.toNanos(idleTimeoutMillis);
+        this.statementCacheSize = Math.max(0, statementCacheSize);
+        this.permits = new Semaphore(maxSize, true);
+
+        if (idleTimeoutMillis > 0) {
+            long period = Math.max(1000L, idleTimeoutMillis / 2);
+            this.evictor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "db-pool-evictor");
+                thread.setDaemon(true);
+                return thread;
+            });
+            evictor.scheduleWithFixedDelay(this::evictIdle, period, period, TimeUnit.MILLISECONDS);
+        } else {
+            this.evictor = null;
+        }
+    }
+
+    /**
+     * Borrows a connection, waiting up to the configured acquire timeout for one to free up.
+     * Closing the returned connection hands it back to the pool.
+     */
+    public PooledConnection acquire() throws SQLException {
+        if (closed) {
+            throw new SQLException("Connection pool is closed");
+        }
+
+        long start = System.nanoTime();
+        try {
+            if (!permits.tryAcquire(acquireTimeoutNanos, TimeUnit.NANOSECONDS)) {
+                timeouts.increment();
+                throw new SQLTimeoutException("Timed out after "
+                        + TimeUnit.NANOSECONDS.toMillis(acquireTimeoutNanos) + " ms waiting for a database connection");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLException("Interrupted while waiting for a database connection", e);
+        }
+        recordWait(System.nanoTime() - start);
+
+        try {
+            PooledConnection connection = takeIdle();
+            if (connection == null) {
+                connection = openConnection();
+            }
+            connection.markInUse();
+            active.incrementAndGet();
+            return connection;
+        } catch (SQLException | RuntimeException e) {
+            permits.release();
+            throw e;
+        }
+    }
+
+    void release(PooledConnection connection) {
+        active.decrementAndGet();
+        try {
+            if (closed || !connection.reset()) {
+                destroy(connection);
+            } else {
+                connection.touch();
+                idle.offerFirst(connection);
+            }
+        } finally {
+            permits.release();
+        }
+    }
+
+    void recordStatementLookup(boolean hit) {
+        if (hit) {
+            statementHits.increment();
+        } else {
+            statementMisses.increment();
+        }
+    }
+
+    /**
+     * Closes connections that have been idle longer than the idle timeout.
+     */
+    void evictIdle() {
+        long now = System.nanoTime();
+        Iterator<PooledConnection> it = idle.descendingIterator();
+        while (it.hasNext()) {
+            PooledConnection connection = it.next();
+            if (connection.idleNanos(now) >= idleTimeoutNanos && idle.removeFirstOccurrence(connection)) {
+                logger.debug("Evicting idle database connection");
+                destroy(connection);
+            }
+        }
+    }
+
+    public Stats stats() {
+        long count = acquired.sum();
+        double averageWaitMillis = count == 0 ? 0.0 : totalWaitNanos.sum() / (double) count / 1_000_000.0;
+        return new Stats(
+                active.get(),
+                idle.size(),
+                open.get(),
+                maxSize,
+                permits.getQueueLength(),
+                count,
+                timeouts.sum(),
+                averageWaitMillis,
+                maxWaitNanos.get() / 1_000_000.0,
+                statementHits.sum(),
+                statementMisses.sum());
+    }
+
+    @Override
+    public void close() {
+        closed = true;
+        if (evictor != null) {
+            evictor.shutdownNow();
+        }
+        PooledConnection connection;
+        while ((connection = idle.pollFirst()) != null) {
+            destroy(connection);
+        }
+        logger.info("Connection pool closed");
+    }
+
+    private PooledConnection takeIdle() {
+        long now = System.nanoTime();
+        PooledConnection connection;
+        while ((connection = idle.pollFirst()) != null) {
+            if (idleTimeoutNanos > 0 && connection.idleNanos(now) >= idleTimeoutNanos) {
+                destroy(connection);
+            } else if (connection.isValid()) {
+                return connection;
+            } else {
+                destroy(connection);
+            }
+        }
+        return null;
+    }
+
+    private PooledConnection openConnection() throws SQLException {
+        Connection connection = DriverManager.getConnection(url, username, password);
+        open.incrementAndGet();
+        logger.debug("Opened database connection ({} open)", open.get());
+        return new PooledConnection(this, connection, statementCacheSize);
+    }
+
+    private void destroy(PooledConnection connection) {
+        open.decrementAndGet();
+        connection.closePhysical();
+    }
+
+    private void recordWait(long waitNanos) {
+        acquired.increment();
+        totalWaitNanos.add(waitNanos);
+        maxWaitNanos.accumulateAndGet(waitNanos, Math::max);
+    }
+
+    /**
+     * Point-in-time pool metrics.
+     */
+    public record Stats(int active, int idle, int open, int maxSize, int waiting, long acquired, long timeouts,
+                        double averageWaitMillis, double maxWaitMillis,
+                        long statementCacheHits, long statementCacheMisses) {
+    }
+}
@@ -0,0 +1,23 @@
+package com.example.app;
+
+/**
+ * Outcome of creating a single user.
+ *
+ * @param status whether the user was stored, queued for writing, or turned away
+ * @param user   the new user when it was stored or queued, otherwise null
+ */
+public record CreateResult(Status status, User user) {
+
+    public enum Status {
+        CREATED,
+        QUEUED,
+        // The write-behind queue has no room; worth retrying shortly
+        QUEUE_FULL,
+        // Another user, stored or queued, already has the email
+        DUPLICATE_EMAIL
+    }
+
+    public boolean isAccepted() {
+        return status == Status.CREATED || status == Status.QUEUED;
+    }
+}
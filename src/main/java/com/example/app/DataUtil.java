@@ -3,8 +3,15 @@ package com.example.app;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.RandomAccess;
+import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.BinaryOperator;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 
@@ -13,6 +20,13 @@ import org.apache.logging.log4j.Logger;
  */
 public class DataUtil {
     private static final Logger logger = LogManager.getLogger(DataUtil.class);
+
+    /**
+     * Inputs smaller than this are processed sequentially by the parallel methods
+     */
+    public static final int DEFAULT_PARALLEL_THRESHOLD = 8192;
+
+    private final ReentrantLock lock = new ReentrantLock();
     
     /**
      * Convert collection to list using raw types (legacy pattern)
@@ -40,6 +54,16 @@ public class DataUtil {
         return userMap;
     }
     
+    /**
+     * Compact, off-heap alternative to {@link #createUserMap(List)} for large user lists; also indexes by id
+     */
+    public static UserIndex createUserIndex(List<User> users) {
+        logger.debug("Creating user index from {} users", users.size());
+        UserIndex index = UserIndex.of(users);
+        logger.info("User index created with {} entries ({} bytes off-heap)", index.size(), index.offHeapBytes());
+        return index;
+    }
+    
     /**
      * Check if value exists in collection
      */
@@ -51,15 +75,190 @@ public class DataUtil {
     }
     
     /**
-     * Legacy synchronized pattern
+     * Parallel {@link #createUserMap(List)} on the common fork/join pool; same result, including later
+     * duplicates winning
+     */
+    public static Map<String, User> createUserMapParallel(List<User> users) {
+        return createUserMapParallel(users, ForkJoinPool.commonPool(), DEFAULT_PARALLEL_THRESHOLD);
+    }
+
+    /**
+     * Builds one map per partition on {@code pool} and merges neighbours left to right; inputs under
+     * {@code threshold} stay on the calling thread
+     */
+    public static Map<String, User> createUserMapParallel(List<User> users, ForkJoinPool pool, int threshold) {
+        List<User> rows = randomAccess(users);
+        Map<String, User> userMap = forkJoin(pool, rows.size(), threshold, (from, to) -> {
+            Map<String, User> part = new HashMap<>();
+            for (int i = from; i < to; i++) {
+                User user = rows.get(i);
+                if (user != null && user.getEmail() != null) {
+                    part.put(user.getEmail(), user);
+                }
+            }
+            return part;
+        }, (left, right) -> {
+            // Fold the smaller map into the larger one; entries from the right still win
+            if (left.size() >= right.size()) {
+                left.putAll(right);
+                return left;
+            }
+            left.forEach(right::putIfAbsent);
+            return right;
+        });
+        logger.debug("User map created in parallel with {} entries", userMap.size());
+        return userMap;
+    }
+
+    /**
+     * Membership of each value in {@code collection}, checked in parallel against a hashed snapshot so
+     * every check is O(1) rather than a scan of the collection
+     */
+    public static <T> boolean[] containsEach(Collection<T> collection, List<T> values) {
+        return containsEach(collection, values, ForkJoinPool.commonPool(), DEFAULT_PARALLEL_THRESHOLD);
+    }
+
+    public static <T> boolean[] containsEach(Collection<T> collection, List<T> values, ForkJoinPool pool,
+                                             int threshold) {
+        Set<T> snapshot = collection instanceof Set<T> set ? set : hashedSnapshot(collection, pool, threshold);
+        List<T> probes = randomAccess(values);
+        boolean[] found = new boolean[probes.size()];
+        forkJoin(pool, probes.size(), threshold, (from, to) -> {
+            for (int i = from; i < to; i++) {
+                T value = probes.get(i);
+                found[i] = value != null && snapshot.contains(value);
+            }
+            return found;
+        }, (left, right) -> left);
+        return found;
+    }
+
+    private static <T> Set<T> hashedSnapshot(Collection<T> collection, ForkJoinPool pool, int threshold) {
+        List<T> items = randomAccess(collection);
+        return forkJoin(pool, items.size(), threshold, (from, to) -> {
+            Set<T> part = new HashSet<>();
+            for (int i = from; i < to; i++) {
+                part.add(items.get(i));
+            }
+            return part;
+        }, (left, right) -> {
+            if (left.size() >= right.size()) {
+                left.addAll(right);
+                return left;
+            }
+            right.addAll(left);
+            return right;
+        });
+    }
+
+    /**
+     * Users with distinct emails, keeping the first occurrence of each email in input order; null users
+     * and users without an email are dropped
+     */
+    public static List<User> dedupeByEmail(List<User> users) {
+        return dedupeByEmail(users, ForkJoinPool.commonPool(), DEFAULT_PARALLEL_THRESHOLD);
+    }
+
+    public static List<User> dedupeByEmail(List<User> users, ForkJoinPool pool, int threshold) {
+        List<User> rows = randomAccess(users);
+        // First pass: index of the first occurrence of every email; the left partition wins on merge
+        Map<String, Integer> firstIndex = forkJoin(pool, rows.size(), threshold, (from, to) -> {
+            Map<String, Integer> part = new HashMap<>();
+            for (int i = from; i < to; i++) {
+                User user = rows.get(i);
+                if (user != null && user.getEmail() != null) {
+                    part.putIfAbsent(user.getEmail(), i);
+                }
+            }
+            return part;
+        }, (left, right) -> {
+            if (left.size() >= right.size()) {
+                right.forEach(left::putIfAbsent);
+                return left;
+            }
+            right.putAll(left);
+            return right;
+        });
+        // Second pass: keep each row that is its email's first occurrence, concatenating partitions in order
+        return forkJoin(pool, rows.size(), threshold, (from, to) -> {
+            List<User> part = new ArrayList<>();
+            for (int i = from; i < to; i++) {
+                User user = rows.get(i);
+                if (user != null && user.getEmail() != null && firstIndex.get(user.getEmail()) == i) {
+                    part.add(user);
+                }
+            }
+            return part;
+        }, (left, right) -> {
+            left.addAll(right);
+            return left;
+        });
+    }
+
+    private static <T> List<T> randomAccess(Collection<T> items) {
+        return items instanceof List<T> list && items instanceof RandomAccess ? list : new ArrayList<>(items);
+    }
+
+    private static <R> R forkJoin(ForkJoinPool pool, int size, int threshold, RangeFunction<R> leaf,
+                                  BinaryOperator<R> merge) {
+        if (size < Math.max(1, threshold) || pool.getParallelism() == 1) {
+            return leaf.apply(0, size);
+        }
+        // Around four partitions per worker: enough to balance load without paying for many merges
+        int leafSize = Math.max(threshold, (size + pool.getParallelism() * 4 - 1) / (pool.getParallelism() * 4));
+        return pool.invoke(new RangeTask<>(0, size, leafSize, leaf, merge));
+    }
+
+    @FunctionalInterface
+    private interface RangeFunction<R> {
+        R apply(int from, int to);
+    }
+
+    /**
+     * Splits [from, to) in halves down to {@code leafSize}, then merges results left to right
+     */
+    private static final class RangeTask<R> extends RecursiveTask<R> {
+        private final int from;
+        private final int to;
+        private final int leafSize;
+        private final RangeFunction<R> leaf;
+        private final BinaryOperator<R> merge;
+
+        RangeTask(int from, int to, int leafSize, RangeFunction<R> leaf, BinaryOperator<R> merge) {
+            this.from = from;
+            this.to = to;
+            this.leafSize = leafSize;
+            this.leaf = leaf;
+            this.merge = merge;
+        }
+
+        @Override
+        protected R compute() {
+            if (to - from <= leafSize) {
+                return leaf.apply(from, to);
+            }
+            int mid = (from + to) >>> 1;
+            RangeTask<R> right = new RangeTask<>(mid, to, leafSize, leaf, merge);
+            right.fork();
+            R left = new RangeTask<>(from, mid, leafSize, leaf, merge).compute();
+            return merge.apply(left, right.join());
+        }
+    }
+
+    /**
+     * Formerly a synchronized method; guarded by a ReentrantLock so a virtual thread sleeping inside
+     * unmounts from its carrier instead of pinning it
      */
-    public synchronized void legacySynchronizedMethod() {
-        logger.debug("Executing synchronized method");
+    public void legacySynchronizedMethod() {
+        lock.lock();
         try {
+            logger.debug("Executing synchronized method");
             Thread.sleep(100);
         } catch (InterruptedException e) {
             logger.error("Interrupted during sleep", e);
             Thread.currentThread().interrupt();
+        } finally {
+            lock.unlock();
         }
     }
 }
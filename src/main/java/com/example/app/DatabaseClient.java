@@ -1,34 +1,222 @@
 package com.example.app;
 
+import java.sql.BatchUpdateException;
 import java.sql.Connection;
-import java.sql.DriverManager;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.Statement;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+import java.util.function.IntUnaryOperator;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Component;
 import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
 
 /**
- * Lightweight JDBC helper wired to an in-memory H2 database for demo CRUD.
+ * Lightweight JDBC helper wired to an H2 database for demo CRUD, in memory or file-backed ({@code app.db.mode}).
+ * Connections come from a bounded {@link ConnectionPool} with per-connection statement caching.
+ * Every public operation is timed and failures are counted in the {@link MetricsRegistry}.
+ *
+ * <p>With several {@code app.db.shards.urls} the users are spread over that many databases, each with its own
+ * pool. A user lives on the shard its id hashes to, so operations by id go to one database. Emails are found
+ * through an {@code email_routes} table, spread by a hash of the normalized email, that maps each email to its
+ * user's id and keeps emails unique across shards. Listings, searches and counts query every shard in parallel
+ * and merge the results. No write spans shards atomically: the email route is written first and undone if the
+ * user row cannot be written, and lookups check that a route's user still has that email.
  */
 @Component
 public class DatabaseClient {
     private static final Logger logger = LogManager.getLogger(DatabaseClient.class);
 
-    private final String url;
-    private final String username;
-    private final String password;
+    // Schema, applied in order by initialize(); every statement is idempotent. Emails and names are matched
+    // through LOWER()-generated columns so case-insensitive lookups and prefix searches can use an index.
+    // Every update increments version, which compare-and-set updates check.
+    static final List<String> SCHEMA_SQL = List.of(
+            "CREATE TABLE IF NOT EXISTS users (" +
+                    "id BIGINT PRIMARY KEY, " +
+                    "name VARCHAR(255) NOT NULL, " +
+                    "email VARCHAR(255) NOT NULL" +
+                    ")",
+            "ALTER TABLE users ADD COLUMN IF NOT EXISTS email_normalized VARCHAR(255) GENERATED ALWAYS AS (LOWER(email))",
+            "ALTER TABLE users ADD COLUMN IF NOT EXISTS name_normalized VARCHAR(255) GENERATED ALWAYS AS (LOWER(name))",
+            "CREATE UNIQUE INDEX IF NOT EXISTS users_email_normalized_idx ON users (email_normalized)",
+            "CREATE INDEX IF NOT EXISTS users_name_normalized_idx ON users (name_normalized, id)",
+            "ALTER TABLE users ADD COLUMN IF NOT EXISTS version BIGINT DEFAULT 0 NOT NULL");
+    // Sharded only, on every shard: each holds the routes of the emails that hash to it
+    static final String ROUTES_SCHEMA_SQL = "CREATE TABLE IF NOT EXISTS email_routes (" +
+            "email_normalized VARCHAR(255) PRIMARY KEY, " +
+            "user_id BIGINT NOT NULL" +
+            ")";
+
+    static final String INSERT_USER_SQL = "INSERT INTO users (id, name, email) VALUES (?, ?, ?)";
+    static final String LIST_USERS_SQL = "SELECT id, name, email, version FROM users ORDER BY id";
+    static final String LIST_USERS_AFTER_SQL = "SELECT id, name, email, version FROM users WHERE id > ? ORDER BY id";
+    static final String LIST_USERS_PAGE_SQL =
+            "SELECT id, name, email, version FROM users WHERE id > ? ORDER BY id LIMIT ?";
+    static final String FIND_BY_EMAIL_SQL =
+            "SELECT id, name, email, version FROM users WHERE email_normalized = LOWER(?)";
+    // Prefix matches as a range on the normalized column: [LOWER(prefix), LOWER(prefix) || U+FFFF)
+    static final String FIND_BY_EMAIL_PREFIX_SQL = "SELECT id, name, email, version FROM users " +
+            "WHERE email_normalized >= LOWER(?) AND email_normalized < LOWER(?) ORDER BY email_normalized LIMIT ?";
+    static final String FIND_BY_NAME_PREFIX_SQL = "SELECT id, name, email, version FROM users " +
+            "WHERE name_normalized >= LOWER(?) AND name_normalized < LOWER(?) ORDER BY name_normalized, id LIMIT ?";
+    static final String FIND_BY_ID_SQL = "SELECT id, name, email, version FROM users WHERE id = ?";
+    static final String UPDATE_EMAIL_SQL = "UPDATE users SET email = ?, version = version + 1 WHERE id = ?";
+    static final String UPDATE_EMAIL_RETURNING_SQL = "SELECT id, name, email, version FROM FINAL TABLE " +
+            "(UPDATE users SET email = ?, version = version + 1 WHERE id = ?)";
+    static final String UPDATE_IF_VERSION_SQL = "SELECT id, name, email, version FROM FINAL TABLE " +
+            "(UPDATE users SET name = ?, email = ?, version = version + 1 WHERE id = ? AND version = ?)";
+    static final String DELETE_USER_SQL = "DELETE FROM users WHERE id = ?";
+    static final String COUNT_USERS_SQL = "SELECT COUNT(*) FROM users";
+    // Each query reads every page of one structure: the table itself, then the two lookup indexes
+    static final List<String> WARMUP_SQL = List.of(
+            "SELECT COUNT(name) FROM users",
+            "SELECT COUNT(email_normalized) FROM users USE INDEX (users_email_normalized_idx) WHERE email_normalized >= ''",
+            "SELECT COUNT(name_normalized) FROM users USE INDEX (users_name_normalized_idx) WHERE name_normalized >= ''");
+
+    // Sharded only. Route keys are normalized in Java, so the shard a route lives on and its key always agree.
+    static final String INSERT_ROUTE_SQL = "INSERT INTO email_routes (email_normalized, user_id) VALUES (?, ?)";
+    static final String FIND_ROUTE_SQL = "SELECT user_id FROM email_routes WHERE email_normalized = ?";
+    static final String DELETE_ROUTE_SQL = "DELETE FROM email_routes WHERE email_normalized = ? AND user_id = ?";
+    static final String LIST_ROUTES_PAGE_SQL = "SELECT email_normalized, user_id FROM email_routes " +
+            "WHERE email_normalized > ? ORDER BY email_normalized LIMIT ?";
+    static final String FIND_BY_ID_AND_EMAIL_SQL =
+            "SELECT id, name, email, version FROM users WHERE id = ? AND email_normalized = LOWER(?)";
+    static final String FIND_BY_IDS_SQL = "SELECT id, email FROM users WHERE id = ANY(?)";
+    static final String LOCK_USER_SQL = "SELECT id, name, email, version FROM users WHERE id = ? FOR UPDATE";
+    static final String DELETE_USER_RETURNING_SQL =
+            "SELECT id, name, email, version FROM OLD TABLE (DELETE FROM users WHERE id = ?)";
+
+    static final Comparator<User> BY_ID = Comparator.comparingLong(User::getId);
+    // The orders of the prefix queries, for merging their per-shard results
+    private static final Comparator<User> BY_EMAIL = Comparator.comparing(user -> normalize(user.getEmail()));
+    private static final Comparator<User> BY_NAME =
+            Comparator.<User, String>comparing(user -> normalize(user.getName())).thenComparingLong(User::getId);
+    // Time the current thread has waited for pooled connections since its last operation ended
+    private static final ThreadLocal<long[]> CONNECTION_WAIT = ThreadLocal.withInitial(() -> new long[1]);
+
+    private final ConnectionPool[] shards;
+    // Runs the per-shard parts of a scatter-gather query; null with a single database
+    private final ExecutorService shardExecutor;
+    // Recounts the users for the db_users_rows gauge, so a scrape never takes a connection; null when disabled
+    private final ScheduledExecutorService rowCounter;
+    private volatile double userRows = Double.NaN;
+    private final UserChangeLog changeLog;
+    private final int batchSize;
+    private final int fetchSize;
+    private final boolean fileMode;
+    private final boolean warmup;
+    private final Operation createUserOp;
+    private final Operation createUsersOp;
+    private final Operation listUsersOp;
+    private final Operation listUsersPageOp;
+    private final Operation forEachUserOp;
+    private final Operation findByEmailOp;
+    private final Operation findByEmailPrefixOp;
+    private final Operation findByNamePrefixOp;
+    private final Operation findByIdOp;
+    private final Operation updateEmailOp;
+    private final Operation updateEmailAndGetOp;
+    private final Operation updateIfVersionOp;
+    private final Operation deleteUserOp;
+    private final Operation countUsersOp;
 
     public DatabaseClient(AppConfig config) {
-        this.url = config.getDbUrl();
-        this.username = config.getDbUsername();
-        this.password = config.getDbPassword();
+        this(config, new MetricsRegistry());
+    }
+
+    public DatabaseClient(AppConfig config, MetricsRegistry metrics) {
+        this(config, metrics, UserChangeLog.disabled());
+    }
+
+    public DatabaseClient(AppConfig config, MetricsRegistry metrics, UserChangeLog changeLog) {
+        this(config, metrics, changeLog, AdaptiveConcurrencyLimit.disabled());
+    }
+
+    /**
+     * Calls whose cost does not grow with the data (lookups, pages and single-row writes) also report their
+     * latency to {@code concurrencyLimit}.
+     */
+    @Autowired
+    public DatabaseClient(AppConfig config, MetricsRegistry metrics, UserChangeLog changeLog,
+                          AdaptiveConcurrencyLimit concurrencyLimit) {
         loadDriver(config.getDbDriver());
+        this.changeLog = changeLog;
+        this.batchSize = Math.max(1, config.getDbBatchSize());
+        this.fetchSize = Math.max(1, config.getDbFetchSize());
+        this.fileMode = config.isDbFileMode();
+        this.warmup = fileMode && config.isDbFileWarmupEnabled();
+        List<String> urls = config.getDbShardUrls();
+        this.shards = new ConnectionPool[urls.size()];
+        for (int i = 0; i < shards.length; i++) {
+            shards[i] = new ConnectionPool(
+                    urls.get(i),
+                    config.getDbUsername(),
+                    config.getDbPassword(),
+                    config.getDbPoolMaxSize(),
+                    config.getDbPoolAcquireTimeoutMillis(),
+                    config.getDbPoolIdleTimeoutMillis(),
+                    config.getDbStatementCacheSize());
+        }
+        // Every task holds a connection, so more threads than connections would only queue
+        this.shardExecutor = shards.length == 1 ? null
+                : Executors.newFixedThreadPool(shards.length * config.getDbPoolMaxSize(), shardThreadFactory());
+
+        this.createUserOp = new Operation(metrics, "createUser", concurrencyLimit);
+        this.createUsersOp = new Operation(metrics, "createUsers");
+        this.listUsersOp = new Operation(metrics, "listUsers");
+        this.listUsersPageOp = new Operation(metrics, "listUsersPage", concurrencyLimit);
+        this.forEachUserOp = new Operation(metrics, "forEachUser");
+        this.findByEmailOp = new Operation(metrics, "findByEmail", concurrencyLimit);
+        this.findByEmailPrefixOp = new Operation(metrics, "findByEmailPrefix", concurrencyLimit);
+        this.findByNamePrefixOp = new Operation(metrics, "findByNamePrefix", concurrencyLimit);
+        this.findByIdOp = new Operation(metrics, "findById", concurrencyLimit);
+        this.updateEmailOp = new Operation(metrics, "updateEmail", concurrencyLimit);
+        this.updateEmailAndGetOp = new Operation(metrics, "updateEmailAndGet", concurrencyLimit);
+        this.updateIfVersionOp = new Operation(metrics, "updateIfVersion", concurrencyLimit);
+        this.deleteUserOp = new Operation(metrics, "deleteUser", concurrencyLimit);
+        this.countUsersOp = new Operation(metrics, "countUsers");
+
+        metrics.gauge("db_pool_connections", "Pooled connections by state", () -> poolStats().active(), "state", "active");
+        metrics.gauge("db_pool_connections", "Pooled connections by state", () -> poolStats().idle(), "state", "idle");
+        metrics.gauge("db_pool_waiting", "Threads waiting for a pooled connection", () -> poolStats().waiting());
+        metrics.gauge("db_pool_acquire_timeouts", "Connection acquisitions that timed out since startup",
+                () -> poolStats().timeouts());
+        metrics.gauge("db_users_rows", "Rows in the users table at the last background count", () -> userRows);
+        metrics.gauge("db_shards", "Databases the users table is spread over", () -> shards.length);
+
+        long rowCountRefreshMillis = config.getDbRowCountRefreshMillis();
+        if (rowCountRefreshMillis > 0) {
+            this.rowCounter = Executors.newSingleThreadScheduledExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "db-row-counter");
+                thread.setDaemon(true);
+                return thread;
+            });
+            rowCounter.scheduleWithFixedDelay(this::refreshUserRows, rowCountRefreshMillis, rowCountRefreshMillis,
+                    TimeUnit.MILLISECONDS);
+        } else {
+            this.rowCounter = null;
+        }
     }
 
     private void loadDriver(String driverClass) {
@@ -39,87 +227,1158 @@ public class DatabaseClient {
         }
     }
 
+    private static ThreadFactory shardThreadFactory() {
+        AtomicInteger count = new AtomicInteger();
+        return runnable -> {
+            Thread thread = new Thread(runnable, "db-shard-query-" + count.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+
+    /**
+     * Creates or upgrades the users schema on every shard. Upgrading a table that holds emails differing only
+     * in case fails on the unique normalized-email index. A file-backed database is then warmed up unless
+     * {@code app.db.file.warmup} is off, and with several shards, email routes left behind by an interrupted
+     * write are removed.
+     */
     @PostConstruct
     public void initialize() {
-        String sql = "CREATE TABLE IF NOT EXISTS users (" +
-                "id BIGINT PRIMARY KEY, " +
-                "name VARCHAR(255) NOT NULL, " +
-                "email VARCHAR(255) NOT NULL UNIQUE" +
-                ")";
+        for (int shard = 0; shard < shards.length; shard++) {
+            try (PooledConnection conn = getConnection(shard); Statement stmt = conn.getConnection().createStatement()) {
+                for (String sql : SCHEMA_SQL) {
+                    stmt.execute(sql);
+                }
+                if (isSharded()) {
+                    stmt.execute(ROUTES_SCHEMA_SQL);
+                }
+            } catch (SQLException e) {
+                throw new IllegalStateException("Failed to initialize database", e);
+            }
+        }
+        logger.info("Database initialized and 'users' table is ready on {} shard(s)", shards.length);
+        if (warmup) {
+            warmUp();
+        }
+        if (isSharded()) {
+            removeStaleEmailRoutes();
+        }
+        if (rowCounter != null) {
+            refreshUserRows();
+        }
+    }
 
-        try (Connection conn = getConnection(); Statement stmt = conn.createStatement()) {
-            stmt.execute(sql);
-            logger.info("Database initialized and 'users' table is ready");
+    /**
+     * Reads the users table and its lookup indexes once, so the first requests after a restart find their
+     * pages in the cache instead of on disk. Only as much as fits in the cache stays there.
+     */
+    void warmUp() {
+        long startNanos = System.nanoTime();
+        long rows = 0;
+        for (int shard = 0; shard < shards.length; shard++) {
+            try (PooledConnection conn = getConnection(shard); Statement stmt = conn.getConnection().createStatement()) {
+                for (String sql : WARMUP_SQL) {
+                    try (ResultSet rs = stmt.executeQuery(sql)) {
+                        rs.next();
+                        rows += rs.getLong(1);
+                    }
+                }
+            } catch (SQLException e) {
+                throw new IllegalStateException("Failed to warm up database", e);
+            }
+        }
+        logger.info("Database warm-up read {} index and table entries in {} ms", rows,
+                (System.nanoTime() - startNanos) / 1_000_000);
+    }
+
+    /**
+     * Deletes email routes whose user is gone or no longer has that email. They are left behind only when the
+     * process stops between writing a route and writing the user row, and lookups already skip them, but they
+     * would keep the email taken. Runs from {@link #initialize()}, before any request can be half-way through
+     * such a write. Returns the number removed.
+     */
+    int removeStaleEmailRoutes() {
+        long startNanos = System.nanoTime();
+        int removed = 0;
+        long checked = 0;
+        try {
+            for (int routeShard = 0; routeShard < shards.length; routeShard++) {
+                List<String> keys = new ArrayList<>(batchSize);
+                List<Long> ids = new ArrayList<>(batchSize);
+                String afterKey = "";
+                do {
+                    keys.clear();
+                    ids.clear();
+                    try (PooledConnection conn = getConnection(routeShard)) {
+                        PreparedStatement ps = conn.prepare(LIST_ROUTES_PAGE_SQL);
+                        ps.setString(1, afterKey);
+                        ps.setInt(2, batchSize);
+                        try (ResultSet rs = ps.executeQuery()) {
+                            while (rs.next()) {
+                                keys.add(rs.getString(1));
+                                ids.add(rs.getLong(2));
+                            }
+                        }
+                    }
+                    if (keys.isEmpty()) {
+                        break;
+                    }
+                    checked += keys.size();
+                    afterKey = keys.get(keys.size() - 1);
+                    Map<Long, String> emails = currentEmails(ids);
+                    for (int i = 0; i < keys.size(); i++) {
+                        if (!keys.get(i).equals(emails.get(ids.get(i)))) {
+                            removed += deleteRoute(routeShard, keys.get(i), ids.get(i)) ? 1 : 0;
+                        }
+                    }
+                } while (keys.size() == batchSize);
+            }
         } catch (SQLException e) {
-            throw new IllegalStateException("Failed to initialize database", e);
+            throw new IllegalStateException("Failed to check email routes", e);
         }
+        if (removed > 0) {
+            logger.warn("Removed {} stale email routes", removed);
+        }
+        logger.info("Checked {} email routes in {} ms", checked, (System.nanoTime() - startNanos) / 1_000_000);
+        return removed;
+    }
+
+    // Normalized email of each of the given users that exists, by id
+    private Map<Long, String> currentEmails(List<Long> ids) throws SQLException {
+        List<List<Long>> idsByShard = new ArrayList<>(shards.length);
+        for (int shard = 0; shard < shards.length; shard++) {
+            idsByShard.add(new ArrayList<>());
+        }
+        for (Long id : ids) {
+            idsByShard.get(shardOf(id)).add(id);
+        }
+        Map<Long, String> emails = new HashMap<>();
+        for (int shard = 0; shard < shards.length; shard++) {
+            if (idsByShard.get(shard).isEmpty()) {
+                continue;
+            }
+            try (PooledConnection conn = getConnection(shard)) {
+                PreparedStatement ps = conn.prepare(FIND_BY_IDS_SQL);
+                ps.setObject(1, idsByShard.get(shard).toArray(new Long[0]));
+                try (ResultSet rs = ps.executeQuery()) {
+                    while (rs.next()) {
+                        emails.put(rs.getLong(1), normalize(rs.getString(2)));
+                    }
+                }
+            }
+        }
+        return emails;
     }
 
     public void createUser(User user) {
-        String sql = "INSERT INTO users (id, name, email) VALUES (?, ?, ?)";
-        try (Connection conn = getConnection(); PreparedStatement ps = conn.prepareStatement(sql)) {
-            ps.setLong(1, user.getId());
-            ps.setString(2, user.getName());
-            ps.setString(3, user.getEmail());
-            ps.executeUpdate();
-            logger.info("User persisted: {}", user.getEmail());
+        long startNanos = System.nanoTime();
+        try {
+            claimEmail(user.getEmail(), user.getId());
+            try (PooledConnection conn = getConnection(shardOf(user.getId()))) {
+                PreparedStatement ps = conn.prepare(INSERT_USER_SQL);
+                bindUser(ps, user);
+                ps.executeUpdate();
+            } catch (SQLException e) {
+                releaseEmail(user.getEmail(), user.getId());
+                throw e;
+            }
+            changeLog.publish(UserChange.Type.CREATED, user);
+            logger.debug("User persisted: {}", user.getEmail());
         } catch (SQLException e) {
+            createUserOp.failed();
             throw new IllegalStateException("Failed to create user", e);
+        } finally {
+            createUserOp.record(startNanos);
         }
     }
 
-    public List<User> listUsers() {
-        List<User> users = new ArrayList<>();
-        String sql = "SELECT id, name, email FROM users ORDER BY id";
-        try (Connection conn = getConnection(); PreparedStatement ps = conn.prepareStatement(sql); ResultSet rs = ps.executeQuery()) {
-            while (rs.next()) {
-                users.add(new User(rs.getLong("id"), rs.getString("name"), rs.getString("email")));
+    /**
+     * Inserts users with JDBC batching in a single transaction, flushing every {@code app.db.batchSize} rows.
+     * Rows rejected by a constraint (such as a duplicate email) are reported and skipped; any other
+     * failure rolls back the whole import.
+     *
+     * <p>With several shards the email routes are inserted first, one transaction per shard, then each shard's
+     * users in parallel, one transaction per shard. Any other failure then rolls back only the shards it hit,
+     * and throws after the others have committed.
+     */
+    public BulkInsertResult createUsers(Collection<User> users) {
+        List<User> rows = users instanceof List<User> list ? list : new ArrayList<>(users);
+        List<BulkInsertResult.RowFailure> failures = new ArrayList<>();
+        int inserted;
+
+        long startNanos = System.nanoTime();
+        try {
+            if (isSharded()) {
+                inserted = insertSharded(rows, failures);
+            } else {
+                int[] all = partition(rows.size(), i -> 0)[0];
+                inserted = insertAll(0, INSERT_USER_SQL, DatabaseClient::bindUser, rows, all, failures);
+                publishCreated(rows, all, failures);
             }
         } catch (SQLException e) {
+            createUsersOp.failed();
+            throw new IllegalStateException("Failed to create users", e);
+        } finally {
+            createUsersOp.record(startNanos);
+        }
+
+        logger.info("Bulk insert persisted {} of {} users", inserted, rows.size());
+        return new BulkInsertResult(rows.size(), inserted, failures);
+    }
+
+    private int insertSharded(List<User> rows, List<BulkInsertResult.RowFailure> failures) throws SQLException {
+        // Routes first, so that a user row never exists without its route
+        int[][] byEmailShard = partition(rows.size(), i -> emailShardOf(normalize(rows.get(i).getEmail())));
+        List<List<BulkInsertResult.RowFailure>> routeFailures;
+        try {
+            routeFailures = scatter(shard -> {
+                List<BulkInsertResult.RowFailure> rejected = new ArrayList<>();
+                insertAll(shard, INSERT_ROUTE_SQL, DatabaseClient::bindRoute, rows, byEmailShard[shard], rejected);
+                return rejected;
+            });
+        } catch (SQLException e) {
+            // Some route shards may have committed; take their routes back
+            for (User user : rows) {
+                releaseEmail(user.getEmail(), user.getId());
+            }
+            throw e;
+        }
+        boolean[] rejected = new boolean[rows.size()];
+        for (List<BulkInsertResult.RowFailure> shardFailures : routeFailures) {
+            for (BulkInsertResult.RowFailure failure : shardFailures) {
+                rejected[failure.index()] = true;
+                failures.add(failure);
+            }
+        }
+
+        int[][] byShard = partition(rows.size(), i -> rejected[i] ? -1 : shardOf(rows.get(i).getId()));
+        List<List<BulkInsertResult.RowFailure>> userFailures = scatter(shard -> {
+            List<BulkInsertResult.RowFailure> shardFailures = new ArrayList<>();
+            try {
+                insertAll(shard, INSERT_USER_SQL, DatabaseClient::bindUser, rows, byShard[shard], shardFailures);
+                publishCreated(rows, byShard[shard], shardFailures);
+            } catch (SQLException e) {
+                for (int index : byShard[shard]) {
+                    releaseEmail(rows.get(index).getEmail(), rows.get(index).getId());
+                }
+                throw e;
+            }
+            return shardFailures;
+        });
+        int inserted = rows.size() - failures.size();
+        for (List<BulkInsertResult.RowFailure> shardFailures : userFailures) {
+            for (BulkInsertResult.RowFailure failure : shardFailures) {
+                User user = rows.get(failure.index());
+                releaseEmail(user.getEmail(), user.getId());
+                failures.add(failure);
+                inserted--;
+            }
+        }
+        failures.sort(Comparator.comparingInt(BulkInsertResult.RowFailure::index));
+        return inserted;
+    }
+
+    // Inserts rows[indexes] on one shard in a single transaction; rejected rows go to failures by their index
+    private int insertAll(int shard, String sql, RowBinder binder, List<User> rows, int[] indexes,
+                          List<BulkInsertResult.RowFailure> failures) throws SQLException {
+        int inserted = 0;
+        try (PooledConnection conn = getConnection(shard)) {
+            Connection connection = conn.getConnection();
+            connection.setAutoCommit(false);
+            try {
+                PreparedStatement ps = conn.prepare(sql);
+                for (int start = 0; start < indexes.length; start += batchSize) {
+                    int end = Math.min(indexes.length, start + batchSize);
+                    inserted += insertChunk(ps, binder, rows, indexes, start, end, failures);
+                }
+                connection.commit();
+            } catch (SQLException e) {
+                connection.rollback();
+                throw e;
+            }
+        }
+        return inserted;
+    }
+
+    private int insertChunk(PreparedStatement ps, RowBinder binder, List<User> rows, int[] indexes, int start,
+                            int end, List<BulkInsertResult.RowFailure> failures) throws SQLException {
+        for (int i = start; i < end; i++) {
+            binder.bind(ps, rows.get(indexes[i]));
+            ps.addBatch();
+        }
+
+        try {
+            ps.executeBatch();
+            return end - start;
+        } catch (BatchUpdateException e) {
+            ps.clearBatch();
+            // Drivers differ in whether they stop at the first bad row; re-run the failed or unprocessed
+            // rows individually so each rejection is attributed to its row with the real cause
+            int[] counts = e.getUpdateCounts();
+            int inserted = 0;
+            for (int i = start; i < end; i++) {
+                int offset = i - start;
+                if (offset < counts.length && counts[offset] != Statement.EXECUTE_FAILED) {
+                    inserted++;
+                } else {
+                    inserted += insertSingle(ps, binder, rows.get(indexes[i]), indexes[i], failures);
+                }
+            }
+            return inserted;
+        }
+    }
+
+    private int insertSingle(PreparedStatement ps, RowBinder binder, User user, int index,
+                             List<BulkInsertResult.RowFailure> failures) throws SQLException {
+        binder.bind(ps, user);
+        try {
+            ps.executeUpdate();
+            return 1;
+        } catch (SQLException e) {
+            if (!isConstraintViolation(e)) {
+                throw e;
+            }
+            failures.add(new BulkInsertResult.RowFailure(index, user.getEmail(), describeConstraintViolation(e)));
+            return 0;
+        }
+    }
+
+    // Row indexes 0..count-1 grouped by shard; a shard of -1 leaves the row out
+    private int[][] partition(int count, IntUnaryOperator shardOfRow) {
+        int[] sizes = new int[shards.length];
+        int[] rowShards = new int[count];
+        for (int i = 0; i < count; i++) {
+            rowShards[i] = shardOfRow.applyAsInt(i);
+            if (rowShards[i] >= 0) {
+                sizes[rowShards[i]]++;
+            }
+        }
+        int[][] groups = new int[shards.length][];
+        for (int shard = 0; shard < shards.length; shard++) {
+            groups[shard] = new int[sizes[shard]];
+            sizes[shard] = 0;
+        }
+        for (int i = 0; i < count; i++) {
+            if (rowShards[i] >= 0) {
+                groups[rowShards[i]][sizes[rowShards[i]]++] = i;
+            }
+        }
+        return groups;
+    }
+
+    // Publishes rows[indexes] except the rejected ones; both are in ascending index order
+    private void publishCreated(List<User> rows, int[] indexes, List<BulkInsertResult.RowFailure> rejected) {
+        if (!changeLog.isEnabled()) {
+            return;
+        }
+        int next = 0;
+        for (int index : indexes) {
+            if (next < rejected.size() && rejected.get(next).index() == index) {
+                next++;
+            } else {
+                changeLog.publish(UserChange.Type.CREATED, rows.get(index));
+            }
+        }
+    }
+
+    private static void bindUser(PreparedStatement ps, User user) throws SQLException {
+        ps.setLong(1, user.getId());
+        ps.setString(2, user.getName());
+        ps.setString(3, user.getEmail());
+    }
+
+    private static void bindRoute(PreparedStatement ps, User user) throws SQLException {
+        ps.setString(1, normalize(user.getEmail()));
+        ps.setLong(2, user.getId());
+    }
+
+    private static User readUser(ResultSet rs) throws SQLException {
+        return new User(rs.getLong("id"), rs.getString("name"), rs.getString("email"), rs.getLong("version"));
+    }
+
+    private static boolean isConstraintViolation(SQLException e) {
+        return e.getSQLState() != null && e.getSQLState().startsWith("23");
+    }
+
+    /**
+     * Whether {@code e} rejected a row because another user already has its email: a violation of the
+     * normalized-email index or of an email route, as opposed to the id or another constraint.
+     */
+    static boolean isDuplicateEmail(SQLException e) {
+        return isConstraintViolation(e) && violatedIndex(e).contains("EMAIL");
+    }
+
+    private static String describeConstraintViolation(SQLException e) {
+        String index = violatedIndex(e);
+        if (index.contains("EMAIL")) {
+            return "Email already exists";
+        }
+        if (index.contains("PRIMARY KEY")) {
+            return "Id already exists";
+        }
+        return "Rejected by database constraint";
+    }
+
+    private static String violatedIndex(SQLException e) {
+        String message = e.getMessage() == null ? "" : e.getMessage().toUpperCase();
+        // Only up to the index's column list: the row values and statement that follow may contain anything
+        int columns = message.indexOf(')');
+        return columns >= 0 ? message.substring(0, columns) : message;
+    }
+
+    public List<User> listUsers() {
+        long startNanos = System.nanoTime();
+        try {
+            return merge(scatter(shard -> queryUsers(shard, LIST_USERS_SQL, ps -> { })), BY_ID, Integer.MAX_VALUE);
+        } catch (SQLException e) {
+            listUsersOp.failed();
             throw new IllegalStateException("Failed to list users", e);
+        } finally {
+            listUsersOp.record(startNanos);
+        }
+    }
+
+    /**
+     * Returns up to {@code limit} users with ids greater than {@code afterId}, in id order (keyset pagination).
+     * With several shards each returns up to {@code limit} and the first {@code limit} of their merge are kept.
+     */
+    public List<User> listUsers(long afterId, int limit) {
+        long startNanos = System.nanoTime();
+        try {
+            return merge(scatter(shard -> queryUsers(shard, LIST_USERS_PAGE_SQL, ps -> {
+                ps.setLong(1, afterId);
+                ps.setInt(2, limit);
+            })), BY_ID, limit);
+        } catch (SQLException e) {
+            listUsersPageOp.failed();
+            throw new IllegalStateException("Failed to list users", e);
+        } finally {
+            listUsersPageOp.record(startNanos);
         }
-        return users;
     }
 
+    /**
+     * Hands every user with an id greater than {@code afterId} to the consumer, in id order, as rows come off
+     * the cursor. Nothing is accumulated, so memory use does not depend on table size; the connection is held
+     * until the consumer has seen the last row. With several shards one cursor per shard is open at a time, and
+     * the next user is always the lowest id at the head of any of them.
+     */
+    public void forEachUser(long afterId, Consumer<User> consumer) {
+        long startNanos = System.nanoTime();
+        List<PooledConnection> connections = new ArrayList<>(shards.length);
+        List<ResultSet> cursors = new ArrayList<>(shards.length);
+        try {
+            PriorityQueue<RowCursor> heads = new PriorityQueue<>(shards.length,
+                    (a, b) -> Long.compare(a.head.getId(), b.head.getId()));
+            for (int shard = 0; shard < shards.length; shard++) {
+                PooledConnection conn = getConnection(shard);
+                connections.add(conn);
+                PreparedStatement ps = conn.prepare(LIST_USERS_AFTER_SQL);
+                ps.setFetchSize(fetchSize);
+                ps.setLong(1, afterId);
+                RowCursor cursor = new RowCursor(ps.executeQuery());
+                cursors.add(cursor.rs);
+                if (cursor.advance()) {
+                    heads.add(cursor);
+                }
+            }
+            while (!heads.isEmpty()) {
+                RowCursor cursor = heads.poll();
+                consumer.accept(cursor.head);
+                if (cursor.advance()) {
+                    heads.add(cursor);
+                }
+            }
+        } catch (SQLException e) {
+            forEachUserOp.failed();
+            throw new IllegalStateException("Failed to stream users", e);
+        } finally {
+            closeAll(cursors, connections);
+            forEachUserOp.record(startNanos);
+        }
+    }
+
+    private static void closeAll(List<ResultSet> cursors, List<PooledConnection> connections) {
+        for (ResultSet rs : cursors) {
+            try {
+                rs.close();
+            } catch (SQLException e) {
+                logger.debug("Failed to close cursor", e);
+            }
+        }
+        for (PooledConnection conn : connections) {
+            conn.close();
+        }
+    }
+
+    /**
+     * Case-insensitive email lookup through the normalized-email index; with several shards, through the email's
+     * route and then the user's shard.
+     */
     public User findByEmail(String email) {
-        String sql = "SELECT id, name, email FROM users WHERE email = ?";
-        try (Connection conn = getConnection(); PreparedStatement ps = conn.prepareStatement(sql)) {
-            ps.setString(1, email);
-            try (ResultSet rs = ps.executeQuery()) {
-                if (rs.next()) {
-                    return new User(rs.getLong("id"), rs.getString("name"), rs.getString("email"));
+        long startNanos = System.nanoTime();
+        try {
+            if (!isSharded()) {
+                return first(queryUsers(0, FIND_BY_EMAIL_SQL, ps -> ps.setString(1, email)));
+            }
+            String key = normalize(email);
+            Long userId = null;
+            try (PooledConnection conn = getConnection(emailShardOf(key))) {
+                PreparedStatement ps = conn.prepare(FIND_ROUTE_SQL);
+                ps.setString(1, key);
+                try (ResultSet rs = ps.executeQuery()) {
+                    if (rs.next()) {
+                        userId = rs.getLong(1);
+                    }
                 }
             }
+            if (userId == null) {
+                return null;
+            }
+            long id = userId;
+            // Matching the email as well skips a route whose user has since moved to another email
+            return first(queryUsers(shardOf(id), FIND_BY_ID_AND_EMAIL_SQL, ps -> {
+                ps.setLong(1, id);
+                ps.setString(2, email);
+            }));
         } catch (SQLException e) {
+            findByEmailOp.failed();
             throw new IllegalStateException("Failed to find user by email", e);
+        } finally {
+            findByEmailOp.record(startNanos);
         }
-        return null;
     }
 
-    public void updateEmail(long userId, String newEmail) {
-        String sql = "UPDATE users SET email = ? WHERE id = ?";
-        try (Connection conn = getConnection(); PreparedStatement ps = conn.prepareStatement(sql)) {
-            ps.setString(1, newEmail);
-            ps.setLong(2, userId);
-            ps.executeUpdate();
-            logger.info("User {} email updated to {}", userId, newEmail);
+    /**
+     * Up to {@code limit} users whose email starts with {@code prefix}, ignoring case, in email order.
+     */
+    public List<User> findByEmailPrefix(String prefix, int limit) {
+        long startNanos = System.nanoTime();
+        try {
+            return findByPrefix(FIND_BY_EMAIL_PREFIX_SQL, BY_EMAIL, prefix, limit);
         } catch (SQLException e) {
+            findByEmailPrefixOp.failed();
+            throw new IllegalStateException("Failed to search users by email", e);
+        } finally {
+            findByEmailPrefixOp.record(startNanos);
+        }
+    }
+
+    /**
+     * Up to {@code limit} users whose name starts with {@code prefix}, ignoring case, in name order.
+     */
+    public List<User> findByNamePrefix(String prefix, int limit) {
+        long startNanos = System.nanoTime();
+        try {
+            return findByPrefix(FIND_BY_NAME_PREFIX_SQL, BY_NAME, prefix, limit);
+        } catch (SQLException e) {
+            findByNamePrefixOp.failed();
+            throw new IllegalStateException("Failed to search users by name", e);
+        } finally {
+            findByNamePrefixOp.record(startNanos);
+        }
+    }
+
+    private List<User> findByPrefix(String sql, Comparator<User> order, String prefix, int limit) throws SQLException {
+        return merge(scatter(shard -> queryUsers(shard, sql, ps -> {
+            ps.setString(1, prefix);
+            ps.setString(2, prefix + Character.MAX_VALUE);
+            ps.setInt(3, limit);
+        })), order, limit);
+    }
+
+    /**
+     * Primary-key point lookup.
+     */
+    public User findById(long userId) {
+        long startNanos = System.nanoTime();
+        try {
+            return first(queryUsers(shardOf(userId), FIND_BY_ID_SQL, ps -> ps.setLong(1, userId)));
+        } catch (SQLException e) {
+            findByIdOp.failed();
+            throw new IllegalStateException("Failed to find user by id", e);
+        } finally {
+            findByIdOp.record(startNanos);
+        }
+    }
+
+    /**
+     * Updates the email of the given user; returns false when no row has that id.
+     */
+    public boolean updateEmail(long userId, String newEmail) {
+        long startNanos = System.nanoTime();
+        try {
+            boolean matched;
+            if (isSharded()) {
+                matched = updateRouted(userId, null, newEmail, -1).isUpdated();
+            } else if (changeLog.isEnabled()) {
+                // The change log needs the updated row
+                matched = published(UserChange.Type.UPDATED, first(queryUsers(0, UPDATE_EMAIL_RETURNING_SQL, ps -> {
+                    ps.setString(1, newEmail);
+                    ps.setLong(2, userId);
+                }))) != null;
+            } else {
+                try (PooledConnection conn = getConnection(0)) {
+                    PreparedStatement ps = conn.prepare(UPDATE_EMAIL_SQL);
+                    ps.setString(1, newEmail);
+                    ps.setLong(2, userId);
+                    matched = ps.executeUpdate() > 0;
+                }
+            }
+            if (logger.isDebugEnabled()) {
+                // Guarded so the id and flag are not boxed when debug is off
+                logger.debug("User {} email updated to {} (matched={})", userId, newEmail, matched);
+            }
+            return matched;
+        } catch (SQLException e) {
+            updateEmailOp.failed();
             throw new IllegalStateException("Failed to update user email", e);
+        } finally {
+            updateEmailOp.record(startNanos);
         }
     }
 
+    /**
+     * Updates the email and returns the updated row in the same round trip, or null when no row has that id.
+     */
+    public User updateEmailAndGet(long userId, String newEmail) {
+        long startNanos = System.nanoTime();
+        try {
+            User updated = isSharded() ? updateRouted(userId, null, newEmail, -1).user()
+                    : published(UserChange.Type.UPDATED, first(queryUsers(0, UPDATE_EMAIL_RETURNING_SQL, ps -> {
+                        ps.setString(1, newEmail);
+                        ps.setLong(2, userId);
+                    })));
+            if (updated != null && logger.isDebugEnabled()) {
+                logger.debug("User {} email updated to {}", userId, newEmail);
+            }
+            return updated;
+        } catch (SQLException e) {
+            updateEmailAndGetOp.failed();
+            throw new IllegalStateException("Failed to update user email", e);
+        } finally {
+            updateEmailAndGetOp.record(startNanos);
+        }
+    }
+
+    /**
+     * Stores {@code user}'s name and email only if the row still has {@code user.getVersion()}, incrementing the
+     * version. One statement does the check and the write, so no lock is held between a read and this update.
+     * On a conflict the result carries the current row, read right after the failed attempt.
+     */
+    public UpdateResult updateIfVersion(User user) {
+        long startNanos = System.nanoTime();
+        try {
+            if (isSharded()) {
+                return updateRouted(user.getId(), user.getName(), user.getEmail(), user.getVersion());
+            }
+            try (PooledConnection conn = getConnection(0)) {
+                PreparedStatement ps = conn.prepare(UPDATE_IF_VERSION_SQL);
+                ps.setString(1, user.getName());
+                ps.setString(2, user.getEmail());
+                ps.setLong(3, user.getId());
+                ps.setLong(4, user.getVersion());
+                try (ResultSet rs = ps.executeQuery()) {
+                    if (rs.next()) {
+                        return new UpdateResult(UpdateResult.Status.UPDATED, published(UserChange.Type.UPDATED, readUser(rs)));
+                    }
+                }
+                PreparedStatement find = conn.prepare(FIND_BY_ID_SQL);
+                find.setLong(1, user.getId());
+                try (ResultSet rs = find.executeQuery()) {
+                    if (rs.next()) {
+                        if (logger.isDebugEnabled()) {
+                            logger.debug("User {} update at version {} lost to version {}", user.getId(),
+                                    user.getVersion(), rs.getLong("version"));
+                        }
+                        return new UpdateResult(UpdateResult.Status.CONFLICT, readUser(rs));
+                    }
+                }
+                return new UpdateResult(UpdateResult.Status.NOT_FOUND, null);
+            }
+        } catch (SQLException e) {
+            updateIfVersionOp.failed();
+            throw new IllegalStateException("Failed to update user", e);
+        } finally {
+            updateIfVersionOp.record(startNanos);
+        }
+    }
+
+    /**
+     * Sharded update of a user's name (null keeps it) and email, if it is at {@code expectedVersion} (-1 for
+     * any). The new email's route is claimed before the row is locked and given back if the update does not
+     * happen; the old route is released after the commit. No connection is held while another is acquired, so
+     * concurrent updates cannot take a pool's last connections and then wait on it for more.
+     */
+    private UpdateResult updateRouted(long userId, String name, String email, long expectedVersion)
+            throws SQLException {
+        boolean claimed = claimEmailIfNotHeld(email, userId);
+        User current;
+        User updated = null;
+        try (PooledConnection conn = getConnection(shardOf(userId))) {
+            Connection connection = conn.getConnection();
+            connection.setAutoCommit(false);
+            try {
+                current = first(query(conn, LOCK_USER_SQL, ps -> ps.setLong(1, userId)));
+                if (current != null && (expectedVersion < 0 || current.getVersion() == expectedVersion)) {
+                    User locked = current;
+                    updated = first(query(conn, UPDATE_IF_VERSION_SQL, ps -> {
+                        ps.setString(1, name == null ? locked.getName() : name);
+                        ps.setString(2, email);
+                        ps.setLong(3, userId);
+                        ps.setLong(4, locked.getVersion());
+                    }));
+                }
+                if (updated != null) {
+                    connection.commit();
+                } else {
+                    connection.rollback();
+                }
+            } catch (SQLException e) {
+                connection.rollback();
+                throw e;
+            }
+        } catch (SQLException e) {
+            if (claimed) {
+                releaseEmail(email, userId);
+            }
+            throw e;
+        }
+        if (updated == null) {
+            if (claimed) {
+                releaseEmail(email, userId);
+            }
+            return current == null ? new UpdateResult(UpdateResult.Status.NOT_FOUND, null)
+                    : new UpdateResult(UpdateResult.Status.CONFLICT, current);
+        }
+        if (!normalize(current.getEmail()).equals(normalize(email))) {
+            releaseEmail(current.getEmail(), userId);
+            if (!claimed) {
+                // The route was already this user's, claimed by a concurrent update of it that may have failed
+                // and given it back since
+                ensureEmailHeld(email, userId);
+            }
+        }
+        return new UpdateResult(UpdateResult.Status.UPDATED, published(UserChange.Type.UPDATED, updated));
+    }
+
     public void deleteUser(long userId) {
-        String sql = "DELETE FROM users WHERE id = ?";
-        try (Connection conn = getConnection(); PreparedStatement ps = conn.prepareStatement(sql)) {
-            ps.setLong(1, userId);
-            ps.executeUpdate();
-            logger.info("User {} deleted", userId);
+        long startNanos = System.nanoTime();
+        try {
+            if (isSharded() || changeLog.isEnabled()) {
+                // The email route and the change log need the deleted row
+                User deleted = first(queryUsers(shardOf(userId), DELETE_USER_RETURNING_SQL, ps -> ps.setLong(1, userId)));
+                if (deleted != null) {
+                    releaseEmail(deleted.getEmail(), userId);
+                    deleted.setVersion(deleted.getVersion() + 1);
+                    changeLog.publish(UserChange.Type.DELETED, deleted);
+                }
+            } else {
+                try (PooledConnection conn = getConnection(0)) {
+                    PreparedStatement ps = conn.prepare(DELETE_USER_SQL);
+                    ps.setLong(1, userId);
+                    ps.executeUpdate();
+                }
+            }
+            if (logger.isDebugEnabled()) {
+                logger.debug("User {} deleted", userId);
+            }
         } catch (SQLException e) {
+            deleteUserOp.failed();
             throw new IllegalStateException("Failed to delete user", e);
+        } finally {
+            deleteUserOp.record(startNanos);
+        }
+    }
+
+    public long countUsers() {
+        long startNanos = System.nanoTime();
+        try {
+            long count = 0;
+            for (long shardCount : scatter(this::countRows)) {
+                count += shardCount;
+            }
+            return count;
+        } catch (SQLException e) {
+            countUsersOp.failed();
+            throw new IllegalStateException("Failed to count users", e);
+        } finally {
+            countUsersOp.record(startNanos);
+        }
+    }
+
+    /**
+     * Recounts the users for the {@code db_users_rows} gauge. A failed count keeps the last value.
+     */
+    private void refreshUserRows() {
+        try {
+            userRows = countUsers();
+        } catch (RuntimeException e) {
+            logger.debug("Failed to refresh the users row count", e);
+        }
+    }
+
+    private long countRows(int shard) throws SQLException {
+        try (PooledConnection conn = getConnection(shard); ResultSet rs = conn.prepare(COUNT_USERS_SQL).executeQuery()) {
+            rs.next();
+            return rs.getLong(1);
+        }
+    }
+
+    /**
+     * Current connection pool metrics, summed over the shards. The average wait is weighted by acquisitions.
+     */
+    public ConnectionPool.Stats poolStats() {
+        if (shards.length == 1) {
+            return shards[0].stats();
+        }
+        int active = 0;
+        int idle = 0;
+        int open = 0;
+        int maxSize = 0;
+        int waiting = 0;
+        long acquired = 0;
+        long timeouts = 0;
+        double totalWaitMillis = 0;
+        double maxWaitMillis = 0;
+        long hits = 0;
+        long misses = 0;
+        for (ConnectionPool shard : shards) {
+            ConnectionPool.Stats stats = shard.stats();
+            active += stats.active();
+            idle += stats.idle();
+            open += stats.open();
+            maxSize += stats.maxSize();
+            waiting += stats.waiting();
+            acquired += stats.acquired();
+            timeouts += stats.timeouts();
+            totalWaitMillis += stats.averageWaitMillis() * stats.acquired();
+            maxWaitMillis = Math.max(maxWaitMillis, stats.maxWaitMillis());
+            hits += stats.statementCacheHits();
+            misses += stats.statementCacheMisses();
+        }
+        return new ConnectionPool.Stats(active, idle, open, maxSize, waiting, acquired, timeouts,
+                acquired == 0 ? 0 : totalWaitMillis / acquired, maxWaitMillis, hits, misses);
+    }
+
+    public int shardCount() {
+        return shards.length;
+    }
+
+    /**
+     * Closes the pools. A file-backed database is shut down first, which writes pending commits and compacts
+     * the file for up to {@code app.db.file.maxCompactTimeMs}.
+     */
+    @PreDestroy
+    public void close() {
+        if (rowCounter != null) {
+            rowCounter.shutdownNow();
+        }
+        if (shardExecutor != null) {
+            shardExecutor.shutdown();
+        }
+        for (int shard = 0; shard < shards.length; shard++) {
+            if (fileMode) {
+                try (PooledConnection conn = getConnection(shard); Statement stmt = conn.getConnection().createStatement()) {
+                    stmt.execute("SHUTDOWN");
+                } catch (SQLException e) {
+                    logger.warn("Database shutdown failed", e);
+                }
+            }
+            shards[shard].close();
+        }
+    }
+
+    private boolean isSharded() {
+        return shards.length > 1;
+    }
+
+    private PooledConnection getConnection(int shard) throws SQLException {
+        long start = System.nanoTime();
+        try {
+            return shards[shard].acquire();
+        } finally {
+            CONNECTION_WAIT.get()[0] += System.nanoTime() - start;
+        }
+    }
+
+    private int shardOf(long userId) {
+        return shards.length == 1 ? 0 : shardOf(userId, shards.length);
+    }
+
+    private int emailShardOf(String key) {
+        return shards.length == 1 || key == null ? 0 : shardOf(key.hashCode(), shards.length);
+    }
+
+    /**
+     * The shard for a key among {@code count}. The key is mixed first, because snowflake ids vary mostly in their
+     * high bits. The mapping is fixed: changing the number of shards needs the users exported and imported again.
+     */
+    static int shardOf(long key, int count) {
+        // The MurmurHash3 64-bit finalizer
+        key ^= key >>> 33;
+        key *= 0xff51afd7ed558ccdL;
+        key ^= key >>> 33;
+        key *= 0xc4ceb9fe1a85ec53L;
+        key ^= key >>> 33;
+        return (int) Long.remainderUnsigned(key, count);
+    }
+
+    static String normalize(String value) {
+        return value == null ? null : value.toLowerCase(Locale.ROOT);
+    }
+
+    // Reserves email for userId in the email routes; a taken email fails with the route table's constraint
+    // violation. Does nothing with a single database, whose unique index does the same job.
+    private void claimEmail(String email, long userId) throws SQLException {
+        if (!isSharded()) {
+            return;
+        }
+        String key = normalize(email);
+        try (PooledConnection conn = getConnection(emailShardOf(key))) {
+            insertRoute(conn, key, userId);
+        }
+    }
+
+    // Like claimEmail, but an email userId already holds is kept as it is; returns whether a route was added
+    private boolean claimEmailIfNotHeld(String email, long userId) throws SQLException {
+        String key = normalize(email);
+        try (PooledConnection conn = getConnection(emailShardOf(key))) {
+            PreparedStatement find = conn.prepare(FIND_ROUTE_SQL);
+            find.setString(1, key);
+            try (ResultSet rs = find.executeQuery()) {
+                if (rs.next() && rs.getLong(1) == userId) {
+                    return false;
+                }
+            }
+            insertRoute(conn, key, userId);
+            return true;
         }
     }
 
-    private Connection getConnection() throws SQLException {
-        return DriverManager.getConnection(url, username, password);
+    private void ensureEmailHeld(String email, long userId) {
+        try {
+            claimEmailIfNotHeld(email, userId);
+        } catch (SQLException e) {
+            logger.warn("Failed to restore email route for user {}", userId, e);
+        }
+    }
+
+    private static void insertRoute(PooledConnection conn, String key, long userId) throws SQLException {
+        PreparedStatement ps = conn.prepare(INSERT_ROUTE_SQL);
+        ps.setString(1, key);
+        ps.setLong(2, userId);
+        ps.executeUpdate();
+    }
+
+    // Frees email if userId holds it. Best effort: a route left behind is skipped by lookups and removed at the
+    // next startup.
+    private void releaseEmail(String email, long userId) {
+        if (!isSharded() || email == null) {
+            return;
+        }
+        String key = normalize(email);
+        try {
+            deleteRoute(emailShardOf(key), key, userId);
+        } catch (SQLException e) {
+            logger.warn("Failed to release email route for user {}", userId, e);
+        }
+    }
+
+    private boolean deleteRoute(int shard, String key, long userId) throws SQLException {
+        try (PooledConnection conn = getConnection(shard)) {
+            PreparedStatement ps = conn.prepare(DELETE_ROUTE_SQL);
+            ps.setString(1, key);
+            ps.setLong(2, userId);
+            return ps.executeUpdate() > 0;
+        }
+    }
+
+    private List<User> queryUsers(int shard, String sql, Parameters parameters) throws SQLException {
+        try (PooledConnection conn = getConnection(shard)) {
+            return query(conn, sql, parameters);
+        }
+    }
+
+    private static List<User> query(PooledConnection conn, String sql, Parameters parameters) throws SQLException {
+        List<User> users = new ArrayList<>();
+        PreparedStatement ps = conn.prepare(sql);
+        parameters.bind(ps);
+        try (ResultSet rs = ps.executeQuery()) {
+            while (rs.next()) {
+                users.add(readUser(rs));
+            }
+        }
+        return users;
+    }
+
+    // Publishes a committed change, if there is one, and returns its user
+    private User published(UserChange.Type type, User user) {
+        if (user != null) {
+            changeLog.publish(type, user);
+        }
+        return user;
+    }
+
+    private static User first(List<User> users) {
+        return users.isEmpty() ? null : users.get(0);
+    }
+
+    /**
+     * Runs {@code task} for every shard, the first on the calling thread and the rest in parallel, and returns
+     * the results in shard order. Waits for every task before throwing the first failure.
+     */
+    private <T> List<T> scatter(ShardTask<T> task) throws SQLException {
+        if (shards.length == 1) {
+            return Collections.singletonList(task.run(0));
+        }
+        List<Future<T>> futures = new ArrayList<>(shards.length - 1);
+        for (int shard = 1; shard < shards.length; shard++) {
+            int target = shard;
+            futures.add(shardExecutor.submit(() -> task.run(target)));
+        }
+        List<T> results = new ArrayList<>(shards.length);
+        SQLException failure = null;
+        try {
+            results.add(task.run(0));
+        } catch (SQLException | RuntimeException e) {
+            failure = addFailure(null, e);
+        }
+        for (Future<T> future : futures) {
+            try {
+                results.add(future.get());
+            } catch (ExecutionException e) {
+                failure = addFailure(failure, e.getCause());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                futures.forEach(pending -> pending.cancel(true));
+                throw new SQLException("Interrupted while waiting for shards", e);
+            }
+        }
+        if (failure != null) {
+            throw failure;
+        }
+        return results;
+    }
+
+    private static SQLException addFailure(SQLException first, Throwable cause) {
+        SQLException failure = cause instanceof SQLException e ? e : new SQLException("Shard query failed", cause);
+        if (first == null) {
+            return failure;
+        }
+        first.addSuppressed(failure);
+        return first;
+    }
+
+    /**
+     * K-way merge of lists each sorted by {@code order}, keeping the first {@code limit} users.
+     */
+    static List<User> merge(List<List<User>> parts, Comparator<User> order, int limit) {
+        if (parts.size() == 1 && parts.get(0).size() <= limit) {
+            return parts.get(0);
+        }
+        PriorityQueue<ListCursor> heads = new PriorityQueue<>(parts.size(),
+                (a, b) -> order.compare(a.head(), b.head()));
+        int total = 0;
+        for (List<User> part : parts) {
+            total += part.size();
+            if (!part.isEmpty()) {
+                heads.add(new ListCursor(part));
+            }
+        }
+        List<User> merged = new ArrayList<>(Math.min(total, limit));
+        while (merged.size() < limit && !heads.isEmpty()) {
+            ListCursor cursor = heads.poll();
+            merged.add(cursor.next());
+            if (cursor.hasNext()) {
+                heads.add(cursor);
+            }
+        }
+        return merged;
+    }
+
+    @FunctionalInterface
+    private interface ShardTask<T> {
+        T run(int shard) throws SQLException;
+    }
+
+    @FunctionalInterface
+    private interface Parameters {
+        void bind(PreparedStatement ps) throws SQLException;
+    }
+
+    @FunctionalInterface
+    private interface RowBinder {
+        void bind(PreparedStatement ps, User user) throws SQLException;
+    }
+
+    private static final class ListCursor {
+        private final List<User> users;
+        private int position;
+
+        ListCursor(List<User> users) {
+            this.users = users;
+        }
+
+        User head() {
+            return users.get(position);
+        }
+
+        User next() {
+            return users.get(position++);
+        }
+
+        boolean hasNext() {
+            return position < users.size();
+        }
+    }
+
+    private static final class RowCursor {
+        private final ResultSet rs;
+        private User head;
+
+        RowCursor(ResultSet rs) {
+            this.rs = rs;
+        }
+
+        boolean advance() throws SQLException {
+            head = rs.next() ? readUser(rs) : null;
+            return head != null;
+        }
+    }
+
+    /**
+     * Latency timer and failure counter for one public method, resolved once at construction, and optionally its
+     * feed into the adaptive concurrency limit.
+     */
+    private static final class Operation {
+        private final MetricsRegistry.Timer timer;
+        private final MetricsRegistry.Counter errors;
+        // Null for calls that do not feed the concurrency limit
+        private final AdaptiveConcurrencyLimit.Latency latency;
+
+        Operation(MetricsRegistry metrics, String method) {
+            this(metrics, method, null);
+        }
+
+        Operation(MetricsRegistry metrics, String method, AdaptiveConcurrencyLimit concurrencyLimit) {
+            this.timer = metrics.timer("db_client_seconds", "DatabaseClient call latency", "method", method);
+            this.errors = metrics.counter("db_client_errors_total", "DatabaseClient calls that failed", "method", method);
+            this.latency = concurrencyLimit == null || !concurrencyLimit.isEnabled() ? null : concurrencyLimit.latency();
+        }
+
+        void record(long startNanos) {
+            long now = System.nanoTime();
+            timer.record(now - startNanos);
+            long[] waited = CONNECTION_WAIT.get();
+            if (latency != null) {
+                latency.record(now - startNanos, waited[0], now);
+            }
+            waited[0] = 0;
+        }
+
+        void failed() {
+            errors.increment();
+        }
     }
-}
\ No newline at end of file
+}
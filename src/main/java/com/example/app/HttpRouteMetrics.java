@@ -0,0 +1,62 @@
+package com.example.app;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Per-route request timers and 4xx/5xx counters, shared by the servlet and reactive request filters so both
+ * stacks report the same series. Routes are keyed by the matched pattern (for example {@code /api/users/{id}}),
+ * never the raw path, so the number of series stays bounded.
+ */
+final class HttpRouteMetrics {
+
+    private static final String UNMATCHED = "UNMATCHED";
+
+    private final MetricsRegistry metrics;
+    private final Map<String, Map<String, Route>> routes = new ConcurrentHashMap<>();
+
+    HttpRouteMetrics(MetricsRegistry metrics) {
+        this.metrics = metrics;
+    }
+
+    /**
+     * Records one request; {@code pattern} is null when no handler matched.
+     */
+    void record(String method, String pattern, int status, long startNanos) {
+        Route route = route(method, pattern);
+        route.timer.recordSince(startNanos);
+        if (status >= 500) {
+            route.serverErrors.increment();
+        } else if (status >= 400) {
+            route.clientErrors.increment();
+        }
+    }
+
+    private Route route(String method, String pattern) {
+        String uri = pattern == null ? UNMATCHED : pattern;
+        Map<String, Route> byUri = routes.get(method);
+        if (byUri == null) {
+            byUri = routes.computeIfAbsent(method, m -> new ConcurrentHashMap<>());
+        }
+        Route route = byUri.get(uri);
+        if (route == null) {
+            route = byUri.computeIfAbsent(uri, u -> new Route(metrics, method, u));
+        }
+        return route;
+    }
+
+    private static final class Route {
+        final MetricsRegistry.Timer timer;
+        final MetricsRegistry.Counter clientErrors;
+        final MetricsRegistry.Counter serverErrors;
+
+        Route(MetricsRegistry metrics, String method, String uri) {
+            this.timer = metrics.timer("http_server_requests_seconds", "HTTP request latency",
+                    "method", method, "uri", uri);
+            this.clientErrors = metrics.counter("http_server_errors_total", "HTTP responses with 4xx or 5xx status",
+                    "method", method, "uri", uri, "status", "4xx");
+            this.serverErrors = metrics.counter("http_server_errors_total", "HTTP responses with 4xx or 5xx status",
+                    "method", method, "uri", uri, "status", "5xx");
+        }
+    }
+}
@@ -0,0 +1,9 @@
+package com.example.app;
+
+/**
+ * Source of unique user ids. Implementations must be safe to call from many threads at once.
+ */
+public interface IdGenerator {
+
+    long nextId();
+}
@@ -0,0 +1,95 @@
+package com.example.app;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Concurrent log-linear latency histogram in the style of HdrHistogram. Each power-of-two range of
+ * nanoseconds is split into 32 equal buckets, so any recorded value is reported within about 3% of its
+ * true value, from 1 ns up to about 73 minutes (longer values land in the top bucket).
+ *
+ * <p>{@link #record(long)} touches only preallocated atomics and never allocates.
+ */
+public class LatencyHistogram {
+
+    private static final int SUB_BUCKET_BITS = 5;
+    private static final int SUB_BUCKET_COUNT = 1 << SUB_BUCKET_BITS;
+    private static final int MAX_EXPONENT = 41;
+    static final int BUCKET_COUNT = (MAX_EXPONENT - SUB_BUCKET_BITS + 2) * SUB_BUCKET_COUNT;
+
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKET_COUNT);
+    private final LongAdder count = new LongAdder();
+    private final LongAdder sum = new LongAdder();
+    private final AtomicLong max = new AtomicLong();
+
+    public void record(long nanos) {
+        long value = Math.max(0, nanos);
+        counts.incrementAndGet(bucketIndex(value));
+        count.increment();
+        sum.add(value);
+        long current = max.get();
+        while (value > current && !max.compareAndSet(current, value)) {
+            current = max.get();
+        }
+    }
+
+    public long getCount() {
+        return count.sum();
+    }
+
+    public long getSumNanos() {
+        return sum.sum();
+    }
+
+    public long getMaxNanos() {
+        return max.get();
+    }
+
+    /**
+     * Smallest recorded bucket bound at or below which {@code percentile} (0-100) of all values fall,
+     * or 0 when nothing has been recorded.
+     */
+    public long valueAtPercentile(double percentile) {
+        long total = 0;
+        long[] snapshot = new long[BUCKET_COUNT];
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            snapshot[i] = counts.get(i);
+            total += snapshot[i];
+        }
+        if (total == 0) {
+            return 0;
+        }
+        long rank = Math.max(1, (long) Math.ceil(Math.min(100.0, percentile) / 100.0 * total));
+        long seen = 0;
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            seen += snapshot[i];
+            if (seen >= rank) {
+                return Math.min(highestValueInBucket(i), max.get());
+            }
+        }
+        return max.get();
+    }
+
+    static int bucketIndex(long value) {
+        if (value < SUB_BUCKET_COUNT) {
+            return (int) value;
+        }
+        int exponent = 63 - Long.numberOfLeadingZeros(value);
+        if (exponent > MAX_EXPONENT) {
+            return BUCKET_COUNT - 1;
+        }
+        int shift = exponent - SUB_BUCKET_BITS;
+        int subBucket = (int) (value >>> shift) - SUB_BUCKET_COUNT;
+        return (shift + 1) * SUB_BUCKET_COUNT + subBucket;
+    }
+
+    static long highestValueInBucket(int index) {
+        if (index < SUB_BUCKET_COUNT) {
+            return index;
+        }
+        int shift = index / SUB_BUCKET_COUNT - 1;
+        long lowest = (long) (SUB_BUCKET_COUNT + index % SUB_BUCKET_COUNT) << shift;
+        return lowest + (1L << shift) - 1;
+    }
+}
@@ -0,0 +1,44 @@
+package com.example.app;
+
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+/**
+ * REST controller exposing internal runtime metrics for scraping
+ */
+@RestController
+@RequestMapping("/api/metrics")
+public class MetricsController {
+
+    static final String PROMETHEUS_TEXT = "text/plain;version=0.0.4;charset=utf-8";
+
+    private final DatabaseClient databaseClient;
+    private final UserCache userCache;
+    private final MetricsRegistry metrics;
+
+    public MetricsController(DatabaseClient databaseClient, UserCache userCache, MetricsRegistry metrics) {
+        this.databaseClient = databaseClient;
+        this.userCache = userCache;
+        this.metrics = metrics;
+    }
+
+    /**
+     * Every registered timer, counter and gauge in the Prometheus text format.
+     */
+    @GetMapping(produces = PROMETHEUS_TEXT)
+    public ResponseEntity<String> scrape() {
+        return ResponseEntity.ok(metrics.scrape());
+    }
+
+    @GetMapping("/pool")
+    public ResponseEntity<ConnectionPool.Stats> getPoolStats() {
+        return ResponseEntity.ok(databaseClient.poolStats());
+    }
+
+    @GetMapping("/cache")
+    public ResponseEntity<UserCache.Stats> getCacheStats() {
+        return ResponseEntity.ok(userCache.stats());
+    }
+}
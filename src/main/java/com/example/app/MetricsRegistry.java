@@ -0,0 +1,178 @@
+package com.example.app;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.DoubleSupplier;
+import org.springframework.stereotype.Component;
+
+/**
+ * In-process registry of timers, counters and gauges, rendered in the Prometheus text format.
+ *
+ * <p>Look metrics up once and keep the returned {@link Timer} or {@link Counter}: registration builds
+ * strings, recording does not. Registering the same name and labels twice returns the existing metric.
+ */
+@Component
+public class MetricsRegistry {
+
+    private static final double[] QUANTILES = {0.5, 0.9, 0.99, 0.999};
+
+    private final Map<String, Family> families = new ConcurrentSkipListMap<>();
+    private final Map<String, Object> series = new ConcurrentHashMap<>();
+
+    /**
+     * Latency timer. Labels are given as alternating name/value pairs.
+     */
+    public Timer timer(String name, String help, String... labels) {
+        return register(name, help, "summary", labels, Timer.class, new Timer());
+    }
+
+    public Counter counter(String name, String help, String... labels) {
+        return register(name, help, "counter", labels, Counter.class, new Counter());
+    }
+
+    /**
+     * Value read from {@code supplier} on every scrape, so it must be cheap. A supplier that throws is
+     * rendered as {@code NaN} without failing the rest of the scrape.
+     */
+    public void gauge(String name, String help, DoubleSupplier supplier, String... labels) {
+        register(name, help, "gauge", labels, Gauge.class, new Gauge(supplier));
+    }
+
+    private <T> T register(String name, String help, String type, String[] labels, Class<T> kind, T metric) {
+        String labelText = formatLabels(labels);
+        Object existing = series.putIfAbsent(name + labelText, metric);
+        if (existing != null) {
+            if (!kind.isInstance(existing)) {
+                throw new IllegalStateException("Metric " + name + labelText + " is already registered as another type");
+            }
+            return kind.cast(existing);
+        }
+        families.computeIfAbsent(name, n -> new Family(help, type)).series.add(new Series(labelText, metric));
+        return metric;
+    }
+
+    private static String formatLabels(String[] labels) {
+        if (labels.length % 2 != 0) {
+            throw new IllegalArgumentException("Labels must be name/value pairs");
+        }
+        if (labels.length == 0) {
+            return "";
+        }
+        StringBuilder sb = new StringBuilder("{");
+        for (int i = 0; i < labels.length; i += 2) {
+            if (i > 0) {
+                sb.append(',');
+            }
+            sb.append(labels[i]).append("=\"");
+            String value = labels[i + 1];
+            for (int j = 0; j < value.length(); j++) {
+                char c = value.charAt(j);
+                if (c == '"' || c == '\\') {
+                    sb.append('\\');
+                }
+                sb.append(c == '\n' ? ' ' : c);
+            }
+            sb.append('"');
+        }
+        return sb.append('}').toString();
+    }
+
+    /**
+     * All metrics in the Prometheus text exposition format (version 0.0.4). Timers are summaries in seconds.
+     */
+    public String scrape() {
+        StringBuilder out = new StringBuilder(4096);
+        for (Map.Entry<String, Family> entry : families.entrySet()) {
+            String name = entry.getKey();
+            Family family = entry.getValue();
+            out.append("# HELP ").append(name).append(' ').append(family.help).append('\n');
+            out.append("# TYPE ").append(name).append(' ').append(family.type).append('\n');
+            for (Series s : family.series) {
+                if (s.metric instanceof Timer timer) {
+                    writeTimer(out, name, s.labels, timer.histogram);
+                } else if (s.metric instanceof Counter counter) {
+                    out.append(name).append(s.labels).append(' ').append(counter.count()).append('\n');
+                } else if (s.metric instanceof Gauge gauge) {
+                    out.append(name).append(s.labels).append(' ').append(gauge.read()).append('\n');
+                }
+            }
+        }
+        return out.toString();
+    }
+
+    private static void writeTimer(StringBuilder out, String name, String labels, LatencyHistogram histogram) {
+        String prefix = labels.isEmpty() ? "{" : labels.substring(0, labels.length() - 1) + ",";
+        for (double quantile : QUANTILES) {
+            out.append(name).append(prefix).append("quantile=\"").append(quantile).append("\"} ")
+                    .append(seconds(histogram.valueAtPercentile(quantile * 100))).append('\n');
+        }
+        out.append(name).append("_count").append(labels).append(' ').append(histogram.getCount()).append('\n');
+        out.append(name).append("_sum").append(labels).append(' ').append(seconds(histogram.getSumNanos())).append('\n');
+        out.append(name).append("_max").append(labels).append(' ').append(seconds(histogram.getMaxNanos())).append('\n');
+    }
+
+    private static double seconds(long nanos) {
+        return nanos / 1e9;
+    }
+
+    /**
+     * Records durations into a {@link LatencyHistogram}.
+     */
+    public static final class Timer {
+        private final LatencyHistogram histogram = new LatencyHistogram();
+
+        public void record(long nanos) {
+            histogram.record(nanos);
+        }
+
+        /**
+         * Records the time elapsed since {@code startNanos}, a {@link System#nanoTime()} reading.
+         */
+        public void recordSince(long startNanos) {
+            histogram.record(System.nanoTime() - startNanos);
+        }
+
+        public LatencyHistogram histogram() {
+            return histogram;
+        }
+    }
+
+    public static final class Counter {
+        private final LongAdder value = new LongAdder();
+
+        public void increment() {
+            value.increment();
+        }
+
+        public void add(long amount) {
+            value.add(amount);
+        }
+
+        public long count() {
+            return value.sum();
+        }
+    }
+
+    private record Gauge(DoubleSupplier supplier) {
+        double read() {
+            try {
+                return supplier.getAsDouble();
+            } catch (RuntimeException e) {
+                return Double.NaN;
+            }
+        }
+    }
+
+    private record Series(String labels, Object metric) {
+    }
+
+    private record Family(String help, String type, List<Series> series) {
+        Family(String help, String type) {
+            this(help, type, new CopyOnWriteArrayList<>());
+        }
+    }
+}
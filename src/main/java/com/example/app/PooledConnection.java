@@ -0,0 +1,155 @@
+package com.example.app;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+/**
+ * A connection borrowed from {@link ConnectionPool}. Statements returned by {@link #prepare(String)}
+ * are owned by the connection and must not be closed by the caller; result sets still must be.
+ */
+public final class PooledConnection implements AutoCloseable {
+    private static final Logger logger = LogManager.getLogger(PooledConnection.class);
+
+    private final ConnectionPool pool;
+    private final Connection connection;
+    private final int statementCacheSize;
+    private final Map<String, PreparedStatement> statements;
+    // Statements that are not, or no longer, cached; the borrower may still hold them, so they close on release
+    private final List<PreparedStatement> uncached = new ArrayList<>();
+    private long lastUsedNanos = System.nanoTime();
+    private boolean inUse;
+
+    PooledConnection(ConnectionPool pool, Connection connection, int statementCacheSize) {
+        this.pool = pool;
+        this.connection = connection;
+        this.statementCacheSize = statementCacheSize;
+        this.statements = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, PreparedStatement> eldest) {
+                if (size() > PooledConnection.this.statementCacheSize) {
+                    uncached.add(eldest.getValue());
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+
+    /**
+     * Returns a prepared statement for the SQL, reusing the cached one when present.
+     */
+    public PreparedStatement prepare(String sql) throws SQLException {
+        if (statementCacheSize == 0) {
+            PreparedStatement ps = connection.prepareStatement(sql);
+            uncached.add(ps);
+            pool.recordStatementLookup(false);
+            return ps;
+        }
+
+        PreparedStatement ps = statements.get(sql);
+        if (ps != null && !ps.isClosed()) {
+            ps.clearParameters();
+            pool.recordStatementLookup(true);
+            return ps;
+        }
+        ps = connection.prepareStatement(sql);
+        statements.put(sql, ps);
+        pool.recordStatementLookup(false);
+        return ps;
+    }
+
+    /**
+     * Underlying JDBC connection, for transaction control and ad-hoc statements.
+     */
+    public Connection getConnection() {
+        return connection;
+    }
+
+    /**
+     * Returns the connection to the pool.
+     */
+    @Override
+    public void close() {
+        if (!inUse) {
+            return;
+        }
+        inUse = false;
+        pool.release(this);
+    }
+
+    void markInUse() {
+        inUse = true;
+    }
+
+    void touch() {
+        lastUsedNanos = System.nanoTime();
+    }
+
+    long idleNanos(long now) {
+        return now - lastUsedNanos;
+    }
+
+    boolean isValid() {
+        try {
+            return !connection.isClosed();
+        } catch (SQLException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Restores auto-commit and closes per-borrow and evicted statements. Returns false if the connection is
+     * unusable.
+     */
+    boolean reset() {
+        closeUncached();
+        try {
+            if (connection.isClosed()) {
+                return false;
+            }
+            if (!connection.getAutoCommit()) {
+                connection.rollback();
+                connection.setAutoCommit(true);
+            }
+            return true;
+        } catch (SQLException e) {
+            logger.warn("Discarding database connection that failed to reset", e);
+            return false;
+        }
+    }
+
+    void closePhysical() {
+        closeUncached();
+        for (PreparedStatement ps : statements.values()) {
+            closeQuietly(ps);
+        }
+        statements.clear();
+        try {
+            connection.close();
+        } catch (SQLException e) {
+            logger.warn("Failed to close database connection", e);
+        }
+    }
+
+    private void closeUncached() {
+        for (PreparedStatement ps : uncached) {
+            closeQuietly(ps);
+        }
+        uncached.clear();
+    }
+
+    private static void closeQuietly(PreparedStatement ps) {
+        try {
+            ps.close();
+        } catch (SQLException e) {
+            logger.debug("Failed to close cached statement", e);
+        }
+    }
+}
@@ -0,0 +1,85 @@
+package com.example.app;
+
+import jakarta.servlet.AsyncEvent;
+import jakarta.servlet.AsyncListener;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+import org.springframework.web.servlet.HandlerMapping;
+
+/**
+ * Times every HTTP request per method and matched route pattern, and counts 4xx and 5xx responses.
+ *
+ * <p>Routes are keyed by the handler mapping's pattern (for example {@code /api/users/{id}}), never the raw
+ * path, so the number of series stays bounded. Async requests are recorded when they complete.
+ */
+@Component
+// Ahead of the admission filter, so rejected requests are recorded too
+@Order(Ordered.LOWEST_PRECEDENCE - 1)
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.SERVLET)
+public class RequestMetricsFilter extends OncePerRequestFilter {
+
+    private final HttpRouteMetrics routes;
+
+    public RequestMetricsFilter(MetricsRegistry metrics) {
+        this.routes = new HttpRouteMetrics(metrics);
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+            throws ServletException, IOException {
+        long start = System.nanoTime();
+        boolean failed = true;
+        try {
+            chain.doFilter(request, response);
+            failed = false;
+        } finally {
+            if (!failed && request.isAsyncStarted()) {
+                request.getAsyncContext().addListener(new CompletionListener(request, response, start));
+            } else {
+                record(request, failed ? HttpServletResponse.SC_INTERNAL_SERVER_ERROR : response.getStatus(), start);
+            }
+        }
+    }
+
+    private void record(HttpServletRequest request, int status, long startNanos) {
+        routes.record(request.getMethod(), (String) request.getAttribute(HandlerMapping.BEST_MATCHING_PATTERN_ATTRIBUTE),
+                status, startNanos);
+    }
+
+    private final class CompletionListener implements AsyncListener {
+        private final HttpServletRequest request;
+        private final HttpServletResponse response;
+        private final long startNanos;
+
+        CompletionListener(HttpServletRequest request, HttpServletResponse response, long startNanos) {
+            this.request = request;
+            this.response = response;
+            this.startNanos = startNanos;
+        }
+
+        @Override
+        public void onComplete(AsyncEvent event) {
+            record(request, response.getStatus(), startNanos);
+        }
+
+        @Override
+        public void onTimeout(AsyncEvent event) {
+        }
+
+        @Override
+        public void onError(AsyncEvent event) {
+        }
+
+        @Override
+        public void onStartAsync(AsyncEvent event) {
+        }
+    }
+}
@@ -0,0 +1,87 @@
+package com.example.app;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.LongSupplier;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+/**
+ * Lock-free Snowflake-style id generator: 41 bits of milliseconds since 2024-01-01, 10 bits of node id
+ * and a 12-bit per-millisecond sequence, giving up to 4096 ids per millisecond per node.
+ *
+ * <p>The last issued timestamp and sequence live together in one {@link AtomicLong}, and each id is the
+ * larger of "last + 1" and "now", claimed with a single CAS. Ids never run ahead of the clock: when a
+ * millisecond's sequence runs out, or the clock steps backwards, callers wait until the clock reaches the
+ * millisecond after the last id instead of borrowing future timestamps. A step back therefore pauses id
+ * creation for as long as the step, and never produces a repeat.
+ *
+ * <p>Each generator keeps its own state, so two generators for the same node id can issue the same id. Keep one
+ * generator per node id: the Spring bean inside the application, or {@link #defaultInstance()} outside it.
+ */
+@Component
+public class SnowflakeIdGenerator implements IdGenerator {
+
+    static final long EPOCH_MILLIS = 1704067200000L;
+    static final int NODE_BITS = 10;
+    static final int SEQUENCE_BITS = 12;
+    static final long MAX_NODE_ID = (1L << NODE_BITS) - 1;
+    private static final long SEQUENCE_MASK = (1L << SEQUENCE_BITS) - 1;
+
+    private static final SnowflakeIdGenerator DEFAULT = new SnowflakeIdGenerator(0);
+
+    private final long nodeBits;
+    // Timestamp and sequence of the last issued id
+    private final AtomicLong lastState = new AtomicLong();
+    private final LongSupplier clock;
+
+    @Autowired
+    public SnowflakeIdGenerator(AppConfig config) {
+        this(config.getIdNodeId());
+    }
+
+    public SnowflakeIdGenerator(long nodeId) {
+        this(nodeId, System::currentTimeMillis);
+    }
+
+    SnowflakeIdGenerator(long nodeId, LongSupplier clock) {
+        if (nodeId < 0 || nodeId > MAX_NODE_ID) {
+            throw new IllegalArgumentException("Node id must be between 0 and " + MAX_NODE_ID + ": " + nodeId);
+        }
+        this.nodeBits = nodeId << SEQUENCE_BITS;
+        this.clock = clock;
+    }
+
+    /**
+     * Shared node-0 generator for code running outside Spring wiring. Inside the application, inject the
+     * {@link IdGenerator} bean instead: with the default node id it is also node 0, and the two do not share
+     * a sequence.
+     */
+    public static SnowflakeIdGenerator defaultInstance() {
+        return DEFAULT;
+    }
+
+    @Override
+    public long nextId() {
+        long now = (clock.getAsLong() - EPOCH_MILLIS) << SEQUENCE_BITS;
+        while (true) {
+            long last = lastState.get();
+            long next = Math.max(last + 1, now);
+            long aheadMillis = (next >>> SEQUENCE_BITS) - (now >>> SEQUENCE_BITS);
+            if (aheadMillis > 0) {
+                // Sequence exhausted or clock stepped back: wait for the clock rather than run ahead of it
+                LockSupport.parkNanos(aheadMillis == 1 ? 100_000 : TimeUnit.MILLISECONDS.toNanos(aheadMillis - 1));
+                now = (clock.getAsLong() - EPOCH_MILLIS) << SEQUENCE_BITS;
+                continue;
+            }
+            if (lastState.compareAndSet(last, next)) {
+                return ((next >>> SEQUENCE_BITS) << (NODE_BITS + SEQUENCE_BITS)) | nodeBits | (next & SEQUENCE_MASK);
+            }
+        }
+    }
+
+    static long nodeIdOf(long id) {
+        return (id >>> SEQUENCE_BITS) & MAX_NODE_ID;
+    }
+}
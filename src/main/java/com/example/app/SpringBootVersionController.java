@@ -1,6 +1,8 @@
 package com.example.app;
 
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.RequestMapping;
@@ -10,6 +12,7 @@ import org.springframework.web.bind.annotation.RestController;
  * REST controller to expose Spring Boot version information from the external API
  */
 @RestController
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.SERVLET)
 @RequestMapping("/api/springboot")
 public class SpringBootVersionController {
 
@@ -20,10 +23,9 @@ public class SpringBootVersionController {
     }
 
     @GetMapping("/versions")
-    public ResponseEntity<SpringBootVersionsResponse> getVersions() {
-        List<String> cycles = apiClient.fetchSpringBootCycles();
-        SpringBootVersionsResponse response = new SpringBootVersionsResponse(cycles);
-        return ResponseEntity.ok(response);
+    public CompletableFuture<ResponseEntity<SpringBootVersionsResponse>> getVersions() {
+        return apiClient.fetchSpringBootCyclesAsync()
+                .thenApply(cycles -> ResponseEntity.ok(new SpringBootVersionsResponse(cycles)));
     }
 
     public static class SpringBootVersionsResponse {
@@ -0,0 +1,20 @@
+package com.example.app;
+
+/**
+ * Outcome of a compare-and-set user update.
+ *
+ * @param status whether the update applied, lost to a concurrent change, or found no user
+ * @param user   the stored user after the attempt: the updated row, the current row on a conflict, or null
+ */
+public record UpdateResult(Status status, User user) {
+
+    public enum Status {
+        UPDATED,
+        CONFLICT,
+        NOT_FOUND
+    }
+
+    public boolean isUpdated() {
+        return status == Status.UPDATED;
+    }
+}
@@ -1,12 +1,14 @@
 package com.example.app;
 
 /**
- * User entity class
+ * User entity class. {@code version} starts at 0 and goes up by one with every stored update; it backs
+ * optimistic concurrency control.
  */
 public class User {
     private long id;
     private String name;
     private String email;
+    private long version;
     
     public User() {
     }
@@ -16,6 +18,11 @@ public class User {
         this.name = name;
         this.email = email;
     }
+
+    public User(long id, String name, String email, long version) {
+        this(id, name, email);
+        this.version = version;
+    }
     
     public long getId() {
         return id;
@@ -40,6 +47,14 @@ public class User {
     public void setEmail(String email) {
         this.email = email;
     }
+
+    public long getVersion() {
+        return version;
+    }
+
+    public void setVersion(long version) {
+        this.version = version;
+    }
     
     @Override
     public String toString() {
@@ -47,6 +62,7 @@ public class User {
                 "id=" + id +
                 ", name='" + name + '\'' +
                 ", email='" + email + '\'' +
+                ", version=" + version +
                 '}';
     }
 }
@@ -0,0 +1,445 @@
+package com.example.app;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+/**
+ * Compact binary export and import of the users table, for backups and copying users between environments.
+ *
+ * <p>Layout (big-endian):
+ * <pre>
+ * header   magic "USRB" (4), version (2), flags (2; bit 0 = blocks are deflated)
+ * block    rows (4, &gt; 0), raw length (4), stored length (4), payload (stored length bytes)
+ * ...
+ * trailer  0 (4), total rows (8)
+ * </pre>
+ * A block payload holds up to {@link #DEFAULT_BLOCK_ROWS} rows column by column: every id (8 bytes each), every
+ * name length (2), every email length (2), then the UTF-8 name bytes and the UTF-8 email bytes back to back.
+ * Ids are kept, so an import restores users exactly as they were exported.
+ */
+public final class UserArchive {
+    private static final Logger logger = LogManager.getLogger(UserArchive.class);
+
+    static final int MAGIC = 0x55535242;
+    static final short VERSION = 1;
+    static final short FLAG_DEFLATE = 1;
+    static final int DEFAULT_BLOCK_ROWS = 65536;
+    static final int MAX_RECORDED_FAILURES = 1000;
+
+    private static final int HEADER_BYTES = 8;
+    private static final int BLOCK_HEADER_BYTES = 12;
+    private static final int MAX_FIELD_BYTES = 0xFFFF;
+    // Largest slice of the file mapped at once; blocks are a few MB, so one window covers many of them
+    private static final long MAP_WINDOW_BYTES = 256L << 20;
+
+    private UserArchive() {
+    }
+
+    /**
+     * Streams every user, in id order, from the database cursor into {@code out}. Returns the number of users
+     * written. The channel is not closed.
+     */
+    public static long export(DatabaseClient databaseClient, WritableByteChannel out, boolean compress) throws IOException {
+        long startNanos = System.nanoTime();
+        try (Writer writer = new Writer(out, compress, DEFAULT_BLOCK_ROWS)) {
+            try {
+                databaseClient.forEachUser(Long.MIN_VALUE, user -> {
+                    try {
+                        writer.write(user);
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                });
+            } catch (UncheckedIOException e) {
+                throw e.getCause();
+            }
+            long rows = writer.finish();
+            logger.info("Exported {} users in {} ms", rows, (System.nanoTime() - startNanos) / 1_000_000);
+            return rows;
+        }
+    }
+
+    /**
+     * Exports into {@code file}, replacing it if it exists.
+     */
+    public static long export(DatabaseClient databaseClient, Path file, boolean compress) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            return export(databaseClient, channel, compress);
+        }
+    }
+
+    /**
+     * Reads {@code file} through a memory mapping and inserts its users block by block with
+     * {@link DatabaseClient#createUsers}. Users the database rejects, such as an id or email that already
+     * exists, are counted and skipped; the first {@link #MAX_RECORDED_FAILURES} are listed in the result.
+     *
+     * <p>A file that is not an archive throws {@link IOException} before anything is inserted. A block that
+     * fails to read later on stops the import there: the blocks before it stay inserted, and the result counts
+     * them and carries the error.
+     */
+    public static ImportResult importFrom(DatabaseClient databaseClient, Path file) throws IOException {
+        long startNanos = System.nanoTime();
+        long rows = 0;
+        long inserted = 0;
+        List<RowFailure> failures = new ArrayList<>();
+        String error = null;
+        try (Reader reader = Reader.open(file)) {
+            List<User> block = new ArrayList<>();
+            while (true) {
+                try {
+                    if (!reader.next(block)) {
+                        break;
+                    }
+                } catch (IOException e) {
+                    if (rows == 0) {
+                        throw e;
+                    }
+                    logger.warn("Import stopped after {} users: {}", rows, e.getMessage());
+                    error = e.getMessage();
+                    break;
+                }
+                BulkInsertResult result = databaseClient.createUsers(block);
+                for (BulkInsertResult.RowFailure failure : result.failures()) {
+                    if (failures.size() < MAX_RECORDED_FAILURES) {
+                        // Report positions in the archive rather than in the block
+                        failures.add(new RowFailure(rows + failure.index(), failure.email(), failure.reason()));
+                    }
+                }
+                rows += block.size();
+                inserted += result.inserted();
+                block.clear();
+            }
+        }
+        logger.info("Imported {} of {} users in {} ms", inserted, rows, (System.nanoTime() - startNanos) / 1_000_000);
+        return new ImportResult(rows, inserted, rows - inserted, failures, error);
+    }
+
+    /**
+     * Outcome of an import.
+     *
+     * @param rows     users read from the archive
+     * @param inserted users written to the database
+     * @param rejected users the database refused
+     * @param failures the first rejected users, with their position in the archive
+     * @param error    why the import stopped before the end of the archive, or null when it read all of it
+     */
+    public record ImportResult(long rows, long inserted, long rejected, List<RowFailure> failures, String error) {
+
+        public boolean isComplete() {
+            return error == null;
+        }
+    }
+
+    /**
+     * A user the database refused during an import. Archives can hold more than {@code int} rows, so unlike
+     * {@link BulkInsertResult.RowFailure} the index is a long.
+     */
+    public record RowFailure(long index, String email, String reason) {
+    }
+
+    /**
+     * Encodes users into blocks and writes each block to the channel once it is full.
+     */
+    static final class Writer implements Closeable {
+        private final WritableByteChannel channel;
+        private final boolean compress;
+        private final int blockRows;
+        private final long[] ids;
+        private final char[] nameLengths;
+        private final char[] emailLengths;
+        private final Deflater deflater;
+        private byte[] names = new byte[1 << 16];
+        private byte[] emails = new byte[1 << 16];
+        private int namesLength;
+        private int emailsLength;
+        private int count;
+        private long total;
+        private ByteBuffer raw = ByteBuffer.allocateDirect(0);
+        private ByteBuffer stored = ByteBuffer.allocateDirect(0);
+
+        Writer(WritableByteChannel channel, boolean compress, int blockRows) throws IOException {
+            this.channel = channel;
+            this.compress = compress;
+            this.blockRows = blockRows;
+            this.ids = new long[blockRows];
+            this.nameLengths = new char[blockRows];
+            this.emailLengths = new char[blockRows];
+            this.deflater = compress ? new Deflater(Deflater.BEST_SPEED) : null;
+
+            ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES);
+            header.putInt(MAGIC).putShort(VERSION).putShort(compress ? FLAG_DEFLATE : 0).flip();
+            writeFully(header);
+        }
+
+        void write(User user) throws IOException {
+            byte[] name = user.getName().getBytes(StandardCharsets.UTF_8);
+            byte[] email = user.getEmail().getBytes(StandardCharsets.UTF_8);
+            if (name.length > MAX_FIELD_BYTES || email.length > MAX_FIELD_BYTES) {
+                throw new IllegalArgumentException("User " + user.getId() + " has a name or email over "
+                        + MAX_FIELD_BYTES + " bytes");
+            }
+            ids[count] = user.getId();
+            nameLengths[count] = (char) name.length;
+            emailLengths[count] = (char) email.length;
+            names = append(names, namesLength, name);
+            namesLength += name.length;
+            emails = append(emails, emailsLength, email);
+            emailsLength += email.length;
+            if (++count == blockRows) {
+                flushBlock();
+            }
+        }
+
+        private static byte[] append(byte[] column, int length, byte[] value) {
+            if (length + value.length > column.length) {
+                column = Arrays.copyOf(column, Math.max(column.length * 2, length + value.length));
+            }
+            System.arraycopy(value, 0, column, length, value.length);
+            return column;
+        }
+
+        /**
+         * Writes any partial block and the trailer; returns the number of users written.
+         */
+        long finish() throws IOException {
+            if (count > 0) {
+                flushBlock();
+            }
+            ByteBuffer trailer = ByteBuffer.allocate(12);
+            trailer.putInt(0).putLong(total).flip();
+            writeFully(trailer);
+            return total;
+        }
+
+        private void flushBlock() throws IOException {
+            int rawLength = count * 12 + namesLength + emailsLength;
+            if (raw.capacity() < BLOCK_HEADER_BYTES + rawLength) {
+                raw = ByteBuffer.allocateDirect(BLOCK_HEADER_BYTES + rawLength);
+            }
+            raw.clear().position(BLOCK_HEADER_BYTES);
+            for (int i = 0; i < count; i++) {
+                raw.putLong(ids[i]);
+            }
+            for (int i = 0; i < count; i++) {
+                raw.putChar(nameLengths[i]);
+            }
+            for (int i = 0; i < count; i++) {
+                raw.putChar(emailLengths[i]);
+            }
+            raw.put(names, 0, namesLength).put(emails, 0, emailsLength);
+
+            ByteBuffer block = raw;
+            int storedLength = rawLength;
+            if (compress) {
+                raw.flip().position(BLOCK_HEADER_BYTES);
+                int bound = BLOCK_HEADER_BYTES + rawLength + rawLength / 100 + 64;
+                if (stored.capacity() < bound) {
+                    stored = ByteBuffer.allocateDirect(bound);
+                }
+                stored.clear().position(BLOCK_HEADER_BYTES);
+                deflater.reset();
+                deflater.setInput(raw);
+                deflater.finish();
+                while (!deflater.finished()) {
+                    if (!stored.hasRemaining()) {
+                        stored = grow(stored);
+                    }
+                    deflater.deflate(stored);
+                }
+                storedLength = stored.position() - BLOCK_HEADER_BYTES;
+                block = stored;
+            }
+            block.limit(BLOCK_HEADER_BYTES + storedLength);
+            block.putInt(0, count).putInt(4, rawLength).putInt(8, storedLength).position(0);
+            writeFully(block);
+
+            total += count;
+            count = 0;
+            namesLength = 0;
+            emailsLength = 0;
+        }
+
+        private static ByteBuffer grow(ByteBuffer buffer) {
+            ByteBuffer larger = ByteBuffer.allocateDirect(buffer.capacity() * 2);
+            buffer.flip();
+            return larger.put(buffer);
+        }
+
+        private void writeFully(ByteBuffer buffer) throws IOException {
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+        }
+
+        @Override
+        public void close() {
+            if (deflater != null) {
+                deflater.end();
+            }
+        }
+    }
+
+    /**
+     * Decodes an archive file block by block from a read-only memory mapping.
+     */
+    static final class Reader implements Closeable {
+        private final FileChannel channel;
+        private final long size;
+        private final boolean compressed;
+        private final Inflater inflater;
+        private MappedByteBuffer window;
+        private long windowStart;
+        private long position = HEADER_BYTES;
+        private long rows;
+        private byte[] raw = new byte[0];
+
+        private Reader(FileChannel channel) throws IOException {
+            this.channel = channel;
+            this.size = channel.size();
+            if (size < HEADER_BYTES + 12) {
+                throw new IOException("Not a user archive: file is too short");
+            }
+            ByteBuffer header = map(0, HEADER_BYTES);
+            if (header.getInt() != MAGIC) {
+                throw new IOException("Not a user archive: bad magic number");
+            }
+            short version = header.getShort();
+            if (version != VERSION) {
+                throw new IOException("Unsupported user archive version " + version);
+            }
+            this.compressed = (header.getShort() & FLAG_DEFLATE) != 0;
+            this.inflater = compressed ? new Inflater() : null;
+        }
+
+        static Reader open(Path file) throws IOException {
+            FileChannel channel = FileChannel.open(file, StandardOpenOption.READ);
+            try {
+                return new Reader(channel);
+            } catch (IOException | RuntimeException e) {
+                channel.close();
+                throw e;
+            }
+        }
+
+        /**
+         * Appends the next block's users to {@code out}; returns false once the trailer has been reached.
+         */
+        boolean next(List<User> out) throws IOException {
+            ByteBuffer blockHeader = map(position, 4);
+            int count = blockHeader.getInt();
+            if (count == 0) {
+                long expected = map(position + 4, 8).getLong();
+                if (expected != rows) {
+                    throw new IOException("Corrupt user archive: trailer counts " + expected + " users, read " + rows);
+                }
+                return false;
+            }
+            blockHeader = map(position, BLOCK_HEADER_BYTES);
+            blockHeader.getInt();
+            int rawLength = blockHeader.getInt();
+            int storedLength = blockHeader.getInt();
+            if (count < 0 || rawLength < count * 12 || storedLength < 0) {
+                throw new IOException("Corrupt user archive: bad block header at offset " + position);
+            }
+            ByteBuffer payload = map(position + BLOCK_HEADER_BYTES, storedLength);
+            position += BLOCK_HEADER_BYTES + storedLength;
+
+            if (raw.length < rawLength) {
+                raw = new byte[rawLength];
+            }
+            if (compressed) {
+                inflate(payload, rawLength);
+            } else if (storedLength != rawLength) {
+                throw new IOException("Corrupt user archive: stored and raw lengths differ in an uncompressed block");
+            } else {
+                payload.get(raw, 0, rawLength);
+            }
+            decode(count, rawLength, out);
+            rows += count;
+            return true;
+        }
+
+        private void inflate(ByteBuffer payload, int rawLength) throws IOException {
+            inflater.reset();
+            inflater.setInput(payload);
+            try {
+                int inflated = 0;
+                while (inflated < rawLength && !inflater.finished()) {
+                    int n = inflater.inflate(raw, inflated, rawLength - inflated);
+                    if (n == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+                        break;
+                    }
+                    inflated += n;
+                }
+                if (inflated != rawLength) {
+                    throw new IOException("Corrupt user archive: block inflated to " + inflated + " of " + rawLength + " bytes");
+                }
+            } catch (DataFormatException e) {
+                throw new IOException("Corrupt user archive: " + e.getMessage(), e);
+            }
+        }
+
+        private void decode(int count, int rawLength, List<User> out) throws IOException {
+            ByteBuffer columns = ByteBuffer.wrap(raw, 0, rawLength);
+            int nameLengthsAt = count * 8;
+            int emailLengthsAt = nameLengthsAt + count * 2;
+            int nameAt = emailLengthsAt + count * 2;
+            int emailAt = nameAt;
+            for (int i = 0; i < count; i++) {
+                emailAt += columns.getChar(nameLengthsAt + i * 2);
+            }
+            for (int i = 0; i < count; i++) {
+                int nameLength = columns.getChar(nameLengthsAt + i * 2);
+                int emailLength = columns.getChar(emailLengthsAt + i * 2);
+                if (emailAt + emailLength > rawLength) {
+                    throw new IOException("Corrupt user archive: field lengths overrun the block");
+                }
+                out.add(new User(columns.getLong(i * 8),
+                        new String(raw, nameAt, nameLength, StandardCharsets.UTF_8),
+                        new String(raw, emailAt, emailLength, StandardCharsets.UTF_8)));
+                nameAt += nameLength;
+                emailAt += emailLength;
+            }
+        }
+
+        /**
+         * A view of {@code length} bytes at {@code offset}, remapping the window when the range falls outside it.
+         */
+        private ByteBuffer map(long offset, int length) throws IOException {
+            if (offset + length > size) {
+                throw new IOException("Corrupt user archive: truncated at offset " + offset);
+            }
+            if (window == null || offset < windowStart || offset + length > windowStart + window.capacity()) {
+                windowStart = offset;
+                window = channel.map(FileChannel.MapMode.READ_ONLY, offset,
+                        Math.min(size - offset, Math.max(MAP_WINDOW_BYTES, length)));
+            }
+            return window.slice((int) (offset - windowStart), length);
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (inflater != null) {
+                inflater.end();
+            }
+            channel.close();
+        }
+    }
+}
@@ -0,0 +1,66 @@
+package com.example.app;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Properties;
+
+/**
+ * Command-line export and import of the users table in the {@link UserArchive} format, without starting the web
+ * application. Settings come from application.properties; {@code --name=value} arguments override them, for
+ * example {@code --app.db.mode=file}.
+ *
+ * <p>Usage: {@code UserArchiveCli export <file> [--compress] [--name=value ...]} or
+ * {@code UserArchiveCli import <file> [--name=value ...]}
+ */
+public final class UserArchiveCli {
+
+    private UserArchiveCli() {
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length < 2 || !(args[0].equals("export") || args[0].equals("import"))) {
+            System.err.println("Usage: UserArchiveCli export <file> [--compress] [--name=value ...]");
+            System.err.println("       UserArchiveCli import <file> [--name=value ...]");
+            System.exit(2);
+        }
+        Path file = Path.of(args[1]);
+        boolean compress = false;
+        Properties overrides = new Properties();
+        for (int i = 2; i < args.length; i++) {
+            String arg = args[i];
+            int equals = arg.indexOf('=');
+            if (arg.equals("--compress")) {
+                compress = true;
+            } else if (arg.startsWith("--") && equals > 2) {
+                overrides.setProperty(arg.substring(2, equals), arg.substring(equals + 1));
+            } else {
+                System.err.println("Unrecognized argument: " + arg);
+                System.exit(2);
+            }
+        }
+
+        DatabaseClient databaseClient = new DatabaseClient(new AppConfig(overrides));
+        try {
+            databaseClient.initialize();
+            long start = System.nanoTime();
+            if (args[0].equals("export")) {
+                long rows = UserArchive.export(databaseClient, file, compress);
+                System.out.printf("Exported %,d users to %s (%,d bytes) in %d ms%n", rows, file, Files.size(file),
+                        (System.nanoTime() - start) / 1_000_000);
+            } else {
+                UserArchive.ImportResult result = UserArchive.importFrom(databaseClient, file);
+                System.out.printf("Imported %,d of %,d users from %s in %d ms (%,d rejected)%n", result.inserted(),
+                        result.rows(), file, (System.nanoTime() - start) / 1_000_000, result.rejected());
+                if (!result.isComplete()) {
+                    System.out.printf("Stopped early, users before this point stay imported: %s%n", result.error());
+                }
+                for (UserArchive.RowFailure failure : result.failures()) {
+                    System.out.printf("  #%d %s: %s%n", failure.index(), failure.email(), failure.reason());
+                }
+            }
+        } finally {
+            databaseClient.close();
+        }
+    }
+}
@@ -0,0 +1,209 @@
+package com.example.app;
+
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+/**
+ * Bounded in-process user cache addressable by id and by email. Entries are evicted least-recently-used
+ * once the size limit is reached and expire after a fixed time-to-live (0 disables expiry). Email lookups
+ * ignore case, matching {@link DatabaseClient#findByEmail(String)}.
+ *
+ * <p>Readers take a {@link #stamp()} before going to the database and hand it back to
+ * {@link #putIfFresh(User, long)}; if any invalidation happened in between, the possibly stale row is
+ * not cached.
+ */
+@Component
+public class UserCache {
+
+    private final int maxSize;
+    private final long ttlNanos;
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Map<Long, CachedUser> byId;
+    private final Map<String, Long> idByEmail = new HashMap<>();
+    private final AtomicLong invalidations = new AtomicLong();
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+    private final LongAdder expirations = new LongAdder();
+
+    @Autowired
+    public UserCache(AppConfig config, MetricsRegistry metrics) {
+        this(config.isUserCacheEnabled() ? config.getUserCacheMaxSize() : 0,
+                TimeUnit.SECONDS.toMillis(config.getUserCacheTtlSeconds()));
+        metrics.gauge("user_cache_size", "Users currently cached", () -> stats().size());
+        metrics.gauge("user_cache_max_size", "User cache capacity", () -> maxSize);
+        metrics.gauge("user_cache_requests", "User cache lookups since startup", hits::sum, "result", "hit");
+        metrics.gauge("user_cache_requests", "User cache lookups since startup", misses::sum, "result", "miss");
+        metrics.gauge("user_cache_removals", "User cache entries dropped since startup", evictions::sum, "cause", "evicted");
+        metrics.gauge("user_cache_removals", "User cache entries dropped since startup", expirations::sum, "cause", "expired");
+    }
+
+    UserCache(int maxSize, long ttlMillis) {
+        this.maxSize = Math.max(0, maxSize);
+        this.ttlNanos = TimeUnit.MILLISECONDS.toNanos(ttlMillis);
+        this.byId = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Long, CachedUser> eldest) {
+                if (size() > UserCache.this.maxSize) {
+                    idByEmail.remove(emailKey(eldest.getValue().email));
+                    evictions.increment();
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+
+    /**
+     * A cache that never holds anything, for callers running without one.
+     */
+    public static UserCache disabled() {
+        return new UserCache(0, 0);
+    }
+
+    public boolean isEnabled() {
+        return maxSize > 0;
+    }
+
+    public User getById(long id) {
+        if (!isEnabled()) {
+            return null;
+        }
+        lock.lock();
+        try {
+            return hitOrMiss(byId.get(id));
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public User getByEmail(String email) {
+        if (!isEnabled() || email == null) {
+            return null;
+        }
+        lock.lock();
+        try {
+            Long id = idByEmail.get(emailKey(email));
+            return hitOrMiss(id == null ? null : byId.get(id));
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Invalidation counter to read before loading a user from the database.
+     */
+    public long stamp() {
+        return invalidations.get();
+    }
+
+    /**
+     * Caches the user unless an invalidation happened after {@code stamp} was taken.
+     */
+    public void putIfFresh(User user, long stamp) {
+        if (!isEnabled() || user == null || user.getEmail() == null) {
+            return;
+        }
+        lock.lock();
+        try {
+            if (invalidations.get() != stamp) {
+                return;
+            }
+            CachedUser previous = byId.remove(user.getId());
+            if (previous != null) {
+                idByEmail.remove(emailKey(previous.email));
+            }
+            byId.put(user.getId(), new CachedUser(user.getId(), user.getName(), user.getEmail(), user.getVersion(),
+                    System.nanoTime() + ttlNanos));
+            idByEmail.put(emailKey(user.getEmail()), user.getId());
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Drops the user with this id under both of its keys. Call after the database change is committed.
+     */
+    public void invalidate(long id) {
+        if (!isEnabled()) {
+            return;
+        }
+        lock.lock();
+        try {
+            invalidations.incrementAndGet();
+            CachedUser removed = byId.remove(id);
+            if (removed != null) {
+                idByEmail.remove(emailKey(removed.email));
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public void clear() {
+        lock.lock();
+        try {
+            invalidations.incrementAndGet();
+            byId.clear();
+            idByEmail.clear();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public Stats stats() {
+        int size;
+        lock.lock();
+        try {
+            size = byId.size();
+        } finally {
+            lock.unlock();
+        }
+        return new Stats(size, maxSize, hits.sum(), misses.sum(), evictions.sum(), expirations.sum());
+    }
+
+    private static String emailKey(String email) {
+        // Returns the same instance when the email is already lower case
+        return email.toLowerCase(Locale.ROOT);
+    }
+
+    // Caller holds the lock
+    private User hitOrMiss(CachedUser entry) {
+        if (entry == null) {
+            misses.increment();
+            return null;
+        }
+        if (ttlNanos > 0 && System.nanoTime() - entry.expiresAtNanos >= 0) {
+            byId.remove(entry.id);
+            idByEmail.remove(emailKey(entry.email));
+            expirations.increment();
+            misses.increment();
+            return null;
+        }
+        hits.increment();
+        // Callers may mutate what they get back, so never hand out the cached state itself
+        return new User(entry.id, entry.name, entry.email, entry.version);
+    }
+
+    private record CachedUser(long id, String name, String email, long version, long expiresAtNanos) {
+    }
+
+    /**
+     * Point-in-time cache counters.
+     */
+    public record Stats(int size, int maxSize, long hits, long misses, long evictions, long expirations) {
+
+        public double getHitRate() {
+            long lookups = hits + misses;
+            return lookups == 0 ? 0.0 : (double) hits / lookups;
+        }
+    }
+}
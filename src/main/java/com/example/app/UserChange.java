@@ -0,0 +1,18 @@
+package com.example.app;
+
+/**
+ * One committed user mutation in the {@link UserChangeLog}.
+ *
+ * @param sequence position in the change log; consecutive changes have consecutive sequences
+ * @param type     what happened to the user
+ * @param user     the row as committed; for a delete, the last row with its version incremented, so that a
+ *                 consumer keeping the highest version per id never lets an older change resurrect the user
+ */
+public record UserChange(long sequence, Type type, User user) {
+
+    public enum Type {
+        CREATED,
+        UPDATED,
+        DELETED
+    }
+}
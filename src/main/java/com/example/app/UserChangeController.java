@@ -0,0 +1,184 @@
+package com.example.app;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestHeader;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.context.request.async.DeferredResult;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+/**
+ * Follows the {@link UserChangeLog} over HTTP, by long poll or as a server-sent event stream. Waiting happens on
+ * virtual threads, so a connected consumer costs no request thread. Waiting polls and open streams together are
+ * capped at {@code app.users.changes.maxWaiters}; beyond that they get {@code 503} with {@code Retry-After}.
+ *
+ * <p>A consumer starts without a position to learn the current one, loads the users it needs, then follows
+ * changes from that position. When it has fallen too far behind, it is told to resync: {@code 410} with the new
+ * position for a poll, or a {@code resync} event that ends the stream.
+ */
+@RestController
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.SERVLET)
+@RequestMapping("/api/users/changes")
+public class UserChangeController {
+    private static final Logger logger = LogManager.getLogger(UserChangeController.class);
+
+    static final String LAST_EVENT_ID = "Last-Event-ID";
+    private static final ThreadFactory WAITERS = Thread.ofVirtual().name("user-changes-", 0).factory();
+
+    private final UserChangeLog changeLog;
+    private final int maxBatch;
+    private final long maxWaitMillis;
+    private final long heartbeatNanos;
+    private final Semaphore waiters;
+    private final MetricsRegistry.Counter rejected;
+    private final AtomicInteger streams = new AtomicInteger();
+
+    public UserChangeController(UserChangeLog changeLog, AppConfig config, MetricsRegistry metrics) {
+        this.changeLog = changeLog;
+        this.maxBatch = config.getUsersMaxPageSize();
+        this.maxWaitMillis = config.getUserChangesMaxWaitMillis();
+        this.heartbeatNanos = TimeUnit.MILLISECONDS.toNanos(config.getUserChangesHeartbeatMillis());
+        this.waiters = new Semaphore(config.getUserChangesMaxWaiters());
+        this.rejected = metrics.counter("user_changes_rejected_total",
+                "Long polls and streams turned away at app.users.changes.maxWaiters");
+        metrics.gauge("user_changes_streams", "Open change event streams", streams::get);
+    }
+
+    /**
+     * Up to {@code limit} changes after sequence {@code after}. With {@code waitMs}, an empty answer is held back
+     * until a change arrives or that time (at most {@code app.users.changes.maxWaitMs}) has passed. Without
+     * {@code after}, answers at once with no changes and the current position in {@code nextAfter}.
+     */
+    @GetMapping(produces = MediaType.APPLICATION_JSON_VALUE)
+    public DeferredResult<ResponseEntity<UserChangeLog.Batch>> poll(@RequestParam(required = false) Long after,
+                                                                    @RequestParam(required = false) Integer limit,
+                                                                    @RequestParam(defaultValue = "0") long waitMs) {
+        long waitMillis = Math.min(Math.max(0, waitMs), maxWaitMillis);
+        // Completed with an empty batch if the waiting thread has not answered by then
+        DeferredResult<ResponseEntity<UserChangeLog.Batch>> result = new DeferredResult<>(waitMillis + 5000,
+                () -> ResponseEntity.ok(new UserChangeLog.Batch(List.of(), after == null ? changeLog.head() : after, false)));
+        int max = limit == null ? maxBatch : limit;
+        if (!changeLog.isEnabled()) {
+            result.setResult(ResponseEntity.notFound().build());
+        } else if (max < 1 || max > maxBatch) {
+            result.setResult(ResponseEntity.badRequest().build());
+        } else if (after == null) {
+            result.setResult(ResponseEntity.ok(new UserChangeLog.Batch(List.of(), changeLog.head(), false)));
+        } else if (waitMillis == 0) {
+            result.setResult(pollResponse(changeLog.read(after, max)));
+        } else if (!tryAcquireWaiter()) {
+            result.setResult(tooManyWaiters());
+        } else {
+            WAITERS.newThread(() -> {
+                try {
+                    result.setResult(pollResponse(changeLog.await(after, max, TimeUnit.MILLISECONDS.toNanos(waitMillis))));
+                } catch (InterruptedException e) {
+                    result.setErrorResult(e);
+                } finally {
+                    waiters.release();
+                }
+            }).start();
+        }
+        return result;
+    }
+
+    private boolean tryAcquireWaiter() {
+        if (waiters.tryAcquire()) {
+            return true;
+        }
+        rejected.increment();
+        return false;
+    }
+
+    private static <T> ResponseEntity<T> tooManyWaiters() {
+        return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).header(HttpHeaders.RETRY_AFTER, "1").build();
+    }
+
+    private static ResponseEntity<UserChangeLog.Batch> pollResponse(UserChangeLog.Batch batch) {
+        return ResponseEntity.status(batch.resync() ? HttpStatus.GONE : HttpStatus.OK).body(batch);
+    }
+
+    /**
+     * Streams changes after {@code after}, or after the {@code Last-Event-ID} a reconnecting client sends, or
+     * from now on without either. Each event is named after the change type, carries the user as data and has
+     * the sequence as its id; an idle stream gets a comment every {@code app.users.changes.heartbeatMs}.
+     */
+    @GetMapping(produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public ResponseEntity<SseEmitter> stream(@RequestParam(required = false) Long after,
+                                             @RequestHeader(name = LAST_EVENT_ID, required = false) String lastEventId) {
+        if (!changeLog.isEnabled()) {
+            return ResponseEntity.notFound().build();
+        }
+        long start;
+        try {
+            start = lastEventId != null ? Long.parseLong(lastEventId.trim()) : after != null ? after : changeLog.head();
+        } catch (NumberFormatException e) {
+            return ResponseEntity.badRequest().build();
+        }
+        if (!tryAcquireWaiter()) {
+            return tooManyWaiters();
+        }
+        // No timeout: the stream lasts until the client leaves, the consumer must resync or the log closes
+        SseEmitter emitter = new SseEmitter(0L);
+        Thread sender = WAITERS.newThread(() -> send(emitter, start));
+        emitter.onCompletion(sender::interrupt);
+        emitter.onError(error -> sender.interrupt());
+        sender.start();
+        return ResponseEntity.ok().contentType(MediaType.TEXT_EVENT_STREAM).body(emitter);
+    }
+
+    private void send(SseEmitter emitter, long start) {
+        streams.incrementAndGet();
+        long position = start;
+        try {
+            while (!changeLog.isClosed()) {
+                UserChangeLog.Batch batch = changeLog.await(position, maxBatch, heartbeatNanos);
+                if (batch.resync()) {
+                    emitter.send(SseEmitter.event().name("resync")
+                            .data(new Resync(batch.nextAfter()), MediaType.APPLICATION_JSON));
+                    break;
+                }
+                if (batch.changes().isEmpty()) {
+                    emitter.send(SseEmitter.event().comment("heartbeat"));
+                }
+                for (UserChange change : batch.changes()) {
+                    emitter.send(SseEmitter.event()
+                            .id(Long.toString(change.sequence()))
+                            .name(change.type().name().toLowerCase(Locale.ROOT))
+                            .data(change.user(), MediaType.APPLICATION_JSON));
+                }
+                position = batch.nextAfter();
+            }
+            emitter.complete();
+        } catch (IOException | IllegalStateException e) {
+            // The client went away or the response was already completed
+            logger.debug("Change stream ended at {}: {}", position, e.toString());
+        } catch (InterruptedException e) {
+            emitter.complete();
+        } finally {
+            streams.decrementAndGet();
+            waiters.release();
+        }
+    }
+
+    /**
+     * Data of the {@code resync} event: where to continue after reloading.
+     */
+    public record Resync(long nextAfter) {
+    }
+}
@@ -0,0 +1,203 @@
+package com.example.app;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+import jakarta.annotation.PreDestroy;
+
+/**
+ * In-process log of committed user mutations, for consumers that follow changes instead of re-reading the
+ * users table ({@code app.users.changes.*}). {@link DatabaseClient} publishes every create, update and delete
+ * once it has committed; consumers read from a sequence number onwards.
+ *
+ * <p>The log is a ring buffer of {@code capacity} slots. Publishing claims the next sequence with one atomic
+ * increment and stores the change in its slot, so writers never wait for each other or for readers. A consumer
+ * that falls more than {@code capacity} changes behind has lost some and gets {@link Batch#resync()}: it must
+ * reload the users it cares about and continue from {@link Batch#nextAfter()}.
+ *
+ * <p>Sequences start at the microseconds since the epoch at startup, so a position kept from an earlier run is
+ * always older than the log and also gets a resync instead of silently matching new changes. Changes are
+ * published in sequence order per writer, but two writers may publish changes to one user in the opposite order
+ * of their commits: keep the change with the highest {@link User#getVersion() version} per user.
+ */
+@Component
+public class UserChangeLog {
+
+    private static final UserChangeLog DISABLED = new UserChangeLog(false, 1, new MetricsRegistry());
+
+    private final boolean enabled;
+    private final int mask;
+    private final AtomicReferenceArray<UserChange> ring;
+    // Sequence of the first change this log publishes; lower positions predate it
+    private final long firstSequence;
+    private final AtomicLong nextSequence;
+    private final AtomicInteger waiters = new AtomicInteger();
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition published = lock.newCondition();
+    private final MetricsRegistry.Counter publishedChanges;
+    private final MetricsRegistry.Counter resyncs;
+    private volatile boolean closed;
+
+    @Autowired
+    public UserChangeLog(AppConfig config, MetricsRegistry metrics) {
+        this(config.isUserChangesEnabled(), config.getUserChangesCapacity(), metrics);
+    }
+
+    UserChangeLog(boolean enabled, int capacity, MetricsRegistry metrics) {
+        this.enabled = enabled;
+        int slots = enabled ? Integer.highestOneBit(Math.max(1, Math.min(capacity, 1 << 29) * 2 - 1)) : 1;
+        this.mask = slots - 1;
+        this.ring = new AtomicReferenceArray<>(slots);
+        this.firstSequence = TimeUnit.MILLISECONDS.toMicros(System.currentTimeMillis());
+        this.nextSequence = new AtomicLong(firstSequence);
+        this.publishedChanges = metrics.counter("user_changes_published_total", "User changes published to the change log");
+        this.resyncs = metrics.counter("user_changes_resyncs_total", "Change log reads too far behind to continue");
+        metrics.gauge("user_changes_capacity", "Changes the change log retains", () -> enabled ? slots : 0);
+    }
+
+    /**
+     * A log that records nothing, for clients running without one.
+     */
+    public static UserChangeLog disabled() {
+        return DISABLED;
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Appends a change holding a copy of {@code user} and returns its sequence, or -1 when the log is disabled.
+     */
+    public long publish(UserChange.Type type, User user) {
+        if (!enabled) {
+            return -1;
+        }
+        long sequence = nextSequence.getAndIncrement();
+        UserChange change = new UserChange(sequence, type,
+                new User(user.getId(), user.getName(), user.getEmail(), user.getVersion()));
+        int slot = (int) (sequence & mask);
+        UserChange current;
+        do {
+            current = ring.get(slot);
+            // A writer a whole lap ahead already reused the slot; this change is lost to readers either way
+            if (current != null && current.sequence() > sequence) {
+                break;
+            }
+        } while (!ring.compareAndSet(slot, current, change));
+        publishedChanges.increment();
+        if (waiters.get() > 0) {
+            lock.lock();
+            try {
+                published.signalAll();
+            } finally {
+                lock.unlock();
+            }
+        }
+        return sequence;
+    }
+
+    /**
+     * Sequence of the last change published, or the position just before the first one. Reading after it
+     * returns only changes published from now on.
+     */
+    public long head() {
+        return nextSequence.get() - 1;
+    }
+
+    /**
+     * Up to {@code limit} changes after sequence {@code after}, without waiting.
+     */
+    public Batch read(long after, int limit) {
+        if (after < firstSequence - 1 || after > head()) {
+            // From before this log started, or a position it never handed out
+            return resync();
+        }
+        List<UserChange> changes = new ArrayList<>(Math.min(limit, 64));
+        long sequence = after + 1;
+        while (changes.size() < limit) {
+            UserChange change = ring.get((int) (sequence & mask));
+            if (change == null || change.sequence() < sequence) {
+                // Not published yet: either the end of the log or a writer between its claim and its store
+                break;
+            }
+            if (change.sequence() > sequence) {
+                return resync();
+            }
+            changes.add(change);
+            sequence++;
+        }
+        return new Batch(changes, sequence - 1, false);
+    }
+
+    /**
+     * Like {@link #read(long, int)}, but when nothing has been published after {@code after} yet, waits up to
+     * {@code timeoutNanos} for a change. Returns an empty batch on timeout or once the log is closed.
+     */
+    public Batch await(long after, int limit, long timeoutNanos) throws InterruptedException {
+        Batch batch = read(after, limit);
+        if (!batch.changes().isEmpty() || batch.resync() || timeoutNanos <= 0) {
+            return batch;
+        }
+        waiters.incrementAndGet();
+        lock.lock();
+        try {
+            long remaining = timeoutNanos;
+            // Checked under the lock after registering as a waiter, so a publish in between cannot be missed
+            while (!closed && !isPublished(after + 1) && remaining > 0) {
+                remaining = published.awaitNanos(remaining);
+            }
+        } finally {
+            lock.unlock();
+            waiters.decrementAndGet();
+        }
+        return read(after, limit);
+    }
+
+    private boolean isPublished(long sequence) {
+        UserChange change = ring.get((int) (sequence & mask));
+        return change != null && change.sequence() >= sequence;
+    }
+
+    private Batch resync() {
+        resyncs.increment();
+        return new Batch(List.of(), head(), true);
+    }
+
+    public boolean isClosed() {
+        return closed;
+    }
+
+    /**
+     * Wakes every waiting reader; later waits return at once.
+     */
+    @PreDestroy
+    public void close() {
+        closed = true;
+        lock.lock();
+        try {
+            published.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Changes read from the log.
+     *
+     * @param changes   changes in sequence order, without gaps
+     * @param nextAfter the position to read after next: the last change returned, or the position read after
+     *                  when nothing was returned; after a resync, the head of the log
+     * @param resync    whether changes after the requested position are no longer retained. Reload the users
+     *                  (changes published after {@code nextAfter} will follow) and continue from {@code nextAfter}
+     */
+    public record Batch(List<UserChange> changes, long nextAfter, boolean resync) {
+    }
+}
@@ -1,66 +1,306 @@
 package com.example.app;
 
+import com.fasterxml.jackson.databind.MappingIterator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.RuntimeJsonMappingException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.channels.Channels;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
 import java.util.List;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 /**
  * REST controller for User CRUD operations
  */
 @RestController
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.SERVLET)
 @RequestMapping("/api/users")
 public class UserController {
 
+    static final String NDJSON = "application/x-ndjson";
+    static final int DEFAULT_SEARCH_LIMIT = 100;
+    // ifMatchVersion results that are not versions: no header or "*", and a header that is not one strong ETag
+    static final long ANY_VERSION = -1;
+    static final long INVALID_VERSION = -2;
+
+    private final UserService userService;
     private final DatabaseClient databaseClient;
+    private final ObjectMapper objectMapper;
+    private final int maxPageSize;
 
-    public UserController(DatabaseClient databaseClient) {
+    public UserController(UserService userService, DatabaseClient databaseClient, ObjectMapper objectMapper,
+                          AppConfig config) {
+        this.userService = userService;
         this.databaseClient = databaseClient;
+        this.objectMapper = objectMapper;
+        this.maxPageSize = config.getUsersMaxPageSize();
     }
 
+    /**
+     * Creates a user: {@code 201} once it is stored, or {@code 202} once it is queued when write-behind is on.
+     * An email another user already has answers {@code 409}, and a full queue {@code 429} with
+     * {@code Retry-After}.
+     */
     @PostMapping
     public ResponseEntity<User> createUser(@RequestBody CreateUserRequest request) {
-        UserService userService = new UserService(databaseClient);
-        User user = userService.createAndPersistUser(request.getName(), request.getEmail());
-        return ResponseEntity.status(HttpStatus.CREATED).body(user);
+        return createResponse(userService.createAndSubmitUser(request.getName(), request.getEmail()));
+    }
+
+    static ResponseEntity<User> createResponse(CreateResult result) {
+        return switch (result.status()) {
+            case CREATED -> ResponseEntity.status(HttpStatus.CREATED).body(result.user());
+            case QUEUED -> ResponseEntity.status(HttpStatus.ACCEPTED).body(result.user());
+            case QUEUE_FULL ->
+                    ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS).header(HttpHeaders.RETRY_AFTER, "1").build();
+            case DUPLICATE_EMAIL -> ResponseEntity.status(HttpStatus.CONFLICT).build();
+        };
+    }
+
+    @PostMapping(path = "/bulk", consumes = "application/json")
+    public ResponseEntity<BulkInsertResult> createUsers(@RequestBody List<CreateUserRequest> requests) {
+        List<User> drafts = new ArrayList<>(requests.size());
+        for (CreateUserRequest request : requests) {
+            drafts.add(request == null ? null : new User(0, request.getName(), request.getEmail()));
+        }
+        return bulkResponse(drafts);
+    }
+
+    @PostMapping(path = "/bulk", consumes = NDJSON)
+    public ResponseEntity<BulkInsertResult> importUsers(InputStream body) {
+        List<User> drafts = new ArrayList<>();
+        try (MappingIterator<CreateUserRequest> it = objectMapper.readerFor(CreateUserRequest.class).readValues(body)) {
+            while (it.hasNextValue()) {
+                CreateUserRequest request = it.nextValue();
+                drafts.add(request == null ? null : new User(0, request.getName(), request.getEmail()));
+            }
+        } catch (IOException | RuntimeJsonMappingException e) {
+            return ResponseEntity.badRequest().build();
+        }
+        return bulkResponse(drafts);
+    }
+
+    private ResponseEntity<BulkInsertResult> bulkResponse(List<User> drafts) {
+        BulkInsertResult result = userService.createAndPersistUsers(drafts);
+        HttpStatus status = result.failures().isEmpty() ? HttpStatus.CREATED : HttpStatus.MULTI_STATUS;
+        return ResponseEntity.status(status).body(result);
+    }
+
+    /**
+     * Streams users in id order as they are read, either as a JSON array or, when the client accepts
+     * {@code application/x-ndjson}, one object per line. {@code afterId} resumes after a known id.
+     */
+    @GetMapping(params = {"!limit", "!emailPrefix", "!nameStartsWith"})
+    public ResponseEntity<StreamingResponseBody> listUsers(@RequestParam(required = false) Long afterId,
+                                                           @RequestHeader(value = "Accept", required = false) String accept) {
+        long start = afterId == null ? Long.MIN_VALUE : afterId;
+        boolean ndjson = accept != null && accept.contains(NDJSON);
+
+        StreamingResponseBody body = out -> {
+            long[] rows = new long[1];
+            if (!ndjson) {
+                out.write('[');
+            }
+            userService.forEachUser(start, user -> writeRow(out, user, ndjson, rows[0]++ == 0));
+            if (!ndjson) {
+                out.write(']');
+            }
+        };
+        MediaType contentType = ndjson ? MediaType.parseMediaType(NDJSON) : MediaType.APPLICATION_JSON;
+        return ResponseEntity.ok().contentType(contentType).body(body);
+    }
+
+    /**
+     * Returns one keyset page of users; pass {@code nextAfterId} from the response to fetch the next page.
+     */
+    @GetMapping(params = {"limit", "!emailPrefix", "!nameStartsWith"})
+    public ResponseEntity<UserPage> listUsersPage(@RequestParam(required = false) Long afterId,
+                                                  @RequestParam int limit) {
+        if (limit < 1 || limit > maxPageSize) {
+            return ResponseEntity.badRequest().build();
+        }
+        List<User> users = userService.listUsers(afterId == null ? Long.MIN_VALUE : afterId, limit);
+        Long nextAfterId = users.size() < limit ? null : users.get(users.size() - 1).getId();
+        return ResponseEntity.ok(new UserPage(users, nextAfterId));
+    }
+
+    /**
+     * Users whose email starts with {@code emailPrefix}, ignoring case, in email order.
+     */
+    @GetMapping(params = {"emailPrefix", "!nameStartsWith"})
+    public ResponseEntity<List<User>> searchByEmailPrefix(@RequestParam String emailPrefix,
+                                                          @RequestParam(required = false) Integer limit) {
+        int max = searchLimit(limit);
+        if (emailPrefix.isBlank() || max < 1) {
+            return ResponseEntity.badRequest().build();
+        }
+        return ResponseEntity.ok(userService.searchUsersByEmailPrefix(emailPrefix, max));
+    }
+
+    /**
+     * Users whose name starts with {@code nameStartsWith}, ignoring case, in name order.
+     */
+    @GetMapping(params = {"nameStartsWith", "!emailPrefix"})
+    public ResponseEntity<List<User>> searchByNamePrefix(@RequestParam String nameStartsWith,
+                                                         @RequestParam(required = false) Integer limit) {
+        int max = searchLimit(limit);
+        if (nameStartsWith.isBlank() || max < 1) {
+            return ResponseEntity.badRequest().build();
+        }
+        return ResponseEntity.ok(userService.searchUsersByNamePrefix(nameStartsWith, max));
+    }
+
+    // Returns -1 for a limit outside 1..maxPageSize
+    private int searchLimit(Integer limit) {
+        if (limit == null) {
+            return Math.min(DEFAULT_SEARCH_LIMIT, maxPageSize);
+        }
+        return limit < 1 || limit > maxPageSize ? -1 : limit;
+    }
+
+    private static void writeRow(OutputStream out, User user, boolean ndjson, boolean first) {
+        try {
+            if (!ndjson && !first) {
+                out.write(',');
+            }
+            UserJsonCodec.write(user, out);
+            if (ndjson) {
+                out.write('\n');
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Downloads every user in the binary {@link UserArchive} format, deflated when {@code compress} is true.
+     */
+    @GetMapping(path = "/export", produces = MediaType.APPLICATION_OCTET_STREAM_VALUE)
+    public ResponseEntity<StreamingResponseBody> exportArchive(@RequestParam(defaultValue = "false") boolean compress) {
+        StreamingResponseBody body = out -> UserArchive.export(databaseClient, Channels.newChannel(out), compress);
+        return ResponseEntity.ok()
+                .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"users.usrb\"")
+                .contentType(MediaType.APPLICATION_OCTET_STREAM)
+                .body(body);
     }
 
-    @GetMapping
-    public ResponseEntity<List<User>> listUsers() {
-        UserService userService = new UserService(databaseClient);
-        List<User> users = userService.listUsers();
-        return ResponseEntity.ok(users);
+    /**
+     * Restores users, ids included, from an uploaded {@link UserArchive}. The body is spooled to a temporary file
+     * and read back through a memory mapping. {@code 201} when every user was inserted, {@code 207} when some
+     * were rejected or a bad block stopped the import after earlier blocks were inserted (the body then carries
+     * the error and what was committed), {@code 400} when the upload is not an archive.
+     */
+    @PostMapping(path = "/import", consumes = MediaType.APPLICATION_OCTET_STREAM_VALUE)
+    public ResponseEntity<UserArchive.ImportResult> importArchive(InputStream body) throws IOException {
+        Path file = Files.createTempFile("users-import", ".usrb");
+        try {
+            Files.copy(body, file, StandardCopyOption.REPLACE_EXISTING);
+            UserArchive.ImportResult result = UserArchive.importFrom(databaseClient, file);
+            HttpStatus status = result.rejected() == 0 && result.isComplete() ? HttpStatus.CREATED
+                    : HttpStatus.MULTI_STATUS;
+            return ResponseEntity.status(status).body(result);
+        } catch (IOException e) {
+            return ResponseEntity.badRequest().build();
+        } finally {
+            Files.deleteIfExists(file);
+        }
     }
 
     @GetMapping("/email/{email}")
     public ResponseEntity<User> getUserByEmail(@PathVariable String email) {
-        UserService userService = new UserService(databaseClient);
         User user = userService.findUserByEmail(email);
         if (user == null) {
             return ResponseEntity.notFound().build();
         }
-        return ResponseEntity.ok(user);
+        return ResponseEntity.ok().eTag(etag(user)).body(user);
     }
 
-    @PutMapping("/{id}")
-    public ResponseEntity<User> updateUser(@PathVariable long id, @RequestBody UpdateUserRequest request) {
-        UserService userService = new UserService(databaseClient);
-        User user = databaseClient.listUsers().stream()
-                .filter(u -> u.getId() == id)
-                .findFirst()
-                .orElse(null);
-        
+    @GetMapping("/{id}")
+    public ResponseEntity<User> getUser(@PathVariable long id) {
+        User user = userService.findUserById(id);
         if (user == null) {
             return ResponseEntity.notFound().build();
         }
-        
-        userService.updateUser(user, request.getEmail());
-        return ResponseEntity.ok(user);
+        return ResponseEntity.ok().eTag(etag(user)).body(user);
+    }
+
+    /**
+     * Updates a user's email. With {@code If-Match: "<version>"}, taken from the {@code ETag} of an earlier
+     * response, the update applies only if the user is still at that version; otherwise the answer is
+     * {@code 409} with the current user and its {@code ETag}. Without the header, or with {@code *}, the last
+     * write wins.
+     */
+    @PutMapping("/{id}")
+    public ResponseEntity<User> updateUser(@PathVariable long id,
+                                           @RequestHeader(name = HttpHeaders.IF_MATCH, required = false) String ifMatch,
+                                           @RequestBody UpdateUserRequest request) {
+        long expectedVersion = ifMatchVersion(ifMatch);
+        if (expectedVersion == INVALID_VERSION) {
+            return ResponseEntity.badRequest().build();
+        }
+        if (expectedVersion == ANY_VERSION) {
+            User user = userService.updateUserEmail(id, request.getEmail());
+            if (user == null) {
+                return ResponseEntity.notFound().build();
+            }
+            return ResponseEntity.ok().eTag(etag(user)).body(user);
+        }
+        return updateResponse(userService.updateUserEmailIfVersion(id, expectedVersion, request.getEmail()));
+    }
+
+    static ResponseEntity<User> updateResponse(UpdateResult result) {
+        return switch (result.status()) {
+            case UPDATED -> ResponseEntity.ok().eTag(etag(result.user())).body(result.user());
+            case CONFLICT -> ResponseEntity.status(HttpStatus.CONFLICT).eTag(etag(result.user())).body(result.user());
+            case NOT_FOUND -> ResponseEntity.notFound().build();
+        };
+    }
+
+    static String etag(User user) {
+        return "\"" + user.getVersion() + "\"";
+    }
+
+    /**
+     * The version in an {@code If-Match} header holding one strong ETag such as {@code "3"}; {@link #ANY_VERSION}
+     * for no header or {@code *}, and {@link #INVALID_VERSION} for anything else, including weak and listed tags.
+     */
+    static long ifMatchVersion(String ifMatch) {
+        if (ifMatch == null) {
+            return ANY_VERSION;
+        }
+        String tag = ifMatch.trim();
+        if (tag.equals("*")) {
+            return ANY_VERSION;
+        }
+        int length = tag.length();
+        // At most 18 digits, so the value cannot overflow
+        if (length < 3 || length > 20 || tag.charAt(0) != '"' || tag.charAt(length - 1) != '"') {
+            return INVALID_VERSION;
+        }
+        long version = 0;
+        for (int i = 1; i < length - 1; i++) {
+            char c = tag.charAt(i);
+            if (c < '0' || c > '9') {
+                return INVALID_VERSION;
+            }
+            version = version * 10 + (c - '0');
+        }
+        return version;
     }
 
     @DeleteMapping("/{id}")
     public ResponseEntity<Void> deleteUser(@PathVariable long id) {
-        UserService userService = new UserService(databaseClient);
         userService.deleteUser(id);
         return ResponseEntity.noContent().build();
     }
@@ -87,6 +327,24 @@ public class UserController {
         }
     }
 
+    public static class UserPage {
+        private final List<User> users;
+        private final Long nextAfterId;
+
+        public UserPage(List<User> users, Long nextAfterId) {
+            this.users = users;
+            this.nextAfterId = nextAfterId;
+        }
+
+        public List<User> getUsers() {
+            return users;
+        }
+
+        public Long getNextAfterId() {
+            return nextAfterId;
+        }
+    }
+
     public static class UpdateUserRequest {
         private String email;
 
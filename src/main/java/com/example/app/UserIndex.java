@@ -0,0 +1,352 @@
+package com.example.app;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Read-only in-memory user index with the lookup semantics of {@link DataUtil#createUserMap(List)},
+ * sized for millions of users. User records are packed as UTF-8 into direct (off-heap) buffers, and two
+ * open-addressing {@code long[]} tables map ids and emails to record offsets, so the heap holds no object
+ * per user. Lookups return a fresh {@link User} decoded from the record.
+ *
+ * <p>Later users win over earlier ones with the same email (as with {@code Map.put}); users or emails that
+ * are null are skipped. Safe for concurrent reads once built.
+ */
+public final class UserIndex {
+
+    static final int DEFAULT_CHUNK_BYTES = 1 << 26;
+
+    // Record layout: id (8 bytes), name length (2, 0xFFFF for null), email length (2), name, email
+    private static final int HEADER_BYTES = 12;
+    private static final int NULL_LENGTH = 0xFFFF;
+    private static final int MAX_FIELD_BYTES = 0xFFFE;
+    private static final int OFFSET_BITS = 40;
+    private static final long OFFSET_MASK = (1L << OFFSET_BITS) - 1;
+    private static final double MAX_LOAD = 0.7;
+
+    private final int chunkShift;
+    private final int chunkMask;
+    private final ByteBuffer[] chunks;
+    private final long offHeapBytes;
+    // Slots hold (24 hash bits << 40) | (record offset + 1); 0 marks an empty slot
+    private final long[] idSlots;
+    private final long[] emailSlots;
+    private final int size;
+
+    private UserIndex(int chunkShift, ByteBuffer[] chunks, long offHeapBytes, long[] idSlots, long[] emailSlots,
+                      int size) {
+        this.chunkShift = chunkShift;
+        this.chunkMask = (1 << chunkShift) - 1;
+        this.chunks = chunks;
+        this.offHeapBytes = offHeapBytes;
+        this.idSlots = idSlots;
+        this.emailSlots = emailSlots;
+        this.size = size;
+    }
+
+    public static UserIndex of(Collection<User> users) {
+        return of(users, DEFAULT_CHUNK_BYTES);
+    }
+
+    static UserIndex of(Collection<User> users, int chunkBytes) {
+        if (Integer.bitCount(chunkBytes) != 1) {
+            throw new IllegalArgumentException("Chunk size must be a power of two: " + chunkBytes);
+        }
+        long totalBytes = 0;
+        int count = 0;
+        for (User user : users) {
+            if (user != null && user.getEmail() != null) {
+                totalBytes += recordBytes(user);
+                count++;
+            }
+        }
+
+        Builder builder = new Builder(Integer.numberOfTrailingZeros(chunkBytes), totalBytes, count);
+        for (User user : users) {
+            if (user != null && user.getEmail() != null) {
+                builder.add(user);
+            }
+        }
+        return builder.build();
+    }
+
+    /**
+     * Number of distinct emails in the index, matching the size of the equivalent {@code createUserMap} result.
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Direct memory held by the packed user records.
+     */
+    public long offHeapBytes() {
+        return offHeapBytes;
+    }
+
+    /**
+     * Heap held by the two lookup tables.
+     */
+    public long tableBytes() {
+        return 8L * (idSlots.length + emailSlots.length);
+    }
+
+    public User getByEmail(String email) {
+        long offset = findEmail(email);
+        return offset < 0 ? null : readUser(offset);
+    }
+
+    public boolean containsEmail(String email) {
+        return findEmail(email) >= 0;
+    }
+
+    /**
+     * The most recently indexed user with this id, or null.
+     */
+    public User getById(long id) {
+        int hash = hashId(id);
+        int mask = idSlots.length - 1;
+        for (int i = hash & mask; ; i = (i + 1) & mask) {
+            long slot = idSlots[i];
+            if (slot == 0) {
+                return null;
+            }
+            if (tagMatches(slot, hash)) {
+                long offset = (slot & OFFSET_MASK) - 1;
+                if (chunk(offset).getLong(position(offset)) == id) {
+                    return readUser(offset);
+                }
+            }
+        }
+    }
+
+    private long findEmail(String email) {
+        if (email == null) {
+            return -1;
+        }
+        int hash = hashEmail(email);
+        int mask = emailSlots.length - 1;
+        for (int i = hash & mask; ; i = (i + 1) & mask) {
+            long slot = emailSlots[i];
+            if (slot == 0) {
+                return -1;
+            }
+            if (tagMatches(slot, hash)) {
+                long offset = (slot & OFFSET_MASK) - 1;
+                if (emailEquals(chunk(offset), position(offset), email)) {
+                    return offset;
+                }
+            }
+        }
+    }
+
+    private User readUser(long offset) {
+        ByteBuffer chunk = chunk(offset);
+        int pos = position(offset);
+        long id = chunk.getLong(pos);
+        int nameLength = Short.toUnsignedInt(chunk.getShort(pos + 8));
+        int emailLength = Short.toUnsignedInt(chunk.getShort(pos + 10));
+        int namePos = pos + HEADER_BYTES;
+        String name = null;
+        if (nameLength != NULL_LENGTH) {
+            name = decode(chunk, namePos, nameLength);
+        } else {
+            nameLength = 0;
+        }
+        String email = decode(chunk, namePos + nameLength, emailLength);
+        return new User(id, name, email);
+    }
+
+    /**
+     * Compares the stored UTF-8 email with {@code email} without decoding it into a String.
+     */
+    private static boolean emailEquals(ByteBuffer chunk, int pos, String email) {
+        int nameLength = Short.toUnsignedInt(chunk.getShort(pos + 8));
+        int emailLength = Short.toUnsignedInt(chunk.getShort(pos + 10));
+        int at = pos + HEADER_BYTES + (nameLength == NULL_LENGTH ? 0 : nameLength);
+        int end = at + emailLength;
+        int length = email.length();
+        if (emailLength < length) {
+            // UTF-8 never takes fewer bytes than UTF-16 chars
+            return false;
+        }
+        int i = 0;
+        while (i < length) {
+            if (at >= end) {
+                return false;
+            }
+            int b = chunk.get(at) & 0xFF;
+            if (b < 0x80) {
+                if (email.charAt(i) != b) {
+                    return false;
+                }
+                at++;
+                i++;
+                continue;
+            }
+            int codePoint = email.codePointAt(i);
+            int encodedLength = codePoint < 0x800 ? 2 : codePoint < 0x10000 ? 3 : 4;
+            if (at + encodedLength > end || decodeCodePoint(chunk, at, encodedLength) != codePoint) {
+                return false;
+            }
+            at += encodedLength;
+            i += Character.charCount(codePoint);
+        }
+        return at == end;
+    }
+
+    private static int decodeCodePoint(ByteBuffer chunk, int at, int length) {
+        int b0 = chunk.get(at) & 0xFF;
+        int codePoint = length == 2 ? b0 & 0x1F : length == 3 ? b0 & 0x0F : b0 & 0x07;
+        for (int k = 1; k < length; k++) {
+            codePoint = (codePoint << 6) | (chunk.get(at + k) & 0x3F);
+        }
+        return codePoint;
+    }
+
+    private static String decode(ByteBuffer chunk, int pos, int length) {
+        byte[] bytes = new byte[length];
+        chunk.get(pos, bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private ByteBuffer chunk(long offset) {
+        return chunks[(int) (offset >>> chunkShift)];
+    }
+
+    private int position(long offset) {
+        return (int) offset & chunkMask;
+    }
+
+    private static boolean tagMatches(long slot, int hash) {
+        return (slot >>> OFFSET_BITS) == (hash >>> 8);
+    }
+
+    private static int hashId(long id) {
+        long h = id * 0x9E3779B97F4A7C15L;
+        return (int) (h ^ (h >>> 32));
+    }
+
+    private static int hashEmail(String email) {
+        // String caches its hashCode, so repeated lookups with the same instance hash for free
+        int h = email.hashCode() * 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+
+    private static long recordBytes(User user) {
+        return HEADER_BYTES + (user.getName() == null ? 0 : utf8Length(user.getName())) + utf8Length(user.getEmail());
+    }
+
+    private static int utf8Length(String s) {
+        int bytes = 0;
+        for (int i = 0; i < s.length(); i++) {
+            char c = s.charAt(i);
+            if (c < 0x80) {
+                bytes++;
+            } else if (c < 0x800) {
+                bytes += 2;
+            } else if (Character.isHighSurrogate(c) && i + 1 < s.length() && Character.isLowSurrogate(s.charAt(i + 1))) {
+                bytes += 4;
+                i++;
+            } else {
+                bytes += 3;
+            }
+        }
+        return bytes;
+    }
+
+    private static int tableCapacity(int count) {
+        int needed = (int) Math.min(1 << 30, (long) Math.ceil(Math.max(1, count) / MAX_LOAD));
+        return Math.max(16, Integer.highestOneBit(needed - 1) << 1);
+    }
+
+    /**
+     * Packs records into chunks sized from the exact total computed up front.
+     */
+    private static final class Builder {
+        private final int chunkShift;
+        private final int chunkBytes;
+        private final List<ByteBuffer> chunks = new ArrayList<>();
+        private final long[] idSlots;
+        private final long[] emailSlots;
+        private long remaining;
+        private long allocated;
+        private ByteBuffer current;
+        private int size;
+
+        Builder(int chunkShift, long totalBytes, int count) {
+            this.chunkShift = chunkShift;
+            this.chunkBytes = 1 << chunkShift;
+            this.remaining = totalBytes;
+            int capacity = tableCapacity(count);
+            this.idSlots = new long[capacity];
+            this.emailSlots = new long[capacity];
+        }
+
+        void add(User user) {
+            byte[] name = user.getName() == null ? null : user.getName().getBytes(StandardCharsets.UTF_8);
+            byte[] email = user.getEmail().getBytes(StandardCharsets.UTF_8);
+            if ((name != null && name.length > MAX_FIELD_BYTES) || email.length > MAX_FIELD_BYTES) {
+                throw new IllegalArgumentException("User " + user.getId() + " has a name or email over "
+                        + MAX_FIELD_BYTES + " bytes");
+            }
+            int length = HEADER_BYTES + (name == null ? 0 : name.length) + email.length;
+            if (length > chunkBytes) {
+                throw new IllegalArgumentException("User " + user.getId() + " does not fit in a " + chunkBytes + " byte chunk");
+            }
+            if (current == null || current.remaining() < length) {
+                current = ByteBuffer.allocateDirect((int) Math.max(length, Math.min(chunkBytes, remaining)));
+                chunks.add(current);
+                allocated += current.capacity();
+            }
+
+            long offset = ((long) (chunks.size() - 1) << chunkShift) | current.position();
+            if (offset + 1 > OFFSET_MASK) {
+                throw new IllegalStateException("User index is full");
+            }
+            current.putLong(user.getId());
+            current.putShort((short) (name == null ? NULL_LENGTH : name.length));
+            current.putShort((short) email.length);
+            if (name != null) {
+                current.put(name);
+            }
+            current.put(email);
+            remaining -= length;
+
+            put(idSlots, hashId(user.getId()), offset, user, false);
+            put(emailSlots, hashEmail(user.getEmail()), offset, user, true);
+        }
+
+        private void put(long[] slots, int hash, long offset, User user, boolean byEmail) {
+            long entry = ((long) (hash >>> 8) << OFFSET_BITS) | (offset + 1);
+            int mask = slots.length - 1;
+            for (int i = hash & mask; ; i = (i + 1) & mask) {
+                long slot = slots[i];
+                if (slot == 0) {
+                    slots[i] = entry;
+                    if (byEmail) {
+                        size++;
+                    }
+                    return;
+                }
+                if (tagMatches(slot, hash) && sameKey((slot & OFFSET_MASK) - 1, user, byEmail)) {
+                    slots[i] = entry;
+                    return;
+                }
+            }
+        }
+
+        private boolean sameKey(long existing, User user, boolean byEmail) {
+            ByteBuffer chunk = chunks.get((int) (existing >>> chunkShift));
+            int pos = (int) existing & (chunkBytes - 1);
+            return byEmail ? emailEquals(chunk, pos, user.getEmail()) : chunk.getLong(pos) == user.getId();
+        }
+
+        UserIndex build() {
+            return new UserIndex(chunkShift, chunks.toArray(new ByteBuffer[0]), allocated, idSlots, emailSlots, size);
+        }
+    }
+}
@@ -0,0 +1,797 @@
+package com.example.app;
+
+import com.google.gson.Gson;
+import com.google.gson.TypeAdapter;
+import com.google.gson.TypeAdapterFactory;
+import com.google.gson.reflect.TypeToken;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.JsonWriter;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.function.Supplier;
+
+/**
+ * Hand-written JSON encoding for {@link User}, {@link UserController.CreateUserRequest} and
+ * {@link UserController.UpdateUserRequest}, without reflection or intermediate trees. Objects are written as
+ * UTF-8 straight into a byte buffer and parsed straight from one; the only allocations are the decoded strings
+ * and the result object. Buffers belong to a small pool of codec instances, so they are reused by platform and
+ * virtual threads alike.
+ *
+ * <p>Output matches what Jackson produces for these types ({@code {"id":1,"name":"Jane","email":"j@x.org"}},
+ * nulls included). Parsing follows JSON with two relaxations that match Jackson's defaults for these types:
+ * unknown properties are skipped and {@code null} leaves {@code id} at 0.
+ */
+public final class UserJsonCodec {
+
+    private static final int ID = 0;
+    private static final int NAME = 1;
+    private static final int EMAIL = 2;
+    private static final int VERSION = 3;
+    private static final int UNKNOWN = -1;
+
+    private static final byte[] ID_KEY = ascii("{\"id\":");
+    private static final byte[] NAME_KEY = ascii(",\"name\":");
+    private static final byte[] EMAIL_KEY = ascii(",\"email\":");
+    private static final byte[] VERSION_KEY = ascii(",\"version\":");
+    private static final byte[] FIRST_NAME_KEY = ascii("{\"name\":");
+    private static final byte[] FIRST_EMAIL_KEY = ascii("{\"email\":");
+    private static final byte[] NULL = ascii("null");
+    private static final byte[] TRUE = ascii("true");
+    private static final byte[] FALSE = ascii("false");
+    private static final byte[] MIN_LONG = ascii(Long.toString(Long.MIN_VALUE));
+    private static final byte[] HEX = ascii("0123456789abcdef");
+
+    private static final int INITIAL_BYTES = 256;
+    // Larger buffers are dropped on release rather than pinned in the pool
+    private static final int MAX_POOLED_BYTES = 64 * 1024;
+    // A power of two, so that a slot is picked with a mask
+    private static final AtomicReferenceArray<UserJsonCodec> POOL = new AtomicReferenceArray<>(
+            Integer.highestOneBit(Math.max(4, Runtime.getRuntime().availableProcessors() * 2)) * 2);
+
+    private byte[] bytes = new byte[INITIAL_BYTES];
+    private char[] chars = new char[INITIAL_BYTES];
+    private int length;
+
+    // Parser state
+    private byte[] in;
+    private int pos;
+    private int end;
+
+    private UserJsonCodec() {
+    }
+
+    /**
+     * Whether this codec handles {@code type}.
+     */
+    public static boolean supports(Class<?> type) {
+        return type == User.class || type == UserController.CreateUserRequest.class
+                || type == UserController.UpdateUserRequest.class;
+    }
+
+    public static String toJson(Object value) {
+        UserJsonCodec codec = acquire();
+        try {
+            codec.encode(value);
+            return new String(codec.bytes, 0, codec.length, StandardCharsets.UTF_8);
+        } finally {
+            release(codec);
+        }
+    }
+
+    /**
+     * Writes {@code value} as UTF-8 JSON with a single {@code write} call.
+     */
+    public static void write(Object value, OutputStream out) throws IOException {
+        UserJsonCodec codec = acquire();
+        try {
+            codec.encode(value);
+            out.write(codec.bytes, 0, codec.length);
+        } finally {
+            release(codec);
+        }
+    }
+
+    /**
+     * Parses a {@code type} from {@code json}; returns null for the literal {@code null}.
+     *
+     * @throws IllegalArgumentException if the input is not a JSON object of that type
+     */
+    public static <T> T fromJson(String json, Class<T> type) {
+        UserJsonCodec codec = acquire();
+        try {
+            codec.encodeUtf8(json);
+            return codec.parse(codec.bytes, 0, codec.length, type);
+        } finally {
+            release(codec);
+        }
+    }
+
+    public static <T> T read(byte[] json, int offset, int length, Class<T> type) {
+        UserJsonCodec codec = acquire();
+        try {
+            return codec.parse(json, offset, offset + length, type);
+        } finally {
+            release(codec);
+        }
+    }
+
+    /**
+     * Reads all of {@code in} and parses a {@code type} from it.
+     *
+     * @throws IllegalArgumentException if the input is longer than {@code maxBytes} or is not valid
+     */
+    public static <T> T read(InputStream in, int maxBytes, Class<T> type) throws IOException {
+        UserJsonCodec codec = acquire();
+        try {
+            int total = 0;
+            while (true) {
+                if (total == codec.bytes.length) {
+                    if (total >= maxBytes) {
+                        throw new IllegalArgumentException("JSON body is larger than " + maxBytes + " bytes");
+                    }
+                    codec.bytes = Arrays.copyOf(codec.bytes, Math.min(maxBytes, total * 2));
+                }
+                int read = in.read(codec.bytes, total, codec.bytes.length - total);
+                if (read < 0) {
+                    break;
+                }
+                total += read;
+            }
+            return codec.parse(codec.bytes, 0, total, type);
+        } finally {
+            release(codec);
+        }
+    }
+
+    /**
+     * Gson adapters for the same types, reading and writing fields directly instead of by reflection. Register
+     * with {@code new GsonBuilder().registerTypeAdapterFactory(UserJsonCodec.gsonAdapterFactory())}.
+     */
+    public static TypeAdapterFactory gsonAdapterFactory() {
+        return GsonAdapter.FACTORY;
+    }
+
+    private static UserJsonCodec acquire() {
+        int mask = POOL.length() - 1;
+        int start = homeSlot();
+        for (int i = 0; i <= mask; i++) {
+            int slot = (start + i) & mask;
+            UserJsonCodec codec = POOL.get(slot);
+            if (codec != null && POOL.compareAndSet(slot, codec, null)) {
+                return codec;
+            }
+        }
+        return new UserJsonCodec();
+    }
+
+    // Where the current thread starts its scan of the pool, so threads mostly find their own codec
+    private static int homeSlot() {
+        return Math.floorMod(Thread.currentThread().threadId(), POOL.length());
+    }
+
+    private static void release(UserJsonCodec codec) {
+        codec.in = null;
+        if (codec.bytes.length > MAX_POOLED_BYTES) {
+            codec.bytes = new byte[INITIAL_BYTES];
+        }
+        if (codec.chars.length > MAX_POOLED_BYTES) {
+            codec.chars = new char[INITIAL_BYTES];
+        }
+        int mask = POOL.length() - 1;
+        int start = homeSlot();
+        for (int i = 0; i <= mask; i++) {
+            if (POOL.compareAndSet((start + i) & mask, null, codec)) {
+                return;
+            }
+        }
+    }
+
+    // Encoding
+
+    private void encode(Object value) {
+        length = 0;
+        switch (value) {
+            case null -> put(NULL);
+            case User user -> {
+                ensure(ID_KEY.length + 20 + NAME_KEY.length + EMAIL_KEY.length + VERSION_KEY.length + 20 + 1
+                        + worstCase(user.getName()) + worstCase(user.getEmail()));
+                put(ID_KEY);
+                putLong(user.getId());
+                put(NAME_KEY);
+                putString(user.getName());
+                put(EMAIL_KEY);
+                putString(user.getEmail());
+                put(VERSION_KEY);
+                putLong(user.getVersion());
+                bytes[length++] = '}';
+            }
+            case UserController.CreateUserRequest request -> {
+                ensure(FIRST_NAME_KEY.length + EMAIL_KEY.length + 1
+                        + worstCase(request.getName()) + worstCase(request.getEmail()));
+                put(FIRST_NAME_KEY);
+                putString(request.getName());
+                put(EMAIL_KEY);
+                putString(request.getEmail());
+                bytes[length++] = '}';
+            }
+            case UserController.UpdateUserRequest request -> {
+                ensure(FIRST_EMAIL_KEY.length + 1 + worstCase(request.getEmail()));
+                put(FIRST_EMAIL_KEY);
+                putString(request.getEmail());
+                bytes[length++] = '}';
+            }
+            default -> throw new IllegalArgumentException("Unsupported type: " + value.getClass().getName());
+        }
+    }
+
+    // Quotes plus six bytes per char covers \\u00XX escapes and three-byte UTF-8 alike
+    private static int worstCase(String value) {
+        return value == null ? NULL.length : 2 + 6 * value.length();
+    }
+
+    private void ensure(int capacity) {
+        if (bytes.length < capacity) {
+            bytes = new byte[Math.max(capacity, bytes.length * 2)];
+        }
+    }
+
+    private void put(byte[] constant) {
+        System.arraycopy(constant, 0, bytes, length, constant.length);
+        length += constant.length;
+    }
+
+    private void putLong(long value) {
+        if (value == Long.MIN_VALUE) {
+            put(MIN_LONG);
+            return;
+        }
+        if (value < 0) {
+            bytes[length++] = '-';
+            value = -value;
+        }
+        int first = length;
+        do {
+            bytes[length++] = (byte) ('0' + value % 10);
+            value /= 10;
+        } while (value != 0);
+        for (int i = first, j = length - 1; i < j; i++, j--) {
+            byte digit = bytes[i];
+            bytes[i] = bytes[j];
+            bytes[j] = digit;
+        }
+    }
+
+    private void putString(String value) {
+        if (value == null) {
+            put(NULL);
+            return;
+        }
+        byte[] out = bytes;
+        int n = length;
+        out[n++] = '"';
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c < 0x80) {
+                if (c >= 0x20 && c != '"' && c != '\\') {
+                    out[n++] = (byte) c;
+                } else {
+                    n = putEscape(out, n, c);
+                }
+            } else if (c < 0x800) {
+                out[n++] = (byte) (0xC0 | c >> 6);
+                out[n++] = (byte) (0x80 | c & 0x3F);
+            } else if (Character.isHighSurrogate(c) && i + 1 < value.length()
+                    && Character.isLowSurrogate(value.charAt(i + 1))) {
+                int codePoint = Character.toCodePoint(c, value.charAt(++i));
+                out[n++] = (byte) (0xF0 | codePoint >> 18);
+                out[n++] = (byte) (0x80 | codePoint >> 12 & 0x3F);
+                out[n++] = (byte) (0x80 | codePoint >> 6 & 0x3F);
+                out[n++] = (byte) (0x80 | codePoint & 0x3F);
+            } else if (Character.isSurrogate(c)) {
+                // An unpaired surrogate has no UTF-8 form; write '?' as String.getBytes does
+                out[n++] = '?';
+            } else {
+                out[n++] = (byte) (0xE0 | c >> 12);
+                out[n++] = (byte) (0x80 | c >> 6 & 0x3F);
+                out[n++] = (byte) (0x80 | c & 0x3F);
+            }
+        }
+        out[n++] = '"';
+        length = n;
+    }
+
+    private static int putEscape(byte[] out, int n, char c) {
+        out[n++] = '\\';
+        switch (c) {
+            case '"', '\\' -> out[n++] = (byte) c;
+            case '\n' -> out[n++] = 'n';
+            case '\r' -> out[n++] = 'r';
+            case '\t' -> out[n++] = 't';
+            case '\b' -> out[n++] = 'b';
+            case '\f' -> out[n++] = 'f';
+            default -> {
+                out[n++] = 'u';
+                out[n++] = '0';
+                out[n++] = '0';
+                out[n++] = HEX[c >> 4];
+                out[n++] = HEX[c & 0xF];
+            }
+        }
+        return n;
+    }
+
+    // Converts a String to UTF-8 in the codec's own buffer, for parsing
+    private void encodeUtf8(String json) {
+        length = 0;
+        ensure(json.length() * 3);
+        byte[] out = bytes;
+        int n = 0;
+        for (int i = 0; i < json.length(); i++) {
+            char c = json.charAt(i);
+            if (c < 0x80) {
+                out[n++] = (byte) c;
+            } else if (c < 0x800) {
+                out[n++] = (byte) (0xC0 | c >> 6);
+                out[n++] = (byte) (0x80 | c & 0x3F);
+            } else if (Character.isHighSurrogate(c) && i + 1 < json.length()
+                    && Character.isLowSurrogate(json.charAt(i + 1))) {
+                int codePoint = Character.toCodePoint(c, json.charAt(++i));
+                out[n++] = (byte) (0xF0 | codePoint >> 18);
+                out[n++] = (byte) (0x80 | codePoint >> 12 & 0x3F);
+                out[n++] = (byte) (0x80 | codePoint >> 6 & 0x3F);
+                out[n++] = (byte) (0x80 | codePoint & 0x3F);
+            } else {
+                out[n++] = (byte) (0xE0 | c >> 12);
+                out[n++] = (byte) (0x80 | c >> 6 & 0x3F);
+                out[n++] = (byte) (0x80 | c & 0x3F);
+            }
+        }
+        length = n;
+    }
+
+    // Parsing
+
+    private <T> T parse(byte[] json, int from, int to, Class<T> type) {
+        in = json;
+        pos = from;
+        end = to;
+        T target = newInstance(type);
+        skipWhitespace();
+        if (pos < end && in[pos] == 'n') {
+            expectLiteral(NULL);
+            skipWhitespace();
+            expectEnd();
+            return null;
+        }
+        expect('{');
+        skipWhitespace();
+        if (peek() == '}') {
+            pos++;
+        } else {
+            while (true) {
+                expect('"');
+                int field = readKey();
+                skipWhitespace();
+                expect(':');
+                skipWhitespace();
+                readValue(target, field);
+                skipWhitespace();
+                byte next = next();
+                if (next == '}') {
+                    break;
+                }
+                if (next != ',') {
+                    throw malformed("expected ',' or '}'");
+                }
+                skipWhitespace();
+            }
+        }
+        skipWhitespace();
+        expectEnd();
+        return target;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T> T newInstance(Class<T> type) {
+        if (type == User.class) {
+            return (T) new User();
+        }
+        if (type == UserController.CreateUserRequest.class) {
+            return (T) new UserController.CreateUserRequest();
+        }
+        if (type == UserController.UpdateUserRequest.class) {
+            return (T) new UserController.UpdateUserRequest();
+        }
+        throw new IllegalArgumentException("Unsupported type: " + type.getName());
+    }
+
+    // Reads a property name after its opening quote; keys without escapes are matched without decoding
+    private int readKey() {
+        int start = pos;
+        while (pos < end && in[pos] != '"' && in[pos] != '\\') {
+            pos++;
+        }
+        if (pos < end && in[pos] == '"') {
+            int keyLength = pos - start;
+            pos++;
+            if (keyLength == 2 && in[start] == 'i' && in[start + 1] == 'd') {
+                return ID;
+            }
+            if (keyLength == 4 && in[start] == 'n' && in[start + 1] == 'a' && in[start + 2] == 'm'
+                    && in[start + 3] == 'e') {
+                return NAME;
+            }
+            if (keyLength == 5 && in[start] == 'e' && in[start + 1] == 'm' && in[start + 2] == 'a'
+                    && in[start + 3] == 'i' && in[start + 4] == 'l') {
+                return EMAIL;
+            }
+            if (keyLength == 7 && in[start] == 'v' && in[start + 1] == 'e' && in[start + 2] == 'r'
+                    && in[start + 3] == 's' && in[start + 4] == 'i' && in[start + 5] == 'o'
+                    && in[start + 6] == 'n') {
+                return VERSION;
+            }
+            return UNKNOWN;
+        }
+        pos = start;
+        return fieldOf(readString());
+    }
+
+    private static int fieldOf(String name) {
+        return switch (name) {
+            case "id" -> ID;
+            case "name" -> NAME;
+            case "email" -> EMAIL;
+            case "version" -> VERSION;
+            default -> UNKNOWN;
+        };
+    }
+
+    private void readValue(Object target, int field) {
+        if (!accepts(target, field)) {
+            skipValue();
+            return;
+        }
+        byte first = peek();
+        if (first == 'n') {
+            expectLiteral(NULL);
+            if (field != ID && field != VERSION) {
+                assign(target, field, null);
+            }
+        } else if (field == ID) {
+            ((User) target).setId(readLong());
+        } else if (field == VERSION) {
+            ((User) target).setVersion(readLong());
+        } else if (first == '"') {
+            pos++;
+            assign(target, field, readString());
+        } else {
+            throw malformed("expected a string");
+        }
+    }
+
+    private static boolean accepts(Object target, int field) {
+        return switch (target) {
+            case User ignored -> field != UNKNOWN;
+            case UserController.CreateUserRequest ignored -> field == NAME || field == EMAIL;
+            default -> field == EMAIL;
+        };
+    }
+
+    private static void assign(Object target, int field, String value) {
+        switch (target) {
+            case User user -> {
+                if (field == NAME) {
+                    user.setName(value);
+                } else {
+                    user.setEmail(value);
+                }
+            }
+            case UserController.CreateUserRequest request -> {
+                if (field == NAME) {
+                    request.setName(value);
+                } else {
+                    request.setEmail(value);
+                }
+            }
+            case UserController.UpdateUserRequest request -> request.setEmail(value);
+            default -> throw new IllegalStateException("Unexpected target " + target.getClass().getName());
+        }
+    }
+
+    private long readLong() {
+        boolean negative = pos < end && in[pos] == '-';
+        if (negative) {
+            pos++;
+        }
+        int start = pos;
+        // Accumulate negatively so that Long.MIN_VALUE parses without overflow
+        long value = 0;
+        while (pos < end && in[pos] >= '0' && in[pos] <= '9') {
+            int digit = in[pos++] - '0';
+            if (value < (Long.MIN_VALUE + digit) / 10) {
+                throw malformed("number out of range");
+            }
+            value = value * 10 - digit;
+        }
+        if (pos == start) {
+            throw malformed("expected a number");
+        }
+        if (pos < end && (in[pos] == '.' || in[pos] == 'e' || in[pos] == 'E')) {
+            throw malformed("expected an integer");
+        }
+        if (negative) {
+            return value;
+        }
+        if (value == Long.MIN_VALUE) {
+            throw malformed("number out of range");
+        }
+        return -value;
+    }
+
+    // Reads a string after its opening quote. Plain ASCII is copied in one step; escapes and multi-byte UTF-8
+    // go through the char buffer.
+    private String readString() {
+        int start = pos;
+        for (int i = start; i < end; i++) {
+            byte b = in[i];
+            if (b == '"') {
+                pos = i + 1;
+                return new String(in, start, i - start, StandardCharsets.ISO_8859_1);
+            }
+            if (b == '\\' || b < 0x20) {
+                break;
+            }
+        }
+        int n = 0;
+        while (true) {
+            if (pos >= end) {
+                throw malformed("unterminated string");
+            }
+            if (n + 2 > chars.length) {
+                chars = Arrays.copyOf(chars, chars.length * 2);
+            }
+            int b = in[pos++];
+            if (b == '"') {
+                return new String(chars, 0, n);
+            }
+            if (b == '\\') {
+                chars[n++] = readEscape();
+            } else if (b >= 0x20) {
+                chars[n++] = (char) b;
+            } else if (b >= 0) {
+                throw malformed("control character in string");
+            } else if ((b & 0xE0) == 0xC0) {
+                chars[n++] = (char) ((b & 0x1F) << 6 | continuation());
+            } else if ((b & 0xF0) == 0xE0) {
+                chars[n++] = (char) ((b & 0x0F) << 12 | continuation() << 6 | continuation());
+            } else if ((b & 0xF8) == 0xF0) {
+                int codePoint = (b & 0x07) << 18 | continuation() << 12 | continuation() << 6 | continuation();
+                if (!Character.isSupplementaryCodePoint(codePoint)) {
+                    throw malformed("invalid UTF-8");
+                }
+                chars[n++] = Character.highSurrogate(codePoint);
+                chars[n++] = Character.lowSurrogate(codePoint);
+            } else {
+                throw malformed("invalid UTF-8");
+            }
+        }
+    }
+
+    private int continuation() {
+        if (pos >= end || (in[pos] & 0xC0) != 0x80) {
+            throw malformed("invalid UTF-8");
+        }
+        return in[pos++] & 0x3F;
+    }
+
+    private char readEscape() {
+        byte b = next();
+        return switch (b) {
+            case '"', '\\', '/' -> (char) b;
+            case 'n' -> '\n';
+            case 'r' -> '\r';
+            case 't' -> '\t';
+            case 'b' -> '\b';
+            case 'f' -> '\f';
+            case 'u' -> {
+                int c = 0;
+                for (int i = 0; i < 4; i++) {
+                    int digit = Character.digit(next(), 16);
+                    if (digit < 0) {
+                        throw malformed("invalid \\u escape");
+                    }
+                    c = c << 4 | digit;
+                }
+                yield (char) c;
+            }
+            default -> throw malformed("invalid escape");
+        };
+    }
+
+    private void skipValue() {
+        byte first = peek();
+        switch (first) {
+            case '"' -> {
+                pos++;
+                skipString();
+            }
+            case '{', '[' -> {
+                int depth = 0;
+                do {
+                    byte b = next();
+                    if (b == '"') {
+                        skipString();
+                    } else if (b == '{' || b == '[') {
+                        depth++;
+                    } else if (b == '}' || b == ']') {
+                        depth--;
+                    }
+                } while (depth > 0);
+            }
+            case 't' -> expectLiteral(TRUE);
+            case 'f' -> expectLiteral(FALSE);
+            case 'n' -> expectLiteral(NULL);
+            default -> {
+                if (first != '-' && (first < '0' || first > '9')) {
+                    throw malformed("unexpected character");
+                }
+                pos++;
+                while (pos < end && (in[pos] >= '0' && in[pos] <= '9' || in[pos] == '.' || in[pos] == 'e'
+                        || in[pos] == 'E' || in[pos] == '+' || in[pos] == '-')) {
+                    pos++;
+                }
+            }
+        }
+    }
+
+    private void skipString() {
+        while (true) {
+            byte b = next();
+            if (b == '"') {
+                return;
+            }
+            if (b == '\\') {
+                next();
+            }
+        }
+    }
+
+    private void skipWhitespace() {
+        while (pos < end && (in[pos] == ' ' || in[pos] == '\n' || in[pos] == '\r' || in[pos] == '\t')) {
+            pos++;
+        }
+    }
+
+    private byte peek() {
+        if (pos >= end) {
+            throw malformed("unexpected end of input");
+        }
+        return in[pos];
+    }
+
+    private byte next() {
+        byte b = peek();
+        pos++;
+        return b;
+    }
+
+    private void expect(char c) {
+        if (next() != c) {
+            pos--;
+            throw malformed("expected '" + c + "'");
+        }
+    }
+
+    private void expectLiteral(byte[] literal) {
+        if (end - pos < literal.length || !Arrays.equals(in, pos, pos + literal.length, literal, 0, literal.length)) {
+            throw malformed("unexpected character");
+        }
+        pos += literal.length;
+    }
+
+    private void expectEnd() {
+        if (pos != end) {
+            throw malformed("unexpected content after the object");
+        }
+    }
+
+    private IllegalArgumentException malformed(String problem) {
+        return new IllegalArgumentException("Malformed JSON at offset " + pos + ": " + problem);
+    }
+
+    private static byte[] ascii(String value) {
+        return value.getBytes(StandardCharsets.US_ASCII);
+    }
+
+    /**
+     * Gson counterpart of the codec, working on Gson's own token stream. Nulls are left out on write, as with
+     * Gson's defaults.
+     */
+    private static final class GsonAdapter<T> extends TypeAdapter<T> {
+
+        static final TypeAdapterFactory FACTORY = new TypeAdapterFactory() {
+            @Override
+            @SuppressWarnings("unchecked")
+            public <R> TypeAdapter<R> create(Gson gson, TypeToken<R> typeToken) {
+                Class<?> type = typeToken.getRawType();
+                if (type == User.class) {
+                    return (TypeAdapter<R>) new GsonAdapter<>(User::new);
+                }
+                if (type == UserController.CreateUserRequest.class) {
+                    return (TypeAdapter<R>) new GsonAdapter<>(UserController.CreateUserRequest::new);
+                }
+                if (type == UserController.UpdateUserRequest.class) {
+                    return (TypeAdapter<R>) new GsonAdapter<>(UserController.UpdateUserRequest::new);
+                }
+                return null;
+            }
+        };
+
+        private final Supplier<T> factory;
+
+        GsonAdapter(Supplier<T> factory) {
+            this.factory = factory;
+        }
+
+        @Override
+        public void write(JsonWriter out, T value) throws IOException {
+            switch (value) {
+                case null -> out.nullValue();
+                case User user -> {
+                    out.beginObject();
+                    out.name("id").value(user.getId());
+                    out.name("name").value(user.getName());
+                    out.name("email").value(user.getEmail());
+                    out.name("version").value(user.getVersion());
+                    out.endObject();
+                }
+                case UserController.CreateUserRequest request -> {
+                    out.beginObject();
+                    out.name("name").value(request.getName());
+                    out.name("email").value(request.getEmail());
+                    out.endObject();
+                }
+                case UserController.UpdateUserRequest request -> {
+                    out.beginObject();
+                    out.name("email").value(request.getEmail());
+                    out.endObject();
+                }
+                default -> throw new IllegalArgumentException("Unsupported type: " + value.getClass().getName());
+            }
+        }
+
+        @Override
+        public T read(JsonReader in) throws IOException {
+            if (in.peek() == JsonToken.NULL) {
+                in.nextNull();
+                return null;
+            }
+            T target = factory.get();
+            in.beginObject();
+            while (in.hasNext()) {
+                int field = fieldOf(in.nextName());
+                if (!accepts(target, field)) {
+                    in.skipValue();
+                } else if (in.peek() == JsonToken.NULL) {
+                    in.nextNull();
+                    if (field != ID && field != VERSION) {
+                        assign(target, field, null);
+                    }
+                } else if (field == ID) {
+                    ((User) target).setId(in.nextLong());
+                } else if (field == VERSION) {
+                    ((User) target).setVersion(in.nextLong());
+                } else {
+                    assign(target, field, in.nextString());
+                }
+            }
+            in.endObject();
+            return target;
+        }
+    }
+}
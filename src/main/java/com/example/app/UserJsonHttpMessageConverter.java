@@ -0,0 +1,45 @@
+package com.example.app;
+
+import java.io.IOException;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.http.HttpInputMessage;
+import org.springframework.http.HttpOutputMessage;
+import org.springframework.http.MediaType;
+import org.springframework.http.converter.AbstractHttpMessageConverter;
+import org.springframework.http.converter.HttpMessageNotReadableException;
+import org.springframework.stereotype.Component;
+
+/**
+ * Reads and writes users and the user request bodies with {@link UserJsonCodec} instead of Jackson. Spring Boot
+ * places converter beans ahead of its defaults, so every other type still goes to Jackson.
+ */
+@Component
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.SERVLET)
+public class UserJsonHttpMessageConverter extends AbstractHttpMessageConverter<Object> {
+
+    // The accepted types are a few short strings; anything bigger is not a valid request
+    static final int MAX_BODY_BYTES = 64 * 1024;
+
+    public UserJsonHttpMessageConverter() {
+        super(MediaType.APPLICATION_JSON, new MediaType("application", "*+json"));
+    }
+
+    @Override
+    protected boolean supports(Class<?> clazz) {
+        return UserJsonCodec.supports(clazz);
+    }
+
+    @Override
+    protected Object readInternal(Class<?> clazz, HttpInputMessage inputMessage) throws IOException {
+        try {
+            return UserJsonCodec.read(inputMessage.getBody(), MAX_BODY_BYTES, clazz);
+        } catch (IllegalArgumentException e) {
+            throw new HttpMessageNotReadableException("Invalid JSON: " + e.getMessage(), e, inputMessage);
+        }
+    }
+
+    @Override
+    protected void writeInternal(Object value, HttpOutputMessage outputMessage) throws IOException {
+        UserJsonCodec.write(value, outputMessage.getBody());
+    }
+}
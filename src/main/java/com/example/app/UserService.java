@@ -1,41 +1,71 @@
 package com.example.app;
 
-import com.google.gson.Gson;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.ConcurrentModificationException;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Consumer;
+import java.util.function.UnaryOperator;
 import org.apache.commons.lang3.StringUtils;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
 
 /**
- * Service for user operations demonstrating various code patterns
+ * Service for user operations demonstrating various code patterns.
+ *
+ * <p>One instance is shared by every request, so it holds no per-request state. The no-argument constructor
+ * builds a service without a database, for creating, validating and serializing users only.
  */
+@Service
 public class UserService {
     private static final Logger logger = LogManager.getLogger(UserService.class);
-    private static final Gson gson = new Gson();
+    // How long an update or delete waits for a still-queued user to reach the database before it fails
+    private static final long WRITE_WAIT_MILLIS = 5000;
+    // Retry budget for modifyUser: a conflict means another writer made progress, so a few attempts with a
+    // randomized pause are enough unless one row is extremely hot
+    static final int MAX_UPDATE_ATTEMPTS = 32;
+    private static final long MIN_BACKOFF_NANOS = 10_000;
+    private static final long MAX_BACKOFF_NANOS = 10_000_000;
 
     private final DatabaseClient databaseClient;
+    private final UserCache userCache;
+    private final IdGenerator idGenerator;
+    private final UserWriteBehindQueue writeQueue;
 
+    /**
+     * A service without a database, for creating, validating and serializing users. Its methods that read or
+     * write users throw {@link IllegalStateException}.
+     */
     public UserService() {
-        this.databaseClient = null;
+        this(null, UserCache.disabled(), SnowflakeIdGenerator.defaultInstance());
+    }
+
+    public UserService(DatabaseClient databaseClient, UserCache userCache, IdGenerator idGenerator) {
+        this(databaseClient, userCache, idGenerator, UserWriteBehindQueue.disabled());
     }
 
-    public UserService(DatabaseClient databaseClient) {
+    @Autowired
+    public UserService(DatabaseClient databaseClient, UserCache userCache, IdGenerator idGenerator,
+                       UserWriteBehindQueue writeQueue) {
         this.databaseClient = databaseClient;
+        this.userCache = userCache;
+        this.idGenerator = idGenerator;
+        this.writeQueue = writeQueue;
     }
 
     public User createUser(String name, String email) {
-        logger.debug("Creating user with name: {} and email: {}", name, email);
-
         if (StringUtils.isBlank(name) || StringUtils.isBlank(email)) {
-            logger.warn("Invalid user input - name or email is blank");
+            logger.debug("Rejected user with a blank name or email");
             throw new IllegalArgumentException("Name and email cannot be blank");
         }
-
-        User user = new User();
-        user.setId(generateId());
-        user.setName(name);
-        user.setEmail(email);
-
-        logger.info("User created successfully: {}", user.getName());
+        User user = new User(generateId(), name, email);
+        if (logger.isDebugEnabled()) {
+            logger.debug("Created user {} ({})", user.getId(), email);
+        }
         return user;
     }
 
@@ -48,76 +78,315 @@ public class UserService {
         return user;
     }
 
-    public void persistUser(User user) {
-        if (databaseClient == null) {
-            logger.warn("No database client configured; skipping persistence");
-            return;
+    /**
+     * Creates a user and hands it to the write-behind queue, or persists it right away when write-behind is
+     * off. An email another user already has, stored or queued, is turned away with
+     * {@link CreateResult.Status#DUPLICATE_EMAIL}, and a full queue with {@link CreateResult.Status#QUEUE_FULL}.
+     * Any other rejection by the database, such as an id already in use, throws {@link IllegalStateException}.
+     */
+    public CreateResult createAndSubmitUser(String name, String email) {
+        User user = createUser(name, email);
+        if (!writeQueue.isEnabled()) {
+            try {
+                persistUser(user);
+            } catch (IllegalStateException e) {
+                // Only an email conflict; a taken id or any other rejection is a failure, not the caller's mistake
+                if (e.getCause() instanceof SQLException cause && DatabaseClient.isDuplicateEmail(cause)) {
+                    return new CreateResult(CreateResult.Status.DUPLICATE_EMAIL, null);
+                }
+                throw e;
+            }
+            return new CreateResult(CreateResult.Status.CREATED, user);
+        }
+        // The writer could only log a row the database rejects, so check first. A user stored by another
+        // process between this check and the write is still dropped that way
+        if (findUserByEmail(email) != null) {
+            return new CreateResult(CreateResult.Status.DUPLICATE_EMAIL, null);
+        }
+        CreateResult.Status status = writeQueue.offer(user);
+        return new CreateResult(status, status == CreateResult.Status.QUEUED ? user : null);
+    }
+
+    public boolean isWriteBehindEnabled() {
+        return writeQueue.isEnabled();
+    }
+
+    /**
+     * Creates and persists users in bulk from name/email drafts. Drafts failing validation are
+     * reported alongside rows the database rejects; failure indexes refer to positions in {@code drafts}.
+     */
+    public BulkInsertResult createAndPersistUsers(List<User> drafts) {
+        List<User> users = new ArrayList<>(drafts.size());
+        List<Integer> draftIndexes = new ArrayList<>(drafts.size());
+        List<BulkInsertResult.RowFailure> failures = new ArrayList<>();
+
+        for (int i = 0; i < drafts.size(); i++) {
+            User draft = drafts.get(i);
+            if (draft == null || StringUtils.isBlank(draft.getName()) || StringUtils.isBlank(draft.getEmail())) {
+                failures.add(new BulkInsertResult.RowFailure(i, draft == null ? null : draft.getEmail(),
+                        "Name and email cannot be blank"));
+                continue;
+            }
+            users.add(new User(generateId(), draft.getName(), draft.getEmail()));
+            draftIndexes.add(i);
+        }
+
+        BulkInsertResult result = database().createUsers(users);
+        for (BulkInsertResult.RowFailure failure : result.failures()) {
+            failures.add(new BulkInsertResult.RowFailure(
+                    draftIndexes.get(failure.index()), failure.email(), failure.reason()));
         }
-        databaseClient.createUser(user);
+        failures.sort((a, b) -> Integer.compare(a.index(), b.index()));
+        return new BulkInsertResult(drafts.size(), result.inserted(), failures);
+    }
+
+    public void persistUser(User user) {
+        database().createUser(user);
     }
 
     public User findUserByEmail(String email) {
-        if (databaseClient == null) {
-            logger.warn("No database client configured; cannot read from database");
-            return null;
+        User pending = writeQueue.pendingByEmail(email);
+        if (pending != null) {
+            return pending;
+        }
+        User cached = userCache.getByEmail(email);
+        if (cached != null) {
+            return cached;
         }
-        return databaseClient.findByEmail(email);
+        long stamp = userCache.stamp();
+        User user = database().findByEmail(email);
+        userCache.putIfFresh(user, stamp);
+        return user;
     }
 
-    public java.util.List<User> listUsers() {
-        if (databaseClient == null) {
-            logger.warn("No database client configured; returning empty list");
-            return java.util.Collections.emptyList();
+    public List<User> listUsers() {
+        return database().listUsers();
+    }
+
+    public User findUserById(long userId) {
+        User pending = writeQueue.pendingById(userId);
+        if (pending != null) {
+            return pending;
+        }
+        User cached = userCache.getById(userId);
+        if (cached != null) {
+            return cached;
         }
-        return databaseClient.listUsers();
+        long stamp = userCache.stamp();
+        User user = database().findById(userId);
+        userCache.putIfFresh(user, stamp);
+        return user;
+    }
+
+    public List<User> listUsers(long afterId, int limit) {
+        return database().listUsers(afterId, limit);
+    }
+
+    /**
+     * Users whose email starts with {@code prefix}, ignoring case; served from the normalized-email index.
+     */
+    public List<User> searchUsersByEmailPrefix(String prefix, int limit) {
+        return database().findByEmailPrefix(prefix, limit);
+    }
+
+    /**
+     * Users whose name starts with {@code prefix}, ignoring case; served from the normalized-name index.
+     */
+    public List<User> searchUsersByNamePrefix(String prefix, int limit) {
+        return database().findByNamePrefix(prefix, limit);
+    }
+
+    public void forEachUser(long afterId, Consumer<User> consumer) {
+        database().forEachUser(afterId, consumer);
     }
 
     public String serializeUser(User user) {
-        logger.debug("Serializing user: {}", user.getName());
-        return gson.toJson(user);
+        return UserJsonCodec.toJson(user);
     }
 
     public User deserializeUser(String json) {
-        logger.debug("Deserializing user from JSON");
-        User user = gson.fromJson(json, User.class);
-        logger.info("User deserialized: {}", user.getName());
-        return user;
+        return UserJsonCodec.fromJson(json, User.class);
     }
 
+    /**
+     * Sets {@code user}'s email and, when the service has a database, stores it if the stored row still has
+     * {@code user}'s version; {@code user} then carries the new version.
+     *
+     * <p>Before rows were versioned this overwrote the stored row whatever its state. Callers holding a copy that
+     * may be stale now get the exception below: re-read the user and try again, or use {@link #modifyUser}, which
+     * does that for them.
+     *
+     * @throws ConcurrentModificationException if the row changed since {@code user} was read; nothing is stored
+     *                                         and {@code user} is left as it was
+     */
     public void updateUser(User user, String newEmail) {
-        logger.debug("Updating user email from {} to {}", user.getEmail(), newEmail);
-
-        if (!isValidEmail(newEmail)) {
-            logger.error("Invalid email format: {}", newEmail);
-            throw new IllegalArgumentException("Invalid email format");
+        requireValidEmail(newEmail);
+        if (databaseClient == null) {
+            user.setEmail(newEmail);
+            return;
+        }
+        awaitWritten(user.getId());
+        User change = new User(user.getId(), user.getName(), newEmail, user.getVersion());
+        UpdateResult result = database().updateIfVersion(change);
+        userCache.invalidate(user.getId());
+        if (result.status() == UpdateResult.Status.CONFLICT) {
+            throw new ConcurrentModificationException("User " + user.getId() + " changed since version "
+                    + user.getVersion());
         }
-
         user.setEmail(newEmail);
+        if (result.isUpdated()) {
+            user.setVersion(result.user().getVersion());
+        }
+    }
+
+    /**
+     * Updates a stored user's email only if it is still at {@code expectedVersion}. On a conflict the result
+     * carries the current user, so the caller can report it or retry against it.
+     */
+    public UpdateResult updateUserEmailIfVersion(long userId, long expectedVersion, String newEmail) {
+        requireValidEmail(newEmail);
+        awaitWritten(userId);
+        User current = database().findById(userId);
+        if (current == null) {
+            return new UpdateResult(UpdateResult.Status.NOT_FOUND, null);
+        }
+        if (current.getVersion() != expectedVersion) {
+            return new UpdateResult(UpdateResult.Status.CONFLICT, current);
+        }
+        current.setEmail(newEmail);
+        UpdateResult result = database().updateIfVersion(current);
+        userCache.invalidate(userId);
+        return result;
+    }
 
-        if (databaseClient != null) {
-            databaseClient.updateEmail(user.getId(), newEmail);
-        } else {
-            logger.warn("No database client configured; update only applied in memory");
+    /**
+     * Applies {@code change} to the stored user and saves the result with a compare-and-set, re-reading and
+     * re-applying it whenever another writer got there first. No lock is held while {@code change} runs, so it
+     * must be free of side effects and may run more than once. It receives a fresh copy it may modify and
+     * return, never null; its id and version are ignored. Returns the stored user, or null if there is none, and throws
+     * {@link ConcurrentModificationException} after {@value #MAX_UPDATE_ATTEMPTS} lost attempts.
+     */
+    public User modifyUser(long userId, UnaryOperator<User> change) {
+        awaitWritten(userId);
+        User current = database().findById(userId);
+        long startNanos = System.nanoTime();
+        for (int attempt = 1; current != null; attempt++) {
+            User original = new User(current.getId(), current.getName(), current.getEmail(), current.getVersion());
+            User changed = change.apply(current);
+            if (changed == null) {
+                throw new IllegalArgumentException("The change to user " + userId + " returned no user; return the "
+                        + "modified copy");
+            }
+            if (StringUtils.isBlank(changed.getName())) {
+                throw new IllegalArgumentException("Name cannot be blank");
+            }
+            if (!StringUtils.equals(changed.getEmail(), original.getEmail())) {
+                requireValidEmail(changed.getEmail());
+            }
+            changed.setId(userId);
+            changed.setVersion(original.getVersion());
+            UpdateResult result = database().updateIfVersion(changed);
+            if (result.status() != UpdateResult.Status.CONFLICT) {
+                userCache.invalidate(userId);
+                return result.user();
+            }
+            if (attempt == MAX_UPDATE_ATTEMPTS) {
+                throw new ConcurrentModificationException("User " + userId + " kept changing; gave up after "
+                        + attempt + " attempts");
+            }
+            // The conflict already returned the current row, so the first retry goes straight out with it. After
+            // that, back off by a random pause that starts at the length of the lost attempt, about what another
+            // writer needs to finish, and doubles each time, so that writers colliding on one row stop colliding in
+            // lock step. Then read the row again: the one from the conflict is likely stale after the pause.
+            long now = System.nanoTime();
+            if (attempt == 1) {
+                current = result.user();
+            } else {
+                long cycle = Math.max(MIN_BACKOFF_NANOS, now - startNanos);
+                long ceiling = Math.min(MAX_BACKOFF_NANOS, cycle << Math.min(attempt - 1, 10));
+                LockSupport.parkNanos(ThreadLocalRandom.current().nextLong(ceiling));
+                current = database().findById(userId);
+                now = System.nanoTime();
+            }
+            startNanos = now;
         }
+        return null;
+    }
 
-        logger.info("User updated successfully");
+    /**
+     * Updates a stored user's email by id in a single statement. Returns the updated user, or null if there is none.
+     */
+    public User updateUserEmail(long userId, String newEmail) {
+        requireValidEmail(newEmail);
+        awaitWritten(userId);
+        User updated = database().updateEmailAndGet(userId, newEmail);
+        userCache.invalidate(userId);
+        return updated;
     }
 
     public void deleteUser(long userId) {
+        awaitWritten(userId);
+        database().deleteUser(userId);
+        userCache.invalidate(userId);
+    }
+
+    // Updates and deletes apply to the stored row, so a user still in the write-behind queue has to be written
+    // first; going ahead without it would miss the row or be undone by the late insert
+    private void awaitWritten(long userId) {
+        if (!writeQueue.awaitWritten(userId, WRITE_WAIT_MILLIS)) {
+            throw new IllegalStateException("User " + userId + " is still waiting to be written");
+        }
+    }
+
+    private DatabaseClient database() {
         if (databaseClient == null) {
-            logger.warn("No database client configured; delete skipped");
-            return;
+            throw new IllegalStateException("This UserService was built without a database; use the UserService bean "
+                    + "or pass a DatabaseClient");
+        }
+        return databaseClient;
+    }
+
+    private static void requireValidEmail(String email) {
+        if (!isValidEmail(email)) {
+            // A client error, answered by the exception; not worth a log line per bad request
+            logger.debug("Rejected invalid email format");
+            throw new IllegalArgumentException("Invalid email format");
         }
-        databaseClient.deleteUser(userId);
     }
 
-    private boolean isValidEmail(String email) {
-        // Simple email validation
-        return email.contains("@") && email.contains(".");
+    /**
+     * Whether {@code email} looks like {@code local@domain.tld}: exactly one {@code @}, no whitespace, a
+     * non-empty local part, and a domain with a dot that neither starts nor ends it. Equivalent to the pattern
+     * {@code [^@\s]+@[^@\s]+\.[^@\s]+}, checked in one pass without allocating.
+     */
+    static boolean isValidEmail(String email) {
+        if (email == null) {
+            return false;
+        }
+        int length = email.length();
+        int at = -1;
+        int domainDot = -1;
+        for (int i = 0; i < length; i++) {
+            char c = email.charAt(i);
+            if (c == '@') {
+                if (at >= 0) {
+                    return false;
+                }
+                at = i;
+            } else if (c == '.') {
+                // The first dot with at least one domain character before it
+                if (at >= 0 && domainDot < 0 && i > at + 1) {
+                    domainDot = i;
+                }
+            } else if (c == ' ' || c >= '\t' && c <= '\r') {
+                // Exactly the characters \s matches
+                return false;
+            }
+        }
+        return at > 0 && domainDot > 0 && domainDot < length - 1;
     }
 
     private long generateId() {
-        // Simple ID generation
-        return System.currentTimeMillis();
+        return idGenerator.nextId();
     }
 }
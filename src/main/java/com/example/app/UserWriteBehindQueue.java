@@ -0,0 +1,264 @@
+package com.example.app;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+import jakarta.annotation.PreDestroy;
+
+/**
+ * Opt-in write-behind buffer for new users ({@code app.users.writeBehind.enabled}). Accepted users wait in a
+ * bounded queue and a single background writer inserts them with {@link DatabaseClient#createUsers} in batches
+ * of up to {@code app.users.writeBehind.batchSize}.
+ *
+ * <p>Until its batch commits, a queued user is served from {@link #pendingByEmail(String)} and
+ * {@link #pendingById(long)}, so callers read their own writes. When the queue is full, {@link #offer(User)}
+ * fails at once or after waiting {@code offerTimeoutMs}, depending on {@code whenFull}. {@link #close()} stops
+ * accepting users and waits for the writer to drain what is left.
+ */
+@Component
+public class UserWriteBehindQueue {
+    private static final Logger logger = LogManager.getLogger(UserWriteBehindQueue.class);
+
+    private static final int MAX_ATTEMPTS = 3;
+    private static final UserWriteBehindQueue DISABLED =
+            new UserWriteBehindQueue(null, false, 1, 1, false, 0, 1, new MetricsRegistry());
+
+    private final DatabaseClient databaseClient;
+    private final boolean enabled;
+    private final int batchSize;
+    private final boolean blockWhenFull;
+    private final long offerTimeoutNanos;
+    private final long shutdownTimeoutNanos;
+    private final BlockingQueue<User> queue;
+    private final Map<String, User> pendingByEmail = new ConcurrentHashMap<>();
+    private final Map<Long, User> pendingById = new ConcurrentHashMap<>();
+    private final ReentrantLock writtenLock = new ReentrantLock();
+    private final Condition written = writtenLock.newCondition();
+    private final MetricsRegistry.Counter accepted;
+    private final MetricsRegistry.Counter rejected;
+    private final MetricsRegistry.Counter persisted;
+    private final MetricsRegistry.Counter failed;
+    private final Thread writer;
+    private volatile boolean closed;
+
+    @Autowired
+    public UserWriteBehindQueue(DatabaseClient databaseClient, AppConfig config, MetricsRegistry metrics) {
+        this(databaseClient, config.isUserWriteBehindEnabled(), config.getUserWriteBehindCapacity(),
+                config.getUserWriteBehindBatchSize(), config.isUserWriteBehindBlockWhenFull(),
+                config.getUserWriteBehindOfferTimeoutMillis(), config.getUserWriteBehindShutdownTimeoutMillis(), metrics);
+    }
+
+    UserWriteBehindQueue(DatabaseClient databaseClient, boolean enabled, int capacity, int batchSize,
+                         boolean blockWhenFull, long offerTimeoutMillis, long shutdownTimeoutMillis,
+                         MetricsRegistry metrics) {
+        this.databaseClient = databaseClient;
+        this.enabled = enabled;
+        this.batchSize = Math.max(1, batchSize);
+        this.blockWhenFull = blockWhenFull;
+        this.offerTimeoutNanos = TimeUnit.MILLISECONDS.toNanos(offerTimeoutMillis);
+        this.shutdownTimeoutNanos = TimeUnit.MILLISECONDS.toNanos(shutdownTimeoutMillis);
+        this.queue = new ArrayBlockingQueue<>(Math.max(1, capacity));
+
+        this.accepted = metrics.counter("user_write_queue_total", "Users offered to the write-behind queue", "result", "accepted");
+        this.rejected = metrics.counter("user_write_queue_total", "Users offered to the write-behind queue", "result", "rejected");
+        this.persisted = metrics.counter("user_write_queue_written_total", "Queued users by write outcome", "result", "persisted");
+        this.failed = metrics.counter("user_write_queue_written_total", "Queued users by write outcome", "result", "failed");
+        metrics.gauge("user_write_queue_depth", "Users waiting in the write-behind queue", queue::size);
+
+        if (enabled) {
+            this.writer = new Thread(this::drain, "user-write-behind");
+            writer.setDaemon(true);
+            writer.start();
+        } else {
+            this.writer = null;
+        }
+    }
+
+    /**
+     * A queue that accepts nothing, for callers that always write synchronously.
+     */
+    public static UserWriteBehindQueue disabled() {
+        return DISABLED;
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Queues a new user for insertion: {@link CreateResult.Status#QUEUED}, {@link CreateResult.Status#QUEUE_FULL}
+     * when the queue has no room (after waiting, in block mode) or is shutting down, or
+     * {@link CreateResult.Status#DUPLICATE_EMAIL} when a queued user already has the email. Emails already stored
+     * are not checked here; a user the database then rejects is logged and dropped.
+     */
+    public CreateResult.Status offer(User user) {
+        if (!enabled || closed) {
+            rejected.increment();
+            return CreateResult.Status.QUEUE_FULL;
+        }
+        String emailKey = emailKey(user.getEmail());
+        if (pendingByEmail.putIfAbsent(emailKey, user) != null) {
+            rejected.increment();
+            return CreateResult.Status.DUPLICATE_EMAIL;
+        }
+        pendingById.put(user.getId(), user);
+
+        boolean queued;
+        try {
+            queued = blockWhenFull ? queue.offer(user, offerTimeoutNanos, TimeUnit.NANOSECONDS) : queue.offer(user);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            queued = false;
+        }
+        if (!queued) {
+            forget(user);
+            rejected.increment();
+            return CreateResult.Status.QUEUE_FULL;
+        }
+        accepted.increment();
+        return CreateResult.Status.QUEUED;
+    }
+
+    /**
+     * The queued user with this email (ignoring case) that has not been written yet, or null.
+     */
+    public User pendingByEmail(String email) {
+        return email == null || pendingByEmail.isEmpty() ? null : pendingByEmail.get(emailKey(email));
+    }
+
+    /**
+     * The queued user with this id that has not been written yet, or null.
+     */
+    public User pendingById(long id) {
+        return pendingById.isEmpty() ? null : pendingById.get(id);
+    }
+
+    /**
+     * Waits up to {@code timeoutMillis} for a queued user to be written, so updates and deletes apply to
+     * the stored row. Returns false if the user is still pending when the time runs out.
+     */
+    public boolean awaitWritten(long id, long timeoutMillis) {
+        if (!pendingById.containsKey(id)) {
+            return true;
+        }
+        long remaining = TimeUnit.MILLISECONDS.toNanos(timeoutMillis);
+        writtenLock.lock();
+        try {
+            while (pendingById.containsKey(id)) {
+                if (remaining <= 0) {
+                    return false;
+                }
+                remaining = written.awaitNanos(remaining);
+            }
+            return true;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        } finally {
+            writtenLock.unlock();
+        }
+    }
+
+    public int depth() {
+        return queue.size();
+    }
+
+    private void drain() {
+        List<User> batch = new ArrayList<>(batchSize);
+        while (!closed || !queue.isEmpty()) {
+            try {
+                User first = queue.poll(100, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    continue;
+                }
+                batch.add(first);
+                queue.drainTo(batch, batchSize - 1);
+                write(batch);
+            } catch (InterruptedException e) {
+                // close() interrupts only after its deadline; whatever is still queued is lost
+                logger.error("Write-behind writer interrupted with {} users unwritten", queue.size() + batch.size());
+                return;
+            } finally {
+                batch.clear();
+            }
+        }
+    }
+
+    private void write(List<User> batch) throws InterruptedException {
+        for (int attempt = 1; ; attempt++) {
+            try {
+                BulkInsertResult result = databaseClient.createUsers(batch);
+                for (BulkInsertResult.RowFailure failure : result.failures()) {
+                    logger.warn("Queued user {} was not written: {}", failure.email(), failure.reason());
+                }
+                persisted.add(result.inserted());
+                failed.add(result.failures().size());
+                break;
+            } catch (IllegalStateException e) {
+                if (attempt == MAX_ATTEMPTS) {
+                    logger.error("Dropping {} queued users after {} failed write attempts", batch.size(), attempt, e);
+                    failed.add(batch.size());
+                    break;
+                }
+                logger.warn("Write-behind batch of {} users failed, retrying", batch.size(), e);
+                Thread.sleep(100L * attempt);
+            }
+        }
+        for (User user : batch) {
+            forget(user);
+        }
+        writtenLock.lock();
+        try {
+            written.signalAll();
+        } finally {
+            writtenLock.unlock();
+        }
+    }
+
+    private void forget(User user) {
+        pendingByEmail.remove(emailKey(user.getEmail()), user);
+        pendingById.remove(user.getId(), user);
+    }
+
+    /**
+     * Stops accepting users and waits for queued ones to be written, up to
+     * {@code app.users.writeBehind.shutdownTimeoutMs}.
+     */
+    @PreDestroy
+    public void close() {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        if (writer == null) {
+            return;
+        }
+        int queued = queue.size();
+        try {
+            writer.join(TimeUnit.NANOSECONDS.toMillis(shutdownTimeoutNanos));
+            if (writer.isAlive()) {
+                writer.interrupt();
+                writer.join();
+            } else {
+                logger.info("Write-behind queue flushed {} users on shutdown", queued);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static String emailKey(String email) {
+        return email.toLowerCase(Locale.ROOT);
+    }
+}
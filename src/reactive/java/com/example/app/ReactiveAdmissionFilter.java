@@ -0,0 +1,66 @@
+package com.example.app;
+
+import java.net.InetSocketAddress;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.server.reactive.ServerHttpResponse;
+import org.springframework.stereotype.Component;
+import org.springframework.web.server.ServerWebExchange;
+import org.springframework.web.server.WebFilter;
+import org.springframework.web.server.WebFilterChain;
+import reactor.core.publisher.Mono;
+
+/**
+ * Reactive counterpart of {@link AdmissionFilter}. A slot is held until the response completes, errors or is
+ * cancelled.
+ */
+@Component
+@Order(Ordered.LOWEST_PRECEDENCE)
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.REACTIVE)
+public class ReactiveAdmissionFilter implements WebFilter {
+
+    private final AdmissionController admission;
+
+    public ReactiveAdmissionFilter(AdmissionController admission) {
+        this.admission = admission;
+    }
+
+    @Override
+    public Mono<Void> filter(ServerWebExchange exchange, WebFilterChain chain) {
+        String path = exchange.getRequest().getPath().pathWithinApplication().value();
+        if (!admission.isLimited(path)) {
+            return chain.filter(exchange);
+        }
+        String header = admission.getKeyHeader() == null ? null
+                : exchange.getRequest().getHeaders().getFirst(admission.getKeyHeader());
+        long retryAfter = admission.acquireRate(header != null ? "key:" + header : "addr:" + remoteAddress(exchange));
+        if (retryAfter > 0) {
+            return reject(exchange.getResponse(), HttpStatus.TOO_MANY_REQUESTS, retryAfter);
+        }
+        if (!admission.tryAcquireSlot(path)) {
+            return reject(exchange.getResponse(), HttpStatus.SERVICE_UNAVAILABLE, 1);
+        }
+        if (!admission.holdsSlot(path)) {
+            return chain.filter(exchange);
+        }
+        return Mono.defer(() -> chain.filter(exchange)).doFinally(signal -> admission.release());
+    }
+
+    private static String remoteAddress(ServerWebExchange exchange) {
+        InetSocketAddress address = exchange.getRequest().getRemoteAddress();
+        if (address == null) {
+            return "";
+        }
+        // The numeric address, never a reverse lookup
+        return address.getAddress() == null ? address.getHostString() : address.getAddress().getHostAddress();
+    }
+
+    private static Mono<Void> reject(ServerHttpResponse response, HttpStatus status, long retryAfterSeconds) {
+        response.setStatusCode(status);
+        response.getHeaders().set(HttpHeaders.RETRY_AFTER, Long.toString(retryAfterSeconds));
+        return response.setComplete();
+    }
+}
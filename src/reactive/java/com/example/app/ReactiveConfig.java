@@ -0,0 +1,34 @@
+package com.example.app;
+
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.boot.web.embedded.netty.NettyReactiveWebServerFactory;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import reactor.core.scheduler.Scheduler;
+import reactor.core.scheduler.Schedulers;
+
+/**
+ * Wiring for the reactive variant: Netty as the server and a bounded scheduler for blocking JDBC work.
+ */
+@Configuration
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.REACTIVE)
+public class ReactiveConfig {
+
+    /**
+     * Netty, declared explicitly because Tomcat is also on the classpath for the MVC controllers and would
+     * otherwise be picked first.
+     */
+    @Bean
+    public NettyReactiveWebServerFactory nettyReactiveWebServerFactory() {
+        return new NettyReactiveWebServerFactory();
+    }
+
+    /**
+     * One thread per pooled connection, so JDBC calls never wait on the pool while holding a thread and
+     * never run on an event loop.
+     */
+    @Bean(destroyMethod = "dispose")
+    public Scheduler jdbcScheduler(AppConfig config) {
+        return Schedulers.newBoundedElastic(config.getDbPoolMaxSize(), config.getReactiveJdbcQueueCapacity(), "jdbc");
+    }
+}
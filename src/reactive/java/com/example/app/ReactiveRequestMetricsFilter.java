@@ -0,0 +1,41 @@
+package com.example.app;
+
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.http.HttpStatusCode;
+import org.springframework.stereotype.Component;
+import org.springframework.web.reactive.HandlerMapping;
+import org.springframework.web.server.ServerWebExchange;
+import org.springframework.web.server.WebFilter;
+import org.springframework.web.server.WebFilterChain;
+import org.springframework.web.util.pattern.PathPattern;
+import reactor.core.publisher.Mono;
+
+/**
+ * Reactive counterpart of {@link RequestMetricsFilter}, recording into the same series when the exchange
+ * completes, errors or is cancelled.
+ */
+@Component
+// Ahead of the admission filter, so rejected requests are recorded too
+@Order(Ordered.LOWEST_PRECEDENCE - 1)
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.REACTIVE)
+public class ReactiveRequestMetricsFilter implements WebFilter {
+
+    private final HttpRouteMetrics routes;
+
+    public ReactiveRequestMetricsFilter(MetricsRegistry metrics) {
+        this.routes = new HttpRouteMetrics(metrics);
+    }
+
+    @Override
+    public Mono<Void> filter(ServerWebExchange exchange, WebFilterChain chain) {
+        long start = System.nanoTime();
+        return chain.filter(exchange).doFinally(signal -> {
+            PathPattern pattern = exchange.getAttribute(HandlerMapping.BEST_MATCHING_PATTERN_ATTRIBUTE);
+            HttpStatusCode status = exchange.getResponse().getStatusCode();
+            routes.record(exchange.getRequest().getMethod().name(), pattern == null ? null : pattern.getPatternString(),
+                    status == null ? 200 : status.value(), start);
+        });
+    }
+}
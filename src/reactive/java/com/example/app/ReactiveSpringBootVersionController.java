@@ -0,0 +1,30 @@
+package com.example.app;
+
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+import reactor.core.publisher.Mono;
+
+/**
+ * Reactive counterpart of {@link SpringBootVersionController}. The upstream call goes through
+ * {@link ApiClient#fetchSpringBootCyclesAsync()} ({@code HttpClient.sendAsync}), so no event-loop thread waits on it.
+ */
+@RestController
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.REACTIVE)
+@RequestMapping("/api/springboot")
+public class ReactiveSpringBootVersionController {
+
+    private final ApiClient apiClient;
+
+    public ReactiveSpringBootVersionController(ApiClient apiClient) {
+        this.apiClient = apiClient;
+    }
+
+    @GetMapping("/versions")
+    public Mono<ResponseEntity<SpringBootVersionController.SpringBootVersionsResponse>> getVersions() {
+        return Mono.fromFuture(apiClient::fetchSpringBootCyclesAsync)
+                .map(cycles -> ResponseEntity.ok(new SpringBootVersionController.SpringBootVersionsResponse(cycles)));
+    }
+}
@@ -0,0 +1,161 @@
+package com.example.app;
+
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.http.codec.ServerSentEvent;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestHeader;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Scheduler;
+import reactor.core.scheduler.Schedulers;
+
+/**
+ * Reactive counterpart of {@link UserChangeController} with the same paths, parameters and status codes. Waits
+ * block virtual threads, never the event loop.
+ */
+@RestController
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.REACTIVE)
+@RequestMapping("/api/users/changes")
+public class ReactiveUserChangeController {
+
+    private static final Scheduler WAITERS =
+            Schedulers.fromExecutorService(Executors.newThreadPerTaskExecutor(
+                    Thread.ofVirtual().name("user-changes-", 0).factory()), "user-changes");
+
+    private final UserChangeLog changeLog;
+    private final int maxBatch;
+    private final long maxWaitMillis;
+    private final long heartbeatNanos;
+    private final Semaphore waiters;
+    private final MetricsRegistry.Counter rejected;
+
+    public ReactiveUserChangeController(UserChangeLog changeLog, AppConfig config, MetricsRegistry metrics) {
+        this.changeLog = changeLog;
+        this.maxBatch = config.getUsersMaxPageSize();
+        this.maxWaitMillis = config.getUserChangesMaxWaitMillis();
+        this.heartbeatNanos = TimeUnit.MILLISECONDS.toNanos(config.getUserChangesHeartbeatMillis());
+        this.waiters = new Semaphore(config.getUserChangesMaxWaiters());
+        this.rejected = metrics.counter("user_changes_rejected_total",
+                "Long polls and streams turned away at app.users.changes.maxWaiters");
+    }
+
+    @GetMapping(produces = MediaType.APPLICATION_JSON_VALUE)
+    public Mono<ResponseEntity<UserChangeLog.Batch>> poll(@RequestParam(required = false) Long after,
+                                                          @RequestParam(required = false) Integer limit,
+                                                          @RequestParam(defaultValue = "0") long waitMs) {
+        int max = limit == null ? maxBatch : limit;
+        if (!changeLog.isEnabled()) {
+            return Mono.just(ResponseEntity.notFound().build());
+        }
+        if (max < 1 || max > maxBatch) {
+            return Mono.just(ResponseEntity.badRequest().build());
+        }
+        if (after == null) {
+            return Mono.just(ResponseEntity.ok(new UserChangeLog.Batch(List.of(), changeLog.head(), false)));
+        }
+        long waitNanos = TimeUnit.MILLISECONDS.toNanos(Math.min(Math.max(0, waitMs), maxWaitMillis));
+        if (waitNanos == 0) {
+            return Mono.just(pollResponse(changeLog.read(after, max)));
+        }
+        // The slot is taken on subscription, so it is always given back when the wait ends or is cancelled
+        return Mono.defer(() -> {
+            if (!tryAcquireWaiter()) {
+                return Mono.just(tooManyWaiters());
+            }
+            return Mono.fromCallable(() -> pollResponse(changeLog.await(after, max, waitNanos)))
+                    .subscribeOn(WAITERS)
+                    .doFinally(signal -> waiters.release());
+        });
+    }
+
+    private boolean tryAcquireWaiter() {
+        if (waiters.tryAcquire()) {
+            return true;
+        }
+        rejected.increment();
+        return false;
+    }
+
+    private static <T> ResponseEntity<T> tooManyWaiters() {
+        return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).header(HttpHeaders.RETRY_AFTER, "1").build();
+    }
+
+    private static ResponseEntity<UserChangeLog.Batch> pollResponse(UserChangeLog.Batch batch) {
+        return ResponseEntity.status(batch.resync() ? HttpStatus.GONE : HttpStatus.OK).body(batch);
+    }
+
+    /**
+     * The next batch is only awaited once the client has taken the previous one, so a slow client holds no
+     * buffered changes; if the log moves on too far meanwhile, it gets a {@code resync} event.
+     */
+    @GetMapping(produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public Mono<ResponseEntity<Flux<ServerSentEvent<Object>>>> stream(
+            @RequestParam(required = false) Long after,
+            @RequestHeader(name = UserChangeController.LAST_EVENT_ID, required = false) String lastEventId) {
+        if (!changeLog.isEnabled()) {
+            return Mono.just(ResponseEntity.notFound().build());
+        }
+        long start;
+        try {
+            start = lastEventId != null ? Long.parseLong(lastEventId.trim()) : after != null ? after : changeLog.head();
+        } catch (NumberFormatException e) {
+            return Mono.just(ResponseEntity.badRequest().build());
+        }
+        if (!tryAcquireWaiter()) {
+            return Mono.just(tooManyWaiters());
+        }
+        // The state is the position read after; Long.MIN_VALUE once the resync event has gone out
+        Flux<List<ServerSentEvent<Object>>> batches = Flux.<List<ServerSentEvent<Object>>, Long>generate(
+                () -> start, (position, sink) -> {
+                    if (position == Long.MIN_VALUE || changeLog.isClosed()) {
+                        sink.complete();
+                        return position;
+                    }
+                    UserChangeLog.Batch batch;
+                    try {
+                        batch = changeLog.await(position, maxBatch, heartbeatNanos);
+                    } catch (InterruptedException e) {
+                        sink.complete();
+                        return position;
+                    }
+                    if (batch.resync()) {
+                        sink.next(List.of(ServerSentEvent.builder()
+                                .event("resync")
+                                .data((Object) new UserChangeController.Resync(batch.nextAfter()))
+                                .build()));
+                        return Long.MIN_VALUE;
+                    }
+                    if (batch.changes().isEmpty()) {
+                        sink.next(List.of(ServerSentEvent.builder().comment("heartbeat").build()));
+                    } else {
+                        sink.next(batch.changes().stream().map(ReactiveUserChangeController::event).toList());
+                    }
+                    return batch.nextAfter();
+                });
+        return Mono.just(ResponseEntity.ok()
+                .contentType(MediaType.TEXT_EVENT_STREAM)
+                .body(batches.flatMapIterable(events -> events, 1)
+                        .subscribeOn(WAITERS)
+                        .doFinally(signal -> waiters.release())));
+    }
+
+    private static ServerSentEvent<Object> event(UserChange change) {
+        return ServerSentEvent.builder()
+                .id(Long.toString(change.sequence()))
+                .event(change.type().name().toLowerCase(Locale.ROOT))
+                .data((Object) change.user())
+                .build();
+    }
+}
@@ -0,0 +1,140 @@
+package com.example.app;
+
+import java.util.List;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+/**
+ * Reactive counterpart of {@link UserController} with the same paths, parameters and status codes.
+ */
+@RestController
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.REACTIVE)
+@RequestMapping("/api/users")
+public class ReactiveUserController {
+
+    private final ReactiveUserService userService;
+    private final int maxPageSize;
+
+    public ReactiveUserController(ReactiveUserService userService, AppConfig config) {
+        this.userService = userService;
+        this.maxPageSize = config.getUsersMaxPageSize();
+    }
+
+    @PostMapping
+    public Mono<ResponseEntity<User>> createUser(@RequestBody UserController.CreateUserRequest request) {
+        return userService.call(service -> service.createAndSubmitUser(request.getName(), request.getEmail()))
+                .map(UserController::createResponse);
+    }
+
+    /**
+     * Bulk import from a JSON array or NDJSON; the body is decoded as it arrives.
+     */
+    @PostMapping(path = "/bulk", consumes = {MediaType.APPLICATION_JSON_VALUE, UserController.NDJSON})
+    public Mono<ResponseEntity<BulkInsertResult>> createUsers(@RequestBody Flux<UserController.CreateUserRequest> requests) {
+        return requests.map(request -> new User(0, request.getName(), request.getEmail()))
+                .collectList()
+                .flatMap(drafts -> userService.call(service -> service.createAndPersistUsers(drafts)))
+                .map(result -> ResponseEntity
+                        .status(result.failures().isEmpty() ? HttpStatus.CREATED : HttpStatus.MULTI_STATUS)
+                        .body(result));
+    }
+
+    /**
+     * Streams users in id order as a JSON array, or as NDJSON when the client accepts
+     * {@code application/x-ndjson}, reading further pages only as fast as the client takes them.
+     */
+    @GetMapping(params = {"!limit", "!emailPrefix", "!nameStartsWith"},
+            produces = {MediaType.APPLICATION_JSON_VALUE, UserController.NDJSON})
+    public Flux<User> listUsers(@RequestParam(required = false) Long afterId) {
+        return userService.streamUsers(afterId == null ? Long.MIN_VALUE : afterId);
+    }
+
+    @GetMapping(params = {"limit", "!emailPrefix", "!nameStartsWith"})
+    public Mono<ResponseEntity<UserController.UserPage>> listUsersPage(@RequestParam(required = false) Long afterId,
+                                                                      @RequestParam int limit) {
+        if (limit < 1 || limit > maxPageSize) {
+            return Mono.just(ResponseEntity.badRequest().build());
+        }
+        long start = afterId == null ? Long.MIN_VALUE : afterId;
+        return userService.call(service -> service.listUsers(start, limit))
+                .map(users -> ResponseEntity.ok(new UserController.UserPage(users,
+                        users.size() < limit ? null : users.get(users.size() - 1).getId())));
+    }
+
+    @GetMapping(params = {"emailPrefix", "!nameStartsWith"})
+    public Mono<ResponseEntity<List<User>>> searchByEmailPrefix(@RequestParam String emailPrefix,
+                                                                @RequestParam(required = false) Integer limit) {
+        int max = searchLimit(limit);
+        if (emailPrefix.isBlank() || max < 1) {
+            return Mono.just(ResponseEntity.badRequest().build());
+        }
+        return userService.call(service -> service.searchUsersByEmailPrefix(emailPrefix, max)).map(ResponseEntity::ok);
+    }
+
+    @GetMapping(params = {"nameStartsWith", "!emailPrefix"})
+    public Mono<ResponseEntity<List<User>>> searchByNamePrefix(@RequestParam String nameStartsWith,
+                                                               @RequestParam(required = false) Integer limit) {
+        int max = searchLimit(limit);
+        if (nameStartsWith.isBlank() || max < 1) {
+            return Mono.just(ResponseEntity.badRequest().build());
+        }
+        return userService.call(service -> service.searchUsersByNamePrefix(nameStartsWith, max)).map(ResponseEntity::ok);
+    }
+
+    // Returns -1 for a limit outside 1..maxPageSize
+    private int searchLimit(Integer limit) {
+        if (limit == null) {
+            return Math.min(UserController.DEFAULT_SEARCH_LIMIT, maxPageSize);
+        }
+        return limit < 1 || limit > maxPageSize ? -1 : limit;
+    }
+
+    @GetMapping("/email/{email}")
+    public Mono<ResponseEntity<User>> getUserByEmail(@PathVariable String email) {
+        return userService.call(service -> service.findUserByEmail(email))
+                .map(user -> ResponseEntity.ok().eTag(UserController.etag(user)).body(user))
+                .defaultIfEmpty(ResponseEntity.notFound().build());
+    }
+
+    @GetMapping("/{id}")
+    public Mono<ResponseEntity<User>> getUser(@PathVariable long id) {
+        return userService.call(service -> service.findUserById(id))
+                .map(user -> ResponseEntity.ok().eTag(UserController.etag(user)).body(user))
+                .defaultIfEmpty(ResponseEntity.notFound().build());
+    }
+
+    /**
+     * Same {@code If-Match} handling as {@link UserController#updateUser}.
+     */
+    @PutMapping("/{id}")
+    public Mono<ResponseEntity<User>> updateUser(@PathVariable long id,
+                                                 @RequestHeader(name = HttpHeaders.IF_MATCH, required = false)
+                                                 String ifMatch,
+                                                 @RequestBody UserController.UpdateUserRequest request) {
+        long expectedVersion = UserController.ifMatchVersion(ifMatch);
+        if (expectedVersion == UserController.INVALID_VERSION) {
+            return Mono.just(ResponseEntity.badRequest().build());
+        }
+        if (expectedVersion == UserController.ANY_VERSION) {
+            return userService.call(service -> service.updateUserEmail(id, request.getEmail()))
+                    .map(user -> ResponseEntity.ok().eTag(UserController.etag(user)).body(user))
+                    .defaultIfEmpty(ResponseEntity.notFound().build());
+        }
+        return userService.call(service -> service.updateUserEmailIfVersion(id, expectedVersion, request.getEmail()))
+                .map(UserController::updateResponse);
+    }
+
+    @DeleteMapping("/{id}")
+    public Mono<ResponseEntity<Void>> deleteUser(@PathVariable long id) {
+        return userService.call(service -> {
+            service.deleteUser(id);
+            return Boolean.TRUE;
+        }).thenReturn(ResponseEntity.noContent().build());
+    }
+}
@@ -0,0 +1,71 @@
+package com.example.app;
+
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.function.Function;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Component;
+import org.springframework.web.server.ResponseStatusException;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Scheduler;
+
+/**
+ * Non-blocking facade over {@link UserService}. Every call runs on the bounded JDBC scheduler; when its queue
+ * is full the call fails with 503 instead of piling up more work.
+ */
+@Component
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.REACTIVE)
+public class ReactiveUserService {
+
+    private final UserService userService;
+    private final Scheduler jdbcScheduler;
+    private final int pageSize;
+
+    public ReactiveUserService(UserService userService, Scheduler jdbcScheduler, AppConfig config) {
+        this.userService = userService;
+        this.jdbcScheduler = jdbcScheduler;
+        this.pageSize = Math.max(1, config.getDbFetchSize());
+    }
+
+    /**
+     * Runs {@code work} against the {@link UserService} on the JDBC scheduler. A null result completes empty.
+     */
+    public <T> Mono<T> call(Function<UserService, T> work) {
+        return onJdbc(() -> work.apply(userService));
+    }
+
+    /**
+     * Users with ids greater than {@code afterId}, in id order. Rows are read one keyset page at a time, and the
+     * next page is only read once the subscriber has asked for more, so a slow client holds neither a connection
+     * nor more than about one page of users.
+     */
+    public Flux<User> streamUsers(long afterId) {
+        Flux<List<User>> pages = Flux.<List<User>, Long>generate(() -> afterId, (last, sink) -> {
+            List<User> page = userService.listUsers(last, pageSize);
+            if (!page.isEmpty()) {
+                sink.next(page);
+            }
+            if (page.size() < pageSize) {
+                sink.complete();
+                return last;
+            }
+            return page.get(page.size() - 1).getId();
+        });
+        return pages.subscribeOn(jdbcScheduler)
+                .onErrorMap(RejectedExecutionException.class, ReactiveUserService::overloaded)
+                .concatMapIterable(Function.identity(), 1);
+    }
+
+    private <T> Mono<T> onJdbc(Callable<T> work) {
+        return Mono.fromCallable(work)
+                .subscribeOn(jdbcScheduler)
+                .onErrorMap(RejectedExecutionException.class, ReactiveUserService::overloaded);
+    }
+
+    private static ResponseStatusException overloaded(RejectedExecutionException e) {
+        return new ResponseStatusException(HttpStatus.SERVICE_UNAVAILABLE, "Too many pending database calls", e);
+    }
+}
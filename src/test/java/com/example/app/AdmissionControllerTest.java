@@ -0,0 +1,185 @@
+package com.example.app;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ * Tests for admission control: the per-client rate limit, the adaptive concurrency limit and which paths they
+ * cover
+ */
+public class AdmissionControllerTest {
+
+    private static final long MS = TimeUnit.MILLISECONDS.toNanos(1);
+
+    @Test
+    public void testRateLimitAdmitsBurstThenRate() {
+        // 10 per second: one every 100 ms, 5 at once
+        ClientRateLimiter limiter = new ClientRateLimiter(10, 5, 100);
+        long now = System.nanoTime();
+        for (int i = 0; i < 5; i++) {
+            assertEquals(0, limiter.acquire("a", now));
+        }
+        long wait = limiter.acquire("a", now);
+        assertEquals(100 * MS, wait);
+        // Rejections take nothing, and other clients have their own bucket
+        assertEquals(100 * MS, limiter.acquire("a", now));
+        assertEquals(0, limiter.acquire("b", now));
+
+        assertEquals(0, limiter.acquire("a", now + wait));
+        assertTrue(limiter.acquire("a", now + wait) > 0);
+        // A second idle refills the whole burst, no more
+        long later = now + wait + TimeUnit.SECONDS.toNanos(1);
+        for (int i = 0; i < 5; i++) {
+            assertEquals(0, limiter.acquire("a", later));
+        }
+        assertTrue(limiter.acquire("a", later) > 0);
+    }
+
+    @Test
+    public void testRateLimitForgetsIdleClientsWhenFull() {
+        ClientRateLimiter limiter = new ClientRateLimiter(10, 1, 2);
+        long now = System.nanoTime();
+        assertEquals(0, limiter.acquire("a", now));
+        assertEquals(0, limiter.acquire("b", now));
+        // Both still draining: newcomers share one bucket
+        assertEquals(0, limiter.acquire("c", now));
+        assertTrue(limiter.acquire("d", now) > 0);
+        assertEquals(3, limiter.size());
+
+        // Once a second has passed, refilled clients make room
+        long later = now + TimeUnit.SECONDS.toNanos(2);
+        assertEquals(0, limiter.acquire("e", later));
+        assertEquals(1, limiter.size());
+    }
+
+    @Test
+    public void testConcurrencyLimitBacksOffOnSlowCallsAndGrowsWhenReached() {
+        AdaptiveConcurrencyLimit limit = new AdaptiveConcurrencyLimit(true, 10, 2, 12, 2.0, 100, new MetricsRegistry());
+        AdaptiveConcurrencyLimit.Latency latency = limit.latency();
+        long now = System.nanoTime();
+        for (int i = 0; i < 100; i++) {
+            latency.record(2 * MS, 0, now);
+        }
+        assertEquals(2 * MS, latency.getBaselineNanos());
+        for (int i = 0; i < 10; i++) {
+            assertTrue(limit.tryAcquire());
+        }
+        assertFalse(limit.tryAcquire());
+        assertEquals(10, limit.getInFlight());
+
+        // A window of fast calls after a turned-away request: one more slot
+        now += 100 * MS;
+        latency.record(2 * MS, 0, now);
+        assertEquals(11, limit.getLimit());
+        // Without a turned-away request it stays
+        now += 100 * MS;
+        latency.record(2 * MS, 0, now);
+        assertEquals(11, limit.getLimit());
+
+        // A tenth of the calls above twice the baseline plus jitter: 10% fewer, never under the minimum
+        for (int i = 0; i < 8; i++) {
+            latency.record(2 * MS, 0, now);
+        }
+        latency.record(6 * MS, 0, now);
+        now += 100 * MS;
+        latency.record(6 * MS, 0, now);
+        assertEquals(9, limit.getLimit());
+        for (int round = 0; round < 20; round++) {
+            now += 100 * MS;
+            latency.record(50 * MS, 0, now);
+        }
+        assertEquals(2, limit.getLimit());
+        assertFalse(limit.tryAcquire());
+        for (int i = 0; i < 10; i++) {
+            limit.release();
+        }
+        assertTrue(limit.tryAcquire());
+    }
+
+    @Test
+    public void testWaitingForConnectionsIsSlowButLeavesBaseline() {
+        AdaptiveConcurrencyLimit limit = new AdaptiveConcurrencyLimit(true, 10, 2, 12, 2.0, 100, new MetricsRegistry());
+        AdaptiveConcurrencyLimit.Latency latency = limit.latency();
+        long now = System.nanoTime();
+        latency.record(20 * MS, 0, now);
+        // However long the queue for connections persists, the database itself still takes 20 ms
+        for (int round = 0; round < 50; round++) {
+            now += 100 * MS;
+            for (int i = 0; i < 100; i++) {
+                latency.record(80 * MS, 60 * MS, now);
+            }
+        }
+        assertEquals(20 * MS, latency.getBaselineNanos());
+        assertEquals(2, limit.getLimit());
+    }
+
+    @Test
+    public void testConcurrencyLimitNeverOvershootsUnderContention() throws Exception {
+        AdaptiveConcurrencyLimit limit = new AdaptiveConcurrencyLimit(true, 3, 1, 3, 2.0, 1000, new MetricsRegistry());
+        AtomicInteger inside = new AtomicInteger();
+        AtomicInteger peak = new AtomicInteger();
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int t = 0; t < 8; t++) {
+                futures.add(executor.submit(() -> {
+                    for (int i = 0; i < 20_000; i++) {
+                        if (limit.tryAcquire()) {
+                            peak.accumulateAndGet(inside.incrementAndGet(), Math::max);
+                            inside.decrementAndGet();
+                            limit.release();
+                        }
+                    }
+                }));
+            }
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } finally {
+            executor.shutdown();
+        }
+        assertTrue("peak " + peak.get(), peak.get() <= 3);
+        assertEquals(0, limit.getInFlight());
+    }
+
+    @Test
+    public void testControllerCoversUserApisOnly() {
+        Properties overrides = new Properties();
+        overrides.setProperty("app.admission.rate", "1");
+        overrides.setProperty("app.admission.burst", "1");
+        overrides.setProperty("app.admission.concurrency.initial", "1");
+        overrides.setProperty("app.admission.concurrency.min", "1");
+        AppConfig config = new AppConfig(overrides);
+        MetricsRegistry metrics = new MetricsRegistry();
+        AdmissionController admission = new AdmissionController(config, new AdaptiveConcurrencyLimit(config, metrics),
+                metrics);
+
+        assertTrue(admission.isLimited("/api/users"));
+        assertTrue(admission.isLimited("/api/users/7"));
+        assertFalse(admission.isLimited("/api/usersearch"));
+        assertFalse(admission.isLimited("/api/metrics"));
+
+        assertEquals(0, admission.acquireRate("addr:10.0.0.1"));
+        assertEquals(1, admission.acquireRate("addr:10.0.0.1"));
+        assertTrue(admission.tryAcquireSlot("/api/users/7"));
+        assertFalse(admission.tryAcquireSlot("/api/users"));
+        // Change feed waits hold no slot
+        assertTrue(admission.tryAcquireSlot("/api/users/changes"));
+        assertFalse(admission.holdsSlot("/api/users/changes"));
+        admission.release();
+        assertTrue(admission.tryAcquireSlot("/api/users"));
+        assertTrue(metrics.scrape().contains("admission_rejected_total{reason=\"concurrency\"} 1"));
+
+        overrides.setProperty("app.admission.enabled", "false");
+        assertFalse(new AdmissionController(new AppConfig(overrides), AdaptiveConcurrencyLimit.disabled(),
+                new MetricsRegistry()).isLimited("/api/users"));
+    }
+}
@@ -0,0 +1,178 @@
+package com.example.app;
+
+import com.sun.net.httpserver.HttpServer;
+import java.io.ByteArrayInputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.http.HttpClient;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ * Tests for the cached Spring Boot API client against a local stub server
+ */
+public class ApiClientTest {
+
+    private HttpServer server;
+    private String url;
+    private final AtomicInteger hits = new AtomicInteger();
+    private volatile int status = 200;
+    private volatile String body = "[{\"cycle\":\"3.2\",\"eol\":false},{\"cycle\":\"3.1\",\"eol\":false}]";
+    private volatile CountDownLatch gate = new CountDownLatch(0);
+    private volatile boolean stall;
+    private final CountDownLatch stalled = new CountDownLatch(1);
+
+    @Before
+    public void setUp() throws Exception {
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/versions", exchange -> {
+            hits.incrementAndGet();
+            try {
+                gate.await(5, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+            if (stall) {
+                // Send the headers and half the body, then never finish
+                exchange.sendResponseHeaders(status, 0);
+                OutputStream out = exchange.getResponseBody();
+                out.write(bytes, 0, bytes.length / 2);
+                out.flush();
+                try {
+                    stalled.await(30, TimeUnit.SECONDS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                exchange.close();
+                return;
+            }
+            exchange.sendResponseHeaders(status, bytes.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(bytes);
+            }
+        });
+        server.setExecutor(Executors.newCachedThreadPool());
+        server.start();
+        url = "http://127.0.0.1:" + server.getAddress().getPort() + "/versions";
+    }
+
+    @After
+    public void tearDown() {
+        stalled.countDown();
+        server.stop(0);
+    }
+
+    private ApiClient client(Duration refreshAfter, Duration expireAfter) {
+        return new ApiClient(HttpClient.newHttpClient(), url, Duration.ofSeconds(5), refreshAfter, expireAfter, true);
+    }
+
+    @Test
+    public void testFetchParsesCycles() {
+        ApiClient client = client(Duration.ofMinutes(5), Duration.ofHours(1));
+
+        assertEquals(List.of("3.2", "3.1"), client.fetchSpringBootCycles());
+    }
+
+    @Test
+    public void testTreeParseMatchesStreamingParse() {
+        ApiClient client = new ApiClient(HttpClient.newHttpClient(), url, Duration.ofSeconds(5),
+                Duration.ofMinutes(5), Duration.ofHours(1), false);
+
+        assertEquals(List.of("3.2", "3.1"), client.fetchSpringBootCycles());
+    }
+
+    @Test
+    public void testStreamingParseSkipsUnknownFields() throws Exception {
+        String payload = "[{\"releaseDate\":\"2023-11-23\",\"cycle\":\"3.2\",\"support\":{\"until\":[1,2]}},"
+                + "{\"cycle\":3},{\"eol\":true}]";
+        List<ApiClient.ReleaseCycle> cycles = ApiClient.readCycles(
+                new ByteArrayInputStream(payload.getBytes(StandardCharsets.UTF_8)));
+
+        assertEquals(List.of(new ApiClient.ReleaseCycle("3.2"), new ApiClient.ReleaseCycle("3"),
+                new ApiClient.ReleaseCycle("unknown")), cycles);
+    }
+
+    @Test
+    public void testFreshResultIsServedFromCache() {
+        ApiClient client = client(Duration.ofMinutes(5), Duration.ofHours(1));
+        client.fetchSpringBootCycles();
+        client.fetchSpringBootCycles();
+
+        assertEquals(1, hits.get());
+    }
+
+    @Test
+    public void testConcurrentMissesShareOneUpstreamCall() {
+        ApiClient client = client(Duration.ofMinutes(5), Duration.ofHours(1));
+        gate = new CountDownLatch(1);
+
+        List<CompletableFuture<List<String>>> futures = new ArrayList<>();
+        for (int i = 0; i < 20; i++) {
+            futures.add(client.fetchSpringBootCyclesAsync());
+        }
+        gate.countDown();
+
+        for (CompletableFuture<List<String>> future : futures) {
+            assertEquals(List.of("3.2", "3.1"), future.join());
+        }
+        assertEquals(1, hits.get());
+    }
+
+    @Test
+    public void testStaleResultIsServedWhileRefreshing() throws Exception {
+        ApiClient client = client(Duration.ZERO, Duration.ofHours(1));
+        client.fetchSpringBootCycles();
+
+        body = "[{\"cycle\":\"3.3\"}]";
+        assertEquals(List.of("3.2", "3.1"), client.fetchSpringBootCyclesAsync().getNow(null));
+
+        long deadline = System.currentTimeMillis() + 5000;
+        while (!client.fetchSpringBootCycles().equals(List.of("3.3")) && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        assertEquals(List.of("3.3"), client.fetchSpringBootCycles());
+    }
+
+    @Test
+    public void testFailureIsNotCached() {
+        ApiClient client = client(Duration.ofMinutes(5), Duration.ofHours(1));
+        status = 500;
+        assertTrue(client.fetchSpringBootCycles().isEmpty());
+
+        status = 200;
+        assertEquals(List.of("3.2", "3.1"), client.fetchSpringBootCycles());
+        assertEquals(2, hits.get());
+    }
+
+    @Test
+    public void testStalledBodyTimesOutAndFreesTheNextCall() {
+        for (boolean streamingParse : new boolean[] {true, false}) {
+            MetricsRegistry metrics = new MetricsRegistry();
+            ApiClient client = new ApiClient(HttpClient.newHttpClient(), url, Duration.ofMillis(300),
+                    Duration.ofMinutes(5), Duration.ofHours(1), streamingParse, metrics);
+            stall = true;
+
+            long start = System.nanoTime();
+            assertTrue(client.fetchSpringBootCycles().isEmpty());
+            assertTrue(System.nanoTime() - start < TimeUnit.SECONDS.toNanos(5));
+            assertEquals(1, metrics.counter("springboot_versions_upstream_timeouts_total", "").count());
+
+            // The timed-out call is no longer in flight, so the next miss goes upstream again
+            stall = false;
+            assertEquals(List.of("3.2", "3.1"), client.fetchSpringBootCycles());
+        }
+        assertEquals(4, hits.get());
+    }
+}
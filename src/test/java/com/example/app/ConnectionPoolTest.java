@@ -0,0 +1,104 @@
+package com.example.app;
+
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLTimeoutException;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ * Tests for the bounded connection pool
+ */
+public class ConnectionPoolTest {
+
+    private ConnectionPool pool;
+
+    @Before
+    public void setUp() {
+        pool = new ConnectionPool("jdbc:h2:mem:pooltest;DB_CLOSE_DELAY=-1", "sa", "", 2, 100, 0, 4);
+    }
+
+    @After
+    public void tearDown() {
+        pool.close();
+    }
+
+    @Test
+    public void testConnectionIsReused() throws Exception {
+        try (PooledConnection conn = pool.acquire()) {
+            conn.prepare("SELECT 1");
+        }
+        try (PooledConnection conn = pool.acquire()) {
+            conn.prepare("SELECT 1");
+        }
+
+        ConnectionPool.Stats stats = pool.stats();
+        assertEquals(1, stats.open());
+        assertEquals(1, stats.idle());
+        assertEquals(0, stats.active());
+        assertEquals(1, stats.statementCacheHits());
+        assertEquals(1, stats.statementCacheMisses());
+    }
+
+    @Test
+    public void testCachedStatementIsReturnedForSameSql() throws Exception {
+        try (PooledConnection conn = pool.acquire()) {
+            PreparedStatement first = conn.prepare("SELECT ?");
+            PreparedStatement second = conn.prepare("SELECT ?");
+            assertSame(first, second);
+        }
+    }
+
+    @Test
+    public void testEvictedStatementStaysOpenUntilRelease() throws Exception {
+        PreparedStatement evicted;
+        try (PooledConnection conn = pool.acquire()) {
+            evicted = conn.prepare("SELECT ?");
+            for (int i = 0; i < 4; i++) {
+                conn.prepare("SELECT " + i);
+            }
+            // Pushed out of the cache of 4, but the borrower may still be using it
+            assertFalse(evicted.isClosed());
+            evicted.setInt(1, 7);
+            try (ResultSet rs = evicted.executeQuery()) {
+                assertTrue(rs.next());
+                assertEquals(7, rs.getInt(1));
+            }
+            assertNotSame(evicted, conn.prepare("SELECT ?"));
+        }
+        assertTrue(evicted.isClosed());
+    }
+
+    @Test(expected = SQLTimeoutException.class)
+    public void testAcquireTimesOutWhenExhausted() throws Exception {
+        try (PooledConnection a = pool.acquire(); PooledConnection b = pool.acquire()) {
+            pool.acquire();
+        }
+    }
+
+    @Test
+    public void testTimeoutIsCounted() throws Exception {
+        try (PooledConnection a = pool.acquire(); PooledConnection b = pool.acquire()) {
+            pool.acquire();
+            fail("Expected timeout");
+        } catch (SQLTimeoutException expected) {
+            assertEquals(1, pool.stats().timeouts());
+        }
+    }
+
+    @Test
+    public void testIdleConnectionsAreEvicted() throws Exception {
+        pool.close();
+        pool = new ConnectionPool("jdbc:h2:mem:pooltest;DB_CLOSE_DELAY=-1", "sa", "", 2, 100, 1, 4);
+        try (PooledConnection conn = pool.acquire()) {
+            assertNotNull(conn.getConnection());
+        }
+        Thread.sleep(5);
+        pool.evictIdle();
+
+        assertEquals(0, pool.stats().idle());
+        assertEquals(0, pool.stats().open());
+    }
+}
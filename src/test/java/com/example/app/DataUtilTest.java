@@ -0,0 +1,71 @@
+package com.example.app;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import org.junit.AfterClass;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ * Tests that the fork/join helpers in DataUtil match their sequential counterparts
+ */
+public class DataUtilTest {
+
+    private static final ForkJoinPool pool = new ForkJoinPool(4);
+
+    @AfterClass
+    public static void shutDown() {
+        pool.shutdown();
+    }
+
+    private static List<User> usersWithDuplicates(int size) {
+        List<User> users = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            // Every email appears three times, with the duplicates spread across partitions
+            users.add(i % 97 == 0 ? null : new User(i, "User " + i, "user" + (i % (size / 3)) + "@example.com"));
+        }
+        return users;
+    }
+
+    @Test
+    public void testParallelUserMapMatchesSequential() {
+        List<User> users = usersWithDuplicates(30_000);
+
+        assertEquals(DataUtil.createUserMap(users), DataUtil.createUserMapParallel(users, pool, 100));
+    }
+
+    @Test
+    public void testContainsEach() {
+        List<Integer> collection = new LinkedList<>(List.of(1, 3, 5, 7));
+        List<Integer> values = new ArrayList<>();
+        for (int i = 0; i < 1000; i++) {
+            values.add(i % 10);
+        }
+        values.add(null);
+
+        boolean[] found = DataUtil.containsEach(collection, values, pool, 16);
+
+        for (int i = 0; i < 1000; i++) {
+            assertEquals(collection.contains(i % 10), found[i]);
+        }
+        assertFalse(found[1000]);
+    }
+
+    @Test
+    public void testDedupeKeepsFirstOccurrenceInOrder() {
+        List<User> users = usersWithDuplicates(30_000);
+
+        Map<String, User> first = new LinkedHashMap<>();
+        for (User user : users) {
+            if (user != null) {
+                first.putIfAbsent(user.getEmail(), user);
+            }
+        }
+
+        assertEquals(new ArrayList<>(first.values()), DataUtil.dedupeByEmail(users, pool, 100));
+    }
+}
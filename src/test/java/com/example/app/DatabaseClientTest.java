@@ -0,0 +1,266 @@
+package com.example.app;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import static org.junit.Assert.*;
+
+/**
+ * Tests for the managed users schema: bulk inserts with rejected rows, keyset pages and streaming in id order,
+ * id lookups and updates, the background row count, case-insensitive lookups, prefix searches and their query
+ * plans, and persistence in file mode
+ */
+public class DatabaseClientTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Rule
+    public TestDatabase database = new TestDatabase("dbclienttest");
+
+    private DatabaseClient databaseClient;
+
+    @Before
+    public void setUp() {
+        databaseClient = database.client();
+        // Running the schema twice must be harmless
+        databaseClient.initialize();
+
+        List<User> users = new ArrayList<>();
+        for (int i = 0; i < 200; i++) {
+            users.add(new User(i, (i % 2 == 0 ? "Alice " : "Bob ") + i, "User" + i + "@Example.com"));
+        }
+        databaseClient.createUsers(users);
+    }
+
+    @Test
+    public void testFindByEmailIgnoresCase() {
+        assertEquals(42, databaseClient.findByEmail("user42@example.com").getId());
+        assertEquals(42, databaseClient.findByEmail("USER42@EXAMPLE.COM").getId());
+        assertEquals("User42@Example.com", databaseClient.findByEmail("user42@example.com").getEmail());
+        assertNull(databaseClient.findByEmail("user4@example.co"));
+    }
+
+    @Test
+    public void testEmailsDifferingOnlyInCaseAreRejected() {
+        BulkInsertResult result = databaseClient.createUsers(List.of(new User(1000, "Dup", "USER1@example.com")));
+
+        assertEquals(0, result.inserted());
+        assertEquals("Email already exists", result.failures().get(0).reason());
+    }
+
+    @Test
+    public void testBulkInsertSkipsRejectedRowsInsideABatch() {
+        database.closeClient();
+        databaseClient = database.with("app.db.batchSize", "4").client();
+        List<User> users = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            users.add(new User(500 + i, "New " + i, "new" + i + "@example.com"));
+        }
+        // In the middle of the second batch: an email and an id that already exist; in the third, an email
+        // taken earlier in the same batch
+        users.set(5, new User(505, "Dup email", "USER5@example.com"));
+        users.set(6, new User(7, "Dup id", "dupid@example.com"));
+        users.set(9, new User(509, "Dup in batch", "NEW8@example.com"));
+
+        BulkInsertResult result = databaseClient.createUsers(users);
+
+        assertEquals(10, result.requested());
+        assertEquals(7, result.inserted());
+        assertEquals(List.of(5, 6, 9), result.failures().stream().map(BulkInsertResult.RowFailure::index).toList());
+        assertEquals("Email already exists", result.failures().get(0).reason());
+        assertEquals("USER5@example.com", result.failures().get(0).email());
+        assertEquals("Id already exists", result.failures().get(1).reason());
+        assertEquals("Email already exists", result.failures().get(2).reason());
+        // The rows around the rejected ones are all stored
+        for (int i : new int[] {0, 3, 4, 7, 8}) {
+            assertEquals("New " + i, databaseClient.findById(500 + i).getName());
+        }
+        assertNull(databaseClient.findById(505));
+        assertEquals("Bob 7", databaseClient.findById(7).getName());
+        assertEquals(207, databaseClient.countUsers());
+    }
+
+    @Test
+    public void testKeysetPagesAndStreamingVisitEveryUserOnceInIdOrder() {
+        List<Long> paged = new ArrayList<>();
+        long afterId = Long.MIN_VALUE;
+        List<User> page;
+        do {
+            page = databaseClient.listUsers(afterId, 64);
+            for (User user : page) {
+                paged.add(user.getId());
+            }
+            if (!page.isEmpty()) {
+                afterId = page.get(page.size() - 1).getId();
+            }
+        } while (page.size() == 64);
+        assertEquals(8, page.size());
+        assertEquals(ids(0, 200), paged);
+        assertTrue(databaseClient.listUsers(199, 10).isEmpty());
+
+        List<Long> streamed = new ArrayList<>();
+        databaseClient.forEachUser(Long.MIN_VALUE, user -> streamed.add(user.getId()));
+        assertEquals(ids(0, 200), streamed);
+        streamed.clear();
+        databaseClient.forEachUser(189, user -> streamed.add(user.getId()));
+        assertEquals(ids(190, 200), streamed);
+        // The cursor's connection goes back to the pool
+        assertEquals(0, databaseClient.poolStats().active());
+    }
+
+    @Test
+    public void testFindByIdAndUpdateEmailAndGet() {
+        User user = databaseClient.findById(42);
+        assertEquals("Alice 42", user.getName());
+        assertEquals("User42@Example.com", user.getEmail());
+        assertNull(databaseClient.findById(9999));
+
+        User updated = databaseClient.updateEmailAndGet(42, "answer@example.com");
+        assertEquals(42, updated.getId());
+        assertEquals("Alice 42", updated.getName());
+        assertEquals("answer@example.com", updated.getEmail());
+        assertEquals(1, updated.getVersion());
+        assertEquals("answer@example.com", databaseClient.findById(42).getEmail());
+        assertEquals(42, databaseClient.findByEmail("ANSWER@example.com").getId());
+
+        assertNull(databaseClient.updateEmailAndGet(9999, "nobody@example.com"));
+        assertNull(databaseClient.findByEmail("nobody@example.com"));
+        assertTrue(databaseClient.updateEmail(42, "again@example.com"));
+        assertFalse(databaseClient.updateEmail(9999, "nobody@example.com"));
+    }
+
+    @Test
+    public void testCompareAndSetUpdateChecksVersion() {
+        User user = databaseClient.findById(7);
+        assertEquals(0, user.getVersion());
+
+        user.setEmail("seven@example.com");
+        UpdateResult updated = databaseClient.updateIfVersion(user);
+        assertEquals(UpdateResult.Status.UPDATED, updated.status());
+        assertEquals(1, updated.user().getVersion());
+        assertEquals("seven@example.com", updated.user().getEmail());
+
+        // A second writer still holding version 0 loses and sees the current row
+        user.setEmail("stale@example.com");
+        UpdateResult conflict = databaseClient.updateIfVersion(user);
+        assertEquals(UpdateResult.Status.CONFLICT, conflict.status());
+        assertEquals(1, conflict.user().getVersion());
+        assertEquals("seven@example.com", databaseClient.findById(7).getEmail());
+
+        assertTrue(databaseClient.updateEmail(7, "plain@example.com"));
+        assertEquals(2, databaseClient.findById(7).getVersion());
+        assertEquals(UpdateResult.Status.NOT_FOUND,
+                databaseClient.updateIfVersion(new User(9999, "Nobody", "nobody@example.com")).status());
+    }
+
+    @Test
+    public void testRowsGaugeIsCountedInTheBackgroundNotOnScrape() throws Exception {
+        database.closeClient();
+        MetricsRegistry metrics = new MetricsRegistry();
+        databaseClient = database.with("app.db.pool.maxSize", "1").with("app.db.pool.acquireTimeoutMs", "200")
+                .with("app.db.rowCountRefreshMs", "50")
+                .withClient(config -> new DatabaseClient(config, metrics)).client();
+        // Counted once by initialize()
+        assertTrue(metrics.scrape().contains("\ndb_users_rows 200.0\n"));
+
+        databaseClient.createUsers(List.of(new User(1000, "New", "new@example.com")));
+        long deadline = System.currentTimeMillis() + 5000;
+        while (!metrics.scrape().contains("\ndb_users_rows 201.0\n") && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        assertTrue(metrics.scrape().contains("\ndb_users_rows 201.0\n"));
+
+        // While the only connection is held, a scrape still answers with the last count
+        List<String> scrapes = new ArrayList<>();
+        databaseClient.forEachUser(0, user -> {
+            if (scrapes.isEmpty()) {
+                scrapes.add(metrics.scrape());
+            }
+        });
+        assertTrue(scrapes.get(0).contains("\ndb_users_rows 201.0\n"));
+    }
+
+    @Test
+    public void testPrefixSearches() {
+        List<User> byEmail = databaseClient.findByEmailPrefix("USER1", 5);
+        assertEquals(5, byEmail.size());
+        for (User user : byEmail) {
+            assertTrue(user.getEmail().startsWith("User1"));
+        }
+        assertEquals("User100@Example.com", byEmail.get(0).getEmail());
+
+        List<User> byName = databaseClient.findByNamePrefix("bob 1", 100);
+        assertEquals(56, byName.size());
+        for (User user : byName) {
+            assertTrue(user.getName().startsWith("Bob 1"));
+        }
+        assertTrue(databaseClient.findByNamePrefix("carol", 10).isEmpty());
+    }
+
+    @Test
+    public void testLookupsUseIndexesNotTableScans() throws Exception {
+        assertIndexed(DatabaseClient.FIND_BY_EMAIL_SQL, "USERS_EMAIL_NORMALIZED_IDX", "user1@example.com");
+        assertIndexed(DatabaseClient.FIND_BY_EMAIL_PREFIX_SQL, "USERS_EMAIL_NORMALIZED_IDX", "user1", "user1\uFFFF", 10);
+        assertIndexed(DatabaseClient.FIND_BY_NAME_PREFIX_SQL, "USERS_NAME_NORMALIZED_IDX", "bob", "bob\uFFFF", 10);
+        assertIndexed(DatabaseClient.FIND_BY_ID_SQL, "PRIMARY_KEY", 1L);
+        assertIndexed(DatabaseClient.LIST_USERS_PAGE_SQL, "PRIMARY_KEY", 1L, 10);
+        assertIndexed(DatabaseClient.WARMUP_SQL.get(1), "USERS_EMAIL_NORMALIZED_IDX");
+        assertIndexed(DatabaseClient.WARMUP_SQL.get(2), "USERS_NAME_NORMALIZED_IDX");
+    }
+
+    @Test
+    public void testFileModeKeepsUsersAcrossRestarts() throws Exception {
+        Properties overrides = new Properties();
+        overrides.setProperty("app.db.mode", "file");
+        overrides.setProperty("app.db.file.path", folder.getRoot().getAbsolutePath() + "/users");
+        AppConfig config = new AppConfig(overrides);
+        assertTrue(config.getDbUrl(), config.getDbUrl().startsWith("jdbc:h2:file:"));
+
+        DatabaseClient first = new DatabaseClient(config);
+        first.initialize();
+        first.createUser(new User(1, "Ann", "Ann@Example.com"));
+        first.createUsers(List.of(new User(2, "Ben", "ben@example.com"), new User(3, "Cy", "cy@example.com")));
+        first.close();
+
+        DatabaseClient second = new DatabaseClient(config);
+        try {
+            second.initialize();
+            assertEquals(3, second.countUsers());
+            assertEquals(1, second.findByEmail("ann@example.com").getId());
+            assertEquals("Cy", second.findById(3).getName());
+        } finally {
+            second.close();
+        }
+    }
+
+    private static List<Long> ids(long from, long to) {
+        List<Long> ids = new ArrayList<>();
+        for (long id = from; id < to; id++) {
+            ids.add(id);
+        }
+        return ids;
+    }
+
+    private void assertIndexed(String sql, String index, Object... params) throws Exception {
+        try (Connection connection = database.connect();
+             PreparedStatement ps = connection.prepareStatement("EXPLAIN " + sql)) {
+            for (int i = 0; i < params.length; i++) {
+                ps.setObject(i + 1, params[i]);
+            }
+            try (ResultSet rs = ps.executeQuery()) {
+                rs.next();
+                String plan = rs.getString(1);
+                assertTrue(plan, plan.contains(index));
+                assertFalse(plan, plan.contains("tableScan"));
+            }
+        }
+    }
+}
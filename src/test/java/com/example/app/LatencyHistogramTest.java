@@ -0,0 +1,41 @@
+package com.example.app;
+
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ * Tests for the log-linear latency histogram
+ */
+public class LatencyHistogramTest {
+
+    @Test
+    public void testBucketsCoverTheRangeWithoutGaps() {
+        long previousHigh = -1;
+        for (int i = 0; i < LatencyHistogram.BUCKET_COUNT; i++) {
+            long high = LatencyHistogram.highestValueInBucket(i);
+            assertEquals(i, LatencyHistogram.bucketIndex(previousHigh + 1));
+            assertEquals(i, LatencyHistogram.bucketIndex(high));
+            previousHigh = high;
+        }
+        assertEquals(LatencyHistogram.BUCKET_COUNT - 1, LatencyHistogram.bucketIndex(Long.MAX_VALUE));
+    }
+
+    @Test
+    public void testPercentilesAreWithinBucketPrecision() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        for (long micros = 1; micros <= 10_000; micros++) {
+            histogram.record(micros * 1_000);
+        }
+
+        assertEquals(10_000, histogram.getCount());
+        assertEquals(10_000_000, histogram.getMaxNanos());
+        assertEquals(5_000_000, histogram.valueAtPercentile(50), 5_000_000 * 0.035);
+        assertEquals(9_900_000, histogram.valueAtPercentile(99), 9_900_000 * 0.035);
+        assertEquals(10_000_000, histogram.valueAtPercentile(100));
+    }
+
+    @Test
+    public void testEmptyHistogramReportsZero() {
+        assertEquals(0, new LatencyHistogram().valueAtPercentile(99));
+    }
+}
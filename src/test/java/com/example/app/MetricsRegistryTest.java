@@ -0,0 +1,49 @@
+package com.example.app;
+
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ * Tests for metric registration and the Prometheus text output
+ */
+public class MetricsRegistryTest {
+
+    @Test
+    public void testSameNameAndLabelsReturnTheSameMetric() {
+        MetricsRegistry metrics = new MetricsRegistry();
+        MetricsRegistry.Counter first = metrics.counter("errors_total", "Errors", "method", "findById");
+        MetricsRegistry.Counter second = metrics.counter("errors_total", "Errors", "method", "findById");
+
+        assertSame(first, second);
+        assertNotSame(first, metrics.counter("errors_total", "Errors", "method", "findByEmail"));
+    }
+
+    @Test
+    public void testScrapeRendersEveryMetricType() {
+        MetricsRegistry metrics = new MetricsRegistry();
+        metrics.counter("errors_total", "Errors", "method", "findById").increment();
+        metrics.timer("call_seconds", "Latency", "method", "findById").record(2_000_000);
+        metrics.gauge("rows", "Rows", () -> 42);
+
+        String text = metrics.scrape();
+
+        assertTrue(text.contains("# TYPE errors_total counter\nerrors_total{method=\"findById\"} 1\n"));
+        assertTrue(text.contains("call_seconds{method=\"findById\",quantile=\"0.99\"} 0.002"));
+        assertTrue(text.contains("call_seconds_count{method=\"findById\"} 1\n"));
+        assertTrue(text.contains("# TYPE rows gauge\nrows 42.0\n"));
+    }
+
+    @Test
+    public void testFailingGaugeIsRenderedAsNaN() {
+        MetricsRegistry metrics = new MetricsRegistry();
+        metrics.gauge("broken", "Broken", () -> {
+            throw new IllegalStateException("Failed to count users");
+        });
+        metrics.gauge("rows", "Rows", () -> 42);
+
+        String text = metrics.scrape();
+
+        assertTrue(text.contains("\nbroken NaN\n"));
+        assertTrue(text.contains("\nrows 42.0\n"));
+    }
+}
@@ -0,0 +1,215 @@
+package com.example.app;
+
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ * Tests for users sharded over three in-memory databases: routing by id, unique emails across shards through
+ * the email routes, and merged listings
+ */
+public class ShardedDatabaseClientTest {
+
+    @Rule
+    public TestDatabase database = new TestDatabase("shardtest", 3);
+
+    private DatabaseClient databaseClient;
+
+    @Before
+    public void setUp() {
+        databaseClient = database.client();
+        List<User> users = new ArrayList<>();
+        for (int i = 0; i < 300; i++) {
+            users.add(new User(i, (i % 2 == 0 ? "Alice " : "Bob ") + i, "User" + i + "@Example.com"));
+        }
+        assertEquals(300, databaseClient.createUsers(users).inserted());
+    }
+
+    @Test
+    public void testUsersAreSpreadOverShards() throws Exception {
+        assertEquals(3, databaseClient.shardCount());
+        assertEquals(300, databaseClient.countUsers());
+        for (int shard = 0; shard < database.shards(); shard++) {
+            long rows = countRows(shard, "users");
+            assertTrue("Shard " + shard + " holds " + rows, rows > 60 && rows < 140);
+        }
+        assertEquals("Bob 41", databaseClient.findById(41).getName());
+        assertEquals(41, databaseClient.findByEmail("USER41@example.COM").getId());
+        assertNull(databaseClient.findByEmail("user4@example.co"));
+    }
+
+    @Test
+    public void testEmailsStayUniqueAcrossShards() {
+        try {
+            databaseClient.createUser(new User(1000, "Dup", "user7@EXAMPLE.com"));
+            fail("Expected a duplicate email to be rejected");
+        } catch (IllegalStateException expected) {
+            assertNull(databaseClient.findById(1000));
+        }
+
+        BulkInsertResult result = databaseClient.createUsers(List.of(
+                new User(1001, "New", "new@example.com"),
+                new User(1002, "Dup", "USER8@example.com"),
+                new User(1003, "Dup", "NEW@example.com"),
+                new User(5, "Same id", "other@example.com")));
+        assertEquals(1, result.inserted());
+        assertEquals(List.of(1, 2, 3), result.failures().stream().map(BulkInsertResult.RowFailure::index).toList());
+        assertEquals("Email already exists", result.failures().get(0).reason());
+        assertEquals("Id already exists", result.failures().get(2).reason());
+        // The rejected id's route was taken back, so the email is still free
+        assertNull(databaseClient.findByEmail("other@example.com"));
+        databaseClient.createUser(new User(1004, "Other", "other@example.com"));
+        assertEquals(1004, databaseClient.findByEmail("other@example.com").getId());
+    }
+
+    @Test
+    public void testEmailRouteConflictsAreDuplicateEmailsAndIdConflictsAreNot() {
+        // The email route is held by user 7, on whichever shard the email hashes to
+        assertEquals(CreateResult.Status.DUPLICATE_EMAIL, new UserService(databaseClient, UserCache.disabled(), () -> 7000)
+                .createAndSubmitUser("Dup", "USER7@example.com").status());
+        try {
+            new UserService(databaseClient, UserCache.disabled(), () -> 7)
+                    .createAndSubmitUser("Dup id", "dupid@example.com");
+            fail("Expected an id conflict to fail");
+        } catch (IllegalStateException expected) {
+            // The email claimed before the row was rejected is given back
+            assertNull(databaseClient.findByEmail("dupid@example.com"));
+            assertEquals(CreateResult.Status.CREATED, new UserService(databaseClient, UserCache.disabled(), () -> 7000)
+                    .createAndSubmitUser("Later", "dupid@example.com").status());
+        }
+    }
+
+    @Test
+    public void testUpdatesAndDeletesMoveEmailRoutes() {
+        assertTrue(databaseClient.updateEmail(3, "three@example.com"));
+        assertNull(databaseClient.findByEmail("user3@example.com"));
+        assertEquals(3, databaseClient.findByEmail("three@example.com").getId());
+        // The old email is free again, the new one is taken
+        databaseClient.createUser(new User(2000, "Reuse", "user3@example.com"));
+        try {
+            databaseClient.updateEmailAndGet(4, "THREE@example.com");
+            fail("Expected a duplicate email to be rejected");
+        } catch (IllegalStateException expected) {
+            assertEquals("User4@Example.com", databaseClient.findById(4).getEmail());
+        }
+
+        User user = databaseClient.findById(9);
+        user.setEmail("nine@example.com");
+        assertEquals(UpdateResult.Status.UPDATED, databaseClient.updateIfVersion(user).status());
+        user.setEmail("stale@example.com");
+        UpdateResult conflict = databaseClient.updateIfVersion(user);
+        assertEquals(UpdateResult.Status.CONFLICT, conflict.status());
+        assertEquals("nine@example.com", conflict.user().getEmail());
+        assertNull(databaseClient.findByEmail("stale@example.com"));
+        assertFalse(databaseClient.updateEmail(9999, "nobody@example.com"));
+
+        databaseClient.deleteUser(9);
+        assertNull(databaseClient.findByEmail("nine@example.com"));
+        databaseClient.createUser(new User(2001, "Nine", "nine@example.com"));
+    }
+
+    @Test
+    public void testConcurrentEmailChangesDoNotExhaustSmallPools() throws Exception {
+        // One connection per shard: an update that waited for a second connection while holding the row lock
+        // would wait for itself or for another update doing the same
+        database.closeClient();
+        databaseClient = database.with("app.db.pool.maxSize", "1").with("app.db.pool.acquireTimeoutMs", "2000")
+                .client();
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<?>> updaters = new ArrayList<>();
+            for (int t = 0; t < 8; t++) {
+                long firstId = t * 30L;
+                updaters.add(executor.submit(() -> {
+                    for (int i = 0; i < 50; i++) {
+                        long id = firstId + i % 30;
+                        assertTrue(databaseClient.updateEmail(id, "moved" + i + "." + id + "@example.com"));
+                    }
+                    return null;
+                }));
+            }
+            for (Future<?> updater : updaters) {
+                updater.get(60, TimeUnit.SECONDS);
+            }
+        } finally {
+            executor.shutdown();
+        }
+
+        long routes = 0;
+        for (int shard = 0; shard < database.shards(); shard++) {
+            routes += countRows(shard, "email_routes");
+        }
+        assertEquals(300, routes);
+        assertEquals(0, databaseClient.findByEmail("moved30.0@example.com").getId());
+        assertEquals(239, databaseClient.findByEmail("moved29.239@example.com").getId());
+        assertNull(databaseClient.findByEmail("user0@example.com"));
+        assertNull(databaseClient.findByEmail("moved0.0@example.com"));
+    }
+
+    @Test
+    public void testListingsMergeShardsInOrder() {
+        List<User> all = databaseClient.listUsers();
+        assertEquals(300, all.size());
+        for (int i = 0; i < all.size(); i++) {
+            assertEquals(i, all.get(i).getId());
+        }
+        List<User> page = databaseClient.listUsers(99, 10);
+        assertEquals(List.of(100L, 101L, 102L, 103L, 104L, 105L, 106L, 107L, 108L, 109L),
+                page.stream().map(User::getId).toList());
+
+        List<Long> streamed = new ArrayList<>();
+        databaseClient.forEachUser(250, user -> streamed.add(user.getId()));
+        assertEquals(49, streamed.size());
+        for (int i = 0; i < streamed.size(); i++) {
+            assertEquals(251 + i, (long) streamed.get(i));
+        }
+
+        List<User> byEmail = databaseClient.findByEmailPrefix("USER1", 5);
+        assertEquals(List.of("User100@Example.com", "User101@Example.com", "User102@Example.com",
+                "User103@Example.com", "User104@Example.com"), byEmail.stream().map(User::getEmail).toList());
+        List<User> byName = databaseClient.findByNamePrefix("bob 1", 100);
+        assertEquals(56, byName.size());
+        assertEquals("Bob 1", byName.get(0).getName());
+        assertEquals("Bob 101", byName.get(1).getName());
+    }
+
+    @Test
+    public void testStaleEmailRoutesAreRemovedAtStartup() throws Exception {
+        // Routes whose user row was never written or has another email, as after a crash between the two writes
+        database.closeClient();
+        for (int shard = 0; shard < database.shards(); shard++) {
+            try (Connection connection = database.connect(shard)) {
+                connection.createStatement().execute("INSERT INTO email_routes (email_normalized, user_id) "
+                        + "VALUES ('ghost@example.com', 5000), ('old@example.com', 1)");
+            }
+        }
+        databaseClient = database.client();
+
+        long routes = 0;
+        for (int shard = 0; shard < database.shards(); shard++) {
+            routes += countRows(shard, "email_routes");
+        }
+        assertEquals(300, routes);
+        assertNull(databaseClient.findByEmail("old@example.com"));
+        assertEquals(1, databaseClient.findByEmail("user1@example.com").getId());
+        databaseClient.createUser(new User(5001, "Ghost", "ghost@example.com"));
+        assertEquals(5001, databaseClient.findByEmail("ghost@example.com").getId());
+    }
+
+    private long countRows(int shard, String table) throws Exception {
+        try (Connection connection = database.connect(shard);
+             ResultSet rs = connection.createStatement().executeQuery("SELECT COUNT(*) FROM " + table)) {
+            rs.next();
+            return rs.getLong(1);
+        }
+    }
+}
@@ -0,0 +1,132 @@
+package com.example.app;
+
+import java.util.Arrays;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ * Tests for the lock-free Snowflake id generator, including waiting for the clock
+ */
+public class SnowflakeIdGeneratorTest {
+
+    @Test
+    public void testIdsAreUniqueUnderContention() throws Exception {
+        SnowflakeIdGenerator generator = new SnowflakeIdGenerator(7);
+        int threads = 8;
+        int perThread = 250_000;
+        long[][] issued = new long[threads][perThread];
+        CountDownLatch start = new CountDownLatch(1);
+
+        Thread[] workers = new Thread[threads];
+        for (int t = 0; t < threads; t++) {
+            long[] ids = issued[t];
+            workers[t] = new Thread(() -> {
+                try {
+                    start.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+                for (int i = 0; i < ids.length; i++) {
+                    ids[i] = generator.nextId();
+                }
+            });
+            workers[t].start();
+        }
+        start.countDown();
+        for (Thread worker : workers) {
+            worker.join();
+        }
+
+        long[] all = new long[threads * perThread];
+        for (int t = 0; t < threads; t++) {
+            long[] ids = issued[t];
+            for (int i = 1; i < ids.length; i++) {
+                assertTrue("ids must increase within a thread", ids[i] > ids[i - 1]);
+            }
+            System.arraycopy(ids, 0, all, t * perThread, perThread);
+        }
+        Arrays.sort(all);
+        for (int i = 1; i < all.length; i++) {
+            assertNotEquals("duplicate id issued", all[i - 1], all[i]);
+        }
+    }
+
+    @Test
+    public void testIdCarriesNodeId() {
+        SnowflakeIdGenerator generator = new SnowflakeIdGenerator(1023);
+        long id = generator.nextId();
+
+        assertTrue(id > 0);
+        assertEquals(1023, SnowflakeIdGenerator.nodeIdOf(id));
+    }
+
+    @Test
+    public void testGeneratorsOnDifferentNodesDoNotCollide() {
+        SnowflakeIdGenerator a = new SnowflakeIdGenerator(1);
+        SnowflakeIdGenerator b = new SnowflakeIdGenerator(2);
+        for (int i = 0; i < 10_000; i++) {
+            assertNotEquals(a.nextId(), b.nextId());
+        }
+    }
+
+    @Test(timeout = 5000)
+    public void testGeneratorsKeepTheirOwnState() {
+        // A generator on a clock a day ahead must not hold back a real one for the same node
+        long tomorrow = System.currentTimeMillis() + TimeUnit.DAYS.toMillis(1);
+        SnowflakeIdGenerator ahead = new SnowflakeIdGenerator(900, () -> tomorrow);
+        ahead.nextId();
+
+        long id = new SnowflakeIdGenerator(900).nextId();
+        assertTrue(timestampOf(id) <= System.currentTimeMillis() - SnowflakeIdGenerator.EPOCH_MILLIS);
+    }
+
+    @Test
+    public void testWaitsForTheClockInsteadOfRunningAhead() throws Exception {
+        // Twice, as a new generator must start afresh
+        waitsForTheClock();
+        waitsForTheClock();
+    }
+
+    private static void waitsForTheClock() throws Exception {
+        long start = SnowflakeIdGenerator.EPOCH_MILLIS + 1_000_000;
+        AtomicLong millis = new AtomicLong(start);
+        SnowflakeIdGenerator generator = new SnowflakeIdGenerator(900, millis::get);
+        for (int i = 0; i < 4096; i++) {
+            assertEquals(1_000_000, timestampOf(generator.nextId()));
+        }
+
+        // The millisecond is used up: the next id waits for the clock to move on
+        AtomicLong next = new AtomicLong();
+        Thread waiting = new Thread(() -> next.set(generator.nextId()));
+        waiting.start();
+        waiting.join(200);
+        assertTrue(waiting.isAlive());
+        millis.set(start + 1);
+        waiting.join(5000);
+        assertEquals(1_000_001, timestampOf(next.get()));
+
+        // A clock stepping back holds ids at the last millisecond until it has caught up again
+        millis.set(start - 50);
+        Thread behind = new Thread(() -> next.set(generator.nextId()));
+        behind.start();
+        behind.join(200);
+        assertTrue(behind.isAlive());
+        millis.set(start + 1);
+        behind.join(5000);
+        assertEquals(1_000_001, timestampOf(next.get()));
+        assertEquals(900, SnowflakeIdGenerator.nodeIdOf(next.get()));
+    }
+
+    private static long timestampOf(long id) {
+        return id >>> (SnowflakeIdGenerator.NODE_BITS + SnowflakeIdGenerator.SEQUENCE_BITS);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testNodeIdOutOfRangeIsRejected() {
+        new SnowflakeIdGenerator(SnowflakeIdGenerator.MAX_NODE_ID + 1);
+    }
+}
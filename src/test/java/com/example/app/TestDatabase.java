@@ -0,0 +1,113 @@
+package com.example.app;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Properties;
+import java.util.function.Function;
+import org.junit.rules.ExternalResource;
+
+/**
+ * In-memory databases for one test and a {@link DatabaseClient} on them, opened and initialized on first use.
+ * After the test the client is closed and the databases emptied, so the next test starts from nothing. With more
+ * than one shard the client spreads users over that many databases.
+ */
+public class TestDatabase extends ExternalResource {
+
+    private final String[] urls;
+    private final Properties overrides = new Properties();
+    private Function<AppConfig, DatabaseClient> factory = DatabaseClient::new;
+    private DatabaseClient client;
+    private boolean used;
+
+    public TestDatabase(String name) {
+        this(name, 1);
+    }
+
+    public TestDatabase(String name, int shards) {
+        urls = new String[shards];
+        for (int i = 0; i < shards; i++) {
+            urls[i] = "jdbc:h2:mem:" + name + (shards == 1 ? "" : Integer.toString(i)) + ";DB_CLOSE_DELAY=-1";
+        }
+        if (shards == 1) {
+            overrides.setProperty("app.db.url", urls[0]);
+        } else {
+            overrides.setProperty("app.db.shards.urls", String.join(",", urls));
+        }
+    }
+
+    /**
+     * Sets a configuration property for clients opened from now on.
+     */
+    public TestDatabase with(String key, String value) {
+        overrides.setProperty(key, value);
+        return this;
+    }
+
+    /**
+     * Builds clients with {@code factory} instead of {@link DatabaseClient#DatabaseClient(AppConfig)}.
+     */
+    public TestDatabase withClient(Function<AppConfig, DatabaseClient> factory) {
+        this.factory = factory;
+        return this;
+    }
+
+    public AppConfig config() {
+        return new AppConfig(overrides);
+    }
+
+    /**
+     * The client, opened and initialized on the first call and after {@link #closeClient()}.
+     */
+    public DatabaseClient client() {
+        if (client == null) {
+            used = true;
+            client = factory.apply(config());
+            client.initialize();
+        }
+        return client;
+    }
+
+    /**
+     * Closes the client and keeps the data, as for a restart; the next {@link #client()} opens a new one.
+     */
+    public void closeClient() {
+        if (client != null) {
+            client.close();
+            client = null;
+        }
+    }
+
+    public int shards() {
+        return urls.length;
+    }
+
+    /**
+     * A connection of its own to the database of {@code shard}, bypassing the client.
+     */
+    public Connection connect(int shard) throws SQLException {
+        used = true;
+        return DriverManager.getConnection(urls[shard], "sa", "");
+    }
+
+    public Connection connect() throws SQLException {
+        return connect(0);
+    }
+
+    @Override
+    protected void after() {
+        closeClient();
+        if (!used) {
+            return;
+        }
+        for (int i = 0; i < urls.length; i++) {
+            try (Connection connection = connect(i);
+                 Statement stmt = connection.createStatement()) {
+                stmt.execute("DROP ALL OBJECTS");
+            } catch (SQLException e) {
+                throw new IllegalStateException("Failed to empty " + urls[i], e);
+            }
+        }
+    }
+}
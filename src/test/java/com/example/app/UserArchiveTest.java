@@ -0,0 +1,152 @@
+package com.example.app;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import static org.junit.Assert.*;
+
+/**
+ * Tests for the binary user archive: round trips across several blocks, with and without compression,
+ * import into the database and rejection of malformed files
+ */
+public class UserArchiveTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Rule
+    public TestDatabase database = new TestDatabase("archivetest");
+
+    private DatabaseClient databaseClient;
+
+    @Before
+    public void setUp() {
+        databaseClient = database.client();
+    }
+
+    @Test
+    public void testRoundTripAcrossBlocks() throws IOException {
+        List<User> users = users(1000);
+        for (boolean compress : new boolean[] {false, true}) {
+            Path file = folder.newFile().toPath();
+            try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE);
+                 UserArchive.Writer writer = new UserArchive.Writer(channel, compress, 64)) {
+                for (User user : users) {
+                    writer.write(user);
+                }
+                assertEquals(1000, writer.finish());
+            }
+
+            List<User> read = new ArrayList<>();
+            try (UserArchive.Reader reader = UserArchive.Reader.open(file)) {
+                while (reader.next(read)) {
+                    assertTrue(read.size() % 64 == 0 || read.size() == 1000);
+                }
+            }
+            assertEquals(users.size(), read.size());
+            for (int i = 0; i < users.size(); i++) {
+                assertEquals(users.get(i).getId(), read.get(i).getId());
+                assertEquals(users.get(i).getName(), read.get(i).getName());
+                assertEquals(users.get(i).getEmail(), read.get(i).getEmail());
+            }
+        }
+    }
+
+    @Test
+    public void testExportAndImportKeepIdsAndReportDuplicates() throws IOException {
+        databaseClient.createUsers(users(300));
+        Path file = folder.getRoot().toPath().resolve("users.usrb");
+        assertEquals(300, UserArchive.export(databaseClient, file, true));
+
+        databaseClient.deleteUser(7);
+        databaseClient.deleteUser(250);
+        UserArchive.ImportResult result = UserArchive.importFrom(databaseClient, file);
+
+        assertEquals(300, result.rows());
+        assertEquals(2, result.inserted());
+        assertEquals(298, result.rejected());
+        assertEquals(0, result.failures().get(0).index());
+        assertEquals("Zoë 250", databaseClient.findById(250).getName());
+        assertEquals(300, databaseClient.countUsers());
+    }
+
+    @Test
+    public void testRejectsMalformedArchives() throws IOException {
+        Path file = folder.newFile().toPath();
+        Files.write(file, "not an archive at all".getBytes());
+        assertMalformed(file);
+
+        Path valid = folder.getRoot().toPath().resolve("valid.usrb");
+        databaseClient.createUsers(users(10));
+        UserArchive.export(databaseClient, valid, false);
+        byte[] bytes = Files.readAllBytes(valid);
+        Files.write(file, Arrays.copyOf(bytes, bytes.length - 20));
+        assertMalformed(file);
+    }
+
+    @Test
+    public void testBadBlockKeepsAndReportsEarlierBlocks() throws IOException {
+        Path file = folder.newFile().toPath();
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE);
+             UserArchive.Writer writer = new UserArchive.Writer(channel, false, 64)) {
+            for (User user : users(200)) {
+                writer.write(user);
+            }
+            writer.finish();
+        }
+        byte[] bytes = Files.readAllBytes(file);
+        Files.write(file, Arrays.copyOf(bytes, bytes.length - 20));
+
+        UserArchive.ImportResult result = UserArchive.importFrom(databaseClient, file);
+        assertFalse(result.isComplete());
+        assertTrue(result.error(), result.error().contains("archive"));
+        assertEquals(192, result.rows());
+        assertEquals(192, result.inserted());
+        assertEquals(192, databaseClient.countUsers());
+
+        // Over HTTP the committed part comes back instead of a bare 400
+        UserController controller = new UserController(new UserService(databaseClient, UserCache.disabled(),
+                new SnowflakeIdGenerator(1)), databaseClient, new ObjectMapper(), database.config());
+        ResponseEntity<UserArchive.ImportResult> response = controller.importArchive(Files.newInputStream(file));
+        assertEquals(HttpStatus.MULTI_STATUS, response.getStatusCode());
+        assertEquals(0, response.getBody().inserted());
+        assertEquals(192, response.getBody().rejected());
+        assertFalse(response.getBody().isComplete());
+
+        Files.write(file, "not an archive at all".getBytes());
+        assertEquals(HttpStatus.BAD_REQUEST, controller.importArchive(Files.newInputStream(file)).getStatusCode());
+    }
+
+    private static void assertMalformed(Path file) {
+        try (UserArchive.Reader reader = UserArchive.Reader.open(file)) {
+            List<User> read = new ArrayList<>();
+            while (reader.next(read)) {
+                read.clear();
+            }
+            fail("Expected a malformed archive to be rejected");
+        } catch (IOException expected) {
+            assertTrue(expected.getMessage(), expected.getMessage().contains("archive"));
+        }
+    }
+
+    private static List<User> users(int count) {
+        List<User> users = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            String name = i % 10 == 0 ? "Zoë " + i : "User " + i;
+            users.add(new User(i, name, "user" + i + "@example.com"));
+        }
+        return users;
+    }
+}
@@ -0,0 +1,83 @@
+package com.example.app;
+
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ * Tests for the id/email user cache
+ */
+public class UserCacheTest {
+
+    @Test
+    public void testLookupByIdAndEmail() {
+        UserCache cache = new UserCache(10, 60_000);
+        cache.putIfFresh(new User(1, "Ann", "ann@example.com"), cache.stamp());
+
+        assertEquals("Ann", cache.getById(1).getName());
+        assertEquals(1, cache.getByEmail("ann@example.com").getId());
+        assertNull(cache.getByEmail("bob@example.com"));
+        assertEquals(2, cache.stats().hits());
+        assertEquals(1, cache.stats().misses());
+    }
+
+    @Test
+    public void testInvalidateRemovesBothKeys() {
+        UserCache cache = new UserCache(10, 60_000);
+        cache.putIfFresh(new User(1, "Ann", "ann@example.com"), cache.stamp());
+        cache.invalidate(1);
+
+        assertNull(cache.getById(1));
+        assertNull(cache.getByEmail("ann@example.com"));
+    }
+
+    @Test
+    public void testStaleLoadIsNotCachedAfterInvalidation() {
+        UserCache cache = new UserCache(10, 60_000);
+        long stamp = cache.stamp();
+        cache.invalidate(1);
+        cache.putIfFresh(new User(1, "Ann", "old@example.com"), stamp);
+
+        assertNull(cache.getById(1));
+    }
+
+    @Test
+    public void testLeastRecentlyUsedEntryIsEvicted() {
+        UserCache cache = new UserCache(2, 60_000);
+        cache.putIfFresh(new User(1, "Ann", "ann@example.com"), cache.stamp());
+        cache.putIfFresh(new User(2, "Bob", "bob@example.com"), cache.stamp());
+        cache.getById(1);
+        cache.putIfFresh(new User(3, "Cid", "cid@example.com"), cache.stamp());
+
+        assertNotNull(cache.getById(1));
+        assertNull(cache.getByEmail("bob@example.com"));
+        assertEquals(1, cache.stats().evictions());
+    }
+
+    @Test
+    public void testExpiredEntryIsAMiss() throws InterruptedException {
+        UserCache cache = new UserCache(10, 1);
+        cache.putIfFresh(new User(1, "Ann", "ann@example.com"), cache.stamp());
+        Thread.sleep(5);
+
+        assertNull(cache.getById(1));
+        assertEquals(1, cache.stats().expirations());
+    }
+
+    @Test
+    public void testReturnedUserIsACopy() {
+        UserCache cache = new UserCache(10, 60_000);
+        cache.putIfFresh(new User(1, "Ann", "ann@example.com"), cache.stamp());
+        cache.getById(1).setEmail("changed@example.com");
+
+        assertEquals("ann@example.com", cache.getById(1).getEmail());
+    }
+
+    @Test
+    public void testDisabledCacheHoldsNothing() {
+        UserCache cache = UserCache.disabled();
+        cache.putIfFresh(new User(1, "Ann", "ann@example.com"), cache.stamp());
+
+        assertNull(cache.getById(1));
+        assertFalse(cache.isEnabled());
+    }
+}
@@ -0,0 +1,172 @@
+package com.example.app;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Properties;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import org.junit.Rule;
+import org.junit.Test;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.context.request.async.DeferredResult;
+import static org.junit.Assert.*;
+
+/**
+ * Tests for the change log: gap-free sequences under concurrent writers, resync once a reader falls out of the
+ * ring, waking waiting readers, the changes DatabaseClient publishes and the cap on waiting consumers
+ */
+public class UserChangeLogTest {
+
+    @Rule
+    public TestDatabase database = new TestDatabase("changelogtest");
+
+    @Test
+    public void testReadersSeeEveryChangeOnceInOrder() throws Exception {
+        UserChangeLog log = new UserChangeLog(true, 100_000, new MetricsRegistry());
+        long start = log.head();
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            List<Future<?>> writers = new ArrayList<>();
+            for (int t = 0; t < 4; t++) {
+                int writer = t;
+                writers.add(executor.submit(() -> {
+                    for (int i = 0; i < 10_000; i++) {
+                        log.publish(UserChange.Type.CREATED, new User(writer * 10_000L + i, "User", "u@example.com"));
+                    }
+                }));
+            }
+            Set<Long> ids = new HashSet<>();
+            long position = start;
+            while (ids.size() < 40_000) {
+                UserChangeLog.Batch batch = log.await(position, 1000, TimeUnit.SECONDS.toNanos(5));
+                assertFalse(batch.resync());
+                assertFalse("Timed out at " + ids.size(), batch.changes().isEmpty());
+                for (UserChange change : batch.changes()) {
+                    assertEquals(++position, change.sequence());
+                    assertTrue(ids.add(change.user().getId()));
+                }
+                assertEquals(position, batch.nextAfter());
+            }
+            for (Future<?> writer : writers) {
+                writer.get();
+            }
+            assertEquals(start + 40_000, log.head());
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    public void testReadersTooFarBehindMustResync() {
+        UserChangeLog log = new UserChangeLog(true, 10, new MetricsRegistry());
+        long start = log.head();
+        User user = new User(1, "Ann", "ann@example.com");
+        for (int i = 0; i < 16; i++) {
+            log.publish(UserChange.Type.UPDATED, user);
+        }
+        // Capacity rounds up to 16 slots: the first change is still there, one more overwrites it
+        assertEquals(16, log.read(start, 100).changes().size());
+        log.publish(UserChange.Type.UPDATED, user);
+
+        UserChangeLog.Batch lost = log.read(start, 100);
+        assertTrue(lost.resync());
+        assertEquals(log.head(), lost.nextAfter());
+        assertEquals(16, log.read(start + 1, 100).changes().size());
+        // Positions from before this log, and ones it never handed out, cannot be continued either
+        assertTrue(log.read(start - 5, 100).resync());
+        assertTrue(log.read(log.head() + 1, 100).resync());
+        assertTrue(log.read(log.head(), 100).changes().isEmpty());
+    }
+
+    @Test
+    public void testWaitingReaderWakesOnPublishAndClose() throws Exception {
+        UserChangeLog log = new UserChangeLog(true, 16, new MetricsRegistry());
+        long start = log.head();
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            Future<UserChangeLog.Batch> waiting = executor.submit(() -> log.await(start, 10, TimeUnit.SECONDS.toNanos(30)));
+            Thread.sleep(50);
+            User user = new User(7, "Ann", "ann@example.com");
+            log.publish(UserChange.Type.CREATED, user);
+            user.setEmail("changed@example.com");
+
+            List<UserChange> changes = waiting.get(5, TimeUnit.SECONDS).changes();
+            assertEquals(1, changes.size());
+            // The log keeps a copy, not the caller's object
+            assertEquals("ann@example.com", changes.get(0).user().getEmail());
+
+            assertTrue(log.await(log.head(), 10, TimeUnit.MILLISECONDS.toNanos(20)).changes().isEmpty());
+            Future<UserChangeLog.Batch> closing = executor.submit(() -> log.await(log.head(), 10, TimeUnit.SECONDS.toNanos(30)));
+            Thread.sleep(50);
+            log.close();
+            assertTrue(closing.get(5, TimeUnit.SECONDS).changes().isEmpty());
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    public void testDatabaseClientPublishesCommittedChanges() throws Exception {
+        UserChangeLog log = new UserChangeLog(true, 1024, new MetricsRegistry());
+        DatabaseClient databaseClient =
+                database.withClient(config -> new DatabaseClient(config, new MetricsRegistry(), log)).client();
+        long start = log.head();
+        databaseClient.createUser(new User(1, "Ann", "ann@example.com"));
+        BulkInsertResult bulk = databaseClient.createUsers(List.of(
+                new User(2, "Ben", "ben@example.com"),
+                new User(3, "Dup", "ANN@example.com"),
+                new User(4, "Cy", "cy@example.com")));
+        assertEquals(2, bulk.inserted());
+        assertTrue(databaseClient.updateEmail(2, "benjamin@example.com"));
+        assertFalse(databaseClient.updateEmail(99, "nobody@example.com"));
+        User cy = databaseClient.findById(4);
+        cy.setName("Cyrus");
+        assertTrue(databaseClient.updateIfVersion(cy).isUpdated());
+        assertFalse(databaseClient.updateIfVersion(cy).isUpdated());
+        databaseClient.deleteUser(1);
+        databaseClient.deleteUser(1);
+
+        List<UserChange> changes = log.read(start, 100).changes();
+        assertEquals(List.of("CREATED 1 0", "CREATED 2 0", "CREATED 4 0", "UPDATED 2 1", "UPDATED 4 1",
+                "DELETED 1 1"), changes.stream()
+                .map(change -> change.type() + " " + change.user().getId() + " " + change.user().getVersion())
+                .toList());
+        assertEquals("benjamin@example.com", changes.get(3).user().getEmail());
+        assertEquals("Cyrus", changes.get(4).user().getName());
+        assertEquals("ann@example.com", changes.get(5).user().getEmail());
+    }
+
+    @Test
+    public void testWaitingPollsAndStreamsAreCapped() throws Exception {
+        UserChangeLog log = new UserChangeLog(true, 16, new MetricsRegistry());
+        Properties overrides = new Properties();
+        overrides.setProperty("app.users.changes.maxWaiters", "1");
+        MetricsRegistry metrics = new MetricsRegistry();
+        UserChangeController controller = new UserChangeController(log, new AppConfig(overrides), metrics);
+        long start = log.head();
+
+        DeferredResult<ResponseEntity<UserChangeLog.Batch>> waiting = controller.poll(start, null, 30_000);
+        assertFalse(waiting.hasResult());
+        ResponseEntity<?> turnedAway = (ResponseEntity<?>) controller.poll(start, null, 30_000).getResult();
+        assertEquals(HttpStatus.SERVICE_UNAVAILABLE, turnedAway.getStatusCode());
+        assertEquals("1", turnedAway.getHeaders().getFirst(HttpHeaders.RETRY_AFTER));
+        assertEquals(HttpStatus.SERVICE_UNAVAILABLE, controller.stream(start, null).getStatusCode());
+        // Polls that do not wait hold nothing
+        assertNotNull(controller.poll(start, null, 0).getResult());
+
+        log.publish(UserChange.Type.CREATED, new User(1, "Ann", "ann@example.com"));
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (!waiting.hasResult() && System.nanoTime() < deadline) {
+            Thread.sleep(10);
+        }
+        UserChangeLog.Batch batch = (UserChangeLog.Batch) ((ResponseEntity<?>) waiting.getResult()).getBody();
+        assertEquals(1, batch.changes().size());
+        assertTrue(metrics.scrape().contains("user_changes_rejected_total 2"));
+    }
+}
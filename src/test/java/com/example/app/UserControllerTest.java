@@ -0,0 +1,206 @@
+package com.example.app;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+import static org.junit.Assert.*;
+
+/**
+ * Tests for the user API on an in-memory database, calling the controller directly: bulk creation from a JSON
+ * array or NDJSON, keyset pages, streamed listings, and lookups and updates of present and missing users
+ */
+public class UserControllerTest {
+
+    @Rule
+    public TestDatabase database = new TestDatabase("controllertest").with("app.api.users.maxPageSize", "50");
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private DatabaseClient databaseClient;
+    private UserController controller;
+
+    @Before
+    public void setUp() {
+        databaseClient = database.client();
+        UserService userService = new UserService(databaseClient, UserCache.disabled(), new SnowflakeIdGenerator(3));
+        controller = new UserController(userService, databaseClient, objectMapper, database.config());
+    }
+
+    @Test
+    public void testBulkCreateReportsRejectedRowsByPosition() {
+        ResponseEntity<BulkInsertResult> created = controller.createUsers(List.of(
+                request("Ann", "ann@example.com"), request("Ben", "ben@example.com")));
+        assertEquals(HttpStatus.CREATED, created.getStatusCode());
+        assertEquals(2, created.getBody().inserted());
+        assertTrue(created.getBody().failures().isEmpty());
+
+        // A blank name and an email already stored, between rows that are fine
+        ResponseEntity<BulkInsertResult> partial = controller.createUsers(List.of(
+                request("Cy", "cy@example.com"), request(" ", "blank@example.com"),
+                request("Dup", "ANN@example.com"), request("Dee", "dee@example.com")));
+        assertEquals(HttpStatus.MULTI_STATUS, partial.getStatusCode());
+        BulkInsertResult result = partial.getBody();
+        assertEquals(4, result.requested());
+        assertEquals(2, result.inserted());
+        assertEquals(List.of(1, 2), result.failures().stream().map(BulkInsertResult.RowFailure::index).toList());
+        assertEquals("Name and email cannot be blank", result.failures().get(0).reason());
+        assertEquals("Email already exists", result.failures().get(1).reason());
+        assertEquals(4, databaseClient.countUsers());
+    }
+
+    @Test
+    public void testBulkCreateReadsNdjsonAndRejectsMalformedBodies() {
+        String lines = """
+                {"name": "Ann", "email": "ann@example.com"}
+                {"name": "Dup", "email": "Ann@Example.com"}
+                {"name": "Ben", "email": "ben@example.com"}
+                """;
+        ResponseEntity<BulkInsertResult> response = controller.importUsers(body(lines));
+        assertEquals(HttpStatus.MULTI_STATUS, response.getStatusCode());
+        assertEquals(2, response.getBody().inserted());
+        assertEquals(1, response.getBody().failures().get(0).index());
+        assertEquals("Ann", databaseClient.findByEmail("ann@example.com").getName());
+
+        // One object per line or all in an array read the same
+        ResponseEntity<BulkInsertResult> array = controller.importUsers(
+                body("[{\"name\": \"Cy\", \"email\": \"cy@example.com\"}, {\"name\": \"Dee\", \"email\": \"dee@example.com\"}]"));
+        assertEquals(HttpStatus.CREATED, array.getStatusCode());
+        assertEquals(2, array.getBody().inserted());
+
+        assertEquals(HttpStatus.BAD_REQUEST, controller.importUsers(body("{\"name\": \"Eve\", ")).getStatusCode());
+        assertEquals(HttpStatus.BAD_REQUEST, controller.importUsers(body("{\"name\": [1]}")).getStatusCode());
+        assertEquals(4, databaseClient.countUsers());
+    }
+
+    @Test
+    public void testPagesFollowNextAfterIdUntilTheLastPage() {
+        createUsers(25);
+        List<Long> seen = new ArrayList<>();
+        Long afterId = null;
+        int pages = 0;
+        do {
+            ResponseEntity<UserController.UserPage> response = controller.listUsersPage(afterId, 10);
+            assertEquals(HttpStatus.OK, response.getStatusCode());
+            List<User> users = response.getBody().getUsers();
+            for (User user : users) {
+                seen.add(user.getId());
+            }
+            afterId = response.getBody().getNextAfterId();
+            if (afterId != null) {
+                assertEquals(users.get(users.size() - 1).getId(), afterId.longValue());
+            }
+            pages++;
+        } while (afterId != null);
+        assertEquals(3, pages);
+        assertEquals(storedIds(), seen);
+
+        assertEquals(HttpStatus.BAD_REQUEST, controller.listUsersPage(null, 0).getStatusCode());
+        assertEquals(HttpStatus.BAD_REQUEST, controller.listUsersPage(null, 51).getStatusCode());
+        UserController.UserPage whole = controller.listUsersPage(null, 50).getBody();
+        assertEquals(25, whole.getUsers().size());
+        assertNull(whole.getNextAfterId());
+    }
+
+    @Test
+    public void testListingStreamsAJsonArrayOrNdjson() throws Exception {
+        createUsers(25);
+        List<Long> ids = storedIds();
+
+        ResponseEntity<StreamingResponseBody> array = controller.listUsers(null, "application/json");
+        assertEquals(MediaType.APPLICATION_JSON, array.getHeaders().getContentType());
+        User[] users = objectMapper.readValue(write(array.getBody()), User[].class);
+        assertEquals(ids, Arrays.stream(users).map(User::getId).toList());
+        assertEquals("User 0", users[0].getName());
+
+        ResponseEntity<StreamingResponseBody> ndjson = controller.listUsers(ids.get(9), UserController.NDJSON);
+        assertEquals(UserController.NDJSON, ndjson.getHeaders().getContentType().toString());
+        String[] lines = write(ndjson.getBody()).split("\n");
+        assertEquals(15, lines.length);
+        for (int i = 0; i < lines.length; i++) {
+            assertEquals(ids.get(10 + i).longValue(), objectMapper.readValue(lines[i], User.class).getId());
+        }
+
+        // An empty table is still a valid array
+        try (Connection connection = database.connect();
+             Statement stmt = connection.createStatement()) {
+            stmt.execute("DELETE FROM users");
+        }
+        assertEquals("[]", write(controller.listUsers(null, null).getBody()));
+    }
+
+    @Test
+    public void testGetAndPutAnswerNotFoundForMissingUsers() {
+        createUsers(1);
+        long id = storedIds().get(0);
+
+        ResponseEntity<User> found = controller.getUser(id);
+        assertEquals(HttpStatus.OK, found.getStatusCode());
+        assertEquals("\"0\"", found.getHeaders().getETag());
+        assertEquals("User 0", found.getBody().getName());
+
+        ResponseEntity<User> updated = controller.updateUser(id, null, update("renamed@example.com"));
+        assertEquals(HttpStatus.OK, updated.getStatusCode());
+        assertEquals(id, updated.getBody().getId());
+        assertEquals("User 0", updated.getBody().getName());
+        assertEquals("renamed@example.com", updated.getBody().getEmail());
+        assertEquals("\"1\"", updated.getHeaders().getETag());
+        assertEquals("renamed@example.com", databaseClient.findById(id).getEmail());
+
+        long missing = id + 1;
+        assertEquals(HttpStatus.NOT_FOUND, controller.getUser(missing).getStatusCode());
+        assertEquals(HttpStatus.NOT_FOUND, controller.updateUser(missing, null, update("x@example.com")).getStatusCode());
+        assertEquals(HttpStatus.NOT_FOUND,
+                controller.updateUser(missing, "\"0\"", update("x@example.com")).getStatusCode());
+        assertNull(databaseClient.findByEmail("x@example.com"));
+        assertEquals(1, databaseClient.countUsers());
+    }
+
+    private void createUsers(int count) {
+        List<UserController.CreateUserRequest> requests = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            requests.add(request("User " + i, "user" + i + "@example.com"));
+        }
+        assertEquals(HttpStatus.CREATED, controller.createUsers(requests).getStatusCode());
+    }
+
+    private List<Long> storedIds() {
+        return databaseClient.listUsers().stream().map(User::getId).toList();
+    }
+
+    private static String write(StreamingResponseBody body) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        body.writeTo(out);
+        return out.toString(StandardCharsets.UTF_8);
+    }
+
+    private static UserController.CreateUserRequest request(String name, String email) {
+        UserController.CreateUserRequest request = new UserController.CreateUserRequest();
+        request.setName(name);
+        request.setEmail(email);
+        return request;
+    }
+
+    private static UserController.UpdateUserRequest update(String email) {
+        UserController.UpdateUserRequest request = new UserController.UpdateUserRequest();
+        request.setEmail(email);
+        return request;
+    }
+
+    private static InputStream body(String text) {
+        return new ByteArrayInputStream(text.getBytes(StandardCharsets.UTF_8));
+    }
+}
@@ -0,0 +1,66 @@
+package com.example.app;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ * Tests for the off-heap user index against the createUserMap semantics
+ */
+public class UserIndexTest {
+
+    @Test
+    public void testLookupsMatchCreateUserMap() {
+        List<User> users = Arrays.asList(
+                new User(1, "Ann", "ann@example.com"),
+                null,
+                new User(2, "No Email", null),
+                new User(3, "Ann Again", "ann@example.com"),
+                new User(4, null, "nameless@example.com"),
+                new User(5, "Zoë", "zoë@exämple.com"),
+                new User(6, "Emoji", "😀@example.com"));
+
+        Map<String, User> map = DataUtil.createUserMap(users);
+        UserIndex index = DataUtil.createUserIndex(users);
+
+        assertEquals(map.size(), index.size());
+        for (Map.Entry<String, User> entry : map.entrySet()) {
+            User found = index.getByEmail(entry.getKey());
+            assertEquals(entry.getValue().getId(), found.getId());
+            assertEquals(entry.getValue().getName(), found.getName());
+            assertEquals(entry.getValue().getEmail(), found.getEmail());
+        }
+        assertEquals("Ann Again", index.getByEmail("ann@example.com").getName());
+        assertNull(index.getByEmail("zoe@example.com"));
+        assertNull(index.getByEmail("ann@example.co"));
+        assertNull(index.getByEmail(null));
+        assertFalse(index.containsEmail("nobody@example.com"));
+    }
+
+    @Test
+    public void testLookupById() {
+        UserIndex index = UserIndex.of(List.of(new User(10, "Ann", "ann@example.com"), new User(-7, "Bob", "bob@example.com")));
+
+        assertEquals("bob@example.com", index.getById(-7).getEmail());
+        assertEquals("Ann", index.getById(10).getName());
+        assertNull(index.getById(11));
+    }
+
+    @Test
+    public void testRecordsSpanSeveralChunks() {
+        List<User> users = new ArrayList<>();
+        for (int i = 0; i < 5_000; i++) {
+            users.add(new User(i, "User " + i, "user" + i + "@example.com"));
+        }
+        UserIndex index = UserIndex.of(users, 1024);
+
+        assertEquals(5_000, index.size());
+        for (int i = 0; i < 5_000; i++) {
+            assertEquals(i, index.getByEmail("user" + i + "@example.com").getId());
+            assertEquals("User " + i, index.getById(i).getName());
+        }
+    }
+}
@@ -0,0 +1,125 @@
+package com.example.app;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ * Tests for UserJsonCodec: escaping and UTF-8 round trips, agreement with Jackson, and rejection of bad input
+ */
+public class UserJsonCodecTest {
+
+    private static final String[] AWKWARD = {
+            "plain", "", "quote \" and backslash \\", "tab\tnew\nline\r\u0001\u001f", "café ñ", "日本語",
+            "emoji \uD83D\uDE00 pair", "slash / and \u007f", "<html>&'="
+    };
+
+    private final ObjectMapper jackson = new ObjectMapper();
+
+    @Test
+    public void testRoundTripsAwkwardStrings() throws IOException {
+        for (String text : AWKWARD) {
+            User user = new User(Long.MIN_VALUE, text, text + "@example.com", Long.MAX_VALUE);
+            String json = UserJsonCodec.toJson(user);
+            assertUser(user, UserJsonCodec.fromJson(json, User.class));
+
+            byte[] bytes = json.getBytes(StandardCharsets.UTF_8);
+            assertUser(user, UserJsonCodec.read(bytes, 0, bytes.length, User.class));
+            assertUser(user, jackson.readValue(bytes, User.class));
+        }
+        User nulls = new User(Long.MAX_VALUE, null, null);
+        assertEquals("{\"id\":9223372036854775807,\"name\":null,\"email\":null,\"version\":0}", UserJsonCodec.toJson(nulls));
+        assertUser(nulls, UserJsonCodec.fromJson(UserJsonCodec.toJson(nulls), User.class));
+    }
+
+    @Test
+    public void testMatchesJacksonOutputAndParsesIt() throws IOException {
+        User user = new User(370214872236949504L, "Jane Doe", "jane@example.com", 3);
+        assertEquals(jackson.writeValueAsString(user), UserJsonCodec.toJson(user));
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        UserJsonCodec.write(user, out);
+        assertEquals(jackson.writeValueAsString(user), out.toString(StandardCharsets.UTF_8));
+
+        for (String text : AWKWARD) {
+            String json = jackson.writeValueAsString(new User(-42, text, text));
+            assertUser(new User(-42, text, text), UserJsonCodec.fromJson(json, User.class));
+        }
+    }
+
+    @Test
+    public void testReadsRequestsAndSkipsUnknownProperties() throws IOException {
+        String json = " {\"id\": 7, \"extra\": {\"a\": [1, \"}\", {\"b\": null}], \"c\": -1.5e3},"
+                + " \"n\\u0061me\" : \"Ann \\\"A\\\" \\u00e9\", \"flag\": true, \"email\": \"ann@example.com\"}\n";
+        UserController.CreateUserRequest create = UserJsonCodec.read(
+                new ByteArrayInputStream(json.getBytes(StandardCharsets.UTF_8)), 1024,
+                UserController.CreateUserRequest.class);
+        assertEquals("Ann \"A\" é", create.getName());
+        assertEquals("ann@example.com", create.getEmail());
+
+        UserController.UpdateUserRequest update = UserJsonCodec.fromJson(json, UserController.UpdateUserRequest.class);
+        assertEquals("ann@example.com", update.getEmail());
+
+        User user = UserJsonCodec.fromJson("{\"id\":null,\"name\":null}", User.class);
+        assertEquals(0, user.getId());
+        assertNull(user.getName());
+        assertNull(UserJsonCodec.fromJson(" null ", User.class));
+    }
+
+    @Test
+    public void testRejectsMalformedInput() throws IOException {
+        String[] malformed = {
+                "", "{", "[]", "{\"name\":\"x\"", "{\"name\":\"x\",}", "{\"name\" \"x\"}", "{\"name\":x}",
+                "{\"id\":1.5}", "{\"id\":99999999999999999999}", "{\"id\":\"1\"}", "{\"name\":\"bad\\q\"}",
+                "{\"name\":\"raw\ncontrol\"}", "{} {}", "{\"extra\":tru}"
+        };
+        for (String json : malformed) {
+            try {
+                UserJsonCodec.fromJson(json, User.class);
+                fail("Expected rejection of " + json);
+            } catch (IllegalArgumentException expected) {
+                assertTrue(expected.getMessage().startsWith("Malformed JSON"));
+            }
+        }
+        byte[] invalidUtf8 = {'{', '"', 'n', 'a', 'm', 'e', '"', ':', '"', (byte) 0xC3, '"', '}'};
+        try {
+            UserJsonCodec.read(invalidUtf8, 0, invalidUtf8.length, User.class);
+            fail("Expected rejection of invalid UTF-8");
+        } catch (IllegalArgumentException expected) {
+            assertTrue(expected.getMessage().contains("UTF-8"));
+        }
+        try {
+            UserJsonCodec.read(new ByteArrayInputStream(new byte[2048]), 1024, User.class);
+            fail("Expected rejection of an oversized body");
+        } catch (IllegalArgumentException expected) {
+            assertTrue(expected.getMessage().contains("larger than"));
+        }
+    }
+
+    @Test
+    public void testGsonAdapterFactory() {
+        Gson gson = new GsonBuilder().registerTypeAdapterFactory(UserJsonCodec.gsonAdapterFactory()).create();
+        for (String text : AWKWARD) {
+            User user = new User(12345, text, text);
+            assertUser(user, gson.fromJson(gson.toJson(user), User.class));
+            assertUser(user, gson.fromJson(UserJsonCodec.toJson(user), User.class));
+        }
+        assertEquals("{\"id\":1,\"name\":\"A\",\"version\":0}", gson.toJson(new User(1, "A", null)));
+        UserController.CreateUserRequest request = gson.fromJson("{\"name\":\"B\",\"email\":\"b@x.org\",\"x\":[1]}",
+                UserController.CreateUserRequest.class);
+        assertEquals("b@x.org", request.getEmail());
+    }
+
+    private static void assertUser(User expected, User actual) {
+        assertEquals(expected.getId(), actual.getId());
+        assertEquals(expected.getName(), actual.getName());
+        assertEquals(expected.getEmail(), actual.getEmail());
+        assertEquals(expected.getVersion(), actual.getVersion());
+    }
+}
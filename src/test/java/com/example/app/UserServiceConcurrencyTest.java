@@ -0,0 +1,133 @@
+package com.example.app;
+
+import java.util.ArrayList;
+import java.util.ConcurrentModificationException;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ * Tests for versioned updates: stale writers are refused, and concurrent read-modify-write cycles through
+ * modifyUser lose no updates
+ */
+public class UserServiceConcurrencyTest {
+
+    private static final int THREADS = 8;
+    private static final int UPDATES_PER_THREAD = 200;
+
+    @Rule
+    public TestDatabase database = new TestDatabase("concurrencytest");
+
+    private DatabaseClient databaseClient;
+    private UserService userService;
+
+    @Before
+    public void setUp() {
+        databaseClient = database.client();
+        userService = new UserService(databaseClient, new UserCache(1000, 0), SnowflakeIdGenerator.defaultInstance());
+    }
+
+    @Test
+    public void testStaleWritersAreRefused() {
+        User user = userService.createAndPersistUser("Jane Doe", "jane@example.com");
+        User stale = userService.findUserById(user.getId());
+
+        userService.updateUser(user, "jane.doe@example.com");
+        assertEquals(1, user.getVersion());
+        try {
+            userService.updateUser(stale, "jd@example.com");
+            fail("Expected a conflict for a user read before the last update");
+        } catch (ConcurrentModificationException expected) {
+            assertEquals("jane@example.com", stale.getEmail());
+        }
+
+        UpdateResult conflict = userService.updateUserEmailIfVersion(user.getId(), 0, "jd@example.com");
+        assertEquals(UpdateResult.Status.CONFLICT, conflict.status());
+        assertEquals("jane.doe@example.com", conflict.user().getEmail());
+        UpdateResult updated = userService.updateUserEmailIfVersion(user.getId(), 1, "jd@example.com");
+        assertEquals(UpdateResult.Status.UPDATED, updated.status());
+        assertEquals(2, userService.findUserById(user.getId()).getVersion());
+        assertEquals(UpdateResult.Status.NOT_FOUND, userService.updateUserEmailIfVersion(-1, 0, "x@example.com").status());
+    }
+
+    @Test
+    public void testChangeReturningNoUserIsRejected() {
+        User user = userService.createAndPersistUser("Jane Doe", "jane@example.com");
+        try {
+            userService.modifyUser(user.getId(), current -> null);
+            fail("Expected a change without a result to be rejected");
+        } catch (IllegalArgumentException expected) {
+            assertTrue(expected.getMessage(), expected.getMessage().contains("returned no user"));
+        }
+        assertEquals(0, userService.findUserById(user.getId()).getVersion());
+    }
+
+    @Test
+    public void testConcurrentIncrementsOnOneUserLoseNothing() throws Exception {
+        User user = userService.createAndPersistUser("0", "counter@example.com");
+        int applied = runIncrements(new long[] {user.getId()});
+
+        User stored = userService.findUserById(user.getId());
+        // Every modifyUser call that returned is in the counter, and each bumped the version exactly once
+        assertEquals(applied, Integer.parseInt(stored.getName()));
+        assertEquals(applied, stored.getVersion());
+        assertTrue("Only " + applied + " increments applied", applied > THREADS * UPDATES_PER_THREAD / 2);
+    }
+
+    @Test
+    public void testConcurrentIncrementsAcrossUsersLoseNothing() throws Exception {
+        long[] ids = new long[20];
+        for (int i = 0; i < ids.length; i++) {
+            ids[i] = userService.createAndPersistUser("0", "counter" + i + "@example.com").getId();
+        }
+        int applied = runIncrements(ids);
+
+        assertEquals(THREADS * UPDATES_PER_THREAD, applied);
+        long total = 0;
+        for (long id : ids) {
+            User stored = userService.findUserById(id);
+            assertEquals(Long.parseLong(stored.getName()), stored.getVersion());
+            total += stored.getVersion();
+        }
+        assertEquals(applied, total);
+    }
+
+    // Returns how many increments were applied; a call that gave up after too many conflicts applied nothing
+    private int runIncrements(long[] ids) throws Exception {
+        AtomicInteger applied = new AtomicInteger();
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int t = 0; t < THREADS; t++) {
+                futures.add(executor.submit(() -> {
+                    for (int i = 0; i < UPDATES_PER_THREAD; i++) {
+                        long id = ids[ThreadLocalRandom.current().nextInt(ids.length)];
+                        try {
+                            userService.modifyUser(id, current -> {
+                                current.setName(Long.toString(Long.parseLong(current.getName()) + 1));
+                                return current;
+                            });
+                            applied.incrementAndGet();
+                        } catch (ConcurrentModificationException gaveUp) {
+                            // Counted as not applied
+                        }
+                    }
+                    return null;
+                }));
+            }
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } finally {
+            executor.shutdown();
+        }
+        return applied.get();
+    }
+}
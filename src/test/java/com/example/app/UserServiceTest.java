@@ -1,5 +1,6 @@
 package com.example.app;
 
+import java.util.regex.Pattern;
 import org.junit.Before;
 import org.junit.Test;
 import static org.junit.Assert.*;
@@ -63,4 +64,27 @@ public class UserServiceTest {
         User user = userService.createUser("Test", "test@example.com");
         userService.updateUser(user, "invalid-email");
     }
+    
+    @Test
+    public void testServiceWithoutDatabaseFailsClearly() {
+        try {
+            userService.findUserByEmail("jane@example.com");
+            fail("Expected a service without a database to refuse reads");
+        } catch (IllegalStateException e) {
+            assertTrue(e.getMessage(), e.getMessage().contains("without a database"));
+        }
+    }
+    
+    @Test
+    public void testIsValidEmailMatchesPattern() {
+        Pattern pattern = Pattern.compile("[^@\\s]+@[^@\\s]+\\.[^@\\s]+");
+        String[] emails = {
+            "a@b.c", "jane.doe@example.com", "x@y.z.", "a@.b.c", "a@b.", "a@.b", "@b.c", "a@b", "a.b@c",
+            "a@@b.c", "a@b@c.d", "a b@c.d", "a@b.c\t", "", ".@..", "ü@例え.jp", "a@b..c"
+        };
+        for (String email : emails) {
+            assertEquals(email, pattern.matcher(email).matches(), UserService.isValidEmail(email));
+        }
+        assertFalse(UserService.isValidEmail(null));
+    }
 }
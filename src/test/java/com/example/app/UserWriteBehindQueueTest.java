@@ -0,0 +1,169 @@
+package com.example.app;
+
+import java.util.Collection;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ * Tests for write-behind user creation: reads of queued users, backpressure and flushing on close
+ */
+public class UserWriteBehindQueueTest {
+
+    private final CountDownLatch release = new CountDownLatch(1);
+    private volatile boolean stalled;
+
+    // Lets a test hold the writer inside its first batch so the queue fills up
+    @Rule
+    public TestDatabase database = new TestDatabase("writebehindtest").withClient(config -> new DatabaseClient(config) {
+        @Override
+        public BulkInsertResult createUsers(Collection<User> users) {
+            if (stalled) {
+                try {
+                    release.await(10, TimeUnit.SECONDS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+            return super.createUsers(users);
+        }
+    });
+
+    private DatabaseClient databaseClient;
+
+    @Before
+    public void setUp() {
+        databaseClient = database.client();
+    }
+
+    @After
+    public void tearDown() {
+        release.countDown();
+    }
+
+    @Test
+    public void testQueuedUsersAreReadableAndFlushedOnClose() {
+        stalled = true;
+        UserWriteBehindQueue queue = newQueue(100, false);
+        UserService userService = new UserService(databaseClient, UserCache.disabled(), new SnowflakeIdGenerator(1), queue);
+
+        User ann = userService.createAndSubmitUser("Ann", "Ann@Example.com").user();
+        for (int i = 0; i < 50; i++) {
+            assertEquals(CreateResult.Status.QUEUED,
+                    userService.createAndSubmitUser("User " + i, "user" + i + "@example.com").status());
+        }
+        assertTrue(userService.isWriteBehindEnabled());
+        assertEquals(ann.getId(), userService.findUserByEmail("ann@example.com").getId());
+        assertEquals("Ann", userService.findUserById(ann.getId()).getName());
+
+        release.countDown();
+        queue.close();
+
+        assertEquals(51, databaseClient.countUsers());
+        assertNull(queue.pendingByEmail("ann@example.com"));
+        assertEquals(ann.getId(), userService.findUserByEmail("ann@example.com").getId());
+        assertEquals(CreateResult.Status.QUEUE_FULL, queue.offer(new User(1, "Late", "late@example.com")));
+    }
+
+    @Test
+    public void testFullQueueRejectsUntilWriterCatchesUp() {
+        stalled = true;
+        UserWriteBehindQueue queue = newQueue(2, false);
+
+        // The writer takes the first user and stalls, leaving room for two more
+        assertEquals(CreateResult.Status.QUEUED, queue.offer(new User(1, "A", "a@example.com")));
+        waitUntilEmpty(queue);
+        assertEquals(CreateResult.Status.QUEUED, queue.offer(new User(2, "B", "b@example.com")));
+        assertEquals(CreateResult.Status.QUEUED, queue.offer(new User(3, "C", "c@example.com")));
+        assertEquals(CreateResult.Status.QUEUE_FULL, queue.offer(new User(4, "D", "d@example.com")));
+        assertNull(queue.pendingByEmail("d@example.com"));
+
+        release.countDown();
+        assertTrue(queue.awaitWritten(3, 5000));
+        assertEquals(CreateResult.Status.QUEUED, queue.offer(new User(4, "D", "d@example.com")));
+        queue.close();
+        assertEquals(4, databaseClient.countUsers());
+    }
+
+    @Test
+    public void testDuplicateEmailsAreTurnedAway() {
+        stalled = true;
+        UserWriteBehindQueue queue = newQueue(10, true);
+        UserService userService = new UserService(databaseClient, UserCache.disabled(), new SnowflakeIdGenerator(1), queue);
+        UserService direct = new UserService(databaseClient, UserCache.disabled(), new SnowflakeIdGenerator(2));
+        try {
+            assertEquals(CreateResult.Status.CREATED,
+                    direct.createAndSubmitUser("Stored", "stored@example.com").status());
+            assertEquals(CreateResult.Status.DUPLICATE_EMAIL,
+                    direct.createAndSubmitUser("Again", "STORED@example.com").status());
+
+            assertEquals(CreateResult.Status.QUEUED, queue.offer(new User(1, "A", "dup@example.com")));
+            assertEquals(CreateResult.Status.DUPLICATE_EMAIL, queue.offer(new User(2, "B", "DUP@example.com")));
+            // Stored emails are checked before queueing, so the writer is not left to drop the row
+            assertEquals(CreateResult.Status.DUPLICATE_EMAIL,
+                    userService.createAndSubmitUser("C", "stored@EXAMPLE.com").status());
+            assertEquals(CreateResult.Status.DUPLICATE_EMAIL,
+                    userService.createAndSubmitUser("D", "Dup@example.com").status());
+            assertNull(userService.createAndSubmitUser("D", "Dup@example.com").user());
+        } finally {
+            release.countDown();
+            queue.close();
+        }
+        assertEquals(2, databaseClient.countUsers());
+    }
+
+    @Test
+    public void testOnlyEmailConflictsAreReportedAsDuplicateEmails() {
+        databaseClient.createUser(new User(7, "First", "first@example.com"));
+        assertEquals(CreateResult.Status.DUPLICATE_EMAIL, new UserService(databaseClient, UserCache.disabled(), () -> 8)
+                .createAndSubmitUser("Again", "FIRST@example.com").status());
+        // An id already in use breaks the primary key instead
+        try {
+            new UserService(databaseClient, UserCache.disabled(), () -> 7)
+                    .createAndSubmitUser("Second", "second@example.com");
+            fail("Expected an id conflict to fail");
+        } catch (IllegalStateException expected) {
+            assertNull(databaseClient.findByEmail("second@example.com"));
+        }
+        assertEquals(1, databaseClient.countUsers());
+    }
+
+    @Test
+    public void testUpdatesOfUnwrittenUsersFailInsteadOfMissingTheRow() {
+        stalled = true;
+        UserWriteBehindQueue queue = newQueue(10, false);
+        UserService userService = new UserService(databaseClient, UserCache.disabled(), new SnowflakeIdGenerator(1), queue);
+        User ann = userService.createAndSubmitUser("Ann", "ann@example.com").user();
+
+        // An interrupted wait gives up at once, as one that runs out of time does
+        Thread.currentThread().interrupt();
+        try {
+            userService.deleteUser(ann.getId());
+            fail("Expected the delete of a queued user to fail");
+        } catch (IllegalStateException expected) {
+            assertTrue(Thread.interrupted());
+        }
+
+        release.countDown();
+        userService.deleteUser(ann.getId());
+        assertNull(databaseClient.findById(ann.getId()));
+        queue.close();
+    }
+
+    private UserWriteBehindQueue newQueue(int capacity, boolean blockWhenFull) {
+        return new UserWriteBehindQueue(databaseClient, true, capacity, 500, blockWhenFull, 100, 10000,
+                new MetricsRegistry());
+    }
+
+    private static void waitUntilEmpty(UserWriteBehindQueue queue) {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (queue.depth() > 0 && System.nanoTime() < deadline) {
+            Thread.onSpinWait();
+        }
+        assertEquals(0, queue.depth());
+    }
+}